@@ -0,0 +1,283 @@
+package com.arcsoftface.reactnative;
+
+import android.os.SystemClock;
+import android.util.Base64;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceSimilar;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 基准测试与近似检索评估方法，只随调试构建注册（见 DebugModules），发布构建中不存在。
+ * 与 ArcsoftFaceModule 共用引擎池与特征库，JS 侧通过 NativeModules.ArcsoftFaceBenchmark 调用。
+ */
+class ArcsoftFaceBenchmarkModule extends ReactContextBaseJavaModule {
+    static final String NAME = "ArcsoftFaceBenchmark";
+
+    private final ArcsoftFaceModule face;
+    private final FeatureGallery gallery;
+
+    ArcsoftFaceBenchmarkModule(ReactApplicationContext reactContext, ArcsoftFaceModule face) {
+        super(reactContext);
+        this.face = face;
+        this.gallery = face.getFeatureGallery();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * 在设备上运行模块热点路径的基准测试，以后台优先级占用一个引擎直到全部用例结束。
+     * options: warmup（默认 20）、samples（默认 50）、batch（轻量用例每次采样的操作数，默认 100）、k（默认 10）、
+     * gallerySizes（默认 [1000, 10000, 100000]）、galleryEncoding（'float' | 'int8'，默认与当前特征库一致）、
+     * feature（合成特征所用的特征头样本，Base64，默认取库内任一特征）、imagePath（可选，对比解码与缓存命中）。
+     */
+    @ReactMethod
+    public void runBenchmarks(final ReadableMap options, final Promise promise) {
+        FaceEnginePool pool = face.getEnginePool();
+        if (pool == null) {
+            promise.reject("ENGINE_NOT_INIT", "Face engine not initialized. Please call init() first.");
+            return;
+        }
+        pool.execute(FaceEngine.ASF_FACE_RECOGNITION, FaceEnginePool.PRIORITY_BACKGROUND, null, "BENCHMARK_ERROR", new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) throws Exception {
+                long start = SystemClock.elapsedRealtime();
+                ModuleBenchmark benchmark = new ModuleBenchmark((int) ArcsoftFaceModule.getNumber(options, "warmup", 20),
+                        (int) ArcsoftFaceModule.getNumber(options, "samples", 50), (int) ArcsoftFaceModule.getNumber(options, "batch", 100));
+                int k = Math.max(1, (int) ArcsoftFaceModule.getNumber(options, "k", 10));
+                byte[] template = null;
+                String feature = ArcsoftFaceModule.getString(options, "feature");
+                if (feature != null) {
+                    template = Base64.decode(feature, Base64.NO_WRAP);
+                } else {
+                    List<byte[]> samples = gallery.sampleFeatures(1, new Random(), new ArrayList<String>());
+                    template = samples.isEmpty() ? null : samples.get(0);
+                }
+                if (template != null && template.length != gallery.getFeatureSize()) {
+                    throw new FaceException("INVALID_PARAMETER", "Invalid feature length: " + template.length);
+                }
+
+                benchmark.runCore(template != null ? template : new byte[gallery.getFeatureSize()], k);
+                String imagePath = ArcsoftFaceModule.getString(options, "imagePath");
+                if (imagePath != null) {
+                    benchmark.runImage(imagePath, face.getMaxDetectSize());
+                }
+                WritableMap result = Arguments.createMap();
+                // 合成特征需要真实的特征头才能交给引擎比对
+                if (template != null) {
+                    String encoding = ArcsoftFaceModule.getString(options, "galleryEncoding");
+                    boolean compact = encoding != null ? "int8".equals(encoding) : gallery.isCompact();
+                    ReadableArray sizes = options != null && options.hasKey("gallerySizes") ? options.getArray("gallerySizes") : null;
+                    int[] gallerySizes = sizes != null ? new int[sizes.size()] : new int[]{1000, 10000, 100000};
+                    for (int i = 0; sizes != null && i < sizes.size(); i++) {
+                        gallerySizes[i] = sizes.getInt(i);
+                    }
+                    for (int size : gallerySizes) {
+                        benchmark.runGallery(faceEngine, template, size, k, compact, face.getSearchEngines());
+                    }
+                } else {
+                    result.putString("gallerySkipped", "No feature available; register a feature or pass options.feature");
+                }
+                result.putArray("cases", benchmark.getResults());
+                result.putDouble("elapsedTime", SystemClock.elapsedRealtime() - start);
+                promise.resolve(result);
+            }
+        }, new FaceEnginePool.ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                promise.reject(code, message);
+            }
+        });
+    }
+
+    /**
+     * 以库内随机特征对评估 int8 近似分数的偏差：对每个探针取其近邻与随机特征组成特征对，
+     * 统计 int8 近似余弦与全精度余弦、与引擎 compareFaceFeature 分数之间的平均 / 最大绝对误差。
+     * options: samples（探针数，默认 50）、neighbors（每个探针的近邻数与随机对数，默认 5）。
+     */
+    @ReactMethod
+    public void evaluateGalleryEncoding(final ReadableMap options, final Promise promise) {
+        FaceEnginePool pool = face.getEnginePool();
+        if (pool == null) {
+            promise.reject("ENGINE_NOT_INIT", "Face engine not initialized. Please call init() first.");
+            return;
+        }
+        final int featureSize = gallery.getFeatureSize();
+        if (!FeatureVectors.supports(featureSize)) {
+            promise.reject("ENCODING_ERROR", "Unsupported feature size for compact encoding: " + featureSize);
+            return;
+        }
+        final int samples = Math.max(1, (int) ArcsoftFaceModule.getNumber(options, "samples", 50));
+        final int neighbors = Math.max(1, (int) ArcsoftFaceModule.getNumber(options, "neighbors", 5));
+        pool.execute(FaceEngine.ASF_FACE_RECOGNITION, FaceEnginePool.PRIORITY_BACKGROUND, null, "SEARCH_ERROR", new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) throws FaceException {
+                Random random = new Random();
+                List<String> probeIds = new ArrayList<>();
+                List<byte[]> probes = gallery.sampleFeatures(samples, random, probeIds);
+                List<byte[]> others = gallery.sampleFeatures(samples * neighbors, random, new ArrayList<String>());
+                int dimension = FeatureVectors.dimension(featureSize);
+                float[] probeVector = new float[dimension];
+                float[] candidateVector = new float[dimension];
+                byte[] codes = new byte[dimension];
+                byte[] candidate = new byte[featureSize];
+                FaceSimilar faceSimilar = new FaceSimilar();
+                double quantizationSum = 0;
+                double quantizationMax = 0;
+                double scoreSum = 0;
+                double scoreMax = 0;
+                int pairs = 0;
+                for (int i = 0; i < probes.size(); i++) {
+                    byte[] probe = probes.get(i);
+                    FeatureVectors.read(probe, probeVector);
+                    // 近邻对覆盖识别阈值附近的高分区间，随机对覆盖低分区间
+                    List<byte[]> candidates = new ArrayList<>();
+                    for (FeatureGallery.Match match : gallery.searchTopK(faceEngine, probe, neighbors + 1, Float.NEGATIVE_INFINITY)) {
+                        if (!match.id.equals(probeIds.get(i)) && gallery.readFeature(match.id, candidate)) {
+                            candidates.add(candidate.clone());
+                        }
+                    }
+                    for (int j = i * neighbors; j < Math.min(others.size(), (i + 1) * neighbors); j++) {
+                        candidates.add(others.get(j));
+                    }
+                    for (byte[] featureData : candidates) {
+                        int code = faceEngine.compareFaceFeature(new FaceFeature(probe), new FaceFeature(featureData), faceSimilar);
+                        if (code != ErrorInfo.MOK) {
+                            throw new FaceException("SEARCH_ERROR", "Face comparison failed: " + code);
+                        }
+                        FeatureVectors.read(featureData, candidateVector);
+                        float cosine = FeatureVectors.dot(probeVector, 0, candidateVector, 0, dimension);
+                        float factor = FeatureVectors.quantize(featureData, 0, codes, 0, candidateVector);
+                        float approximate = factor * FeatureVectors.dot(codes, 0, probeVector);
+                        double quantizationError = Math.abs(approximate - cosine);
+                        double scoreError = Math.abs(approximate - faceSimilar.getScore());
+                        quantizationSum += quantizationError;
+                        quantizationMax = Math.max(quantizationMax, quantizationError);
+                        scoreSum += scoreError;
+                        scoreMax = Math.max(scoreMax, scoreError);
+                        pairs++;
+                    }
+                }
+                WritableMap result = Arguments.createMap();
+                result.putInt("samples", probes.size());
+                result.putInt("pairs", pairs);
+                result.putDouble("quantizationMeanError", pairs > 0 ? quantizationSum / pairs : 0);
+                result.putDouble("quantizationMaxError", quantizationMax);
+                result.putDouble("scoreMeanError", pairs > 0 ? scoreSum / pairs : 0);
+                result.putDouble("scoreMaxError", scoreMax);
+                face.putEncodingStats(result);
+                promise.resolve(result);
+            }
+        }, new FaceEnginePool.ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                promise.reject(code, message);
+            }
+        });
+    }
+
+    /**
+     * 以库内随机特征为探针，对比近似检索（索引或 int8 紧凑编码）与精确检索的召回率和延迟。探针自身不计入结果。
+     * options: samples（探针数，默认 100）、k（默认 10）。
+     */
+    @ReactMethod
+    public void benchmarkGalleryIndex(final ReadableMap options, final Promise promise) {
+        FaceEnginePool pool = face.getEnginePool();
+        if (pool == null) {
+            promise.reject("ENGINE_NOT_INIT", "Face engine not initialized. Please call init() first.");
+            return;
+        }
+        final IvfIndex index = gallery.getIndex();
+        // 紧凑编码的库没有索引时，近似检索即 int8 粗排 + 引擎重排
+        if (index == null && !gallery.isCompact()) {
+            promise.reject("INDEX_ERROR", "Gallery index not built");
+            return;
+        }
+        final int samples = Math.max(1, (int) ArcsoftFaceModule.getNumber(options, "samples", 100));
+        final int k = Math.max(1, (int) ArcsoftFaceModule.getNumber(options, "k", 10));
+        // 精确检索需遍历全库，以后台优先级执行，不阻塞交互请求
+        pool.execute(FaceEngine.ASF_FACE_RECOGNITION, FaceEnginePool.PRIORITY_BACKGROUND, null, "SEARCH_ERROR", new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) {
+                List<String> probeIds = new ArrayList<>();
+                List<byte[]> probes = gallery.sampleFeatures(samples, new Random(), probeIds);
+                long[] exactNanos = new long[probes.size()];
+                long[] indexNanos = new long[probes.size()];
+                int expected = 0;
+                int found = 0;
+                for (int i = 0; i < probes.size(); i++) {
+                    String self = probeIds.get(i);
+                    long start = System.nanoTime();
+                    List<FeatureGallery.Match> exact = gallery.searchTopK(faceEngine, probes.get(i), k + 1, Float.NEGATIVE_INFINITY, false);
+                    exactNanos[i] = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    List<FeatureGallery.Match> approximate = gallery.searchTopK(faceEngine, probes.get(i), k + 1, Float.NEGATIVE_INFINITY, true);
+                    indexNanos[i] = System.nanoTime() - start;
+
+                    Set<String> approximateIds = new HashSet<>();
+                    for (FeatureGallery.Match match : approximate) {
+                        approximateIds.add(match.id);
+                    }
+                    int taken = 0;
+                    for (FeatureGallery.Match match : exact) {
+                        if (match.id.equals(self) || taken == k) {
+                            continue;
+                        }
+                        taken++;
+                        if (approximateIds.contains(match.id)) {
+                            found++;
+                        }
+                    }
+                    expected += taken;
+                }
+                WritableMap result = index != null ? face.indexInfo(index) : Arguments.createMap();
+                result.putString("encoding", gallery.isCompact() ? "int8" : "float");
+                result.putInt("samples", probes.size());
+                result.putInt("k", k);
+                result.putDouble("recall", expected > 0 ? (double) found / expected : 1);
+                putLatency(result, "exact", exactNanos);
+                putLatency(result, "index", indexNanos);
+                promise.resolve(result);
+            }
+        }, new FaceEnginePool.ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                promise.reject(code, message);
+            }
+        });
+    }
+
+    // 写入 <prefix>MeanMs 与 <prefix>P95Ms
+    private static void putLatency(WritableMap map, String prefix, long[] nanos) {
+        if (nanos.length == 0) {
+            return;
+        }
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long value : sorted) {
+            total += value;
+        }
+        map.putDouble(prefix + "MeanMs", total / (double) sorted.length / 1e6);
+        map.putDouble(prefix + "P95Ms", sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.95) - 1)] / 1e6);
+    }
+}
@@ -0,0 +1,19 @@
+package com.arcsoftface.reactnative;
+
+import com.facebook.react.bridge.NativeModule;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 调试构建额外注册的模块；发布构建中的同名类返回空列表。
+ */
+final class DebugModules {
+    private DebugModules() {
+    }
+
+    static List<NativeModule> create(ReactApplicationContext reactContext, ArcsoftFaceModule face) {
+        return Collections.<NativeModule>singletonList(new ArcsoftFaceBenchmarkModule(reactContext, face));
+    }
+}
@@ -0,0 +1,272 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceInfo;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 模块热点路径的进程内基准测试：特征 Base64 编解码、BGR24 缓冲区复用与转换、结果封装、
+ * 图片缓存与特征句柄命中、不同规模特征库的 Top-K 检索。
+ * 每个用例先预热再分若干次采样，每次采样连续执行 batch 次操作，报告单次操作耗时的均值与分位数。
+ * 缓冲池、图片缓存与特征库均使用独立实例，不影响模块自身的缓存内容和统计计数。
+ */
+class ModuleBenchmark {
+    private static final String TAG = "ModuleBenchmark";
+    private static final int IMAGE_WIDTH = 640;
+    private static final int IMAGE_HEIGHT = 480;
+    private static final int FACES = 5;
+
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    private final int warmup;
+    private final int samples;
+    private final int batch;
+    private final WritableArray results = Arguments.createArray();
+    // 防止被测操作的结果被优化掉
+    private long sink;
+
+    ModuleBenchmark(int warmup, int samples, int batch) {
+        this.warmup = Math.max(0, warmup);
+        this.samples = Math.max(1, samples);
+        this.batch = Math.max(1, batch);
+    }
+
+    WritableArray getResults() {
+        return results;
+    }
+
+    /**
+     * 执行与引擎无关的全部用例，template 为作为样本的特征数据。
+     */
+    void runCore(byte[] template, int k) throws Exception {
+        final byte[] feature = template.clone();
+        final String encoded = Base64.encodeToString(feature, Base64.NO_WRAP);
+        measure("base64Encode", batch, new Operation() {
+            @Override
+            public void run() {
+                sink += Base64.encodeToString(feature, Base64.NO_WRAP).length();
+            }
+        });
+        measure("base64Decode", batch, new Operation() {
+            @Override
+            public void run() {
+                sink += Base64.decode(encoded, Base64.NO_WRAP).length;
+            }
+        });
+
+        final int imageBytes = IMAGE_WIDTH * IMAGE_HEIGHT * 3;
+        final ImageBufferPool pool = new ImageBufferPool(imageBytes * 4L);
+        measure("bufferPooled", batch, new Operation() {
+            @Override
+            public void run() {
+                byte[] buffer = pool.acquireBuffer(imageBytes);
+                buffer[0] = 1;
+                pool.releaseBuffer(buffer);
+            }
+        });
+        measure("bufferUnpooled", batch, new Operation() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[imageBytes];
+                buffer[0] = 1;
+                sink += buffer.length;
+            }
+        });
+        final Bitmap bitmap = Bitmap.createBitmap(IMAGE_WIDTH, IMAGE_HEIGHT, Bitmap.Config.ARGB_8888);
+        // 纯灰图像，只衡量转换本身的开销
+        bitmap.eraseColor(0xFF808080);
+        try {
+            measure("bgr24Convert", 1, new Operation() {
+                @Override
+                public void run() throws FaceException {
+                    Bgr24Image image = Bgr24Image.fromBitmap(bitmap, pool);
+                    sink += image.data.length;
+                    image.release();
+                }
+            });
+        } finally {
+            bitmap.recycle();
+        }
+
+        final List<FeatureGallery.Match> matches = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            matches.add(new FeatureGallery.Match("person-" + i, 0.9f - i * 0.01f));
+        }
+        measure("marshalMatches", batch, new Operation() {
+            @Override
+            public void run() {
+                sink += ArcsoftFaceModule.toMatchArray(matches).size();
+            }
+        });
+        final List<FaceInfo> faceInfoList = new ArrayList<>();
+        for (int i = 0; i < FACES; i++) {
+            FaceInfo faceInfo = new FaceInfo();
+            faceInfo.setRect(new Rect(i * 100, 50, i * 100 + 90, 160));
+            faceInfo.setFaceId(i);
+            faceInfoList.add(faceInfo);
+        }
+        measure("marshalFaces", batch, new Operation() {
+            @Override
+            public void run() {
+                FaceAnalysis analysis = FaceAnalysis.obtain(faceInfoList);
+                WritableArray faceArray = Arguments.createArray();
+                for (int i = 0; i < faceInfoList.size(); i++) {
+                    faceArray.pushMap(ArcsoftFaceModule.toFaceMap(analysis, i, true));
+                }
+                sink += faceArray.size();
+            }
+        });
+
+        final ImageCache cache = new ImageCache(imageBytes * 2L);
+        ImageCache.Entry cached = cache.put("benchmark", new Bgr24Image(pool.acquireBuffer(imageBytes), IMAGE_WIDTH, IMAGE_HEIGHT, pool));
+        cached.release();
+        measure("imageCacheHit", batch, new Operation() {
+            @Override
+            public void run() {
+                ImageCache.Entry entry = cache.get("benchmark");
+                sink += entry.byteSize();
+                entry.release();
+            }
+        });
+        cache.clear();
+
+        final FeatureHandleRegistry handles = new FeatureHandleRegistry(feature.length);
+        final int handle = handles.put(feature, "benchmark");
+        measure("featureHandleGet", batch, new Operation() {
+            @Override
+            public void run() throws FaceException {
+                sink += handles.get(handle).length;
+            }
+        });
+        handles.releaseAll();
+    }
+
+    /**
+     * 对比图片文件在无缓存（解码 + 转换）与缓存命中两种路径上的耗时。
+     */
+    void runImage(final String imagePath, int maxDetectSize) throws Exception {
+        final ImageBufferPool pool = new ImageBufferPool(Long.MAX_VALUE);
+        final int maxSize = maxDetectSize;
+        measure("decodeUncached", 1, new Operation() {
+            @Override
+            public void run() throws FaceException {
+                Bgr24Image image = Bgr24Image.decode(imagePath, maxSize, pool);
+                sink += image.data.length;
+                image.release();
+            }
+        });
+        final ImageCache cache = new ImageCache(Long.MAX_VALUE);
+        cache.put(ImageCache.keyFor(imagePath), Bgr24Image.decode(imagePath, maxSize, pool)).release();
+        measure("decodeCached", batch, new Operation() {
+            @Override
+            public void run() {
+                // 与模块一致，每次命中都要重新计算缓存键（文件大小与修改时间）
+                ImageCache.Entry entry = cache.get(ImageCache.keyFor(imagePath));
+                sink += entry.byteSize();
+                entry.release();
+            }
+        });
+        cache.clear();
+    }
+
+    /**
+     * 以 template 的特征头加随机向量构造 size 条合成特征，测量 Top-K 检索耗时。
+     * 合成特征的分数没有意义，只用于衡量检索本身的开销；compact 为 true 时使用 int8 紧凑编码，
+     * engines 不为 null 时与模块一样并行检索。
+     */
+    void runGallery(final FaceEngineApi faceEngine, final byte[] template, int size, final int k, boolean compact,
+                    SearchEngines engines) throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        final FeatureGallery gallery = new FeatureGallery();
+        gallery.setSearchEngines(engines);
+        final int featureSize = gallery.getFeatureSize();
+        FeatureGallery.FeatureReader reader = new FeatureGallery.FeatureReader() {
+            @Override
+            public boolean read(String id, byte[] out) {
+                synthesize(template, Integer.parseInt(id), out);
+                return true;
+            }
+        };
+        if (compact) {
+            gallery.setCompact(true, reader);
+        }
+        byte[] featureData = new byte[featureSize];
+        for (int i = 0; i < size; i++) {
+            synthesize(template, i, featureData);
+            gallery.register(Integer.toString(i), featureData);
+        }
+        Log.d(TAG, "Synthetic gallery of " + size + " built in " + (SystemClock.elapsedRealtime() - start) + "ms");
+
+        final Random random = new Random(size);
+        final byte[] probe = new byte[featureSize];
+        try {
+            measure("gallerySearch" + size + (compact ? "Int8" : ""), 1, new Operation() {
+                @Override
+                public void run() {
+                    synthesize(template, random.nextInt(Integer.MAX_VALUE), probe);
+                    sink += gallery.searchTopK(faceEngine, probe, k, Float.NEGATIVE_INFINITY).size();
+                }
+            });
+        } finally {
+            gallery.clear();
+            gallery.closeSearchPool();
+        }
+    }
+
+    private void measure(String name, int opsPerSample, Operation operation) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            for (int j = 0; j < opsPerSample; j++) {
+                operation.run();
+            }
+        }
+        long[] nanos = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < opsPerSample; j++) {
+                operation.run();
+            }
+            nanos[i] = (System.nanoTime() - start) / opsPerSample;
+        }
+        Arrays.sort(nanos);
+        long total = 0;
+        for (long value : nanos) {
+            total += value;
+        }
+        WritableMap result = Arguments.createMap();
+        result.putString("name", name);
+        result.putInt("ops", samples * opsPerSample);
+        result.putDouble("meanUs", total / 1000.0 / samples);
+        result.putDouble("p50Us", nanos[samples / 2] / 1000.0);
+        result.putDouble("p95Us", nanos[Math.min(samples - 1, (int) Math.ceil(samples * 0.95) - 1)] / 1000.0);
+        result.putDouble("maxUs", nanos[samples - 1] / 1000.0);
+        results.pushMap(result);
+        Log.d(TAG, name + ": " + (total / samples) + "ns/op");
+    }
+
+    // 第 seed 条合成特征：template 的特征头 + 按 seed 确定的随机向量，同一 seed 总是得到相同的特征
+    private static void synthesize(byte[] template, int seed, byte[] out) {
+        System.arraycopy(template, 0, out, 0, FeatureVectors.HEADER_BYTES);
+        Random random = new Random(seed);
+        ByteBuffer buffer = ByteBuffer.wrap(out).order(ByteOrder.LITTLE_ENDIAN);
+        for (int offset = FeatureVectors.HEADER_BYTES; offset + 4 <= out.length; offset += 4) {
+            buffer.putFloat(offset, (float) random.nextGaussian());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.arcsoftface.reactnative;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.arcsoft.face.AgeInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.FaceSimilar;
+import com.arcsoft.face.GenderInfo;
+import com.arcsoft.face.LivenessInfo;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+import com.arcsoft.face.enums.DetectModel;
+import com.arcsoft.face.enums.ExtractType;
+
+import java.util.List;
+
+/**
+ * 虹软 FaceEngine 的 FaceEngineApi 实现，各方法直接转发。
+ * native 库在本类首次使用时加载，只使用 SimulatedEngine 时不会加载。
+ */
+class ArcSoftEngine implements FaceEngineApi {
+    private static final String TAG = "ArcSoftEngine";
+    private static final boolean LIBRARIES_LOADED;
+
+    static {
+        boolean loaded = false;
+        try {
+            // 先加载基础库，再加载引擎库
+            System.loadLibrary("arcsoft_face");
+            System.loadLibrary("arcsoft_face_engine");
+            loaded = true;
+            Log.d(TAG, "Native libraries loaded successfully");
+        } catch (UnsatisfiedLinkError e) {
+            Log.e(TAG, "Failed to load native libraries", e);
+        }
+        LIBRARIES_LOADED = loaded;
+    }
+
+    private final FaceEngine engine = new FaceEngine();
+
+    /**
+     * 加载 native 库（只加载一次），激活等静态调用之前需要先调用。
+     */
+    static boolean loadLibraries() {
+        return LIBRARIES_LOADED;
+    }
+
+    @Override
+    public int init(Context context, DetectMode detectMode, DetectFaceOrientPriority orientPriority, int maxFaceNum, int mask) {
+        return engine.init(context, detectMode, orientPriority, maxFaceNum, mask);
+    }
+
+    @Override
+    public int unInit() {
+        return engine.unInit();
+    }
+
+    @Override
+    public int detectFaces(byte[] data, int width, int height, int format, List<FaceInfo> faceInfoList) {
+        return engine.detectFaces(data, width, height, format, faceInfoList);
+    }
+
+    @Override
+    public int detectFaces(byte[] data, int width, int height, int format, DetectModel detectModel, List<FaceInfo> faceInfoList) {
+        return engine.detectFaces(data, width, height, format, detectModel, faceInfoList);
+    }
+
+    @Override
+    public int process(byte[] data, int width, int height, int format, List<FaceInfo> faceInfoList, int mask) {
+        return engine.process(data, width, height, format, faceInfoList, mask);
+    }
+
+    @Override
+    public int getAge(List<AgeInfo> ageInfoList) {
+        return engine.getAge(ageInfoList);
+    }
+
+    @Override
+    public int getGender(List<GenderInfo> genderInfoList) {
+        return engine.getGender(genderInfoList);
+    }
+
+    @Override
+    public int getLiveness(List<LivenessInfo> livenessInfoList) {
+        return engine.getLiveness(livenessInfoList);
+    }
+
+    @Override
+    public int extractFaceFeature(byte[] data, int width, int height, int format, FaceInfo faceInfo, ExtractType extractType,
+                                  int mask, FaceFeature feature) {
+        return engine.extractFaceFeature(data, width, height, format, faceInfo, extractType, mask, feature);
+    }
+
+    @Override
+    public int compareFaceFeature(FaceFeature feature1, FaceFeature feature2, FaceSimilar faceSimilar) {
+        return engine.compareFaceFeature(feature1, feature2, faceSimilar);
+    }
+}
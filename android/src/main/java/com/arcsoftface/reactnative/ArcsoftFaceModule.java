@@ -1,7 +1,11 @@
 package com.arcsoftface.reactnative;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Rect;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.SystemClock;
 import android.util.Base64;
 import android.util.Log;
 
@@ -19,65 +23,217 @@ import com.arcsoft.face.enums.DetectFaceOrientPriority;
 import com.arcsoft.face.enums.DetectMode;
 import com.arcsoft.face.enums.DetectModel;
 import com.arcsoft.face.enums.ExtractType;
-import com.arcsoft.imageutil.ArcSoftImageFormat;
-import com.arcsoft.imageutil.ArcSoftImageUtil;
-import com.arcsoft.imageutil.ArcSoftImageUtilError;
-
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ArcsoftFaceModule extends ReactContextBaseJavaModule {
     private static final String TAG = "ArcsoftFaceModule";
-    private FaceEngine faceEngine;
+    static final String NAME = "ArcsoftFaceModule";
+    private static final int DEFAULT_ENGINE_MASK = FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION
+            | FaceEngine.ASF_AGE | FaceEngine.ASF_GENDER | FaceEngine.ASF_LIVENESS;
+    private static final int DEFAULT_MAX_FACE_NUM = 2;
+    // 引擎 init 接受的最大人脸数上限
+    private static final int MAX_FACE_NUM_LIMIT = 50;
+    private static final double DEFAULT_CLUSTER_THRESHOLD = 0.8;
+    private static final double DEFAULT_CLUSTER_MARGIN = 0.15;
+    private static final long DEFAULT_IMAGE_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_BUFFER_POOL_BYTES = 96L * 1024 * 1024;
+    private static final int DEFAULT_MAX_DETECT_SIZE = 1280;
+    private static final long DEFAULT_TRACK_TTL_MILLIS = 3000;
+    private static final int DEFAULT_BATCH_CHUNK_SIZE = 50;
+    private static final long DEFAULT_HANDLE_LEAK_AGE_MILLIS = 60 * 1000;
+    private static final double DEFAULT_MATCH_THRESHOLD = 0.8;
+    private static final int WARMUP_IMAGE_SIZE = 128;
+    // 特征库达到该大小后才创建并行检索引擎
+    private static final int PARALLEL_SEARCH_MIN_SIZE = 4096;
+    private static final int MAX_SEARCH_THREADS = 4;
+    // 同步方法的失败返回值：引擎全忙（可改走异步方法）、句柄无效、引擎比对或检索出错、参数无效
+    private static final double SYNC_BUSY = -1;
+    private static final double SYNC_INVALID_HANDLE = -2;
+    private static final double SYNC_COMPARE_ERROR = -3;
+    private static final double SYNC_INVALID_PARAMETER = -4;
+    // 特征库超过该大小时同步检索按引擎全忙处理，避免在 JS 线程上长时间逐一比对
+    private static final int SYNC_SEARCH_MAX_SIZE = PARALLEL_SEARCH_MIN_SIZE;
+    static final String EVENT_READY = "ArcsoftFaceReady";
+    static final String EVENT_FIRST_RECOGNITION = "ArcsoftFaceFirstRecognition";
+    static final String EVENT_FRAME_RESULT = "ArcsoftFaceFrameResult";
+    static final String EVENT_FRAME_ERROR = "ArcsoftFaceFrameError";
+    static final String EVENT_METRICS = "ArcsoftFaceMetrics";
+    private volatile FaceEnginePool enginePool;
+    // 并行 1:N 检索使用的额外比对引擎，随引擎池一起创建和释放
+    private volatile SearchEngines searchEngines;
     private ReactApplicationContext reactContext;
-
-    static {
-        try {
-            // 先加载基础库，再加载引擎库
-            System.loadLibrary("arcsoft_face");
-            System.loadLibrary("arcsoft_face_engine");
-            Log.d("ArcsoftFaceModule", "Native libraries loaded successfully");
-        } catch (UnsatisfiedLinkError e) {
-            Log.e("ArcsoftFaceModule", "Failed to load native libraries", e);
+    private final FeatureGallery featureGallery = new FeatureGallery();
+    private final FeatureHandleRegistry featureHandles = new FeatureHandleRegistry(featureGallery.getFeatureSize());
+    private FeatureStore featureStore;
+    // 持久化特征库的写操作与增量同步，随 featureStore 一起打开
+    private GallerySync gallerySync;
+    // 引擎池、检索引擎与视频管线创建引擎所用的工厂，由 init 选项 engine 决定
+    private volatile FaceEngineApi.Factory engineFactory = FaceEngineApi.ARCSOFT;
+    // 内存特征库是否使用 int8 紧凑编码，由 init 选项 galleryEncoding 或 setGalleryEncoding 设置
+    private volatile boolean int8Gallery;
+    // 特征提取前的质量门限，由 init 选项 qualityGate 或 setQualityGate 设置；为 null 时不检查
+    private volatile FaceQuality qualityGate;
+    private final ImageCache imageCache = new ImageCache(DEFAULT_IMAGE_CACHE_BYTES);
+    private final ImageBufferPool bufferPool = new ImageBufferPool(DEFAULT_BUFFER_POOL_BYTES);
+    // 检测用图像的长边上限，更大的图片缩小后检测，特征在原图人脸区域上提取；0 表示不缩小
+    private volatile int maxDetectSize = DEFAULT_MAX_DETECT_SIZE;
+    private volatile FramePipeline framePipeline;
+    private final StartupMetrics startupMetrics = new StartupMetrics();
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    // 进行中的批量任务，cancelRequests 按分组取消
+    private final Set<BatchJob> batchJobs = Collections.newSetFromMap(new ConcurrentHashMap<BatchJob, Boolean>());
+    // 初始化在单独的线程中串行执行，重复调用 init 时按调用顺序处理
+    private final ExecutorService initExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "ArcsoftFaceInit");
         }
-    }
+    });
+    // 特征库的写操作与遍历或重写整个特征库的后台任务（切换编码、构建索引、同步等）在单独的线程中串行执行，
+    // 互不争用快照锁，也不会因为等待长时间的导入而阻塞 React Native 的模块线程
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "ArcsoftFaceBackground");
+        }
+    });
+    // 定时发送指标事件，首次调用 setMetricsInterval 时创建
+    private ScheduledExecutorService metricsExecutor;
+    private ScheduledFuture<?> metricsTask;
 
     public ArcsoftFaceModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
         // 延迟初始化 FaceEngine，直到需要时才创建
+        reactContext.getApplicationContext().registerComponentCallbacks(memoryCallbacks);
+    }
+
+    // 系统内存紧张时释放图片缓存
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                imageCache.clear();
+                bufferPool.clear();
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                imageCache.trimToSize(imageCache.getMaxBytes() / 2);
+                bufferPool.clear();
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            imageCache.clear();
+            bufferPool.clear();
+        }
+    };
+
+    @Override
+    public void onCatalystInstanceDestroy() {
+        stopFramePipeline();
+        // 已提交的任务在关闭后仍会执行，引擎在排队的 init/uninit 之后释放
+        initExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                releaseEngines();
+            }
+        });
+        initExecutor.shutdown();
+        // 已排队的后台任务执行完后线程退出
+        backgroundExecutor.shutdown();
+        synchronized (this) {
+            if (metricsExecutor != null) {
+                metricsExecutor.shutdownNow();
+                metricsExecutor = null;
+            }
+        }
+        if (featureHandles.size() > 0) {
+            Log.w(TAG, featureHandles.size() + " feature handles were never released");
+            featureHandles.releaseAll();
+        }
+        // 保存后增删的特征改变了分簇，退出时写回，下次启动无需为它们重新计算
+        try {
+            featureGallery.saveIndex(getIndexFile());
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save gallery index", e);
+        }
+        featureGallery.closeSearchPool();
+        reactContext.getApplicationContext().unregisterComponentCallbacks(memoryCallbacks);
+        imageCache.clear();
+        bufferPool.clear();
     }
 
     @Override
     public String getName() {
-        return "ArcsoftFaceModule";
+        return NAME;
+    }
+
+    // 以下供调试构建中的 ArcsoftFaceBenchmarkModule 使用
+    FaceEnginePool getEnginePool() {
+        return enginePool;
+    }
+
+    SearchEngines getSearchEngines() {
+        return searchEngines;
+    }
+
+    FeatureGallery getFeatureGallery() {
+        return featureGallery;
+    }
+
+    int getMaxDetectSize() {
+        return maxDetectSize;
     }
 
     @ReactMethod
-    public void init(String appId, String sdkKey, String activeKey, Promise promise) {
+    public void init(final String appId, final String sdkKey, String activeKey, final ReadableMap options, final Promise promise) {
         try {
             Log.d(TAG, "Starting ArcSoft Face Engine initialization...");
             Log.d(TAG, "APP_ID: " + (appId != null ? appId.substring(0, Math.min(8, appId.length())) + "..." : "null"));
             Log.d(TAG, "SDK_KEY: " + (sdkKey != null ? sdkKey.substring(0, Math.min(8, sdkKey.length())) + "..." : "null"));
             Log.d(TAG, "ACTIVE_KEY: " + (activeKey != null ? activeKey.substring(0, Math.min(8, activeKey.length())) + "..." : "null"));
             
-            // 检查参数有效性
-            if (appId == null || appId.isEmpty() || appId.equals("YOUR_ARCSOFT_APP_ID")) {
+            // 检查参数有效性，模拟引擎不需要凭据
+            boolean simulated = "simulated".equals(getString(options, "engine"));
+            if (!simulated && (appId == null || appId.isEmpty() || appId.equals("YOUR_ARCSOFT_APP_ID"))) {
                 Log.e(TAG, "Invalid APP_ID provided: " + appId);
                 promise.reject("INVALID_CREDENTIALS", "APP_ID is invalid or not configured. Please set a valid APP_ID in config.");
                 return;
             }
             
-            if (sdkKey == null || sdkKey.isEmpty() || sdkKey.equals("YOUR_ARCSOFT_SDK_KEY")) {
+            if (!simulated && (sdkKey == null || sdkKey.isEmpty() || sdkKey.equals("YOUR_ARCSOFT_SDK_KEY"))) {
                 Log.e(TAG, "Invalid SDK_KEY provided");
                 promise.reject("INVALID_CREDENTIALS", "SDK_KEY is invalid or not configured. Please set a valid SDK_KEY in config.");
                 return;
@@ -89,44 +245,101 @@ public class ArcsoftFaceModule extends ReactContextBaseJavaModule {
                 Log.d(TAG, "Using empty activeKey for online activation");
             }
 
-            // 创建 FaceEngine 实例
-            if (faceEngine == null) {
-                faceEngine = new FaceEngine();
-                Log.d(TAG, "FaceEngine instance created");
+            // 激活和引擎加载可能涉及网络请求与模型加载，放到后台线程执行，不阻塞其他原生模块调用
+            startupMetrics.reset();
+            final String finalActiveKey = activeKey;
+            initExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    initInBackground(appId, sdkKey, finalActiveKey, options, promise);
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Init error", e);
+            promise.reject("INIT_ERROR", "Exception during initialization: " + e.getMessage());
+        }
+    }
+
+    private void initInBackground(String appId, String sdkKey, String activeKey, ReadableMap options, Promise promise) {
+        try {
+            if (options != null && options.hasKey("imageCacheBytes")) {
+                imageCache.setMaxBytes((long) options.getDouble("imageCacheBytes"));
+            }
+            if (options != null && options.hasKey("bufferPoolBytes")) {
+                bufferPool.setMaxBytes((long) options.getDouble("bufferPoolBytes"));
+            }
+            if (options != null && options.hasKey("maxDetectSize")) {
+                int size = Math.max(0, options.getInt("maxDetectSize"));
+                if (size != maxDetectSize) {
+                    // 已缓存的图像按旧的分辨率解码
+                    maxDetectSize = size;
+                    imageCache.clear();
+                }
+            }
+            if (options != null && options.hasKey("logLevel")) {
+                FaceLog.setLevel(FaceLog.parseLevel(options.getString("logLevel")));
+            }
+
+            if (options != null && options.hasKey("galleryEncoding")) {
+                int8Gallery = "int8".equals(options.getString("galleryEncoding"));
+            }
+            if (options != null && options.hasKey("qualityGate")) {
+                qualityGate = options.isNull("qualityGate") ? null : FaceQuality.fromMap(options.getMap("qualityGate"));
             }
 
-            // 激活引擎 - 在V5.0中，激活方法是静态方法
-            Log.d(TAG, "Attempting to activate ArcSoft Face Engine...");
-            Log.d(TAG, "APP_ID: " + appId.substring(0, Math.min(8, appId.length())) + "...");
-            Log.d(TAG, "SDK_KEY: " + sdkKey.substring(0, Math.min(8, sdkKey.length())) + "...");
-            Log.d(TAG, "ACTIVE_KEY: " + (activeKey.isEmpty() ? "(empty for online activation)" : activeKey.substring(0, Math.min(8, activeKey.length())) + "..."));
-            Log.d(TAG, "Package name: " + reactContext.getPackageName());
-            
-            // 使用正确的参数顺序：context, activeKey, appId, sdkKey
-            int code = FaceEngine.activeOnline(reactContext, activeKey, appId, sdkKey);
-            Log.d(TAG, "Activation result code: " + code);
-            
-            if (code != ErrorInfo.MOK && code != ErrorInfo.MERR_ASF_ALREADY_ACTIVATED) {
-                String errorMsg = getActivationErrorMessage(code);
-                Log.e(TAG, "Activation failed: " + errorMsg);
-                Log.e(TAG, "Package name verification: " + reactContext.getPackageName());
-                Log.e(TAG, "Please verify:");
-                Log.e(TAG, "1. APP_ID and SDK_KEY are correct");
-                Log.e(TAG, "2. Package name '" + reactContext.getPackageName() + "' is registered in ArcSoft console");
-                Log.e(TAG, "3. Network connection is available");
-                Log.e(TAG, "4. SDK quota is not exceeded");
-                promise.reject("ACTIVE_ERROR", "ArcSoft Face Engine active failed: " + code + " (" + errorMsg + ")");
-                return;
+            // 从持久化特征库恢复 1:N 特征库，失败不影响引擎初始化
+            try {
+                // 首次打开时按 int8Gallery 载入；重复初始化时在这里切换已载入的特征
+                featureGallery.setCompact(int8Gallery, getFeatureStore());
+                Log.d(TAG, "Feature gallery restored: " + featureGallery.size() + " features");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to open feature store", e);
             }
-            
-            Log.d(TAG, "ArcSoft Face Engine activated successfully");
 
-            // 初始化引擎
-            Log.d(TAG, "Initializing face engine with features...");
-            code = faceEngine.init(reactContext, DetectMode.ASF_DETECT_MODE_IMAGE, 
-                DetectFaceOrientPriority.ASF_OP_0_ONLY,
-                2, // 最大检测人脸数
-                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION);
+            long phaseStart = SystemClock.elapsedRealtime();
+            FaceEngineApi.Factory factory = createEngineFactory(options);
+            if (factory == FaceEngineApi.ARCSOFT) {
+                ArcSoftEngine.loadLibraries();
+                // 激活引擎 - 优先使用已有的激活状态，只有在本地没有有效激活文件时才在线激活
+                Log.d(TAG, "Attempting to activate ArcSoft Face Engine...");
+                Log.d(TAG, "APP_ID: " + appId.substring(0, Math.min(8, appId.length())) + "...");
+                Log.d(TAG, "SDK_KEY: " + sdkKey.substring(0, Math.min(8, sdkKey.length())) + "...");
+                Log.d(TAG, "ACTIVE_KEY: " + (activeKey.isEmpty() ? "(empty for online activation)" : activeKey.substring(0, Math.min(8, activeKey.length())) + "..."));
+                Log.d(TAG, "Package name: " + reactContext.getPackageName());
+
+                EngineActivator.Result activation = EngineActivator.activate(reactContext, appId, sdkKey, activeKey);
+                int code = activation.code;
+                Log.d(TAG, "Activation result code: " + code + " (" + activation.source + ")");
+
+                if (!activation.isActivated()) {
+                    String errorMsg = getActivationErrorMessage(code);
+                    Log.e(TAG, "Activation failed: " + errorMsg);
+                    Log.e(TAG, "Package name verification: " + reactContext.getPackageName());
+                    Log.e(TAG, "Please verify:");
+                    Log.e(TAG, "1. APP_ID and SDK_KEY are correct");
+                    Log.e(TAG, "2. Package name '" + reactContext.getPackageName() + "' is registered in ArcSoft console");
+                    Log.e(TAG, "3. Network connection is available");
+                    Log.e(TAG, "4. SDK quota is not exceeded");
+                    promise.reject("ACTIVE_ERROR", "ArcSoft Face Engine active failed: " + code + " (" + errorMsg + ")");
+                    return;
+                }
+                startupMetrics.onActivated(activation.source, SystemClock.elapsedRealtime() - phaseStart);
+                Log.d(TAG, "ArcSoft Face Engine activated successfully");
+            } else {
+                // 模拟引擎不需要激活
+                startupMetrics.onActivated("simulated", 0);
+            }
+            engineFactory = factory;
+
+            // 重复初始化时先释放旧的引擎池
+            releaseEngines();
+
+            // 初始化引擎池
+            phaseStart = SystemClock.elapsedRealtime();
+            List<FaceEnginePool.EngineConfig> configs = buildEngineConfigs(options);
+            Log.d(TAG, "Initializing face engine pool with " + configs.size() + " engines...");
+            FaceEnginePool pool = new FaceEnginePool(getOption(options, "reserveInteractiveEngine", true), factory);
+            int code = pool.init(reactContext, configs);
 
             if (code != ErrorInfo.MOK) {
                 String errorMsg = getInitErrorMessage(code);
@@ -134,15 +347,154 @@ public class ArcsoftFaceModule extends ReactContextBaseJavaModule {
                 promise.reject("INIT_ERROR", "ArcSoft Face Engine init failed: " + code + " (" + errorMsg + ")");
                 return;
             }
+            startupMetrics.onEngineInit(SystemClock.elapsedRealtime() - phaseStart);
 
+            enginePool = pool;
+            // 调用方的引擎负责一组分片，其余 searchThreads - 1 组各用一个额外引擎
+            int searchThreads = (int) getNumber(options, "searchThreads",
+                    Math.min(MAX_SEARCH_THREADS, Runtime.getRuntime().availableProcessors()));
+            if (searchThreads > 1) {
+                searchEngines = new SearchEngines(reactContext, searchThreads - 1, PARALLEL_SEARCH_MIN_SIZE, factory);
+                featureGallery.setSearchEngines(searchEngines);
+            }
             Log.d(TAG, "ArcSoft Face Engine initialized successfully");
             promise.resolve(true);
+
+            // 引擎已可用，预热在引擎线程中进行，完成后发送就绪事件
+            if (getOption(options, "warmup", true)) {
+                String warmupImage = options != null && options.hasKey("warmupImage") && !options.isNull("warmupImage")
+                        ? options.getString("warmupImage") : null;
+                warmUp(pool, warmupImage);
+            } else {
+                onReady(-1);
+            }
         } catch (Exception e) {
             Log.e(TAG, "Init error", e);
             promise.reject("INIT_ERROR", "Exception during initialization: " + e.getMessage());
         }
     }
-    
+
+    /**
+     * 在每个引擎上各执行一次检测（提供 warmupImage 时再提取一次特征），
+     * 让模型加载和首次调用的开销发生在真实请求之前。
+     */
+    private void warmUp(final FaceEnginePool pool, final String warmupImage) {
+        final long warmupStart = SystemClock.elapsedRealtime();
+        final AtomicInteger remaining = new AtomicInteger(pool.size());
+        final byte[] blank = new byte[WARMUP_IMAGE_SIZE * WARMUP_IMAGE_SIZE * 3];
+        Arrays.fill(blank, (byte) 0x80);
+        FaceEnginePool.ErrorHandler handler = new FaceEnginePool.ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                Log.w(TAG, "Warm-up failed: " + code + " " + message);
+                if (remaining.decrementAndGet() == 0) {
+                    onReady(SystemClock.elapsedRealtime() - warmupStart);
+                }
+            }
+        };
+        // 引擎线程数与引擎数相同，同时提交 size 个任务时每个任务各占用一个引擎
+        for (int i = 0; i < pool.size(); i++) {
+            pool.execute(FaceEngine.ASF_FACE_DETECT, "WARMUP_ERROR", new FaceEnginePool.Task() {
+                @Override
+                public void run(FaceEngineApi faceEngine) throws Exception {
+                    List<FaceInfo> faceInfoList = new ArrayList<>();
+                    faceEngine.detectFaces(blank, WARMUP_IMAGE_SIZE, WARMUP_IMAGE_SIZE, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
+                    if (warmupImage != null) {
+                        Bgr24Image image = Bgr24Image.decode(warmupImage, maxDetectSize, bufferPool);
+                        try {
+                            faceEngine.detectFaces(image.data, image.width, image.height, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
+                            if (!faceInfoList.isEmpty()) {
+                                FaceCropExtractor.extract(faceEngine, image, faceInfoList.get(0), ExtractType.RECOGNIZE,
+                                        new FaceFeature(), maxDetectSize, bufferPool);
+                            }
+                        } finally {
+                            image.release();
+                        }
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        onReady(SystemClock.elapsedRealtime() - warmupStart);
+                    }
+                }
+            }, handler);
+        }
+    }
+
+    private void onReady(long warmupMillis) {
+        startupMetrics.onReady(warmupMillis);
+        Log.d(TAG, "ArcSoft Face Engine ready, warm-up " + warmupMillis + "ms");
+        sendEvent(EVENT_READY, startupMetrics.toMap());
+    }
+
+    // 首次比对或 1:N 检索成功时上报从 init() 开始的耗时；只提取特征不算识别
+    private void onRecognition() {
+        long millis = startupMetrics.onRecognition();
+        if (millis >= 0) {
+            Log.d(TAG, "Time to first recognition: " + millis + "ms");
+            WritableMap params = Arguments.createMap();
+            params.putDouble("timeToFirstRecognition", millis);
+            sendEvent(EVENT_FIRST_RECOGNITION, params);
+        }
+    }
+
+    @ReactMethod
+    public void getStartupMetrics(Promise promise) {
+        promise.resolve(startupMetrics.toMap());
+    }
+
+    /**
+     * 返回自上次 resetMetrics 以来各阶段、各方法的耗时分布（毫秒，含 p50/p90/p99）以及计数器。
+     */
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        promise.resolve(FaceMetrics.snapshot());
+    }
+
+    @ReactMethod
+    public void resetMetrics(Promise promise) {
+        FaceMetrics.reset();
+        promise.resolve(true);
+    }
+
+    /**
+     * 每隔 intervalMillis 以 ArcsoftFaceMetrics 事件发送一次指标快照，传 0 停止。
+     */
+    @ReactMethod
+    public synchronized void setMetricsInterval(double intervalMillis, Promise promise) {
+        if (metricsTask != null) {
+            metricsTask.cancel(false);
+            metricsTask = null;
+        }
+        long interval = (long) intervalMillis;
+        if (interval > 0) {
+            if (metricsExecutor == null) {
+                metricsExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "ArcsoftFaceMetrics");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            metricsTask = metricsExecutor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    sendEvent(EVENT_METRICS, FaceMetrics.snapshot());
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        promise.resolve(true);
+    }
+
+    /**
+     * 设置热路径日志级别：debug / info / warn / error / none，默认 warn。
+     */
+    @ReactMethod
+    public void setLogLevel(String level, Promise promise) {
+        FaceLog.setLevel(FaceLog.parseLevel(level));
+        promise.resolve(true);
+    }
+
     private String getActivationErrorMessage(int code) {
         switch (code) {
             case ErrorInfo.MOK:
@@ -174,6 +526,63 @@ public class ArcsoftFaceModule extends ReactContextBaseJavaModule {
         }
     }
     
+    // engine 为 'simulated' 时使用模拟引擎：simulatedLatency 指定 detect / process / extract / compare 的延迟（毫秒），
+    // simulatedFaces 为每张图像检测到的人脸数
+    private static FaceEngineApi.Factory createEngineFactory(ReadableMap options) {
+        if (!"simulated".equals(getString(options, "engine"))) {
+            return FaceEngineApi.ARCSOFT;
+        }
+        ReadableMap latency = options.hasKey("simulatedLatency") && !options.isNull("simulatedLatency")
+                ? options.getMap("simulatedLatency") : null;
+        return SimulatedEngine.factory((long) (getNumber(latency, "detect", 15) * 1000),
+                (long) (getNumber(latency, "process", 10) * 1000),
+                (long) (getNumber(latency, "extract", 30) * 1000),
+                (long) (getNumber(latency, "compare", 0.005) * 1000),
+                (int) getNumber(options, "simulatedFaces", 1));
+    }
+
+    // 根据 init 的 options 生成引擎池配置：poolSize 个相同配置的引擎，或 engines 数组逐个指定
+    private List<FaceEnginePool.EngineConfig> buildEngineConfigs(ReadableMap options) {
+        FaceEnginePool.EngineConfig base = parseEngineConfig(options, null);
+        List<FaceEnginePool.EngineConfig> configs = new ArrayList<>();
+        if (options != null && options.hasKey("engines") && !options.isNull("engines")) {
+            ReadableArray engines = options.getArray("engines");
+            for (int i = 0; i < engines.size(); i++) {
+                configs.add(parseEngineConfig(engines.getMap(i), base));
+            }
+        }
+        if (configs.isEmpty()) {
+            int poolSize = options != null && options.hasKey("poolSize") ? Math.max(1, options.getInt("poolSize")) : 1;
+            for (int i = 0; i < poolSize; i++) {
+                configs.add(base);
+            }
+        }
+        return configs;
+    }
+
+    private FaceEnginePool.EngineConfig parseEngineConfig(ReadableMap map, FaceEnginePool.EngineConfig fallback) {
+        DetectMode detectMode = fallback != null ? fallback.detectMode : DetectMode.ASF_DETECT_MODE_IMAGE;
+        int maxFaceNum = fallback != null ? fallback.maxFaceNum : DEFAULT_MAX_FACE_NUM;
+        int mask = fallback != null ? fallback.mask : DEFAULT_ENGINE_MASK;
+        if (map != null) {
+            if (map.hasKey("detectMode") && !map.isNull("detectMode")) {
+                detectMode = "video".equals(map.getString("detectMode"))
+                        ? DetectMode.ASF_DETECT_MODE_VIDEO : DetectMode.ASF_DETECT_MODE_IMAGE;
+            }
+            if (map.hasKey("maxFaceNum")) {
+                maxFaceNum = clampMaxFaceNum(map.getInt("maxFaceNum"));
+            }
+            if (map.hasKey("mask")) {
+                mask = map.getInt("mask") | FaceEngine.ASF_FACE_DETECT;
+            }
+        }
+        return new FaceEnginePool.EngineConfig(detectMode, DetectFaceOrientPriority.ASF_OP_0_ONLY, maxFaceNum, mask);
+    }
+
+    private static int clampMaxFaceNum(int maxFaceNum) {
+        return Math.max(1, Math.min(MAX_FACE_NUM_LIMIT, maxFaceNum));
+    }
+
     private String getInitErrorMessage(int code) {
         switch (code) {
             case ErrorInfo.MERR_ASF_ACTIVATION_FAIL:
@@ -184,142 +593,685 @@ public class ArcsoftFaceModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void uninit(Promise promise) {
+    public void uninit(final Promise promise) {
         try {
-            if (faceEngine != null) {
-                int code = faceEngine.unInit();
-                if (code != ErrorInfo.MOK) {
-                    promise.reject("UNINIT_ERROR", "ArcSoft Face Engine uninit failed: " + code);
-                    return;
+            stopFramePipeline();
+            // 等待进行中的任务结束可能需要数秒，与 init 一样在初始化线程中串行执行，不阻塞模块线程
+            initExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int code = releaseEngines();
+                        if (code != ErrorInfo.MOK) {
+                            promise.reject("UNINIT_ERROR", "ArcSoft Face Engine uninit failed: " + code);
+                            return;
+                        }
+                        promise.resolve(true);
+                    } catch (Exception e) {
+                        Log.e(TAG, "Uninit error", e);
+                        promise.reject("UNINIT_ERROR", e.getMessage());
+                    }
                 }
-            }
-            promise.resolve(true);
+            });
         } catch (Exception e) {
             Log.e(TAG, "Uninit error", e);
             promise.reject("UNINIT_ERROR", e.getMessage());
         }
     }
 
+    // 在初始化线程中调用：关闭引擎池和并行检索引擎，返回引擎池反初始化的错误码
+    private int releaseEngines() {
+        FaceEnginePool pool = enginePool;
+        enginePool = null;
+        shutdownSearchEngines();
+        return pool != null ? pool.shutdown() : ErrorInfo.MOK;
+    }
+
+    private void shutdownSearchEngines() {
+        SearchEngines engines = searchEngines;
+        searchEngines = null;
+        featureGallery.setSearchEngines(null);
+        if (engines != null) {
+            engines.shutdown();
+        }
+    }
+
     @ReactMethod
-    public void detectFaces(String imagePath, Promise promise) {
-        try {
-            if (faceEngine == null) {
-                promise.reject("ENGINE_NOT_INIT", "Face engine not initialized. Please call init() first.");
-                return;
+    public void detectFaces(final String imagePath, ReadableMap requestOptions, Promise promise) {
+        runShared("detectFaces", imagePath, "", requestOptions, FaceEngine.ASF_FACE_DETECT, promise, "DETECT_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                return detectFaces(faceEngine, imagePath);
             }
+        });
+    }
 
-            // 加载图片
-            Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
-            if (bitmap == null) {
-                promise.reject("IMAGE_LOAD_ERROR", "Failed to load image: " + imagePath);
-                return;
+    private WritableArray detectFaces(FaceEngineApi faceEngine, String imagePath) throws FaceException {
+        ImageCache.Entry prepared = prepare(faceEngine, imagePath);
+        // 检测结果已保存在条目中，不再需要图像数据
+        prepared.release();
+
+        long start = System.nanoTime();
+        WritableArray faceArray = Arguments.createArray();
+        for (FaceInfo faceInfo : prepared.faceInfoList) {
+            WritableMap faceMap = Arguments.createMap();
+            Rect rect = prepared.image.toOriginal(faceInfo.getRect());
+            faceMap.putInt("left", rect.left);
+            faceMap.putInt("top", rect.top);
+            faceMap.putInt("right", rect.right);
+            faceMap.putInt("bottom", rect.bottom);
+            faceMap.putInt("orient", faceInfo.getOrient());
+            faceArray.pushMap(faceMap);
+        }
+        FaceMetrics.record(FaceMetrics.Stage.MARSHAL, start);
+        return faceArray;
+    }
+
+    @ReactMethod
+    public void extractFeature(final String imagePath, final int extractType, ReadableMap requestOptions, Promise promise) {
+        runShared("extractFeature", imagePath, String.valueOf(extractType), requestOptions,
+                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION, promise, "EXTRACT_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                // 将特征数据转换为 Base64
+                return Base64.encodeToString(extractFeatureData(faceEngine, imagePath, extractType), Base64.NO_WRAP);
             }
-            bitmap = ArcSoftImageUtil.getAlignedBitmap(bitmap, true);
+        });
+    }
 
-            // 转换bitmap为BGR24格式
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
-            byte[] bgr24 = ArcSoftImageUtil.createImageData(width, height, ArcSoftImageFormat.BGR24);
-            int transformCode = ArcSoftImageUtil.bitmapToImageData(bitmap, bgr24, ArcSoftImageFormat.BGR24);
-            if (transformCode != ArcSoftImageUtilError.CODE_SUCCESS) {
-                promise.reject("TRANSFORM_ERROR", "Failed to transform bitmap to BGR24: " + transformCode);
-                return;
+    // 提取图片中第一个人脸的特征
+    private byte[] extractFeatureData(FaceEngineApi faceEngine, String imagePath, int extractType) throws FaceException {
+        ImageCache.Entry prepared = prepare(faceEngine, imagePath);
+        Bgr24Image image = prepared.image;
+        if (prepared.faceInfoList.isEmpty()) {
+            prepared.release();
+            throw new FaceException("NO_FACE", "No face detected in image");
+        }
+        FaceQuality gate = qualityGate;
+        if (gate != null) {
+            FaceQuality.Score score = gate.evaluate(image, prepared.faceInfoList.get(0));
+            if (!score.passed()) {
+                prepared.release();
+                FaceMetrics.increment("qualityRejected");
+                throw FaceQuality.toException(score);
             }
+        }
 
-            // 检测人脸 - 使用新的API
-            List<FaceInfo> faceInfoList = new java.util.ArrayList<>();
-            int detectCode = faceEngine.detectFaces(bgr24, width, height, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
-            
-            if (detectCode != ErrorInfo.MOK) {
-                promise.reject("DETECT_ERROR", "Face detection failed: " + detectCode);
-                return;
+        FaceFeature faceFeature = new FaceFeature();
+        int code;
+        long start = System.nanoTime();
+        try {
+            // 缩小检测的大图回到原图人脸区域提取，保持特征精度
+            code = FaceCropExtractor.extract(faceEngine, image, prepared.faceInfoList.get(0),
+                    extractType == ExtractType.REGISTER.getExtractType() ? ExtractType.REGISTER : ExtractType.RECOGNIZE,
+                    faceFeature, maxDetectSize, bufferPool);
+        } finally {
+            prepared.release();
+        }
+        FaceMetrics.record(FaceMetrics.Stage.EXTRACT, start);
+        if (code != ErrorInfo.MOK) {
+            throw new FaceException("EXTRACT_ERROR", "Extract feature failed: " + code);
+        }
+        return faceFeature.getFeatureData();
+    }
+
+    /**
+     * 提取特征并保存在原生特征注册表中，返回句柄；用完后需调用 releaseFeature 释放。
+     */
+    @ReactMethod
+    public void extractFeatureHandle(final String imagePath, final int extractType, ReadableMap requestOptions, Promise promise) {
+        // 每个调用方需要各自的句柄，不参与合并
+        runShared("extractFeatureHandle", null, null, requestOptions,
+                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION, promise, "EXTRACT_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                return featureHandles.put(extractFeatureData(faceEngine, imagePath, extractType), "extract");
             }
-            
-            WritableArray faceArray = Arguments.createArray();
-            if (faceInfoList != null && !faceInfoList.isEmpty()) {
-                for (FaceInfo faceInfo : faceInfoList) {
-                    WritableMap faceMap = Arguments.createMap();
-                    faceMap.putInt("left", faceInfo.getRect().left);
-                    faceMap.putInt("top", faceInfo.getRect().top);
-                    faceMap.putInt("right", faceInfo.getRect().right);
-                    faceMap.putInt("bottom", faceInfo.getRect().bottom);
-                    faceMap.putInt("orient", faceInfo.getOrient());
-                    faceArray.pushMap(faceMap);
+        });
+    }
+
+    /**
+     * 提取图片中所有人脸的特征（按人脸面积从大到小），图片只解码、检测一次；
+     * 引擎池中有其他空闲引擎时各人脸并行提取。单个人脸提取失败时该人脸带 error 返回，不影响其他人脸。
+     */
+    @ReactMethod
+    public void extractAllFeatures(final String imagePath, final ReadableMap options, Promise promise) {
+        int type = (int) getNumber(options, "extractType", ExtractType.RECOGNIZE.getExtractType());
+        final ExtractType extractType = type == ExtractType.REGISTER.getExtractType() ? ExtractType.REGISTER : ExtractType.RECOGNIZE;
+        final int maxFaces = (int) getNumber(options, "maxFaces", 0);
+        final boolean returnHandles = getOption(options, "returnHandles", false);
+        final boolean parallel = getOption(options, "parallel", true);
+        final int priority = parsePriority(options, FaceEnginePool.PRIORITY_NORMAL);
+        // 返回句柄时每个调用方需要各自的句柄，不参与合并
+        runShared("extractAllFeatures", returnHandles ? null : imagePath, type + "|" + maxFaces + "|" + parallel, options,
+                MultiFaceExtractor.REQUIRED_MASK, promise, "EXTRACT_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                return extractAllFeatures(faceEngine, imagePath, extractType, maxFaces, returnHandles, parallel ? priority : -1);
+            }
+        });
+    }
+
+    // priority 小于 0 时不派发辅助任务，只在当前引擎上顺序提取
+    private WritableArray extractAllFeatures(FaceEngineApi faceEngine, String imagePath, ExtractType extractType, int maxFaces,
+                                             boolean returnHandles, int priority) throws FaceException {
+        ImageCache.Entry prepared = prepare(faceEngine, imagePath);
+        Bgr24Image image = prepared.image;
+        List<FaceInfo> faces = MultiFaceExtractor.largest(prepared.faceInfoList, maxFaces);
+        // 未通过质量门限的人脸不提取，结果中带 rejected 原因
+        FaceQuality gate = qualityGate;
+        FaceQuality.Score[] scores = new FaceQuality.Score[faces.size()];
+        List<FaceInfo> accepted = new ArrayList<>(faces.size());
+        for (int i = 0; i < faces.size(); i++) {
+            if (gate != null) {
+                scores[i] = gate.evaluate(image, faces.get(i));
+                if (!scores[i].passed()) {
+                    FaceMetrics.increment("qualityRejected");
+                    continue;
                 }
             }
+            accepted.add(faces.get(i));
+        }
+        MultiFaceExtractor extractor = new MultiFaceExtractor(image, accepted, extractType, maxDetectSize, bufferPool);
+        FaceEnginePool pool = enginePool;
+        try {
+            extractor.run(faceEngine, priority >= 0 ? pool : null, priority, pool != null ? pool.size() - 1 : 0);
+        } finally {
+            prepared.release();
+        }
 
-            bitmap.recycle();
-            promise.resolve(faceArray);
-        } catch (Exception e) {
-            Log.e(TAG, "Detect faces error", e);
-            promise.reject("DETECT_ERROR", e.getMessage());
+        long start = System.nanoTime();
+        WritableArray faceArray = Arguments.createArray();
+        int next = 0;
+        for (int i = 0; i < faces.size(); i++) {
+            FaceInfo faceInfo = faces.get(i);
+            WritableMap faceMap = Arguments.createMap();
+            Rect rect = image.toOriginal(faceInfo.getRect());
+            faceMap.putInt("left", rect.left);
+            faceMap.putInt("top", rect.top);
+            faceMap.putInt("right", rect.right);
+            faceMap.putInt("bottom", rect.bottom);
+            faceMap.putInt("orient", faceInfo.getOrient());
+            if (scores[i] != null) {
+                faceMap.putMap("quality", scores[i].toMap());
+                if (!scores[i].passed()) {
+                    faceMap.putString("rejected", scores[i].reason);
+                    faceArray.pushMap(faceMap);
+                    continue;
+                }
+            }
+            int index = next++;
+            byte[] featureData = extractor.getFeature(index);
+            if (featureData == null) {
+                faceMap.putString("error", "EXTRACT_ERROR");
+                faceMap.putString("message", "Extract feature failed: " + extractor.getCode(index));
+            } else if (returnHandles) {
+                faceMap.putInt("handle", featureHandles.put(featureData, "extractAll"));
+            } else {
+                faceMap.putString("feature", Base64.encodeToString(featureData, Base64.NO_WRAP));
+            }
+            faceArray.pushMap(faceMap);
         }
+        FaceMetrics.record(FaceMetrics.Stage.MARSHAL, start);
+        return faceArray;
     }
 
+    /**
+     * 设置特征提取前的质量门限，options 为 null 时关闭；返回生效的门限（关闭时为 null）。
+     * 对之后的 extractFeature、extractAllFeatures、批量提取与新启动的帧流生效。
+     */
     @ReactMethod
-    public void extractFeature(String imagePath, int extractType, Promise promise) {
-        try {
-            if (faceEngine == null) {
-                promise.reject("ENGINE_NOT_INIT", "Face engine not initialized");
-                return;
+    public void setQualityGate(ReadableMap options, Promise promise) {
+        FaceQuality gate = FaceQuality.fromMap(options);
+        qualityGate = gate;
+        promise.resolve(gate != null ? gate.toMap() : null);
+    }
+
+    /**
+     * 评估图片中每个人脸的质量而不提取特征，未设置门限时按默认门限判定，用于在目标场景下标定门限。
+     */
+    @ReactMethod
+    public void assessFaceQuality(final String imagePath, ReadableMap requestOptions, Promise promise) {
+        runShared("assessFaceQuality", imagePath, "", requestOptions, FaceEngine.ASF_FACE_DETECT, promise, "DETECT_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                ImageCache.Entry prepared = prepare(faceEngine, imagePath);
+                FaceQuality gate = qualityGate != null ? qualityGate : FaceQuality.DEFAULT;
+                WritableArray faceArray = Arguments.createArray();
+                try {
+                    for (FaceInfo faceInfo : prepared.faceInfoList) {
+                        Rect rect = prepared.image.toOriginal(faceInfo.getRect());
+                        WritableMap faceMap = gate.evaluate(prepared.image, faceInfo).toMap();
+                        faceMap.putInt("left", rect.left);
+                        faceMap.putInt("top", rect.top);
+                        faceMap.putInt("right", rect.right);
+                        faceMap.putInt("bottom", rect.bottom);
+                        faceMap.putInt("orient", faceInfo.getOrient());
+                        faceArray.pushMap(faceMap);
+                    }
+                } finally {
+                    prepared.release();
+                }
+                return faceArray;
             }
+        });
+    }
 
-            // 加载图片
-            Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
-            if (bitmap == null) {
-                promise.reject("IMAGE_LOAD_ERROR", "Failed to load image: " + imagePath);
-                return;
+    /**
+     * 将一批特征（Base64 字符串或特征句柄）按相似度分组，用于注册前去除同一人的重复照片。
+     * 返回 clusters（各组成员在输入中的下标及代表下标，按组大小从大到小）与引擎比对次数。
+     */
+    @ReactMethod
+    public void clusterFeatures(final ReadableArray features, final ReadableMap options, Promise promise) {
+        final float threshold = (float) getNumber(options, "threshold", DEFAULT_CLUSTER_THRESHOLD);
+        final float margin = (float) getNumber(options, "margin", DEFAULT_CLUSTER_MARGIN);
+        runShared("clusterFeatures", null, null, options, FaceEngine.ASF_FACE_RECOGNITION, promise, "CLUSTER_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                if (features == null) {
+                    throw new FaceException("INVALID_PARAMETER", "Features is null");
+                }
+                List<byte[]> featureList = new ArrayList<>(features.size());
+                for (int i = 0; i < features.size(); i++) {
+                    if (features.getType(i) == ReadableType.Number) {
+                        featureList.add(featureHandles.get(features.getInt(i)));
+                    } else {
+                        String feature = features.getString(i);
+                        if (feature == null || feature.isEmpty()) {
+                            throw new FaceException("INVALID_PARAMETER", "Feature at index " + i + " is null or empty");
+                        }
+                        featureList.add(Base64.decode(feature, Base64.NO_WRAP));
+                    }
+                }
+
+                long start = System.currentTimeMillis();
+                FaceClusterer.Result result = FaceClusterer.cluster(faceEngine, featureList, threshold, margin);
+                WritableArray clusterArray = Arguments.createArray();
+                for (int c = 0; c < result.clusters.size(); c++) {
+                    WritableArray members = Arguments.createArray();
+                    for (int member : result.clusters.get(c)) {
+                        members.pushInt(member);
+                    }
+                    WritableMap cluster = Arguments.createMap();
+                    cluster.putArray("members", members);
+                    cluster.putInt("representative", result.representatives[c]);
+                    clusterArray.pushMap(cluster);
+                }
+                WritableMap map = Arguments.createMap();
+                map.putArray("clusters", clusterArray);
+                map.putInt("comparisons", result.comparisons);
+                map.putDouble("elapsedTime", System.currentTimeMillis() - start);
+                return map;
             }
+        });
+    }
 
-            // 转换bitmap为BGR24格式
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
-            byte[] bgr24 = ArcSoftImageUtil.createImageData(width, height, ArcSoftImageFormat.BGR24);
-            int transformCode = ArcSoftImageUtil.bitmapToImageData(bitmap, bgr24, ArcSoftImageFormat.BGR24);
-            if (transformCode != ArcSoftImageUtilError.CODE_SUCCESS) {
-                bitmap.recycle();
-                promise.reject("TRANSFORM_ERROR", "Failed to transform bitmap to BGR24: " + transformCode);
-                return;
+    @ReactMethod
+    public void compareFeatureHandles(final int handle1, final int handle2, final Promise promise) {
+        runWithEngine("compareFeatureHandles", FaceEngine.ASF_FACE_RECOGNITION, promise, "COMPARE_ERROR", new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) throws FaceException {
+                FaceSimilar faceSimilar = new FaceSimilar();
+                long start = System.nanoTime();
+                int code = faceEngine.compareFaceFeature(new FaceFeature(featureHandles.get(handle1)),
+                        new FaceFeature(featureHandles.get(handle2)), faceSimilar);
+                FaceMetrics.record(FaceMetrics.Stage.COMPARE, start);
+                if (code != ErrorInfo.MOK) {
+                    throw new FaceException("COMPARE_ERROR", "Face comparison failed: " + code);
+                }
+                onRecognition();
+                promise.resolve(faceSimilar.getScore());
             }
+        });
+    }
 
-            // 检测人脸
-            List<FaceInfo> faceInfoList = new java.util.ArrayList<>();
-            int detectCode = faceEngine.detectFaces(bgr24, width, height, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
-            
-            if (detectCode != ErrorInfo.MOK || faceInfoList.isEmpty()) {
-                bitmap.recycle();
-                promise.reject("NO_FACE", "No face detected in image");
-                return;
+    @ReactMethod
+    public void searchTopKHandle(final int handle, final int k, final double threshold, final Promise promise) {
+        runWithEngine("searchTopKHandle", FaceEngine.ASF_FACE_RECOGNITION, promise, "SEARCH_ERROR", new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) throws FaceException {
+                if (k <= 0) {
+                    promise.reject("INVALID_PARAMETER", "k must be greater than 0");
+                    return;
+                }
+                List<FeatureGallery.Match> matches = featureGallery.searchTopK(faceEngine, featureHandles.get(handle), k, (float) threshold);
+                onRecognition();
+                resolveMatches(matches, promise);
             }
+        });
+    }
 
-            // 提取第一个人脸的特征
-            FaceFeature faceFeature = new FaceFeature();
-            int code = faceEngine.extractFaceFeature(bgr24, width, height, FaceEngine.CP_PAF_BGR24, faceInfoList.get(0), extractType == ExtractType.REGISTER.getExtractType() ? ExtractType.REGISTER : ExtractType.RECOGNIZE, 0, faceFeature);
+    @ReactMethod
+    public void registerFeatureHandle(final String id, int handle, final Promise promise) {
+        if (id == null || id.isEmpty()) {
+            promise.reject("INVALID_PARAMETER", "Id is null or empty");
+            return;
+        }
+        final byte[] featureData;
+        try {
+            featureData = featureHandles.get(handle);
+        } catch (FaceException e) {
+            promise.reject(e.code, e.getMessage());
+            return;
+        }
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getGallerySync().register(id, featureData);
+                    promise.resolve(featureGallery.size());
+                } catch (FaceException e) {
+                    promise.reject(e.code, e.getMessage());
+                } catch (Exception e) {
+                    Log.e(TAG, "Register feature handle error", e);
+                    promise.reject("REGISTER_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
 
-            bitmap.recycle();
-            
-            if (code != ErrorInfo.MOK) {
-                promise.reject("EXTRACT_ERROR", "Extract feature failed: " + code);
+    // Base64 仅用于特征的导出与导入（持久化、传给服务端等），不参与比对
+    @ReactMethod
+    public void exportFeature(int handle, Promise promise) {
+        try {
+            promise.resolve(Base64.encodeToString(featureHandles.get(handle), Base64.NO_WRAP));
+        } catch (FaceException e) {
+            promise.reject(e.code, e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void importFeature(String feature, Promise promise) {
+        try {
+            if (feature == null || feature.isEmpty()) {
+                promise.reject("INVALID_PARAMETER", "Feature is null or empty");
                 return;
             }
+            promise.resolve(featureHandles.put(Base64.decode(feature, Base64.NO_WRAP), "import"));
+        } catch (IllegalArgumentException e) {
+            promise.reject("INVALID_PARAMETER", e.getMessage());
+        }
+    }
+
+    /**
+     * 以下同步方法在 JS 线程直接返回结果，不经过异步桥的消息队列；新架构下通过 JSI 调用。
+     * 需要引擎的同步方法只使用当前空闲的引擎，也不等待特征库快照的替换，此时返回 SYNC_BUSY（-1），由 JS 改走异步方法。
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public double compareFeatureHandlesSync(final int handle1, final int handle2) {
+        long start = System.nanoTime();
+        final byte[] feature1;
+        final byte[] feature2;
+        try {
+            feature1 = featureHandles.get(handle1);
+            feature2 = featureHandles.get(handle2);
+        } catch (FaceException e) {
+            return SYNC_INVALID_HANDLE;
+        }
+        FaceEnginePool pool = enginePool;
+        if (pool == null) {
+            return SYNC_BUSY;
+        }
+        final double[] score = {SYNC_COMPARE_ERROR};
+        boolean ran = false;
+        try {
+            ran = pool.tryRun(FaceEngine.ASF_FACE_RECOGNITION, new FaceEnginePool.Task() {
+                @Override
+                public void run(FaceEngineApi faceEngine) {
+                    FaceSimilar faceSimilar = new FaceSimilar();
+                    long compareStart = System.nanoTime();
+                    int code = faceEngine.compareFaceFeature(new FaceFeature(feature1), new FaceFeature(feature2), faceSimilar);
+                    FaceMetrics.record(FaceMetrics.Stage.COMPARE, compareStart);
+                    if (code == ErrorInfo.MOK) {
+                        score[0] = faceSimilar.getScore();
+                        onRecognition();
+                    } else {
+                        FaceLog.w(TAG, "Sync compare failed: " + code);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            FaceLog.w(TAG, "Sync compare failed: " + e.getMessage());
+        }
+        if (!ran) {
+            FaceMetrics.increment("syncBusy");
+            FaceMetrics.recordMethod("compareFeatureHandlesSync", start);
+            return SYNC_BUSY;
+        }
+        FaceMetrics.recordMethod("compareFeatureHandlesSync", start);
+        return score[0];
+    }
 
-            // 将特征数据转换为 Base64
-            String featureBase64 = Base64.encodeToString(faceFeature.getFeatureData(), Base64.NO_WRAP);
-            promise.resolve(featureBase64);
+    /**
+     * 成功时返回 {matches}，失败时返回 {code}，code 取值同 compareFeatureHandlesSync，k 小于 1 时为 -4。
+     * 特征库超过 SYNC_SEARCH_MAX_SIZE 时返回 -1，由 JS 改走异步检索。
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableMap searchTopKHandleSync(final int handle, final int k, final double threshold) {
+        long start = System.nanoTime();
+        if (k <= 0) {
+            return syncResult(SYNC_INVALID_PARAMETER);
+        }
+        final byte[] feature;
+        try {
+            feature = featureHandles.get(handle);
+        } catch (FaceException e) {
+            return syncResult(SYNC_INVALID_HANDLE);
+        }
+        FaceEnginePool pool = enginePool;
+        if (pool == null || featureGallery.size() > SYNC_SEARCH_MAX_SIZE) {
+            FaceMetrics.increment("syncBusy");
+            return syncResult(SYNC_BUSY);
+        }
+        final WritableArray[] matchArray = {null};
+        double code = SYNC_BUSY;
+        try {
+            pool.tryRun(FaceEngine.ASF_FACE_RECOGNITION, new FaceEnginePool.Task() {
+                @Override
+                public void run(FaceEngineApi faceEngine) throws FaceException {
+                    // 导入增量等正在替换特征库快照时不在 JS 线程上等待，按引擎全忙处理
+                    List<FeatureGallery.Match> matches = featureGallery.trySearchTopK(faceEngine, feature, k, (float) threshold);
+                    if (matches == null) {
+                        return;
+                    }
+                    onRecognition();
+                    matchArray[0] = Arguments.createArray();
+                    for (FeatureGallery.Match match : matches) {
+                        WritableMap matchMap = Arguments.createMap();
+                        matchMap.putString("id", match.id);
+                        matchMap.putDouble("score", match.score);
+                        matchArray[0].pushMap(matchMap);
+                    }
+                }
+            });
         } catch (Exception e) {
-            Log.e(TAG, "Extract feature error", e);
-            promise.reject("EXTRACT_ERROR", e.getMessage());
+            FaceLog.w(TAG, "Sync search failed: " + e.getMessage());
+            code = SYNC_COMPARE_ERROR;
+        }
+        FaceMetrics.recordMethod("searchTopKHandleSync", start);
+        if (matchArray[0] != null) {
+            WritableMap result = Arguments.createMap();
+            result.putArray("matches", matchArray[0]);
+            return result;
+        }
+        if (code == SYNC_BUSY) {
+            FaceMetrics.increment("syncBusy");
+        }
+        return syncResult(code);
+    }
+
+    private static WritableMap syncResult(double code) {
+        WritableMap result = Arguments.createMap();
+        result.putDouble("code", code);
+        return result;
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public boolean releaseFeatureSync(int handle) {
+        return featureHandles.release(handle);
+    }
+
+    /**
+     * 同步读取帧管线最近一帧的检测结果：[帧序号, faceId, left, top, right, bottom, orient, ...]，
+     * 用于逐帧绘制人脸框，无需为每个人脸构造对象；帧流未启动时返回 null。
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableArray getLatestFacesSync() {
+        FramePipeline pipeline = framePipeline;
+        if (pipeline == null) {
+            return null;
         }
+        FramePipeline.LatestFaces latest = pipeline.getLatestFaces();
+        WritableArray result = Arguments.createArray();
+        result.pushDouble(latest.sequence);
+        for (int value : latest.faces) {
+            result.pushInt(value);
+        }
+        return result;
+    }
+
+    @ReactMethod
+    public void releaseFeature(int handle, Promise promise) {
+        promise.resolve(featureHandles.release(handle));
+    }
+
+    @ReactMethod
+    public void releaseAllFeatures(Promise promise) {
+        promise.resolve(featureHandles.releaseAll());
+    }
+
+    /**
+     * 句柄统计与泄漏检测：存活时间超过 leakAge 毫秒的句柄视为疑似泄漏。
+     */
+    @ReactMethod
+    public void getFeatureHandleStats(double leakAge, Promise promise) {
+        List<FeatureHandleRegistry.Handle> leaks = featureHandles.findLeaks(leakAge > 0 ? (long) leakAge : DEFAULT_HANDLE_LEAK_AGE_MILLIS);
+        WritableArray leakArray = Arguments.createArray();
+        long now = SystemClock.elapsedRealtime();
+        for (FeatureHandleRegistry.Handle handle : leaks) {
+            WritableMap leakMap = Arguments.createMap();
+            leakMap.putInt("handle", handle.id);
+            leakMap.putString("origin", handle.origin);
+            leakMap.putDouble("age", now - handle.createdAt);
+            leakArray.pushMap(leakMap);
+        }
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("count", featureHandles.size());
+        stats.putDouble("bytes", featureHandles.getBytes());
+        stats.putArray("leaks", leakArray);
+        promise.resolve(stats);
+    }
+
+    @ReactMethod
+    public void extractFeaturesBatch(ReadableArray imagePaths, ReadableMap options, Promise promise) {
+        startBatch(imagePaths, options, true, promise);
     }
 
     @ReactMethod
-    public void compareFaces(String feature1, String feature2, Promise promise) {
+    public void detectFacesBatch(ReadableArray imagePaths, ReadableMap options, Promise promise) {
+        startBatch(imagePaths, options, false, promise);
+    }
+
+    // 批量任务立即返回，处理在解码线程与引擎池中进行，结果通过 ArcsoftFaceBatchChunk 事件分块发送
+    private void startBatch(ReadableArray imagePaths, ReadableMap options, boolean extract, Promise promise) {
         try {
-            if (faceEngine == null) {
-                promise.reject("ENGINE_NOT_INIT", "Face engine not initialized");
+            FaceEnginePool pool = enginePool;
+            if (pool == null) {
+                promise.reject("ENGINE_NOT_INIT", "Face engine not initialized. Please call init() first.");
                 return;
             }
+            if (imagePaths == null) {
+                promise.reject("INVALID_PARAMETER", "Image paths is null");
+                return;
+            }
+
+            List<String> paths = new ArrayList<>(imagePaths.size());
+            for (int i = 0; i < imagePaths.size(); i++) {
+                paths.add(imagePaths.getString(i));
+            }
+            String jobId = options != null && options.hasKey("jobId") && !options.isNull("jobId")
+                    ? options.getString("jobId") : String.valueOf(System.currentTimeMillis());
+            int extractType = (int) getNumber(options, "extractType", ExtractType.RECOGNIZE.getExtractType());
+            int chunkSize = (int) getNumber(options, "chunkSize", DEFAULT_BATCH_CHUNK_SIZE);
+            // 默认让解码线程用满引擎线程以外的 CPU 核心
+            int decodeThreads = (int) getNumber(options, "decodeThreads",
+                    Math.max(1, Runtime.getRuntime().availableProcessors() - pool.size()));
+
+            BatchJob job = new BatchJob(jobId, getString(options, "group"), paths, extract,
+                    extractType == ExtractType.REGISTER.getExtractType() ? ExtractType.REGISTER : ExtractType.RECOGNIZE,
+                    chunkSize, decodeThreads, maxDetectSize, parsePriority(options, FaceEnginePool.PRIORITY_BACKGROUND),
+                    pool, bufferPool, getOption(options, "returnHandles", false) ? featureHandles : null, qualityGate,
+                    new BatchJob.Emitter() {
+                        @Override
+                        public void emit(String eventName, WritableMap params) {
+                            sendEvent(eventName, params);
+                        }
+                    }, promise);
+            removeFinishedBatches();
+            batchJobs.add(job);
+            job.start();
+        } catch (Exception e) {
+            Log.e(TAG, "Batch error", e);
+            promise.reject("BATCH_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * 取消分组 group 中尚未完成的单张图片请求和批量任务：排队中的请求以 CANCELLED 拒绝，
+     * 已在执行的引擎调用无法中断，完成后其结果被丢弃；批量任务停止派发，未处理的图片以 CANCELLED 结束。
+     * 返回取消的请求数（批量任务计为 1 个）。
+     */
+    @ReactMethod
+    public void cancelRequests(String group, Promise promise) {
+        if (group == null) {
+            promise.reject("INVALID_PARAMETER", "Group is null");
+            return;
+        }
+        int count = coalescer.cancel(group, enginePool);
+        for (BatchJob job : batchJobs) {
+            if (group.equals(job.getGroup()) && job.cancel()) {
+                count++;
+            }
+        }
+        removeFinishedBatches();
+        FaceLog.d(TAG, "Cancelled " + count + " requests in group " + group);
+        promise.resolve(count);
+    }
+
+    @ReactMethod
+    public void getSchedulerStats(Promise promise) {
+        FaceEnginePool pool = enginePool;
+        removeFinishedBatches();
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("queued", pool != null ? pool.getQueuedCount() : 0);
+        stats.putInt("pending", coalescer.getPendingCount());
+        stats.putDouble("coalesced", coalescer.getCoalescedCount());
+        stats.putDouble("cancelled", coalescer.getCancelledCount());
+        stats.putInt("activeBatches", batchJobs.size());
+        promise.resolve(stats);
+    }
 
+    private void removeFinishedBatches() {
+        Iterator<BatchJob> iterator = batchJobs.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @ReactMethod
+    public void compareFaces(final String feature1, final String feature2, final Promise promise) {
+        runWithEngine("compareFaces", FaceEngine.ASF_FACE_RECOGNITION, promise, "COMPARE_ERROR", new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) {
+                compareFaces(faceEngine, feature1, feature2, promise);
+            }
+        });
+    }
+
+    private void compareFaces(FaceEngineApi faceEngine, String feature1, String feature2, Promise promise) {
+        try {
             // 验证输入参数
             if (feature1 == null || feature1.isEmpty()) {
                 promise.reject("INVALID_PARAMETER", "Feature1 is null or empty");
@@ -341,14 +1293,17 @@ public class ArcsoftFaceModule extends ReactContextBaseJavaModule {
 
             // 比较特征 - 使用新的API
             FaceSimilar faceSimilar = new FaceSimilar();
+            long start = System.nanoTime();
             int compareCode = faceEngine.compareFaceFeature(faceFeature1, faceFeature2, faceSimilar);
+            FaceMetrics.record(FaceMetrics.Stage.COMPARE, start);
 
-            if (faceFeature1 != null && faceFeature1.getFeatureData() != null && faceFeature2 != null && faceFeature2.getFeatureData() != null && faceSimilar != null) {
-                Log.d(TAG, "Feature1 length: " + faceFeature1.getFeatureData().length);
-                Log.d(TAG, "Feature2 length: " + faceFeature2.getFeatureData().length);
+            if (FaceLog.isDebug()) {
+                FaceLog.d(TAG, "Feature1 length: " + faceFeature1.getFeatureData().length);
+                FaceLog.d(TAG, "Feature2 length: " + faceFeature2.getFeatureData().length);
             }
 
             if (compareCode == ErrorInfo.MOK) {
+                onRecognition();
                 promise.resolve(faceSimilar.getScore());
             } else {
                 promise.reject("COMPARE_ERROR", "Face comparison failed: " + compareCode);
@@ -360,188 +1315,929 @@ public class ArcsoftFaceModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void livenessDetection(String imagePath, Promise promise) {
+    public void registerFeature(final String id, String feature, final Promise promise) {
+        if (id == null || id.isEmpty()) {
+            promise.reject("INVALID_PARAMETER", "Id is null or empty");
+            return;
+        }
+
+        if (feature == null || feature.isEmpty()) {
+            promise.reject("INVALID_PARAMETER", "Feature is null or empty");
+            return;
+        }
+
+        // 注册时解码一次，之后检索直接使用库内的原始特征数据
+        final byte[] featureData;
         try {
-            if (faceEngine == null) {
-                promise.reject("ENGINE_NOT_INIT", "Face engine not initialized");
-                return;
+            featureData = Base64.decode(feature, Base64.NO_WRAP);
+        } catch (IllegalArgumentException e) {
+            promise.reject("INVALID_PARAMETER", e.getMessage());
+            return;
+        }
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getGallerySync().register(id, featureData);
+                    promise.resolve(featureGallery.size());
+                } catch (FaceException e) {
+                    promise.reject(e.code, e.getMessage());
+                } catch (Exception e) {
+                    Log.e(TAG, "Register feature error", e);
+                    promise.reject("REGISTER_ERROR", e.getMessage());
+                }
             }
+        });
+    }
 
-            // 加载图片
-            Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
-            if (bitmap == null) {
-                promise.reject("IMAGE_LOAD_ERROR", "Failed to load image: " + imagePath);
-                return;
+    @ReactMethod
+    public void removeFeature(final String id, final Promise promise) {
+        if (id == null) {
+            promise.resolve(false);
+            return;
+        }
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    promise.resolve(getGallerySync().remove(id));
+                } catch (Exception e) {
+                    Log.e(TAG, "Remove feature error", e);
+                    promise.reject("REMOVE_ERROR", e.getMessage());
+                }
             }
+        });
+    }
 
-            // 转换bitmap为BGR24格式
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
-            byte[] bgr24 = ArcSoftImageUtil.createImageData(width, height, ArcSoftImageFormat.BGR24);
-            int transformCode = ArcSoftImageUtil.bitmapToImageData(bitmap, bgr24, ArcSoftImageFormat.BGR24);
-            if (transformCode != ArcSoftImageUtilError.CODE_SUCCESS) {
-                bitmap.recycle();
-                promise.reject("TRANSFORM_ERROR", "Failed to transform bitmap to BGR24: " + transformCode);
-                return;
+    @ReactMethod
+    public void clearGallery(final Promise promise) {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getGallerySync().clear();
+                    promise.resolve(true);
+                } catch (Exception e) {
+                    Log.e(TAG, "Clear gallery error", e);
+                    promise.reject("STORE_ERROR", e.getMessage());
+                }
             }
+        });
+    }
 
-            // 检测人脸
-            List<FaceInfo> faceInfoList = new java.util.ArrayList<>();
-            int detectCode = faceEngine.detectFaces(bgr24, width, height, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
-            
-            if (detectCode != ErrorInfo.MOK || faceInfoList.isEmpty()) {
-                bitmap.recycle();
-                promise.reject("NO_FACE", "No face detected in image");
-                return;
+    /**
+     * 重写持久化特征库文件，回收已删除记录占用的空间；重写并 fsync 整个文件，在后台线程中与其他特征库任务串行执行。
+     */
+    @ReactMethod
+    public void compactGallery(final Promise promise) {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // 返回回收的记录数
+                    promise.resolve(getGallerySync().compact());
+                } catch (Exception e) {
+                    Log.e(TAG, "Compact gallery error", e);
+                    promise.reject("STORE_ERROR", e.getMessage());
+                }
             }
+        });
+    }
 
-            // 活体检测 - 使用简化的process方法
-            int processCode = faceEngine.process(bgr24, width, height, FaceEngine.CP_PAF_BGR24, faceInfoList, FaceEngine.ASF_LIVENESS);
-            
-            bitmap.recycle();
-
-            if (processCode == ErrorInfo.MOK) {
-                // 获取活体检测结果
-                List<LivenessInfo> livenessInfoList = new java.util.ArrayList<>();
-                int getLivenessCode = faceEngine.getLiveness(livenessInfoList);
-                
-                if (getLivenessCode == ErrorInfo.MOK && livenessInfoList != null && !livenessInfoList.isEmpty()) {
-                    LivenessInfo livenessInfo = livenessInfoList.get(0);
-                    boolean isLive = livenessInfo.getLiveness() == LivenessInfo.ALIVE;
-                    promise.resolve(isLive);
-                } else {
-                    promise.resolve(false);
+    /**
+     * 导出 sinceSequence 之后的新增、覆盖与删除到 path，在后台线程中与其他特征库任务串行执行。
+     * options: sinceSequence（上次导入该来源时得到的 toSequence，默认 0）、
+     * sourceId（上次同步的来源，与本地不一致时导出全量）。
+     */
+    @ReactMethod
+    public void exportGalleryDelta(final String path, final ReadableMap options, final Promise promise) {
+        if (path == null || path.isEmpty()) {
+            promise.reject("INVALID_PARAMETER", "Path is null or empty");
+            return;
+        }
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long start = SystemClock.elapsedRealtime();
+                    GallerySync.Summary summary = getGallerySync().exportDelta(new File(path),
+                            (long) getNumber(options, "sinceSequence", 0), getString(options, "sourceId"));
+                    WritableMap result = summary.toMap();
+                    result.putDouble("elapsedTime", SystemClock.elapsedRealtime() - start);
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    Log.e(TAG, "Export gallery delta error", e);
+                    promise.reject("SYNC_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 校验并导入 exportGalleryDelta 生成的文件，在后台线程中与其他特征库任务串行执行；导入期间的检索看到导入前或导入后的完整特征库。
+     * 校验失败时以 INVALID_DELTA 拒绝、非全量 delta 的起点晚于该来源已导入的序列号时以 DELTA_GAP 拒绝，均不做任何修改；
+     * 返回值中的 toSequence 用作下次导出的 sinceSequence。
+     */
+    @ReactMethod
+    public void importGalleryDelta(final String path, final Promise promise) {
+        if (path == null || path.isEmpty()) {
+            promise.reject("INVALID_PARAMETER", "Path is null or empty");
+            return;
+        }
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long start = SystemClock.elapsedRealtime();
+                    GallerySync.Summary summary = getGallerySync().importDelta(new File(path));
+                    WritableMap result = summary.toMap();
+                    result.putInt("size", featureGallery.size());
+                    result.putDouble("elapsedTime", SystemClock.elapsedRealtime() - start);
+                    promise.resolve(result);
+                } catch (FaceException e) {
+                    promise.reject(e.code, e.getMessage());
+                } catch (Exception e) {
+                    Log.e(TAG, "Import gallery delta error", e);
+                    promise.reject("SYNC_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 本地变更日志的状态：sourceId、最新序列号 sequence、增量导出可用的最早序列号 minSequence，
+     * 以及 imported（每个来源已导入的 toSequence）。
+     */
+    @ReactMethod
+    public void getGallerySyncState(final Promise promise) {
+        // imported 在同步的写锁内读取，排在进行中的导入之后
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ChangeJournal journal = getGallerySync().getJournal();
+                    WritableMap state = Arguments.createMap();
+                    state.putString("sourceId", journal.getSourceId());
+                    state.putDouble("sequence", journal.getSequence());
+                    state.putDouble("minSequence", journal.getMinSequence());
+                    state.putInt("trackedIds", journal.size());
+                    WritableMap imported = Arguments.createMap();
+                    for (Map.Entry<String, Long> entry : getGallerySync().getImportedSequences().entrySet()) {
+                        imported.putDouble(entry.getKey(), entry.getValue());
+                    }
+                    state.putMap("imported", imported);
+                    promise.resolve(state);
+                } catch (Exception e) {
+                    Log.e(TAG, "Get gallery sync state error", e);
+                    promise.reject("SYNC_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getGallerySize(Promise promise) {
+        promise.resolve(featureGallery.size());
+    }
+
+    /**
+     * 特征库分片与并行检索状态：各分片大小、分片间移动次数、并行检索线程数，以及特征解析的确认结果 vectorLayout。
+     */
+    @ReactMethod
+    public void getGalleryStats(Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("size", featureGallery.size());
+        WritableArray shardArray = Arguments.createArray();
+        for (int size : featureGallery.getShardSizes()) {
+            shardArray.pushInt(size);
+        }
+        stats.putArray("shards", shardArray);
+        stats.putDouble("moves", featureGallery.getMoveCount());
+        SearchEngines engines = searchEngines;
+        stats.putInt("searchThreads", 1 + (engines != null ? engines.getCount() : 0));
+        stats.putBoolean("indexed", featureGallery.getIndex() != null);
+        // 近似检索所依赖的特征解析是否已由引擎分数确认，mismatch 时索引与 int8 候选筛选都不使用
+        int layout = featureGallery.getLayout();
+        stats.putString("vectorLayout", layout == FeatureVectors.LAYOUT_MATCH ? "match"
+                : layout == FeatureVectors.LAYOUT_MISMATCH ? "mismatch" : "unverified");
+        putEncodingStats(stats);
+        promise.resolve(stats);
+    }
+
+    /**
+     * 切换内存特征库的编码：'int8' 只在内存中保留 int8 编码（约为全精度的 1/4），
+     * 以近似余弦筛选候选后从持久化特征库读取全精度特征交给引擎打分；'float' 恢复全精度常驻内存。
+     * options: rerank（无索引时每次检索交给引擎打分的候选数，默认 64）。
+     */
+    @ReactMethod
+    public void setGalleryEncoding(final String encoding, final ReadableMap options, final Promise promise) {
+        if (!"int8".equals(encoding) && !"float".equals(encoding)) {
+            promise.reject("INVALID_PARAMETER", "Unsupported gallery encoding: " + encoding);
+            return;
+        }
+        // 切换需要遍历全库（切回全精度时还要读盘），在后台线程中进行
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    featureGallery.setCompactRerank((int) getNumber(options, "rerank", featureGallery.getCompactRerank()));
+                    long start = SystemClock.elapsedRealtime();
+                    featureGallery.setCompact("int8".equals(encoding), getFeatureStore());
+                    int8Gallery = featureGallery.isCompact();
+                    Log.d(TAG, "Gallery encoding set to " + encoding + " in " + (SystemClock.elapsedRealtime() - start) + "ms");
+                    WritableMap info = Arguments.createMap();
+                    info.putInt("size", featureGallery.size());
+                    info.putInt("rerank", featureGallery.getCompactRerank());
+                    putEncodingStats(info);
+                    promise.resolve(info);
+                } catch (IllegalStateException e) {
+                    promise.reject("ENCODING_ERROR", e.getMessage());
+                } catch (Exception e) {
+                    Log.e(TAG, "Set gallery encoding error", e);
+                    promise.reject("ENCODING_ERROR", e.getMessage());
                 }
-            } else {
-                promise.reject("PROCESS_ERROR", "Liveness process failed: " + processCode);
             }
+        });
+    }
+
+    // 写入 encoding、memoryBytes（特征在内存中的占用）、fullPrecisionBytes（全精度常驻时的占用）与 savedBytes
+    void putEncodingStats(WritableMap map) {
+        long memoryBytes = featureGallery.getMemoryBytes();
+        long fullPrecisionBytes = (long) featureGallery.size() * featureGallery.getFeatureSize();
+        map.putString("encoding", featureGallery.isCompact() ? "int8" : "float");
+        map.putDouble("memoryBytes", memoryBytes);
+        map.putDouble("fullPrecisionBytes", fullPrecisionBytes);
+        map.putDouble("savedBytes", Math.max(0, fullPrecisionBytes - memoryBytes));
+    }
+
+    /**
+     * 以当前库内特征构建 IVF 近似索引并保存到磁盘，构建在后台线程中进行。
+     * options: lists（簇数，默认库大小的平方根）、iterations、probes、rerank、minGallerySize。
+     */
+    @ReactMethod
+    public void buildGalleryIndex(final ReadableMap options, final Promise promise) {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getFeatureStore();
+                    long start = SystemClock.elapsedRealtime();
+                    IvfIndex index = featureGallery.buildIndex((int) getNumber(options, "lists", 0),
+                            (int) getNumber(options, "iterations", IvfIndex.DEFAULT_ITERATIONS));
+                    applyIndexParams(index, options);
+                    long buildTime = SystemClock.elapsedRealtime() - start;
+                    featureGallery.saveIndex(getIndexFile());
+                    Log.d(TAG, "Gallery index built: " + index.getListCount() + " lists, " + featureGallery.size() + " features in " + buildTime + "ms");
+                    WritableMap info = indexInfo(index);
+                    info.putDouble("buildTime", buildTime);
+                    promise.resolve(info);
+                } catch (IllegalStateException e) {
+                    promise.reject("INDEX_ERROR", e.getMessage());
+                } catch (Exception e) {
+                    Log.e(TAG, "Build gallery index error", e);
+                    promise.reject("INDEX_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 调整近似检索的召回率 / 延迟：probes 越大、rerank 越大召回率越高、检索越慢。
+     */
+    @ReactMethod
+    public void setGalleryIndexParams(ReadableMap options, Promise promise) {
+        IvfIndex index = featureGallery.getIndex();
+        if (index == null) {
+            promise.reject("INDEX_ERROR", "Gallery index not built");
+            return;
+        }
+        applyIndexParams(index, options);
+        promise.resolve(indexInfo(index));
+    }
+
+    @ReactMethod
+    public void getGalleryIndexInfo(Promise promise) {
+        IvfIndex index = featureGallery.getIndex();
+        promise.resolve(index != null ? indexInfo(index) : null);
+    }
+
+    @ReactMethod
+    public void saveGalleryIndex(Promise promise) {
+        try {
+            promise.resolve(featureGallery.saveIndex(getIndexFile()));
         } catch (Exception e) {
-            Log.e(TAG, "Liveness detection error", e);
-            promise.reject("LIVENESS_ERROR", e.getMessage());
+            Log.e(TAG, "Save gallery index error", e);
+            promise.reject("INDEX_ERROR", e.getMessage());
         }
     }
 
     @ReactMethod
-    public void detectAge(String imagePath, Promise promise) {
+    public void dropGalleryIndex(Promise promise) {
+        featureGallery.dropIndex();
+        File file = getIndexFile();
+        promise.resolve(!file.exists() || file.delete());
+    }
+
+    private void applyIndexParams(IvfIndex index, ReadableMap options) {
+        index.setProbes((int) getNumber(options, "probes", index.getProbes()));
+        index.setRerank((int) getNumber(options, "rerank", index.getRerank()));
+        featureGallery.setIndexMinSize((int) getNumber(options, "minGallerySize", featureGallery.getIndexMinSize()));
+    }
+
+    WritableMap indexInfo(IvfIndex index) {
+        WritableMap info = Arguments.createMap();
+        info.putInt("lists", index.getListCount());
+        info.putInt("size", featureGallery.size());
+        info.putInt("probes", index.getProbes());
+        info.putInt("rerank", index.getRerank());
+        info.putInt("minGallerySize", featureGallery.getIndexMinSize());
+        return info;
+    }
+
+    @ReactMethod
+    public void searchTopK(final String probeFeature, final int k, final double threshold, final Promise promise) {
+        runWithEngine("searchTopK", FaceEngine.ASF_FACE_RECOGNITION, promise, "SEARCH_ERROR", new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) {
+                searchTopK(faceEngine, probeFeature, k, threshold, promise);
+            }
+        });
+    }
+
+    private void searchTopK(FaceEngineApi faceEngine, String probeFeature, int k, double threshold, Promise promise) {
         try {
-            if (faceEngine == null) {
-                promise.reject("ENGINE_NOT_INIT", "Face engine not initialized");
+            if (probeFeature == null || probeFeature.isEmpty()) {
+                promise.reject("INVALID_PARAMETER", "Probe feature is null or empty");
                 return;
             }
 
-            // 加载图片
-            Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
-            if (bitmap == null) {
-                promise.reject("IMAGE_LOAD_ERROR", "Failed to load image: " + imagePath);
+            if (k <= 0) {
+                promise.reject("INVALID_PARAMETER", "k must be greater than 0");
                 return;
             }
 
-            // 转换bitmap为BGR24格式
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
-            byte[] bgr24 = ArcSoftImageUtil.createImageData(width, height, ArcSoftImageFormat.BGR24);
-            int transformCode = ArcSoftImageUtil.bitmapToImageData(bitmap, bgr24, ArcSoftImageFormat.BGR24);
-            if (transformCode != ArcSoftImageUtilError.CODE_SUCCESS) {
-                bitmap.recycle();
-                promise.reject("TRANSFORM_ERROR", "Failed to transform bitmap to BGR24: " + transformCode);
-                return;
+            byte[] probeData = Base64.decode(probeFeature, Base64.NO_WRAP);
+            List<FeatureGallery.Match> matches = featureGallery.searchTopK(faceEngine, probeData, k, (float) threshold);
+            onRecognition();
+            resolveMatches(matches, promise);
+        } catch (IllegalArgumentException e) {
+            promise.reject("INVALID_PARAMETER", e.getMessage());
+        } catch (Exception e) {
+            Log.e(TAG, "Search feature error", e);
+            promise.reject("SEARCH_ERROR", e.getMessage());
+        }
+    }
+
+    private static void resolveMatches(List<FeatureGallery.Match> matches, Promise promise) {
+        long start = System.nanoTime();
+        WritableArray matchArray = toMatchArray(matches);
+        FaceMetrics.record(FaceMetrics.Stage.MARSHAL, start);
+        promise.resolve(matchArray);
+    }
+
+    static WritableArray toMatchArray(List<FeatureGallery.Match> matches) {
+        WritableArray matchArray = Arguments.createArray();
+        for (FeatureGallery.Match match : matches) {
+            WritableMap matchMap = Arguments.createMap();
+            matchMap.putString("id", match.id);
+            matchMap.putDouble("score", match.score);
+            matchArray.pushMap(matchMap);
+        }
+        return matchArray;
+    }
+
+    @ReactMethod
+    public void analyzeFace(final String imagePath, ReadableMap options, Promise promise) {
+        final int processMask = getProcessMask(options);
+        final boolean withAngle = getOption(options, "angle", true);
+        runShared("analyzeFace", imagePath, processMask + "|" + withAngle, options,
+                FaceEngine.ASF_FACE_DETECT | processMask, promise, "ANALYZE_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                FaceAnalysis analysis = analyze(faceEngine, imagePath, processMask);
+
+                long start = System.nanoTime();
+                WritableArray faceArray = Arguments.createArray();
+                for (int i = 0; i < analysis.faceInfoList.size(); i++) {
+                    faceArray.pushMap(toFaceMap(analysis, i, withAngle));
+                }
+                FaceMetrics.record(FaceMetrics.Stage.MARSHAL, start);
+                return faceArray;
             }
+        });
+    }
 
-            // 检测人脸
-            List<FaceInfo> faceInfoList = new java.util.ArrayList<>();
-            int detectCode = faceEngine.detectFaces(bgr24, width, height, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
-            
-            if (detectCode != ErrorInfo.MOK || faceInfoList.isEmpty()) {
-                bitmap.recycle();
-                promise.reject("NO_FACE", "No face detected in image");
-                return;
+    @ReactMethod
+    public void livenessDetection(final String imagePath, ReadableMap requestOptions, Promise promise) {
+        runShared("livenessDetection", imagePath, "", requestOptions,
+                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_LIVENESS, promise, "LIVENESS_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                FaceAnalysis analysis = analyze(faceEngine, imagePath, FaceEngine.ASF_LIVENESS);
+                List<LivenessInfo> livenessInfoList = analysis.livenessInfoList;
+                return livenessInfoList != null && !livenessInfoList.isEmpty()
+                        && livenessInfoList.get(0).getLiveness() == LivenessInfo.ALIVE;
             }
+        });
+    }
 
-            // 年龄检测 - 使用简化的process方法
-            int processCode = faceEngine.process(bgr24, width, height, FaceEngine.CP_PAF_BGR24, faceInfoList, FaceEngine.ASF_AGE);
-            
-            bitmap.recycle();
-
-            if (processCode == ErrorInfo.MOK) {
-                // 获取年龄检测结果
-                List<AgeInfo> ageInfoList = new java.util.ArrayList<>();
-                int getAgeCode = faceEngine.getAge(ageInfoList);
-                
-                if (getAgeCode == ErrorInfo.MOK && ageInfoList != null && !ageInfoList.isEmpty()) {
-                    AgeInfo ageInfo = ageInfoList.get(0);
-                    promise.resolve(ageInfo.getAge());
-                } else {
-                    promise.resolve(0);
-                }
-            } else {
-                promise.reject("PROCESS_ERROR", "Age process failed: " + processCode);
+    @ReactMethod
+    public void detectAge(final String imagePath, ReadableMap requestOptions, Promise promise) {
+        runShared("detectAge", imagePath, "", requestOptions,
+                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_AGE, promise, "AGE_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                FaceAnalysis analysis = analyze(faceEngine, imagePath, FaceEngine.ASF_AGE);
+                List<AgeInfo> ageInfoList = analysis.ageInfoList;
+                return ageInfoList != null && !ageInfoList.isEmpty() ? ageInfoList.get(0).getAge() : 0;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Age detection error", e);
-            promise.reject("AGE_ERROR", e.getMessage());
+        });
+    }
+
+    @ReactMethod
+    public void detectGender(final String imagePath, ReadableMap requestOptions, Promise promise) {
+        runShared("detectGender", imagePath, "", requestOptions,
+                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_GENDER, promise, "GENDER_ERROR", new ResultTask() {
+            @Override
+            public Object run(FaceEngineApi faceEngine) throws FaceException {
+                FaceAnalysis analysis = analyze(faceEngine, imagePath, FaceEngine.ASF_GENDER);
+                List<GenderInfo> genderInfoList = analysis.genderInfoList;
+                return genderInfoList != null && !genderInfoList.isEmpty()
+                        ? FaceAnalysis.genderName(genderInfoList.get(0).getGender()) : "unknown";
+            }
+        });
+    }
+
+    // 将第 i 个人脸的检测结果和已取得的属性转换为 JS 对象
+    static WritableMap toFaceMap(FaceAnalysis analysis, int i, boolean withAngle) {
+        FaceInfo faceInfo = analysis.faceInfoList.get(i);
+        Rect rect = analysis.image != null ? analysis.image.toOriginal(faceInfo.getRect()) : faceInfo.getRect();
+        WritableMap faceMap = Arguments.createMap();
+        faceMap.putInt("left", rect.left);
+        faceMap.putInt("top", rect.top);
+        faceMap.putInt("right", rect.right);
+        faceMap.putInt("bottom", rect.bottom);
+        faceMap.putInt("orient", faceInfo.getOrient());
+        faceMap.putInt("faceId", faceInfo.getFaceId());
+        if (analysis.ageInfoList != null && i < analysis.ageInfoList.size()) {
+            faceMap.putInt("age", analysis.ageInfoList.get(i).getAge());
+        }
+        if (analysis.genderInfoList != null && i < analysis.genderInfoList.size()) {
+            faceMap.putString("gender", FaceAnalysis.genderName(analysis.genderInfoList.get(i).getGender()));
+        }
+        if (analysis.livenessInfoList != null && i < analysis.livenessInfoList.size()) {
+            int liveness = analysis.livenessInfoList.get(i).getLiveness();
+            faceMap.putInt("liveness", liveness);
+            faceMap.putBoolean("isLive", liveness == LivenessInfo.ALIVE);
+        }
+        // 3D 角度随人脸检测一同返回，无需额外的 process 掩码
+        Face3DAngle angle = faceInfo.getFace3DAngle();
+        if (withAngle && angle != null) {
+            WritableMap angleMap = Arguments.createMap();
+            angleMap.putDouble("yaw", angle.getYaw());
+            angleMap.putDouble("roll", angle.getRoll());
+            angleMap.putDouble("pitch", angle.getPitch());
+            faceMap.putMap("angle", angleMap);
+        }
+        return faceMap;
+    }
+
+    // 解码、检测各一次，再以合并后的掩码调用一次 process，取回所有请求的属性
+    private FaceAnalysis analyze(FaceEngineApi faceEngine, String imagePath, int processMask) throws FaceException {
+        ImageCache.Entry prepared = prepare(faceEngine, imagePath);
+        Bgr24Image image = prepared.image;
+
+        FaceAnalysis analysis = FaceAnalysis.obtain(prepared.faceInfoList);
+        analysis.image = image;
+        if (analysis.faceInfoList.isEmpty() || processMask == FaceEngine.ASF_NONE) {
+            prepared.release();
+            if (analysis.faceInfoList.isEmpty()) {
+                throw new FaceException("NO_FACE", "No face detected in image");
+            }
+            return analysis;
+        }
+
+        int processCode;
+        long start = System.nanoTime();
+        try {
+            processCode = faceEngine.process(image.data, image.width, image.height, FaceEngine.CP_PAF_BGR24, analysis.faceInfoList, processMask);
+        } finally {
+            prepared.release();
+        }
+        FaceMetrics.record(FaceMetrics.Stage.PROCESS, start);
+        if (processCode != ErrorInfo.MOK) {
+            throw new FaceException("PROCESS_ERROR", "Face process failed: " + processCode);
+        }
+
+        analysis.fetchAttributes(faceEngine, processMask);
+        return analysis;
+    }
+
+    private int getProcessMask(ReadableMap options) {
+        int mask = FaceEngine.ASF_NONE;
+        if (getOption(options, "age", true)) {
+            mask |= FaceEngine.ASF_AGE;
+        }
+        if (getOption(options, "gender", true)) {
+            mask |= FaceEngine.ASF_GENDER;
+        }
+        if (getOption(options, "liveness", true)) {
+            mask |= FaceEngine.ASF_LIVENESS;
+        }
+        return mask;
+    }
+
+    static double getNumber(ReadableMap options, String key, double fallback) {
+        if (options == null || !options.hasKey(key) || options.isNull(key)) {
+            return fallback;
         }
+        return options.getDouble(key);
     }
 
+    static String getString(ReadableMap options, String key) {
+        if (options == null || !options.hasKey(key) || options.isNull(key)) {
+            return null;
+        }
+        return options.getString(key);
+    }
+
+    private static boolean getOption(ReadableMap options, String key, boolean fallback) {
+        if (options == null || !options.hasKey(key) || options.isNull(key)) {
+            return fallback;
+        }
+        return options.getBoolean(key);
+    }
+
+    /**
+     * 启动相机实时帧管线。管线使用独立的 VIDEO 模式引擎，需先调用 init() 完成激活；
+     * 帧由原生相机代码通过 submitNv21Frame / submitImage / getImageAvailableListener 提交，
+     * 结果以 ArcsoftFaceFrameResult 事件发送到 JS。
+     */
     @ReactMethod
-    public void detectGender(String imagePath, Promise promise) {
+    public void startFrameStream(ReadableMap options, Promise promise) {
         try {
-            if (faceEngine == null) {
-                promise.reject("ENGINE_NOT_INIT", "Face engine not initialized");
+            if (enginePool == null) {
+                promise.reject("ENGINE_NOT_INIT", "Face engine not initialized. Please call init() first.");
                 return;
             }
+            stopFramePipeline();
 
-            // 加载图片
-            Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
-            if (bitmap == null) {
-                promise.reject("IMAGE_LOAD_ERROR", "Failed to load image: " + imagePath);
-                return;
+            int processMask = FaceEngine.ASF_NONE;
+            if (getOption(options, "age", false)) {
+                processMask |= FaceEngine.ASF_AGE;
+            }
+            if (getOption(options, "gender", false)) {
+                processMask |= FaceEngine.ASF_GENDER;
             }
+            if (getOption(options, "liveness", false)) {
+                processMask |= FaceEngine.ASF_LIVENESS;
+            }
+            int maxFaceNum = clampMaxFaceNum((int) getNumber(options, "maxFaceNum", DEFAULT_MAX_FACE_NUM));
+            final boolean withAngle = getOption(options, "angle", false);
+            // 只用 getLatestFacesSync 轮询结果时可关闭逐帧事件，省去每帧的对象构造和桥传递
+            final boolean emitResults = getOption(options, "emitResults", true);
 
-            // 转换bitmap为BGR24格式
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
-            byte[] bgr24 = ArcSoftImageUtil.createImageData(width, height, ArcSoftImageFormat.BGR24);
-            int transformCode = ArcSoftImageUtil.bitmapToImageData(bitmap, bgr24, ArcSoftImageFormat.BGR24);
-            if (transformCode != ArcSoftImageUtilError.CODE_SUCCESS) {
-                bitmap.recycle();
-                promise.reject("TRANSFORM_ERROR", "Failed to transform bitmap to BGR24: " + transformCode);
-                return;
+            // 启用识别时按跟踪 faceId 缓存特征，只在新人脸、质量/角度明显改善或超过 TTL 时重新提取
+            TrackCache trackCache = null;
+            float threshold = 0;
+            if (getOption(options, "recognize", false)) {
+                getFeatureStore();
+                trackCache = new TrackCache(featureGallery.getFeatureSize(),
+                        (long) getNumber(options, "trackTtl", DEFAULT_TRACK_TTL_MILLIS),
+                        (float) getNumber(options, "qualityGain", 0.2),
+                        (float) getNumber(options, "angleGain", 10));
+                threshold = (float) getNumber(options, "threshold", DEFAULT_MATCH_THRESHOLD);
             }
+            // 未指定时沿用模块的质量门限
+            FaceQuality quality = options != null && options.hasKey("qualityGate")
+                    ? (options.isNull("qualityGate") ? null : FaceQuality.fromMap(options.getMap("qualityGate"))) : qualityGate;
+            long bestFrameWindow = (long) getNumber(options, "bestFrameWindow", 0);
 
-            // 检测人脸
-            List<FaceInfo> faceInfoList = new java.util.ArrayList<>();
-            int detectCode = faceEngine.detectFaces(bgr24, width, height, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
-            
-            if (detectCode != ErrorInfo.MOK || faceInfoList.isEmpty()) {
-                bitmap.recycle();
-                promise.reject("NO_FACE", "No face detected in image");
+            FramePipeline pipeline = new FramePipeline(engineFactory, processMask, trackCache != null ? featureGallery : null, trackCache, threshold,
+                    quality, bestFrameWindow, new FramePipeline.Listener() {
+                @Override
+                public void onFrame(FramePipeline.Frame frame, FaceAnalysis analysis, List<TrackCache.Track> tracks, long processMillis) {
+                    if (tracks != null) {
+                        // 重新提取的跟踪在同一帧内已检索过特征库
+                        for (TrackCache.Track track : tracks) {
+                            if (track.extracted) {
+                                onRecognition();
+                                break;
+                            }
+                        }
+                    }
+                    if (!emitResults) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    WritableMap result = Arguments.createMap();
+                    result.putDouble("sequence", frame.sequence);
+                    result.putDouble("timestamp", frame.timestamp);
+                    result.putInt("width", frame.width);
+                    result.putInt("height", frame.height);
+                    result.putDouble("processTime", processMillis);
+                    WritableArray faceArray = Arguments.createArray();
+                    for (int i = 0; i < analysis.faceInfoList.size(); i++) {
+                        WritableMap faceMap = toFaceMap(analysis, i, withAngle);
+                        if (tracks != null) {
+                            TrackCache.Track track = tracks.get(i);
+                            if (track.matchId != null) {
+                                faceMap.putString("matchId", track.matchId);
+                                faceMap.putDouble("matchScore", track.matchScore);
+                            } else {
+                                faceMap.putNull("matchId");
+                            }
+                            faceMap.putBoolean("featureExtracted", track.extracted);
+                            if (track.rejectReason != null) {
+                                faceMap.putString("rejected", track.rejectReason);
+                            }
+                        }
+                        faceArray.pushMap(faceMap);
+                    }
+                    result.putArray("faces", faceArray);
+                    FaceMetrics.record(FaceMetrics.Stage.MARSHAL, start);
+                    sendEvent(EVENT_FRAME_RESULT, result);
+                }
+
+                @Override
+                public void onError(FramePipeline.Frame frame, int code) {
+                    WritableMap error = Arguments.createMap();
+                    error.putDouble("sequence", frame.sequence);
+                    error.putInt("code", code);
+                    sendEvent(EVENT_FRAME_ERROR, error);
+                }
+            });
+            int code = pipeline.start(reactContext, parseOrientPriority(options), maxFaceNum);
+            if (code != ErrorInfo.MOK) {
+                promise.reject("INIT_ERROR", "Video engine init failed: " + code + " (" + getInitErrorMessage(code) + ")");
                 return;
             }
+            framePipeline = pipeline;
+            promise.resolve(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Start frame stream error", e);
+            promise.reject("INIT_ERROR", e.getMessage());
+        }
+    }
 
-            // 性别检测 - 使用简化的process方法
-            int processCode = faceEngine.process(bgr24, width, height, FaceEngine.CP_PAF_BGR24, faceInfoList, FaceEngine.ASF_GENDER);
-            
-            bitmap.recycle();
-
-            if (processCode == ErrorInfo.MOK) {
-                // 获取性别检测结果
-                List<GenderInfo> genderInfoList = new java.util.ArrayList<>();
-                int getGenderCode = faceEngine.getGender(genderInfoList);
-                
-                if (getGenderCode == ErrorInfo.MOK && genderInfoList != null && !genderInfoList.isEmpty()) {
-                    GenderInfo genderInfo = genderInfoList.get(0);
-                    String gender = genderInfo.getGender() == GenderInfo.MALE ? "male" : "female";
-                    promise.resolve(gender);
-                } else {
-                    promise.resolve("unknown");
+    @ReactMethod
+    public void stopFrameStream(Promise promise) {
+        int code = stopFramePipeline();
+        if (code != ErrorInfo.MOK) {
+            promise.reject("UNINIT_ERROR", "Video engine uninit failed: " + code);
+            return;
+        }
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    public void getFrameStreamStats(Promise promise) {
+        FramePipeline pipeline = framePipeline;
+        WritableMap stats = Arguments.createMap();
+        stats.putBoolean("running", pipeline != null && pipeline.isRunning());
+        if (pipeline != null) {
+            stats.putDouble("submittedFrames", pipeline.getSubmittedFrames());
+            stats.putDouble("processedFrames", pipeline.getProcessedFrames());
+            stats.putDouble("droppedFrames", pipeline.getDroppedFrames());
+            stats.putDouble("averageProcessTime", pipeline.getAverageProcessMillis());
+            stats.putDouble("featureExtractions", pipeline.getFeatureExtractions());
+            stats.putDouble("qualityRejections", pipeline.getQualityRejections());
+            stats.putDouble("fps", pipeline.getFps());
+        }
+        promise.resolve(stats);
+    }
+
+    /**
+     * 由原生相机回调（如 Camera.PreviewCallback）提交 NV21 帧，数据会被复制，返回后可立即复用 nv21。
+     * 帧流未启动时返回 false。
+     */
+    public boolean submitNv21Frame(byte[] nv21, int width, int height) {
+        FramePipeline pipeline = framePipeline;
+        return pipeline != null && pipeline.submitNv21(nv21, width, height);
+    }
+
+    /**
+     * 提交 Camera2 / CameraX 的 YUV_420_888 图像，调用方负责 close()。帧流未启动时返回 false。
+     */
+    public boolean submitImage(Image image) {
+        FramePipeline pipeline = framePipeline;
+        return pipeline != null && pipeline.submitImage(image);
+    }
+
+    /**
+     * 可直接设置给 ImageReader 的回调：取最新图像提交后立即关闭。
+     */
+    public ImageReader.OnImageAvailableListener getImageAvailableListener() {
+        return new ImageReader.OnImageAvailableListener() {
+            @Override
+            public void onImageAvailable(ImageReader reader) {
+                Image image = reader.acquireLatestImage();
+                if (image == null) {
+                    return;
+                }
+                try {
+                    submitImage(image);
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "Skip frame: " + e.getMessage());
+                } finally {
+                    image.close();
                 }
-            } else {
-                promise.reject("PROCESS_ERROR", "Gender process failed: " + processCode);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Gender detection error", e);
-            promise.reject("GENDER_ERROR", e.getMessage());
+        };
+    }
+
+    private int stopFramePipeline() {
+        FramePipeline pipeline = framePipeline;
+        framePipeline = null;
+        return pipeline != null ? pipeline.stop() : ErrorInfo.MOK;
+    }
+
+    private static DetectFaceOrientPriority parseOrientPriority(ReadableMap options) {
+        if (options == null || !options.hasKey("orient") || options.isNull("orient")) {
+            return DetectFaceOrientPriority.ASF_OP_ALL_OUT;
+        }
+        switch (options.getInt("orient")) {
+            case 0:
+                return DetectFaceOrientPriority.ASF_OP_0_ONLY;
+            case 90:
+                return DetectFaceOrientPriority.ASF_OP_90_ONLY;
+            case 180:
+                return DetectFaceOrientPriority.ASF_OP_180_ONLY;
+            case 270:
+                return DetectFaceOrientPriority.ASF_OP_270_ONLY;
+            default:
+                return DetectFaceOrientPriority.ASF_OP_ALL_OUT;
+        }
+    }
+
+    @ReactMethod
+    public void getImageCacheStats(Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("hits", imageCache.getHitCount());
+        stats.putDouble("misses", imageCache.getMissCount());
+        stats.putDouble("evictions", imageCache.getEvictionCount());
+        stats.putInt("entries", imageCache.size());
+        stats.putDouble("bytes", imageCache.getBytes());
+        stats.putDouble("maxBytes", imageCache.getMaxBytes());
+        stats.putDouble("bufferAllocations", bufferPool.getBufferAllocations());
+        stats.putDouble("bufferReuses", bufferPool.getBufferReuses());
+        stats.putDouble("bitmapAllocations", bufferPool.getBitmapAllocations());
+        stats.putDouble("bitmapReuses", bufferPool.getBitmapReuses());
+        stats.putDouble("pooledBytes", bufferPool.getPooledBytes());
+        promise.resolve(stats);
+    }
+
+    @ReactMethod
+    public void clearImageCache(Promise promise) {
+        imageCache.clear();
+        imageCache.resetStats();
+        bufferPool.resetStats();
+        promise.resolve(true);
+    }
+
+    // 取得图片的 BGR24 数据和人脸检测结果，同一文件未修改时直接复用缓存，跳过解码、转换和检测；
+    // 返回的条目持有图像引用，调用方用完 image 后需 release()
+    private ImageCache.Entry prepare(FaceEngineApi faceEngine, String imagePath) throws FaceException {
+        String key = ImageCache.keyFor(imagePath);
+        ImageCache.Entry entry = imageCache.get(key);
+        if (entry == null) {
+            entry = imageCache.put(key, Bgr24Image.decode(imagePath, maxDetectSize, bufferPool));
         }
+        if (entry.faceInfoList == null) {
+            Bgr24Image image = entry.image;
+            List<FaceInfo> faceInfoList = new ArrayList<>();
+            long start = System.nanoTime();
+            int detectCode = faceEngine.detectFaces(image.data, image.width, image.height, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
+            FaceMetrics.record(FaceMetrics.Stage.DETECT, start);
+            if (detectCode != ErrorInfo.MOK) {
+                entry.release();
+                throw new FaceException("DETECT_ERROR", "Face detection failed: " + detectCode);
+            }
+            entry.faceInfoList = faceInfoList;
+        }
+        return entry;
+    }
+
+    // 在引擎线程池中执行需要引擎的调用
+    // 方法总耗时（含排队）按方法名记入 FaceMetrics；比对、检索耗时很短，以高优先级排在图片请求之前
+    private void runWithEngine(final String method, int requiredMask, final Promise promise, String errorCode, final FaceEnginePool.Task task) {
+        FaceEnginePool pool = enginePool;
+        if (pool == null) {
+            promise.reject("ENGINE_NOT_INIT", "Face engine not initialized. Please call init() first.");
+            return;
+        }
+        final long start = System.nanoTime();
+        pool.execute(requiredMask, FaceEnginePool.PRIORITY_HIGH, null, errorCode, new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) throws Exception {
+                try {
+                    task.run(faceEngine);
+                } finally {
+                    FaceMetrics.recordMethod(method, start);
+                }
+            }
+        }, new FaceEnginePool.ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                promise.reject(code, message);
+            }
+        });
+    }
+
+    // 返回结果而不直接 resolve 的引擎任务，结果由 RequestCoalescer 分发给所有等待方
+    private interface ResultTask {
+        Object run(FaceEngineApi faceEngine) throws Exception;
+    }
+
+    /**
+     * 执行单张图片请求：同一文件、同一操作、同一参数（params）的进行中请求合并为一次计算；
+     * imagePath 为 null 时不合并。requestOptions 中 priority 指定优先级，group 指定取消分组。
+     */
+    private void runShared(final String method, String imagePath, String params, ReadableMap requestOptions,
+                           int requiredMask, Promise promise, String errorCode, final ResultTask task) {
+        FaceEnginePool pool = enginePool;
+        if (pool == null) {
+            promise.reject("ENGINE_NOT_INIT", "Face engine not initialized. Please call init() first.");
+            return;
+        }
+        String fileKey = imagePath != null ? ImageCache.keyFor(imagePath) : null;
+        String key = fileKey != null ? method + '|' + params + '|' + fileKey : null;
+        final RequestCoalescer.Request request = coalescer.join(key, getString(requestOptions, "group"), promise);
+        if (request == null) {
+            FaceMetrics.increment("coalesced");
+            return;
+        }
+        final long start = System.nanoTime();
+        FaceEnginePool.Job job = pool.execute(requiredMask, parsePriority(requestOptions, FaceEnginePool.PRIORITY_NORMAL), null,
+                errorCode, new FaceEnginePool.Task() {
+                    @Override
+                    public void run(FaceEngineApi faceEngine) throws Exception {
+                        try {
+                            coalescer.resolve(request, task.run(faceEngine));
+                        } finally {
+                            FaceMetrics.recordMethod(method, start);
+                        }
+                    }
+                }, new FaceEnginePool.ErrorHandler() {
+                    @Override
+                    public void onError(String code, String message) {
+                        coalescer.reject(request, code, message);
+                    }
+                });
+        coalescer.attach(request, job);
+    }
+
+    private static int parsePriority(ReadableMap options, int fallback) {
+        String priority = getString(options, "priority");
+        if ("high".equals(priority)) {
+            return FaceEnginePool.PRIORITY_HIGH;
+        }
+        if ("normal".equals(priority)) {
+            return FaceEnginePool.PRIORITY_NORMAL;
+        }
+        if ("background".equals(priority)) {
+            return FaceEnginePool.PRIORITY_BACKGROUND;
+        }
+        return fallback;
+    }
+
+    // 首次使用时打开持久化特征库，并将其中的特征一次性载入内存特征库
+    private synchronized FeatureStore getFeatureStore() throws IOException {
+        if (featureStore == null) {
+            File storeFile = new File(new File(reactContext.getFilesDir(), "arcsoft_face"), "features.afs");
+            FeatureStore store = new FeatureStore(storeFile, featureGallery.getFeatureSize());
+            store.open();
+            // 先设置编码再载入，紧凑编码时恢复过程中不会整库以全精度驻留内存
+            featureGallery.setCompact(int8Gallery, store);
+            store.forEach(new FeatureStore.RecordVisitor() {
+                @Override
+                public void visit(String id, byte[] featureData) {
+                    featureGallery.register(id, featureData);
+                }
+            });
+            ChangeJournal journal = new ChangeJournal(new File(storeFile.getParentFile(), "features.seq"));
+            journal.open(store.size());
+            gallerySync = new GallerySync(store, journal, featureGallery, new File(storeFile.getParentFile(), "features.imp"));
+            featureStore = store;
+            // 索引文件损坏或与特征长度不符时放弃索引，退回精确检索
+            try {
+                if (featureGallery.loadIndex(getIndexFile())) {
+                    Log.d(TAG, "Gallery index restored: " + featureGallery.getIndex().getListCount() + " lists");
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to load gallery index", e);
+            }
+        }
+        return featureStore;
+    }
+
+    private synchronized GallerySync getGallerySync() throws IOException {
+        getFeatureStore();
+        return gallerySync;
+    }
+
+    private File getIndexFile() {
+        return new File(new File(reactContext.getFilesDir(), "arcsoft_face"), "features.ivf");
     }
 
     // 发送事件到 React Native
@@ -5,14 +5,19 @@ import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.uimanager.ViewManager;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 public class ArcsoftFacePackage implements ReactPackage {
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
-        return Arrays.<NativeModule>asList(new ArcsoftFaceModule(reactContext));
+        ArcsoftFaceModule module = new ArcsoftFaceModule(reactContext);
+        List<NativeModule> modules = new ArrayList<>();
+        modules.add(module);
+        // 基准测试模块只在调试构建中存在
+        modules.addAll(DebugModules.create(reactContext, module));
+        return modules;
     }
 
     @Override
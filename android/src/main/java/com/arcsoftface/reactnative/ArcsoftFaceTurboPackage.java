@@ -0,0 +1,44 @@
+package com.arcsoftface.reactnative;
+
+import com.facebook.react.TurboReactPackage;
+import com.facebook.react.bridge.NativeModule;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ArcsoftFacePackage 的替代注册方式：模块在首次被 JS 访问时才创建，新架构下经由 TurboModule 互操作层
+ * 通过 JSI 调用，同步方法（*Sync）直接在 JS 线程返回。旧架构应用继续使用 ArcsoftFacePackage 即可。
+ */
+public class ArcsoftFaceTurboPackage extends TurboReactPackage {
+    @Override
+    public NativeModule getModule(String name, ReactApplicationContext reactContext) {
+        if (ArcsoftFaceModule.NAME.equals(name)) {
+            return new ArcsoftFaceModule(reactContext);
+        }
+        return null;
+    }
+
+    @Override
+    public ReactModuleInfoProvider getReactModuleInfoProvider() {
+        return new ReactModuleInfoProvider() {
+            @Override
+            public Map<String, ReactModuleInfo> getReactModuleInfos() {
+                Map<String, ReactModuleInfo> moduleInfos = new HashMap<>();
+                moduleInfos.put(ArcsoftFaceModule.NAME, new ReactModuleInfo(
+                        ArcsoftFaceModule.NAME,
+                        ArcsoftFaceModule.class.getName(),
+                        false, // canOverrideExistingModule
+                        false, // needsEagerInit
+                        false, // hasConstants
+                        false, // isCxxModule
+                        false  // isTurboModule：没有 codegen 生成的 C++ 绑定，由互操作层接入
+                ));
+                return moduleInfos;
+            }
+        };
+    }
+}
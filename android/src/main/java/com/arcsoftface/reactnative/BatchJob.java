@@ -0,0 +1,335 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.enums.DetectModel;
+import com.arcsoft.face.enums.ExtractType;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对一组图片批量执行人脸检测或特征提取。
+ * 解码在独立的解码线程中进行，解码完成的图片逐张提交到引擎池，解码与引擎计算流水线并行；
+ * 同时在途（已解码未处理完）的图片数受限，避免大批量时占满内存。
+ * 结果按完成顺序分块通过事件发送（每条带原始下标），进度事件按固定间隔发送，全部完成后 resolve 汇总信息。
+ */
+class BatchJob {
+    private static final String TAG = "BatchJob";
+    static final String EVENT_CHUNK = "ArcsoftFaceBatchChunk";
+    static final String EVENT_PROGRESS = "ArcsoftFaceBatchProgress";
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+    interface Emitter {
+        void emit(String eventName, WritableMap params);
+    }
+
+    private final String jobId;
+    // 取消分组，可为 null
+    private final String group;
+    private final List<String> paths;
+    private final boolean extract;
+    private final ExtractType extractType;
+    private final int chunkSize;
+    private final int decodeThreads;
+    private final int maxDetectSize;
+    private final int priority;
+    private final FaceEnginePool enginePool;
+    private final ImageBufferPool bufferPool;
+    // 不为 null 时提取结果以特征句柄返回，而不是 Base64
+    private final FeatureHandleRegistry featureHandles;
+    // 不为 null 时提取前检查人脸质量，未通过的图片以 LOW_QUALITY 失败
+    private final FaceQuality qualityGate;
+    private final Emitter emitter;
+    private final Promise promise;
+    private final Semaphore inFlight;
+
+    private ExecutorService decodeExecutor;
+    private WritableArray chunk = Arguments.createArray();
+    private int chunkCount;
+    private int completed;
+    private int failed;
+    private long startTime;
+    private long lastProgressTime;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    BatchJob(String jobId, String group, List<String> paths, boolean extract, ExtractType extractType, int chunkSize,
+             int decodeThreads, int maxDetectSize, int priority, FaceEnginePool enginePool, ImageBufferPool bufferPool, FeatureHandleRegistry featureHandles,
+             FaceQuality qualityGate, Emitter emitter, Promise promise) {
+        this.jobId = jobId;
+        this.group = group;
+        this.paths = paths;
+        this.extract = extract;
+        this.extractType = extractType;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.decodeThreads = Math.max(1, decodeThreads);
+        this.maxDetectSize = maxDetectSize;
+        this.priority = priority;
+        this.enginePool = enginePool;
+        this.bufferPool = bufferPool;
+        this.featureHandles = featureHandles;
+        this.qualityGate = qualityGate;
+        this.emitter = emitter;
+        this.promise = promise;
+        // 每个引擎两张（处理中 + 排队）加上解码线程手上的，保证引擎不空闲又不堆积
+        this.inFlight = new Semaphore(enginePool.size() * 2 + this.decodeThreads);
+    }
+
+    void start() {
+        startTime = SystemClock.elapsedRealtime();
+        lastProgressTime = startTime;
+        if (paths.isEmpty()) {
+            finish();
+            return;
+        }
+
+        final AtomicInteger threadIndex = new AtomicInteger();
+        decodeExecutor = Executors.newFixedThreadPool(decodeThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ArcsoftFaceDecode-" + threadIndex.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        // 由单独的线程按顺序派发，在途数量达到上限时在这里等待，而不是阻塞解码线程
+        Thread dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "ArcsoftFaceBatch-" + jobId);
+        dispatcher.start();
+    }
+
+    String getGroup() {
+        return group;
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 停止派发并撤下已排队的引擎任务，未处理的图片以 CANCELLED 结束；已在执行的图片正常完成。
+     * 任务已结束或已取消时返回 false。
+     */
+    boolean cancel() {
+        if (finished || cancelled) {
+            return false;
+        }
+        cancelled = true;
+        enginePool.cancelAll(this);
+        return true;
+    }
+
+    private void dispatch() {
+        for (int i = 0; i < paths.size(); i++) {
+            final int index = i;
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (cancelled) {
+                for (int j = i; j < paths.size(); j++) {
+                    fail(j, "CANCELLED", "Batch cancelled");
+                }
+                break;
+            }
+            decodeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    decodeAndSubmit(index);
+                }
+            });
+        }
+        decodeExecutor.shutdown();
+    }
+
+    private void decodeAndSubmit(final int index) {
+        if (cancelled) {
+            fail(index, "CANCELLED", "Batch cancelled");
+            return;
+        }
+        final Bgr24Image image;
+        try {
+            // 批量图片通常只处理一次，不经过图片缓存，直接使用缓冲池
+            image = Bgr24Image.decode(paths.get(index), maxDetectSize, bufferPool);
+        } catch (FaceException e) {
+            fail(index, e.code, e.getMessage());
+            return;
+        } catch (Exception e) {
+            fail(index, "IMAGE_LOAD_ERROR", e.getMessage());
+            return;
+        }
+
+        int requiredMask = FaceEngine.ASF_FACE_DETECT | (extract ? FaceEngine.ASF_FACE_RECOGNITION : 0);
+        // 任务执行完或未执行就被取消时都要归还图像，且只能归还一次
+        final AtomicBoolean imageHeld = new AtomicBoolean(true);
+        // 每张图片是一个独立的引擎任务，高优先级请求在图片之间即可取得引擎
+        FaceEnginePool.Job job = enginePool.execute(requiredMask, priority, this, extract ? "EXTRACT_ERROR" : "DETECT_ERROR", new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) throws FaceException {
+                try {
+                    complete(index, process(faceEngine, image));
+                } finally {
+                    if (imageHeld.compareAndSet(true, false)) {
+                        image.release();
+                    }
+                }
+            }
+        }, new FaceEnginePool.ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                if (imageHeld.compareAndSet(true, false)) {
+                    image.release();
+                }
+                fail(index, code, message);
+            }
+        });
+        // 解码期间被取消时，cancel() 撤下排队任务之后才提交的任务在这里撤下
+        if (cancelled) {
+            enginePool.cancel(job);
+        }
+    }
+
+    private WritableMap process(FaceEngineApi faceEngine, Bgr24Image image) throws FaceException {
+        List<FaceInfo> faceInfoList = new ArrayList<>();
+        long start = System.nanoTime();
+        int code = faceEngine.detectFaces(image.data, image.width, image.height, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
+        FaceMetrics.record(FaceMetrics.Stage.DETECT, start);
+        if (code != ErrorInfo.MOK) {
+            throw new FaceException("DETECT_ERROR", "Face detection failed: " + code);
+        }
+
+        WritableMap result = Arguments.createMap();
+        if (!extract) {
+            WritableArray faceArray = Arguments.createArray();
+            for (FaceInfo faceInfo : faceInfoList) {
+                WritableMap faceMap = Arguments.createMap();
+                Rect rect = image.toOriginal(faceInfo.getRect());
+                faceMap.putInt("left", rect.left);
+                faceMap.putInt("top", rect.top);
+                faceMap.putInt("right", rect.right);
+                faceMap.putInt("bottom", rect.bottom);
+                faceMap.putInt("orient", faceInfo.getOrient());
+                faceArray.pushMap(faceMap);
+            }
+            result.putArray("faces", faceArray);
+            return result;
+        }
+
+        if (faceInfoList.isEmpty()) {
+            throw new FaceException("NO_FACE", "No face detected in image");
+        }
+        if (qualityGate != null) {
+            FaceQuality.Score score = qualityGate.evaluate(image, faceInfoList.get(0));
+            if (!score.passed()) {
+                FaceMetrics.increment("qualityRejected");
+                throw FaceQuality.toException(score);
+            }
+        }
+        FaceFeature faceFeature = new FaceFeature();
+        start = System.nanoTime();
+        code = FaceCropExtractor.extract(faceEngine, image, faceInfoList.get(0), extractType, faceFeature, maxDetectSize, bufferPool);
+        FaceMetrics.record(FaceMetrics.Stage.EXTRACT, start);
+        if (code != ErrorInfo.MOK) {
+            throw new FaceException("EXTRACT_ERROR", "Extract feature failed: " + code);
+        }
+        if (featureHandles != null) {
+            result.putInt("handle", featureHandles.put(faceFeature.getFeatureData(), "batch"));
+        } else {
+            result.putString("feature", Base64.encodeToString(faceFeature.getFeatureData(), Base64.NO_WRAP));
+        }
+        return result;
+    }
+
+    private void fail(int index, String code, String message) {
+        WritableMap result = Arguments.createMap();
+        result.putString("error", code);
+        result.putString("message", message);
+        synchronized (this) {
+            failed++;
+        }
+        complete(index, result);
+    }
+
+    private synchronized void complete(int index, WritableMap result) {
+        result.putInt("index", index);
+        result.putString("path", paths.get(index));
+        chunk.pushMap(result);
+        chunkCount++;
+        completed++;
+        inFlight.release();
+
+        if (chunkCount >= chunkSize) {
+            flushChunk();
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (completed == paths.size()) {
+            finish();
+        } else if (now - lastProgressTime >= PROGRESS_INTERVAL_MILLIS) {
+            lastProgressTime = now;
+            emitProgress(now);
+        }
+    }
+
+    private void flushChunk() {
+        if (chunkCount == 0) {
+            return;
+        }
+        WritableMap params = Arguments.createMap();
+        params.putString("jobId", jobId);
+        params.putArray("results", chunk);
+        emitter.emit(EVENT_CHUNK, params);
+        chunk = Arguments.createArray();
+        chunkCount = 0;
+    }
+
+    private void emitProgress(long now) {
+        WritableMap params = Arguments.createMap();
+        params.putString("jobId", jobId);
+        params.putInt("completed", completed);
+        params.putInt("failed", failed);
+        params.putInt("total", paths.size());
+        params.putDouble("elapsedTime", now - startTime);
+        emitter.emit(EVENT_PROGRESS, params);
+    }
+
+    private synchronized void finish() {
+        flushChunk();
+        long now = SystemClock.elapsedRealtime();
+        emitProgress(now);
+        Log.d(TAG, "Batch " + jobId + " finished: " + completed + " items in " + (now - startTime) + "ms");
+
+        WritableMap summary = Arguments.createMap();
+        summary.putString("jobId", jobId);
+        summary.putInt("total", paths.size());
+        summary.putInt("succeeded", completed - failed);
+        summary.putInt("failed", failed);
+        summary.putBoolean("cancelled", cancelled);
+        summary.putDouble("elapsedTime", now - startTime);
+        finished = true;
+        promise.resolve(summary);
+    }
+}
@@ -0,0 +1,409 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+
+import com.arcsoft.imageutil.ArcSoftImageFormat;
+import com.arcsoft.imageutil.ArcSoftImageUtil;
+import com.arcsoft.imageutil.ArcSoftImageUtilError;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 已转换为 BGR24 格式、可直接交给 FaceEngine 的图像数据。
+ * data 来自 ImageBufferPool，使用引用计数管理：持有者用完后调用 release()，
+ * 最后一个引用释放时缓冲区归还到池中。
+ * 从文件解码时可按长边上限缩小并按 EXIF 方向摆正，scale / offset 记录本图在原图中的位置，
+ * 原图指按 EXIF 方向摆正后的全分辨率图，返回给 JS 的人脸框均使用原图坐标。
+ */
+class Bgr24Image {
+    // 摆正、对齐时直接覆盖池中 Bitmap 的旧内容，不与其混合
+    private static final Paint COPY_PAINT = new Paint();
+
+    static {
+        COPY_PAINT.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
+    final byte[] data;
+    final int width;
+    final int height;
+    private final ImageBufferPool pool;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    // 原图坐标 = offset + 本图坐标 * scale，解码完成后设置，之后不再修改
+    float scale = 1;
+    int offsetX;
+    int offsetY;
+    // 解码来源，缩小后的图像据此回到原图裁剪人脸区域；非文件来源时为 null
+    Source source;
+
+    /**
+     * 图片文件及其 EXIF 方向。raw 为文件中存储的尺寸，width / height 为摆正后的尺寸。
+     */
+    static class Source {
+        final String path;
+        final int rawWidth;
+        final int rawHeight;
+        final int orientation;
+        final int width;
+        final int height;
+        // 摆正时宽高互换
+        final boolean swap;
+
+        Source(String path, int rawWidth, int rawHeight, int orientation) {
+            this.path = path;
+            this.rawWidth = rawWidth;
+            this.rawHeight = rawHeight;
+            this.orientation = orientation;
+            this.swap = orientation >= ExifInterface.ORIENTATION_TRANSPOSE && orientation <= ExifInterface.ORIENTATION_ROTATE_270;
+            this.width = swap ? rawHeight : rawWidth;
+            this.height = swap ? rawWidth : rawHeight;
+        }
+
+        boolean isUpright() {
+            return orientation < ExifInterface.ORIENTATION_FLIP_HORIZONTAL || orientation > ExifInterface.ORIENTATION_ROTATE_270;
+        }
+
+        // 将摆正后的坐标区域换算为文件中存储的坐标区域
+        Rect toRaw(Rect rect) {
+            int x1 = rect.left;
+            int y1 = rect.top;
+            int x2 = rect.right;
+            int y2 = rect.bottom;
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                    return sorted(rawWidth - x1, y1, rawWidth - x2, y2);
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return sorted(rawWidth - x1, rawHeight - y1, rawWidth - x2, rawHeight - y2);
+                case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                    return sorted(x1, rawHeight - y1, x2, rawHeight - y2);
+                case ExifInterface.ORIENTATION_TRANSPOSE:
+                    return sorted(y1, x1, y2, x2);
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return sorted(y1, rawHeight - x1, y2, rawHeight - x2);
+                case ExifInterface.ORIENTATION_TRANSVERSE:
+                    return sorted(rawWidth - y1, rawHeight - x1, rawWidth - y2, rawHeight - x2);
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return sorted(rawWidth - y1, x1, rawWidth - y2, x2);
+                default:
+                    return new Rect(rect);
+            }
+        }
+
+        // 文件中存储的 width x height 图像到摆正后图像的变换，已是正向时返回 null
+        Matrix uprightMatrix(int width, int height) {
+            Matrix matrix = new Matrix();
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                    matrix.postScale(-1, 1);
+                    break;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    matrix.postRotate(180);
+                    break;
+                case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                    matrix.postScale(1, -1);
+                    break;
+                case ExifInterface.ORIENTATION_TRANSPOSE:
+                    matrix.postRotate(90);
+                    matrix.postScale(-1, 1);
+                    break;
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    matrix.postRotate(90);
+                    break;
+                case ExifInterface.ORIENTATION_TRANSVERSE:
+                    matrix.postRotate(-90);
+                    matrix.postScale(-1, 1);
+                    break;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    matrix.postRotate(-90);
+                    break;
+                default:
+                    return null;
+            }
+            // 旋转、翻转后平移回原点
+            RectF bounds = new RectF(0, 0, width, height);
+            matrix.mapRect(bounds);
+            matrix.postTranslate(-bounds.left, -bounds.top);
+            return matrix;
+        }
+
+        private static Rect sorted(int x1, int y1, int x2, int y2) {
+            return new Rect(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2));
+        }
+    }
+
+    Bgr24Image(byte[] data, int width, int height, ImageBufferPool pool) {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+    }
+
+    Bgr24Image retain() {
+        refCount.incrementAndGet();
+        return this;
+    }
+
+    void release() {
+        if (refCount.decrementAndGet() == 0 && pool != null) {
+            pool.releaseBuffer(data);
+        }
+    }
+
+    // 原图坐标下的人脸框
+    Rect toOriginal(Rect rect) {
+        if (scale == 1 && offsetX == 0 && offsetY == 0) {
+            return rect;
+        }
+        return new Rect(offsetX + Math.round(rect.left * scale), offsetY + Math.round(rect.top * scale),
+                offsetX + Math.round(rect.right * scale), offsetY + Math.round(rect.bottom * scale));
+    }
+
+    // 是否为缩小后的图像，此时可回到原图裁剪人脸区域以取得更高分辨率
+    boolean isDownscaled() {
+        return source != null && scale > 1;
+    }
+
+    static Bgr24Image decode(String imagePath, ImageBufferPool pool) throws FaceException {
+        return decode(imagePath, 0, pool);
+    }
+
+    /**
+     * 解码图片文件，按 EXIF 方向摆正，长边超过 maxSize 时按 2 的幂缩小（maxSize 不大于 0 表示不缩小），
+     * 再按引擎要求将宽高裁剪为 4 的倍数后转换为 BGR24；解码用的 Bitmap 与 BGR24 缓冲区均从 pool 复用。
+     */
+    static Bgr24Image decode(String imagePath, int maxSize, ImageBufferPool pool) throws FaceException {
+        long start = System.nanoTime();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new FaceException("IMAGE_LOAD_ERROR", "Failed to load image: " + imagePath);
+        }
+        Source source = new Source(imagePath, options.outWidth, options.outHeight, readOrientation(imagePath));
+        int sampleSize = sampleSizeFor(Math.max(options.outWidth, options.outHeight), maxSize);
+        if (sampleSize > 1 || !source.isUpright()) {
+            return decodeScaled(source, sampleSize, options, pool, start);
+        }
+
+        int alignedWidth = options.outWidth & ~3;
+        int alignedHeight = options.outHeight & ~3;
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = null;
+        if (alignedWidth != options.outWidth || alignedHeight != options.outHeight) {
+            // 直接解码对齐后的区域，避免转换前再复制一份；复用的 Bitmap 也只需对齐后的大小
+            options.inBitmap = pool.acquireBitmap(alignedWidth, alignedHeight);
+            bitmap = decodeRegion(imagePath, new Rect(0, 0, alignedWidth, alignedHeight), options, pool);
+            if (bitmap == null) {
+                pool.releaseBitmap(options.inBitmap);
+                options.inBitmap = null;
+            }
+        }
+        if (bitmap == null) {
+            options.inBitmap = pool.acquireBitmap(options.outWidth, options.outHeight);
+            bitmap = decodeFile(imagePath, options, pool);
+        }
+        if (bitmap == null) {
+            pool.releaseBitmap(options.inBitmap);
+            throw new FaceException("IMAGE_LOAD_ERROR", "Failed to load image: " + imagePath);
+        }
+        FaceMetrics.record(FaceMetrics.Stage.DECODE, start);
+
+        Bgr24Image image = toImage(source, bitmap, pool);
+        image.source = source;
+        return image;
+    }
+
+    private static Bgr24Image decodeScaled(Source source, int sampleSize, BitmapFactory.Options options,
+                                           ImageBufferPool pool, long start) throws FaceException {
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inSampleSize = sampleSize;
+        options.inBitmap = pool.acquireBitmap(ceilDiv(source.rawWidth, sampleSize), ceilDiv(source.rawHeight, sampleSize));
+        Bitmap bitmap = decodeFile(source.path, options, pool);
+        if (bitmap == null) {
+            pool.releaseBitmap(options.inBitmap);
+            throw new FaceException("IMAGE_LOAD_ERROR", "Failed to load image: " + source.path);
+        }
+        FaceMetrics.record(FaceMetrics.Stage.DECODE, start);
+
+        float scale = (float) source.width / (source.swap ? bitmap.getHeight() : bitmap.getWidth());
+        Bgr24Image image = toImage(source, bitmap, pool);
+        image.source = source;
+        image.scale = scale;
+        return image;
+    }
+
+    /**
+     * 从原图（摆正后的坐标）中解码 region 区域，区域长边超过 maxSize 时按 2 的幂缩小。
+     * 只解码该区域，大图中的人脸可以在接近原始分辨率下处理而无需解码整张图片。
+     */
+    static Bgr24Image decodeCrop(Source source, Rect region, int maxSize, ImageBufferPool pool) throws FaceException {
+        long start = System.nanoTime();
+        Rect raw = source.toRaw(region);
+        int sampleSize = sampleSizeFor(Math.max(raw.width(), raw.height()), maxSize);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inSampleSize = sampleSize;
+        options.inBitmap = pool.acquireBitmap(ceilDiv(raw.width(), sampleSize), ceilDiv(raw.height(), sampleSize));
+        Bitmap bitmap = decodeRegion(source.path, raw, options, pool);
+        if (bitmap == null) {
+            pool.releaseBitmap(options.inBitmap);
+            throw new FaceException("IMAGE_LOAD_ERROR", "Failed to decode region of image: " + source.path);
+        }
+        FaceMetrics.record(FaceMetrics.Stage.DECODE, start);
+
+        float scale = (float) region.width() / (source.swap ? bitmap.getHeight() : bitmap.getWidth());
+        Bgr24Image image = toImage(source, bitmap, pool);
+        image.source = source;
+        image.scale = scale;
+        image.offsetX = region.left;
+        image.offsetY = region.top;
+        return image;
+    }
+
+    /**
+     * 按 EXIF 方向摆正、将宽高裁剪为 4 的倍数后转换为 BGR24，之后将 bitmap 归还到 pool。
+     * 需要摆正或对齐时一次绘制到池中的 Bitmap，不为旋转和对齐各新建一个整图大小的 Bitmap。
+     */
+    private static Bgr24Image toImage(Source source, Bitmap bitmap, ImageBufferPool pool) throws FaceException {
+        long start = System.nanoTime();
+        Matrix matrix = source.uprightMatrix(bitmap.getWidth(), bitmap.getHeight());
+        int uprightWidth = matrix != null && source.swap ? bitmap.getHeight() : bitmap.getWidth();
+        int uprightHeight = matrix != null && source.swap ? bitmap.getWidth() : bitmap.getHeight();
+        int alignedWidth = uprightWidth & ~3;
+        int alignedHeight = uprightHeight & ~3;
+        if (alignedWidth == 0 || alignedHeight == 0) {
+            pool.releaseBitmap(bitmap);
+            throw new FaceException("IMAGE_LOAD_ERROR", "Image too small: " + uprightWidth + "x" + uprightHeight);
+        }
+        if (matrix == null && alignedWidth == uprightWidth && alignedHeight == uprightHeight) {
+            try {
+                return fromBitmap(bitmap, pool);
+            } finally {
+                pool.releaseBitmap(bitmap);
+            }
+        }
+
+        // 目标只有对齐后的大小，右侧和底部多出的像素被裁掉
+        Bitmap target = pool.obtainBitmap(alignedWidth, alignedHeight);
+        try {
+            Canvas canvas = new Canvas(target);
+            if (matrix != null) {
+                canvas.drawBitmap(bitmap, matrix, COPY_PAINT);
+            } else {
+                canvas.drawBitmap(bitmap, 0, 0, COPY_PAINT);
+            }
+            pool.releaseBitmap(bitmap);
+            bitmap = null;
+            FaceMetrics.record(FaceMetrics.Stage.ALIGN, start);
+            return fromBitmap(target, pool);
+        } finally {
+            pool.releaseBitmap(bitmap);
+            pool.releaseBitmap(target);
+        }
+    }
+
+    private static int readOrientation(String imagePath) {
+        try {
+            return new ExifInterface(imagePath).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    // 使长边不超过 maxSize 的最小 2 的幂采样率
+    private static int sampleSizeFor(int longEdge, int maxSize) {
+        int sampleSize = 1;
+        if (maxSize > 0) {
+            while (longEdge / sampleSize > maxSize) {
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static Bitmap decodeFile(String imagePath, BitmapFactory.Options options, ImageBufferPool pool) {
+        try {
+            return checkInBitmap(BitmapFactory.decodeFile(imagePath, options), options, pool);
+        } catch (IllegalArgumentException e) {
+            // inBitmap 不兼容时退回普通解码
+            dropInBitmap(options, pool);
+            return BitmapFactory.decodeFile(imagePath, options);
+        }
+    }
+
+    private static Bitmap decodeRegion(String imagePath, Rect region, BitmapFactory.Options options, ImageBufferPool pool) {
+        BitmapRegionDecoder decoder = null;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(imagePath, false);
+            return checkInBitmap(decoder.decodeRegion(region, options), options, pool);
+        } catch (IOException e) {
+            // 不支持区域解码的格式交由整图解码处理
+            return null;
+        } catch (IllegalArgumentException e) {
+            if (decoder == null) {
+                return null;
+            }
+            dropInBitmap(options, pool);
+            return decoder.decodeRegion(region, options);
+        } finally {
+            if (decoder != null) {
+                decoder.recycle();
+            }
+        }
+    }
+
+    // 解码器没有使用 inBitmap 而是另行新建时，inBitmap 归还到 pool，并计为一次分配
+    private static Bitmap checkInBitmap(Bitmap bitmap, BitmapFactory.Options options, ImageBufferPool pool) {
+        if (bitmap != null && options.inBitmap != null && bitmap != options.inBitmap) {
+            pool.releaseBitmap(options.inBitmap);
+            options.inBitmap = null;
+            pool.onBitmapRejected();
+        }
+        return bitmap;
+    }
+
+    // 解码器改为新建 Bitmap，计入 pool 的分配次数
+    private static void dropInBitmap(BitmapFactory.Options options, ImageBufferPool pool) {
+        if (options.inBitmap != null) {
+            options.inBitmap.recycle();
+            options.inBitmap = null;
+            pool.onBitmapRejected();
+        }
+    }
+
+    // 将宽高已对齐的 Bitmap 转换为 BGR24
+    static Bgr24Image fromBitmap(Bitmap bitmap, ImageBufferPool pool) throws FaceException {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        long start = System.nanoTime();
+        byte[] bgr24 = pool.acquireBuffer(width * height * 3);
+        int transformCode = ArcSoftImageUtil.bitmapToImageData(bitmap, bgr24, ArcSoftImageFormat.BGR24);
+        FaceMetrics.record(FaceMetrics.Stage.CONVERT, start);
+        if (transformCode != ArcSoftImageUtilError.CODE_SUCCESS) {
+            pool.releaseBuffer(bgr24);
+            throw new FaceException("TRANSFORM_ERROR", "Failed to transform bitmap to BGR24: " + transformCode);
+        }
+        return new Bgr24Image(bgr24, width, height, pool);
+    }
+}
@@ -0,0 +1,316 @@
+package com.arcsoftface.reactnative;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * 持久化特征库的变更日志，为增量同步提供序列号：每次注册、覆盖或删除都为该 id 分配一个递增的序列号。
+ * 内存中每个 id 只保留最近一次变更，按序列号建有有序索引，查询某序列号之后的变更只与变更数有关。
+ *
+ * 文件布局（大端序）：
+ * <pre>
+ * | header: magic, version, minSequence, sourceId (32B) | entry: sequence, flags, idLength, id | ... |
+ * </pre>
+ * 变更先追加到日志并 fsync，再写入特征库：崩溃时日志可能多出未生效的变更，导出时以特征库的实际内容为准，
+ * 只会多导出一条与当前状态一致的记录，不会漏掉变更。末尾不完整的记录在打开时截断。
+ * 日志中的过期记录超过一定数量时重写为每个 id 一条记录（临时文件 + 原子重命名）。
+ * 删除记录只保留最近 tombstoneRetention 个序列号以内的，更早的在重写时丢弃并把 minSequence 前移到被丢弃的序列号，
+ * 频繁注册、删除不同 id 时日志不会无限增长，落后超过这一范围的同步方改为全量导出。
+ * minSequence 之前的变更已不完整（日志创建前已有的特征、清空特征库、已丢弃的删除记录），从更早的序列号同步时需要全量导出。
+ */
+class ChangeJournal {
+    private static final int MAGIC = 0x51534641; // "AFSQ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int FLAG_DELETED = 1;
+    // 过期记录数超过 max(COMPACT_SLACK, 有效记录数) 时重写日志
+    private static final int COMPACT_SLACK = 1024;
+    // 默认保留最近 10 万个序列号以内的删除记录
+    static final long DEFAULT_TOMBSTONE_RETENTION = 100000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final class Change {
+        final String id;
+        final long sequence;
+        final boolean deleted;
+
+        Change(String id, long sequence, boolean deleted) {
+            this.id = id;
+            this.sequence = sequence;
+            this.deleted = deleted;
+        }
+    }
+
+    private final File file;
+    private final HashMap<String, Change> changeById = new HashMap<>();
+    private final TreeMap<Long, Change> changeBySequence = new TreeMap<>();
+    // changeBySequence 中的删除记录，按序列号找出超出保留范围的
+    private final TreeMap<Long, Change> tombstones = new TreeMap<>();
+    private final long tombstoneRetention;
+
+    private FileOutputStream out;
+    private UUID sourceId;
+    private long minSequence;
+    private long sequence;
+    private int entryCount;
+
+    ChangeJournal(File file) {
+        this(file, DEFAULT_TOMBSTONE_RETENTION);
+    }
+
+    ChangeJournal(File file, long tombstoneRetention) {
+        this.file = file;
+        this.tombstoneRetention = Math.max(1, tombstoneRetention);
+    }
+
+    /**
+     * 打开日志，文件不存在时创建；storeSize 为当前特征库的记录数，不为 0 时这些记录没有变更历史，
+     * 新日志的 minSequence 从 1 开始，从 0 同步时需要全量导出。
+     */
+    synchronized void open(int storeSize) throws IOException {
+        if (out != null) {
+            return;
+        }
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory: " + dir);
+        }
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            rewrite(UUID.randomUUID(), storeSize > 0 ? 1 : 0, new ArrayList<Change>());
+        }
+        load();
+        if (needsCompaction()) {
+            compact();
+        }
+        out = new FileOutputStream(file, true);
+    }
+
+    synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+        out = null;
+    }
+
+    synchronized String getSourceId() {
+        return sourceId.toString();
+    }
+
+    // 最近一次变更的序列号
+    synchronized long getSequence() {
+        return sequence;
+    }
+
+    synchronized long getMinSequence() {
+        return minSequence;
+    }
+
+    // 日志中有变更记录的 id 数（含已删除的 id）
+    synchronized int size() {
+        return changeById.size();
+    }
+
+    /**
+     * 记录一组变更并 fsync 一次，deleted 与 ids 一一对应。返回最后一条变更的序列号。
+     */
+    synchronized long record(List<String> ids, boolean[] deleted) throws IOException {
+        checkOpen();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(ids.size() * 32);
+        DataOutputStream data = new DataOutputStream(bytes);
+        long next = sequence;
+        for (int i = 0; i < ids.size(); i++) {
+            writeEntry(data, ++next, deleted[i], ids.get(i));
+        }
+        out.write(bytes.toByteArray());
+        out.getChannel().force(false);
+
+        for (int i = 0; i < ids.size(); i++) {
+            put(new Change(ids.get(i), ++sequence, deleted[i]));
+        }
+        entryCount += ids.size();
+        if (needsCompaction()) {
+            compact();
+        }
+        return sequence;
+    }
+
+    synchronized long record(String id, boolean deleted) throws IOException {
+        List<String> ids = new ArrayList<>(1);
+        ids.add(id);
+        return record(ids, new boolean[]{deleted});
+    }
+
+    /**
+     * 特征库被清空：丢弃全部变更历史，minSequence 前移到清空对应的序列号。
+     */
+    synchronized void reset() throws IOException {
+        checkOpen();
+        close();
+        rewrite(sourceId, sequence + 1, new ArrayList<Change>());
+        load();
+        out = new FileOutputStream(file, true);
+    }
+
+    /**
+     * 返回序列号大于 since 的变更，按序列号升序；since 早于 minSequence 时返回 null，调用方应全量导出。
+     */
+    synchronized List<Change> changesSince(long since) {
+        if (since < minSequence) {
+            return null;
+        }
+        return new ArrayList<>(changeBySequence.tailMap(since, false).values());
+    }
+
+    private void put(Change change) {
+        Change previous = changeById.put(change.id, change);
+        if (previous != null) {
+            changeBySequence.remove(previous.sequence);
+            tombstones.remove(previous.sequence);
+        }
+        changeBySequence.put(change.sequence, change);
+        if (change.deleted) {
+            tombstones.put(change.sequence, change);
+        }
+    }
+
+    // 过期记录过多，或超出保留范围的删除记录过多时重写日志
+    private boolean needsCompaction() {
+        if (entryCount - changeById.size() > Math.max(COMPACT_SLACK, changeById.size())) {
+            return true;
+        }
+        long horizon = sequence - tombstoneRetention;
+        return !tombstones.isEmpty() && tombstones.firstKey() <= horizon
+                && tombstones.headMap(horizon, true).size() > COMPACT_SLACK;
+    }
+
+    private void load() throws IOException {
+        changeById.clear();
+        changeBySequence.clear();
+        tombstones.clear();
+        entryCount = 0;
+        long validLength = HEADER_SIZE;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Incompatible change journal: " + file);
+            }
+            minSequence = in.readLong();
+            sourceId = new UUID(in.readLong(), in.readLong());
+            sequence = minSequence;
+            while (true) {
+                long entrySequence;
+                int flags;
+                byte[] idBytes;
+                try {
+                    entrySequence = in.readLong();
+                    flags = in.readByte();
+                    idBytes = new byte[in.readUnsignedShort()];
+                    in.readFully(idBytes);
+                } catch (EOFException e) {
+                    break;
+                }
+                put(new Change(new String(idBytes, UTF_8), entrySequence, (flags & FLAG_DELETED) != 0));
+                sequence = Math.max(sequence, entrySequence);
+                validLength += 8 + 1 + 2 + idBytes.length;
+                entryCount++;
+            }
+        } finally {
+            in.close();
+        }
+        if (file.length() > validLength) {
+            // 追加记录时崩溃留下的不完整记录
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(validLength);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        boolean wasOpen = out != null;
+        close();
+        // 丢弃超出保留范围的删除记录：从更早的序列号同步的一方可能漏掉这些删除，只能全量导出
+        long horizon = sequence - tombstoneRetention;
+        List<Change> expired = new ArrayList<>(tombstones.headMap(horizon, true).values());
+        long newMinSequence = expired.isEmpty() ? minSequence : Math.max(minSequence, expired.get(expired.size() - 1).sequence);
+        List<Change> kept = new ArrayList<>(changeBySequence.size() - expired.size());
+        for (Change change : changeBySequence.values()) {
+            if (!change.deleted || change.sequence > horizon) {
+                kept.add(change);
+            }
+        }
+        rewrite(sourceId, newMinSequence, kept);
+        // 重写成功后才从内存中移除，失败时日志与内存保持原状
+        for (Change change : expired) {
+            changeById.remove(change.id);
+            changeBySequence.remove(change.sequence);
+            tombstones.remove(change.sequence);
+        }
+        entryCount = changeById.size();
+        if (wasOpen) {
+            out = new FileOutputStream(file, true);
+        }
+    }
+
+    // 写入临时文件并 fsync 后原子替换，changes 按序列号升序
+    private void rewrite(UUID source, long newMinSequence, List<Change> changes) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        try {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(fileOut));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeLong(newMinSequence);
+            data.writeLong(source.getMostSignificantBits());
+            data.writeLong(source.getLeastSignificantBits());
+            for (Change change : changes) {
+                writeEntry(data, change.sequence, change.deleted, change.id);
+            }
+            data.flush();
+            fileOut.getChannel().force(true);
+        } finally {
+            fileOut.close();
+        }
+        FileSync.replace(tmp, file);
+        sourceId = source;
+        minSequence = newMinSequence;
+    }
+
+    private static void writeEntry(DataOutputStream data, long entrySequence, boolean deleted, String id) throws IOException {
+        byte[] idBytes = id.getBytes(UTF_8);
+        if (idBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Id too long: " + idBytes.length + " bytes");
+        }
+        data.writeLong(entrySequence);
+        data.writeByte(deleted ? FLAG_DELETED : 0);
+        data.writeShort(idBytes.length);
+        data.write(idBytes);
+    }
+
+    private void checkOpen() {
+        if (out == null) {
+            throw new IllegalStateException("Change journal is not open");
+        }
+    }
+}
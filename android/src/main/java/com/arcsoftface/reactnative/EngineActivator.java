@@ -0,0 +1,80 @@
+package com.arcsoftface.reactnative;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.arcsoft.face.ActiveFileInfo;
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+
+/**
+ * 离线优先的引擎激活：先查进程内缓存，再读取 SDK 本地的激活文件，都无效时才进行在线激活。
+ * 已激活的设备重复启动时不再发起网络请求。
+ */
+class EngineActivator {
+    private static final String TAG = "EngineActivator";
+
+    static final String SOURCE_MEMORY = "memory";
+    static final String SOURCE_FILE = "file";
+    static final String SOURCE_ONLINE = "online";
+
+    static class Result {
+        final int code;
+        final String source;
+
+        Result(int code, String source) {
+            this.code = code;
+            this.source = source;
+        }
+
+        boolean isActivated() {
+            return code == ErrorInfo.MOK || code == ErrorInfo.MERR_ASF_ALREADY_ACTIVATED;
+        }
+    }
+
+    // 本进程内已激活的 appId，重复 init 时直接跳过激活
+    private static volatile String activatedAppId;
+
+    static Result activate(Context context, String appId, String sdkKey, String activeKey) {
+        if (appId.equals(activatedAppId)) {
+            return new Result(ErrorInfo.MOK, SOURCE_MEMORY);
+        }
+        if (hasValidActiveFile(context, appId, sdkKey)) {
+            activatedAppId = appId;
+            return new Result(ErrorInfo.MOK, SOURCE_FILE);
+        }
+
+        // 使用正确的参数顺序：context, activeKey, appId, sdkKey
+        int code = FaceEngine.activeOnline(context, activeKey, appId, sdkKey);
+        Result result = new Result(code, SOURCE_ONLINE);
+        if (result.isActivated()) {
+            activatedAppId = appId;
+        }
+        return result;
+    }
+
+    // 本地激活文件属于同一 appId/sdkKey 且未过期时视为已激活
+    private static boolean hasValidActiveFile(Context context, String appId, String sdkKey) {
+        ActiveFileInfo info = new ActiveFileInfo();
+        int code = FaceEngine.getActiveFileInfo(context, info);
+        if (code != ErrorInfo.MOK) {
+            Log.d(TAG, "No usable active file: " + code);
+            return false;
+        }
+        if (!appId.equals(info.getAppId()) || !sdkKey.equals(info.getSdkKey())) {
+            Log.d(TAG, "Active file belongs to another app id");
+            return false;
+        }
+        try {
+            // 激活文件中的有效期为秒级时间戳
+            long endTime = Long.parseLong(info.getEndTime());
+            if (endTime > 0 && endTime * 1000 < System.currentTimeMillis()) {
+                Log.d(TAG, "Active file expired at " + endTime);
+                return false;
+            }
+        } catch (NumberFormatException e) {
+            // 无法解析有效期时交给引擎 init 判断
+        }
+        return true;
+    }
+}
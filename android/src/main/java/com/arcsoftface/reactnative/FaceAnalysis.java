@@ -0,0 +1,93 @@
+package com.arcsoftface.reactnative;
+
+import com.arcsoft.face.AgeInfo;
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.GenderInfo;
+import com.arcsoft.face.LivenessInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次检测 + 一次 process 的结果，各属性列表与 faceInfoList 按下标一一对应；
+ * 未在 process 掩码中请求的属性为 null。
+ * 实例按线程复用，内容只在同一线程下一次调用 obtain() 之前有效。
+ */
+class FaceAnalysis {
+    private static final ThreadLocal<FaceAnalysis> CURRENT = new ThreadLocal<FaceAnalysis>() {
+        @Override
+        protected FaceAnalysis initialValue() {
+            return new FaceAnalysis();
+        }
+    };
+
+    List<FaceInfo> faceInfoList;
+    List<AgeInfo> ageInfoList;
+    List<GenderInfo> genderInfoList;
+    List<LivenessInfo> livenessInfoList;
+    // 检测所用的图像，只用于将人脸框换算回原图坐标；视频帧为 null
+    Bgr24Image image;
+
+    private final ArrayList<AgeInfo> ageBuffer = new ArrayList<>();
+    private final ArrayList<GenderInfo> genderBuffer = new ArrayList<>();
+    private final ArrayList<LivenessInfo> livenessBuffer = new ArrayList<>();
+
+    static FaceAnalysis obtain(List<FaceInfo> faceInfoList) {
+        FaceAnalysis analysis = CURRENT.get();
+        analysis.faceInfoList = faceInfoList;
+        analysis.ageInfoList = null;
+        analysis.genderInfoList = null;
+        analysis.livenessInfoList = null;
+        analysis.image = null;
+        return analysis;
+    }
+
+    // process 成功后按掩码取回各属性，单项获取失败时该属性保持为 null
+    void fetchAttributes(FaceEngineApi faceEngine, int processMask) {
+        if ((processMask & FaceEngine.ASF_AGE) != 0) {
+            ageInfoList = ageBuffer();
+            if (faceEngine.getAge(ageInfoList) != ErrorInfo.MOK) {
+                ageInfoList = null;
+            }
+        }
+        if ((processMask & FaceEngine.ASF_GENDER) != 0) {
+            genderInfoList = genderBuffer();
+            if (faceEngine.getGender(genderInfoList) != ErrorInfo.MOK) {
+                genderInfoList = null;
+            }
+        }
+        if ((processMask & FaceEngine.ASF_LIVENESS) != 0) {
+            livenessInfoList = livenessBuffer();
+            if (faceEngine.getLiveness(livenessInfoList) != ErrorInfo.MOK) {
+                livenessInfoList = null;
+            }
+        }
+    }
+
+    private List<AgeInfo> ageBuffer() {
+        ageBuffer.clear();
+        return ageBuffer;
+    }
+
+    private List<GenderInfo> genderBuffer() {
+        genderBuffer.clear();
+        return genderBuffer;
+    }
+
+    private List<LivenessInfo> livenessBuffer() {
+        livenessBuffer.clear();
+        return livenessBuffer;
+    }
+
+    static String genderName(int gender) {
+        if (gender == GenderInfo.MALE) {
+            return "male";
+        }
+        if (gender == GenderInfo.FEMALE) {
+            return "female";
+        }
+        return "unknown";
+    }
+}
@@ -0,0 +1,150 @@
+package com.arcsoftface.reactnative;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceSimilar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 将一组特征按相似度分组（单链接）：引擎比对分数不低于 threshold 的两条特征属于同一组，相似关系可传递。
+ * 先以 Java 侧余弦相似度筛选候选对，只有余弦不低于 threshold - margin 的对才交给引擎比对，
+ * 分组依据总是引擎分数；margin 越大召回越完整，引擎比对次数越多。
+ * 预筛选依赖 FeatureVectors 对特征的解析，开始前以 FeatureVectors.checkLayout 在这批特征上确认，
+ * 特征无法按向量解析或解析与引擎分数不符时全部两两比对。
+ * 两两筛选的开销随特征数平方增长，适合一次导入的一批照片（数千张人脸以内）。
+ */
+final class FaceClusterer {
+
+    static final class Result {
+        // 各组成员的下标，按组大小从大到小、同样大小按首个下标排列
+        final List<int[]> clusters;
+        // 各组的代表：组内与其他成员相连最多的特征，相同时取下标最小者
+        final int[] representatives;
+        final int comparisons;
+
+        Result(List<int[]> clusters, int[] representatives, int comparisons) {
+            this.clusters = clusters;
+            this.representatives = representatives;
+            this.comparisons = comparisons;
+        }
+    }
+
+    private FaceClusterer() {
+    }
+
+    static Result cluster(FaceEngineApi faceEngine, List<byte[]> features, float threshold, float margin) throws FaceException {
+        int n = features.size();
+        int featureSize = n > 0 ? features.get(0).length : 0;
+        for (byte[] featureData : features) {
+            if (featureData.length != featureSize) {
+                throw new FaceException("INVALID_PARAMETER", "Features have different lengths");
+            }
+        }
+        float[][] vectors = null;
+        if (FeatureVectors.supports(featureSize)
+                && FeatureVectors.checkLayout(faceEngine, features, new Random()) == FeatureVectors.LAYOUT_MATCH) {
+            vectors = new float[n][FeatureVectors.dimension(featureSize)];
+            for (int i = 0; i < n; i++) {
+                FeatureVectors.read(features.get(i), vectors[i]);
+            }
+        }
+
+        int[] parent = new int[n];
+        int[] degree = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        float candidateThreshold = threshold - Math.max(0, margin);
+        FaceFeature feature1 = new FaceFeature();
+        FaceFeature feature2 = new FaceFeature();
+        FaceSimilar faceSimilar = new FaceSimilar();
+        int comparisons = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            feature1.setFeatureData(features.get(i));
+            for (int j = i + 1; j < n; j++) {
+                if (vectors != null && FeatureVectors.dot(vectors[i], 0, vectors[j], 0, vectors[i].length) < candidateThreshold) {
+                    continue;
+                }
+                feature2.setFeatureData(features.get(j));
+                int code = faceEngine.compareFaceFeature(feature1, feature2, faceSimilar);
+                comparisons++;
+                if (code != ErrorInfo.MOK) {
+                    throw new FaceException("COMPARE_ERROR", "Face comparison failed: " + code);
+                }
+                if (faceSimilar.getScore() >= threshold) {
+                    degree[i]++;
+                    degree[j]++;
+                    union(parent, i, j);
+                }
+            }
+        }
+        FaceMetrics.record(FaceMetrics.Stage.COMPARE, start);
+        return collect(parent, degree, comparisons);
+    }
+
+    private static Result collect(int[] parent, int[] degree, int comparisons) {
+        int n = parent.length;
+        List<List<Integer>> groups = new ArrayList<>();
+        int[] groupOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            groupOf[i] = -1;
+        }
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            if (groupOf[root] < 0) {
+                groupOf[root] = groups.size();
+                groups.add(new ArrayList<Integer>());
+            }
+            groups.get(groupOf[root]).add(i);
+        }
+        // 成员按下标递增加入，同样大小的组按首个下标排列
+        Collections.sort(groups, new Comparator<List<Integer>>() {
+            @Override
+            public int compare(List<Integer> a, List<Integer> b) {
+                if (a.size() != b.size()) {
+                    return b.size() - a.size();
+                }
+                return a.get(0) - b.get(0);
+            }
+        });
+        List<int[]> clusters = new ArrayList<>(groups.size());
+        int[] representatives = new int[groups.size()];
+        for (int g = 0; g < groups.size(); g++) {
+            List<Integer> group = groups.get(g);
+            int[] members = new int[group.size()];
+            int representative = group.get(0);
+            for (int m = 0; m < members.length; m++) {
+                members[m] = group.get(m);
+                if (degree[members[m]] > degree[representative]) {
+                    representative = members[m];
+                }
+            }
+            clusters.add(members);
+            representatives[g] = representative;
+        }
+        return new Result(clusters, representatives, comparisons);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            // 较小的下标作为根，组的首个成员即最小下标
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
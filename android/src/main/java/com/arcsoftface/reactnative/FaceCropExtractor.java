@@ -0,0 +1,88 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Rect;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.enums.DetectModel;
+import com.arcsoft.face.enums.ExtractType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在缩小图上检测、在原图人脸区域上提取特征。
+ * 大图先缩小到检测分辨率找人脸，再回到原图只解码人脸附近的区域，
+ * 在该区域上重新检测（区域很小，开销低）取得与其像素对应的 FaceInfo 后提取特征。
+ */
+final class FaceCropExtractor {
+    private static final String TAG = "FaceCropExtractor";
+    // 人脸框每边外扩的比例（相对人脸框长边），为关键点定位保留上下文
+    private static final float MARGIN = 0.5f;
+
+    private FaceCropExtractor() {
+    }
+
+    /**
+     * 提取 image 中 faceInfo 对应人脸的特征，返回引擎错误码。
+     * image 未缩小时直接提取；区域解码失败或区域内未检测到人脸时退回在 image 上提取。
+     */
+    static int extract(FaceEngineApi faceEngine, Bgr24Image image, FaceInfo faceInfo, ExtractType extractType,
+                       FaceFeature faceFeature, int maxSize, ImageBufferPool pool) {
+        if (image.isDownscaled()) {
+            Bgr24Image crop = null;
+            try {
+                crop = Bgr24Image.decodeCrop(image.source, cropRegion(image, faceInfo.getRect()), maxSize, pool);
+            } catch (FaceException e) {
+                FaceLog.d(TAG, "Crop decode failed, extracting on downscaled image: " + e.getMessage());
+            }
+            if (crop != null) {
+                try {
+                    FaceInfo cropFace = detectCenterFace(faceEngine, crop);
+                    if (cropFace != null) {
+                        return faceEngine.extractFaceFeature(crop.data, crop.width, crop.height, FaceEngine.CP_PAF_BGR24,
+                                cropFace, extractType, 0, faceFeature);
+                    }
+                    FaceLog.d(TAG, "No face in crop, extracting on downscaled image");
+                } finally {
+                    crop.release();
+                }
+            }
+        }
+        return faceEngine.extractFaceFeature(image.data, image.width, image.height, FaceEngine.CP_PAF_BGR24,
+                faceInfo, extractType, 0, faceFeature);
+    }
+
+    // 人脸框换算到原图坐标后按 MARGIN 外扩，并限制在原图范围内
+    private static Rect cropRegion(Bgr24Image image, Rect faceRect) {
+        Rect face = image.toOriginal(faceRect);
+        int margin = Math.round(Math.max(face.width(), face.height()) * MARGIN);
+        return new Rect(Math.max(0, face.left - margin), Math.max(0, face.top - margin),
+                Math.min(image.source.width, face.right + margin), Math.min(image.source.height, face.bottom + margin));
+    }
+
+    // 区域按人脸居中裁剪，取中心离区域中心最近的人脸
+    private static FaceInfo detectCenterFace(FaceEngineApi faceEngine, Bgr24Image crop) {
+        List<FaceInfo> faceInfoList = new ArrayList<>();
+        long start = System.nanoTime();
+        int code = faceEngine.detectFaces(crop.data, crop.width, crop.height, FaceEngine.CP_PAF_BGR24, DetectModel.RGB, faceInfoList);
+        FaceMetrics.record(FaceMetrics.Stage.DETECT, start);
+        if (code != ErrorInfo.MOK) {
+            return null;
+        }
+        FaceInfo best = null;
+        long bestDistance = Long.MAX_VALUE;
+        for (FaceInfo faceInfo : faceInfoList) {
+            long dx = faceInfo.getRect().centerX() - crop.width / 2;
+            long dy = faceInfo.getRect().centerY() - crop.height / 2;
+            long distance = dx * dx + dy * dy;
+            if (distance < bestDistance) {
+                best = faceInfo;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+}
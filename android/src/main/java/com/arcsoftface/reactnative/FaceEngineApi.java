@@ -0,0 +1,56 @@
+package com.arcsoftface.reactnative;
+
+import android.content.Context;
+
+import com.arcsoft.face.AgeInfo;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.FaceSimilar;
+import com.arcsoft.face.GenderInfo;
+import com.arcsoft.face.LivenessInfo;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+import com.arcsoft.face.enums.DetectModel;
+import com.arcsoft.face.enums.ExtractType;
+
+import java.util.List;
+
+/**
+ * 模块使用的引擎接口，方法与 com.arcsoft.face.FaceEngine 的同名方法一致，返回 ErrorInfo 错误码。
+ * 与 FaceEngine 一样，一个实例同一时刻只能被一个线程使用。
+ * ArcSoftEngine 为虹软引擎实现；SimulatedEngine 为不依赖 native 库的模拟实现。
+ */
+interface FaceEngineApi {
+    interface Factory {
+        FaceEngineApi create();
+    }
+
+    // 虹软引擎；ArcSoftEngine 在首次创建时才加载 native 库
+    Factory ARCSOFT = new Factory() {
+        @Override
+        public FaceEngineApi create() {
+            return new ArcSoftEngine();
+        }
+    };
+
+    int init(Context context, DetectMode detectMode, DetectFaceOrientPriority orientPriority, int maxFaceNum, int mask);
+
+    int unInit();
+
+    int detectFaces(byte[] data, int width, int height, int format, List<FaceInfo> faceInfoList);
+
+    int detectFaces(byte[] data, int width, int height, int format, DetectModel detectModel, List<FaceInfo> faceInfoList);
+
+    int process(byte[] data, int width, int height, int format, List<FaceInfo> faceInfoList, int mask);
+
+    int getAge(List<AgeInfo> ageInfoList);
+
+    int getGender(List<GenderInfo> genderInfoList);
+
+    int getLiveness(List<LivenessInfo> livenessInfoList);
+
+    int extractFaceFeature(byte[] data, int width, int height, int format, FaceInfo faceInfo, ExtractType extractType,
+                           int mask, FaceFeature feature);
+
+    int compareFaceFeature(FaceFeature feature1, FaceFeature feature2, FaceSimilar faceSimilar);
+}
@@ -0,0 +1,467 @@
+package com.arcsoftface.reactnative;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+import com.facebook.react.bridge.Promise;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多个独立初始化的引擎（FaceEngineApi）组成的引擎池，每个引擎有一个专用工作线程。
+ * 每个引擎同一时刻只会被一个任务持有，满足 FaceEngine 的单线程使用约束；
+ * 任务按优先级分类排队，同一优先级内按提交顺序执行。引擎空闲时总是先取高优先级的任务，
+ * 因此后台批量任务只在任务边界让出引擎，不会让交互调用排在整批任务之后；
+ * 池中有多个引擎时可为交互调用保留一个引擎，后台任务最多占用其余引擎。
+ */
+class FaceEnginePool {
+    private static final String TAG = "FaceEnginePool";
+
+    // 比对、检索等耗时很短的调用
+    static final int PRIORITY_HIGH = 0;
+    // 单张图片的交互调用
+    static final int PRIORITY_NORMAL = 1;
+    // 批量任务
+    static final int PRIORITY_BACKGROUND = 2;
+    private static final int PRIORITY_COUNT = 3;
+
+    static class EngineConfig {
+        final DetectMode detectMode;
+        final DetectFaceOrientPriority orientPriority;
+        final int maxFaceNum;
+        final int mask;
+
+        EngineConfig(DetectMode detectMode, DetectFaceOrientPriority orientPriority, int maxFaceNum, int mask) {
+            this.detectMode = detectMode;
+            this.orientPriority = orientPriority;
+            this.maxFaceNum = maxFaceNum;
+            this.mask = mask;
+        }
+    }
+
+    interface Task {
+        void run(FaceEngineApi faceEngine) throws Exception;
+    }
+
+    interface ErrorHandler {
+        void onError(String code, String message);
+    }
+
+    /**
+     * 已提交的任务，可在开始执行前通过 cancel 取消。
+     */
+    static final class Job {
+        final int requiredMask;
+        final int priority;
+        // 任务所属对象（如批量任务），用于整体取消
+        final Object owner;
+        final String errorCode;
+        final Task task;
+        final ErrorHandler handler;
+        final long submittedAt = System.nanoTime();
+
+        Job(int requiredMask, int priority, Object owner, String errorCode, Task task, ErrorHandler handler) {
+            this.requiredMask = requiredMask;
+            this.priority = priority;
+            this.owner = owner;
+            this.errorCode = errorCode;
+            this.task = task;
+            this.handler = handler;
+        }
+    }
+
+    private static class Entry {
+        final FaceEngineApi engine;
+        final EngineConfig config;
+        boolean busy;
+        // 关闭时仍被占用，由归还引擎的线程反初始化
+        boolean unInitOnRelease;
+
+        Entry(FaceEngineApi engine, EngineConfig config) {
+            this.engine = engine;
+            this.config = config;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final List<ArrayDeque<Job>> queues = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // 有新任务或引擎被释放时通知
+    private final Condition changed = lock.newCondition();
+    private final boolean reserveInteractive;
+    private final FaceEngineApi.Factory engineFactory;
+    private int maxBackground;
+    private int backgroundRunning;
+    private int queuedCount;
+    // 被工作线程或 tryRun 占用的引擎数
+    private int busyCount;
+    private boolean closed;
+
+    FaceEnginePool() {
+        this(true, FaceEngineApi.ARCSOFT);
+    }
+
+    /**
+     * @param reserveInteractive 有多个引擎时是否为交互调用保留一个引擎
+     * @param engineFactory      创建池中引擎，默认为虹软引擎
+     */
+    FaceEnginePool(boolean reserveInteractive, FaceEngineApi.Factory engineFactory) {
+        this.reserveInteractive = reserveInteractive;
+        this.engineFactory = engineFactory;
+        for (int i = 0; i < PRIORITY_COUNT; i++) {
+            queues.add(new ArrayDeque<Job>());
+        }
+    }
+
+    /**
+     * 按配置依次初始化引擎，任一失败时释放已创建的引擎并返回错误码。
+     */
+    int init(Context context, List<EngineConfig> configs) {
+        for (EngineConfig config : configs) {
+            FaceEngineApi engine = engineFactory.create();
+            int code = engine.init(context, config.detectMode, config.orientPriority, config.maxFaceNum, config.mask);
+            if (code != ErrorInfo.MOK) {
+                Log.e(TAG, "Engine " + entries.size() + " init failed: " + code);
+                unInitAll();
+                return code;
+            }
+            entries.add(new Entry(engine, config));
+        }
+        maxBackground = reserveInteractive && entries.size() > 1 ? entries.size() - 1 : entries.size();
+
+        for (int i = 0; i < entries.size(); i++) {
+            final Entry entry = entries.get(i);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    workLoop(entry);
+                }
+            }, "ArcsoftFaceEngine-" + (i + 1));
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            workers.add(thread);
+            thread.start();
+        }
+        Log.d(TAG, "Engine pool initialized with " + entries.size() + " engines");
+        return ErrorInfo.MOK;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    boolean supports(int mask) {
+        for (Entry entry : entries) {
+            if ((entry.config.mask & mask) == mask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在引擎线程中执行任务。任务运行期间独占一个支持 requiredMask 的引擎，
+     * 任务抛出 FaceException 时以其错误码拒绝 promise，其余异常使用 errorCode。
+     */
+    void execute(int requiredMask, final Promise promise, String errorCode, Task task) {
+        execute(requiredMask, PRIORITY_NORMAL, null, errorCode, task, new ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                promise.reject(code, message);
+            }
+        });
+    }
+
+    /**
+     * 同上，错误交给 handler 处理，供不直接对应单个 promise 的调用方（如批量任务）使用。
+     */
+    void execute(int requiredMask, String errorCode, Task task, ErrorHandler handler) {
+        execute(requiredMask, PRIORITY_NORMAL, null, errorCode, task, handler);
+    }
+
+    /**
+     * 以指定优先级提交任务，返回的 Job 可用于取消；无法提交时直接回调 handler 并返回 null。
+     */
+    Job execute(int requiredMask, int priority, Object owner, String errorCode, Task task, ErrorHandler handler) {
+        if (!supports(requiredMask)) {
+            handler.onError("UNSUPPORTED", "No engine in pool initialized with mask: " + requiredMask);
+            return null;
+        }
+        Job job = new Job(requiredMask, Math.max(PRIORITY_HIGH, Math.min(PRIORITY_BACKGROUND, priority)), owner, errorCode, task, handler);
+        lock.lock();
+        try {
+            if (!closed) {
+                queues.get(job.priority).addLast(job);
+                queuedCount++;
+                changed.signalAll();
+                return job;
+            }
+        } finally {
+            lock.unlock();
+        }
+        handler.onError("ENGINE_NOT_INIT", "Face engine pool has been shut down");
+        return null;
+    }
+
+    /**
+     * 取消尚未开始执行的任务，成功时以 CANCELLED 回调其 handler；任务已在执行或已完成时返回 false。
+     */
+    boolean cancel(Job job) {
+        if (job == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (!queues.get(job.priority).remove(job)) {
+                return false;
+            }
+            queuedCount--;
+        } finally {
+            lock.unlock();
+        }
+        job.handler.onError("CANCELLED", "Request cancelled");
+        return true;
+    }
+
+    /**
+     * 取消 owner 所有尚未开始执行的任务，返回取消的数量。
+     */
+    int cancelAll(Object owner) {
+        List<Job> cancelled = new ArrayList<>();
+        lock.lock();
+        try {
+            for (ArrayDeque<Job> queue : queues) {
+                Iterator<Job> iterator = queue.iterator();
+                while (iterator.hasNext()) {
+                    Job job = iterator.next();
+                    if (job.owner == owner) {
+                        iterator.remove();
+                        cancelled.add(job);
+                    }
+                }
+            }
+            queuedCount -= cancelled.size();
+        } finally {
+            lock.unlock();
+        }
+        for (Job job : cancelled) {
+            job.handler.onError("CANCELLED", "Request cancelled");
+        }
+        return cancelled.size();
+    }
+
+    int getQueuedCount() {
+        lock.lock();
+        try {
+            return queuedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在调用线程中立即执行任务，供同步方法使用：只取当前空闲的引擎，不排队等待；
+     * 没有空闲引擎时返回 false，由调用方改走异步路径。
+     */
+    boolean tryRun(int requiredMask, Task task) throws Exception {
+        Entry entry = tryAcquire(requiredMask);
+        if (entry == null) {
+            return false;
+        }
+        try {
+            task.run(entry.engine);
+            return true;
+        } finally {
+            release(entry, false);
+        }
+    }
+
+    /**
+     * 停止接收新任务，等待已排队和进行中的任务（包括 tryRun 占用的引擎）结束后反初始化所有引擎，
+     * 返回第一个失败的错误码。会阻塞调用线程，不应在模块线程中调用。
+     * 超时后仍被占用的引擎不在这里反初始化，由任务结束归还引擎时反初始化，避免释放正在使用的引擎。
+     */
+    int shutdown() {
+        return shutdown(TimeUnit.SECONDS.toNanos(10));
+    }
+
+    int shutdown(long timeoutNanos) {
+        List<Job> remaining = new ArrayList<>();
+        List<Entry> idle = new ArrayList<>();
+        lock.lock();
+        try {
+            if (closed) {
+                return ErrorInfo.MOK;
+            }
+            closed = true;
+            changed.signalAll();
+            // 工作线程退出前会取完队列，等待队列清空且没有引擎被占用
+            long nanos = timeoutNanos;
+            try {
+                while ((busyCount > 0 || queuedCount > 0) && nanos > 0) {
+                    nanos = changed.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            // 没有可用引擎执行的剩余任务
+            for (ArrayDeque<Job> queue : queues) {
+                remaining.addAll(queue);
+                queue.clear();
+            }
+            queuedCount = 0;
+            for (Entry entry : entries) {
+                if (entry.busy) {
+                    entry.unInitOnRelease = true;
+                } else {
+                    idle.add(entry);
+                }
+            }
+            if (idle.size() < entries.size()) {
+                Log.w(TAG, (entries.size() - idle.size()) + " engines still busy after shutdown timeout, uninit deferred");
+            }
+        } finally {
+            lock.unlock();
+        }
+        // 空闲的工作线程已被 closed 唤醒并退出，仍在执行任务的线程归还引擎后退出
+        workers.clear();
+        for (Job job : remaining) {
+            job.handler.onError("ENGINE_NOT_INIT", "Face engine pool has been shut down");
+        }
+        return unInit(idle);
+    }
+
+    private void workLoop(Entry entry) {
+        while (true) {
+            Job job;
+            lock.lock();
+            try {
+                while (true) {
+                    job = entry.busy ? null : poll(entry);
+                    if (job != null) {
+                        entry.busy = true;
+                        busyCount++;
+                        if (job.priority == PRIORITY_BACKGROUND) {
+                            backgroundRunning++;
+                        }
+                        break;
+                    }
+                    if (closed && !entry.busy) {
+                        return;
+                    }
+                    changed.await();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            run(entry, job);
+        }
+    }
+
+    // 调用方需持有 lock；按优先级取第一个该引擎能执行的任务，后台任务受 maxBackground 限制
+    private Job poll(Entry entry) {
+        for (int priority = PRIORITY_HIGH; priority < PRIORITY_COUNT; priority++) {
+            if (priority == PRIORITY_BACKGROUND && backgroundRunning >= maxBackground) {
+                break;
+            }
+            Iterator<Job> iterator = queues.get(priority).iterator();
+            while (iterator.hasNext()) {
+                Job job = iterator.next();
+                if ((entry.config.mask & job.requiredMask) == job.requiredMask) {
+                    iterator.remove();
+                    queuedCount--;
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void run(Entry entry, Job job) {
+        try {
+            // 从提交到拿到引擎的等待时间，持续偏高说明引擎池偏小
+            FaceMetrics.record(FaceMetrics.Stage.QUEUE_WAIT, job.submittedAt);
+            job.task.run(entry.engine);
+        } catch (FaceException e) {
+            FaceMetrics.increment("errors." + e.code);
+            job.handler.onError(e.code, e.getMessage());
+        } catch (Exception e) {
+            Log.e(TAG, "Engine task error", e);
+            FaceMetrics.increment("errors." + job.errorCode);
+            job.handler.onError(job.errorCode, e.getMessage());
+        } finally {
+            release(entry, job.priority == PRIORITY_BACKGROUND);
+        }
+    }
+
+    private Entry tryAcquire(int requiredMask) {
+        lock.lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            for (Entry entry : entries) {
+                if (!entry.busy && (entry.config.mask & requiredMask) == requiredMask) {
+                    entry.busy = true;
+                    busyCount++;
+                    return entry;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Entry entry, boolean background) {
+        boolean unInit;
+        lock.lock();
+        try {
+            entry.busy = false;
+            busyCount--;
+            if (background) {
+                backgroundRunning--;
+            }
+            unInit = entry.unInitOnRelease;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (unInit) {
+            int code = entry.engine.unInit();
+            if (code != ErrorInfo.MOK) {
+                Log.e(TAG, "Deferred engine uninit failed: " + code);
+            }
+        }
+    }
+
+    private int unInitAll() {
+        int result = unInit(entries);
+        entries.clear();
+        return result;
+    }
+
+    private static int unInit(List<Entry> list) {
+        int result = ErrorInfo.MOK;
+        for (Entry entry : list) {
+            int code = entry.engine.unInit();
+            if (code != ErrorInfo.MOK && result == ErrorInfo.MOK) {
+                result = code;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,13 @@
+package com.arcsoftface.reactnative;
+
+/**
+ * 携带 JS 侧错误码的异常，由调用方转换为 promise.reject(code, message)。
+ */
+class FaceException extends Exception {
+    final String code;
+
+    FaceException(String code, String message) {
+        super(message);
+        this.code = code;
+    }
+}
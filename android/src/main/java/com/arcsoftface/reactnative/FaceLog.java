@@ -0,0 +1,55 @@
+package com.arcsoftface.reactnative;
+
+import android.util.Log;
+
+/**
+ * 带级别开关的日志，热路径（逐次调用、逐帧）上的日志统一经由这里输出，默认只输出警告及以上。
+ */
+final class FaceLog {
+    static final int DEBUG = 0;
+    static final int INFO = 1;
+    static final int WARN = 2;
+    static final int ERROR = 3;
+    static final int NONE = 4;
+
+    private static volatile int level = WARN;
+
+    private FaceLog() {
+    }
+
+    static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+
+    static int parseLevel(String name) {
+        if ("debug".equals(name)) {
+            return DEBUG;
+        }
+        if ("info".equals(name)) {
+            return INFO;
+        }
+        if ("error".equals(name)) {
+            return ERROR;
+        }
+        if ("none".equals(name)) {
+            return NONE;
+        }
+        return WARN;
+    }
+
+    static boolean isDebug() {
+        return level <= DEBUG;
+    }
+
+    static void d(String tag, String message) {
+        if (level <= DEBUG) {
+            Log.d(tag, message);
+        }
+    }
+
+    static void w(String tag, String message) {
+        if (level <= WARN) {
+            Log.w(tag, message);
+        }
+    }
+}
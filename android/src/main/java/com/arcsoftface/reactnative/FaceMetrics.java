@@ -0,0 +1,130 @@
+package com.arcsoftface.reactnative;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的分阶段耗时与计数统计。
+ * 各阶段（解码、对齐、转换、检测、process、特征提取、比对、检索、结果封装、引擎排队）
+ * 以及每个 JS 方法的总耗时分别记入独立的 LatencyHistogram，记录开销为几次原子操作。
+ */
+final class FaceMetrics {
+    enum Stage {
+        DECODE("decode"),
+        ALIGN("align"),
+        CONVERT("convert"),
+        DETECT("detect"),
+        PROCESS("process"),
+        EXTRACT("extract"),
+        COMPARE("compare"),
+        SEARCH("search"),
+        MARSHAL("marshal"),
+        QUEUE_WAIT("queueWait"),
+        FRAME("frame");
+
+        final String key;
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Stage(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, LatencyHistogram> METHODS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+    private static volatile long windowStart = SystemClock.elapsedRealtime();
+
+    private FaceMetrics() {
+    }
+
+    /**
+     * 记录一个阶段的耗时，start 为 System.nanoTime() 取得的开始时间。
+     */
+    static void record(Stage stage, long start) {
+        stage.histogram.recordNanos(System.nanoTime() - start);
+    }
+
+    static void recordMethod(String method, long start) {
+        long nanos = System.nanoTime() - start;
+        LatencyHistogram histogram = METHODS.get(method);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = METHODS.putIfAbsent(method, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        histogram.recordNanos(nanos);
+    }
+
+    static void increment(String counter) {
+        AtomicLong value = COUNTERS.get(counter);
+        if (value == null) {
+            AtomicLong created = new AtomicLong();
+            value = COUNTERS.putIfAbsent(counter, created);
+            if (value == null) {
+                value = created;
+            }
+        }
+        value.incrementAndGet();
+    }
+
+    static void reset() {
+        for (Stage stage : Stage.values()) {
+            stage.histogram.reset();
+        }
+        for (LatencyHistogram histogram : METHODS.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong value : COUNTERS.values()) {
+            value.set(0);
+        }
+        windowStart = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * 导出统计快照；耗时单位为毫秒，未发生过的阶段不输出。
+     */
+    static WritableMap snapshot() {
+        WritableMap stages = Arguments.createMap();
+        for (Stage stage : Stage.values()) {
+            if (stage.histogram.getCount() > 0) {
+                stages.putMap(stage.key, toMap(stage.histogram));
+            }
+        }
+        WritableMap methods = Arguments.createMap();
+        for (Map.Entry<String, LatencyHistogram> entry : METHODS.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                methods.putMap(entry.getKey(), toMap(entry.getValue()));
+            }
+        }
+        WritableMap counters = Arguments.createMap();
+        for (Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet()) {
+            counters.putDouble(entry.getKey(), entry.getValue().get());
+        }
+
+        WritableMap metrics = Arguments.createMap();
+        metrics.putDouble("window", SystemClock.elapsedRealtime() - windowStart);
+        metrics.putMap("stages", stages);
+        metrics.putMap("methods", methods);
+        metrics.putMap("counters", counters);
+        return metrics;
+    }
+
+    private static WritableMap toMap(LatencyHistogram histogram) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("count", histogram.getCount());
+        map.putDouble("mean", histogram.getMeanMicros() / 1000.0);
+        map.putDouble("p50", histogram.getPercentileMicros(50) / 1000.0);
+        map.putDouble("p90", histogram.getPercentileMicros(90) / 1000.0);
+        map.putDouble("p99", histogram.getPercentileMicros(99) / 1000.0);
+        map.putDouble("max", histogram.getMaxMicros() / 1000.0);
+        return map;
+    }
+}
@@ -0,0 +1,216 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Rect;
+
+import com.arcsoft.face.Face3DAngle;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceInfo;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * 特征提取前的人脸质量门限：人脸尺寸、3D 角度、清晰度与亮度，不合格的人脸跳过提取与检索。
+ * 清晰度为人脸区域亮度的拉普拉斯响应方差，亮度为区域平均亮度（0 ~ 255），
+ * 均在检测所用的图像上按不超过 SAMPLE_GRID x SAMPLE_GRID 的网格采样计算，单个人脸耗时远低于一次特征提取。
+ * 门限为 0 时不检查该项。实例不可变，可在多个线程间共享。
+ */
+final class FaceQuality {
+    static final String FACE_TOO_SMALL = "FACE_TOO_SMALL";
+    static final String POSE_TOO_LARGE = "POSE_TOO_LARGE";
+    static final String TOO_DARK = "TOO_DARK";
+    static final String TOO_BRIGHT = "TOO_BRIGHT";
+    static final String BLURRY = "BLURRY";
+
+    private static final int SAMPLE_GRID = 64;
+    // 清晰度达到该值时综合分中的清晰度因子为 0.5
+    private static final float SHARPNESS_KNEE = 100;
+
+    // 不检查任何项，只计算分数
+    static final FaceQuality NONE = new FaceQuality(0, 0, 0, 0, 0, 0, 0);
+    static final FaceQuality DEFAULT = new FaceQuality(64, 30, 30, 45, 20, 40, 220);
+
+    final int minFaceSize;
+    final float maxYaw;
+    final float maxPitch;
+    final float maxRoll;
+    final float minSharpness;
+    final float minBrightness;
+    final float maxBrightness;
+
+    static final class Score {
+        // 换算到原图的人脸框短边（像素）
+        int faceSize;
+        float yaw;
+        float pitch;
+        float roll;
+        float sharpness;
+        float brightness;
+        // 综合分：按角度折算的等效正脸尺寸乘以清晰度因子，只用于在多帧之间挑选最佳帧
+        float score;
+        // 未通过时为第一个不满足的门限，通过时为 null
+        String reason;
+        String detail;
+
+        boolean passed() {
+            return reason == null;
+        }
+
+        WritableMap toMap() {
+            WritableMap map = Arguments.createMap();
+            map.putInt("faceSize", faceSize);
+            map.putDouble("yaw", yaw);
+            map.putDouble("pitch", pitch);
+            map.putDouble("roll", roll);
+            map.putDouble("sharpness", sharpness);
+            map.putDouble("brightness", brightness);
+            map.putDouble("score", score);
+            if (reason != null) {
+                map.putString("reason", reason);
+            }
+            return map;
+        }
+    }
+
+    FaceQuality(int minFaceSize, float maxYaw, float maxPitch, float maxRoll, float minSharpness,
+                float minBrightness, float maxBrightness) {
+        this.minFaceSize = minFaceSize;
+        this.maxYaw = maxYaw;
+        this.maxPitch = maxPitch;
+        this.maxRoll = maxRoll;
+        this.minSharpness = minSharpness;
+        this.minBrightness = minBrightness;
+        this.maxBrightness = maxBrightness;
+    }
+
+    /**
+     * 从 JS 传入的门限构造，未指定的项取默认值；map 为 null 时返回 null（不启用门限）。
+     */
+    static FaceQuality fromMap(ReadableMap map) {
+        if (map == null) {
+            return null;
+        }
+        return new FaceQuality((int) number(map, "minFaceSize", DEFAULT.minFaceSize), number(map, "maxYaw", DEFAULT.maxYaw),
+                number(map, "maxPitch", DEFAULT.maxPitch), number(map, "maxRoll", DEFAULT.maxRoll),
+                number(map, "minSharpness", DEFAULT.minSharpness), number(map, "minBrightness", DEFAULT.minBrightness),
+                number(map, "maxBrightness", DEFAULT.maxBrightness));
+    }
+
+    WritableMap toMap() {
+        WritableMap map = Arguments.createMap();
+        map.putInt("minFaceSize", minFaceSize);
+        map.putDouble("maxYaw", maxYaw);
+        map.putDouble("maxPitch", maxPitch);
+        map.putDouble("maxRoll", maxRoll);
+        map.putDouble("minSharpness", minSharpness);
+        map.putDouble("minBrightness", minBrightness);
+        map.putDouble("maxBrightness", maxBrightness);
+        return map;
+    }
+
+    /**
+     * 评估 image 中的人脸，人脸尺寸按原图计算。
+     */
+    Score evaluate(Bgr24Image image, FaceInfo faceInfo) {
+        Rect original = image.toOriginal(faceInfo.getRect());
+        return evaluate(image.data, image.width, image.height, FaceEngine.CP_PAF_BGR24, faceInfo,
+                Math.min(original.width(), original.height()));
+    }
+
+    /**
+     * 评估一帧中的人脸，format 为 CP_PAF_BGR24 或 CP_PAF_NV21，faceSize 为换算到原图的人脸框短边。
+     */
+    Score evaluate(byte[] data, int width, int height, int format, FaceInfo faceInfo, int faceSize) {
+        Score score = new Score();
+        score.faceSize = faceSize;
+        Face3DAngle angle = faceInfo.getFace3DAngle();
+        if (angle != null) {
+            score.yaw = angle.getYaw();
+            score.pitch = angle.getPitch();
+            score.roll = angle.getRoll();
+        }
+        boolean sampled = measure(data, width, height, format == FaceEngine.CP_PAF_NV21, faceInfo.getRect(), score);
+        float factor = (float) (Math.cos(Math.toRadians(Math.min(90, Math.abs(score.yaw))))
+                * Math.cos(Math.toRadians(Math.min(90, Math.abs(score.pitch)))));
+        score.score = faceSize * factor * score.sharpness / (score.sharpness + SHARPNESS_KNEE);
+
+        if (minFaceSize > 0 && faceSize < minFaceSize) {
+            reject(score, FACE_TOO_SMALL, "face size " + faceSize + " < " + minFaceSize);
+        } else if (maxYaw > 0 && Math.abs(score.yaw) > maxYaw) {
+            reject(score, POSE_TOO_LARGE, "yaw " + score.yaw + " > " + maxYaw);
+        } else if (maxPitch > 0 && Math.abs(score.pitch) > maxPitch) {
+            reject(score, POSE_TOO_LARGE, "pitch " + score.pitch + " > " + maxPitch);
+        } else if (maxRoll > 0 && Math.abs(score.roll) > maxRoll) {
+            reject(score, POSE_TOO_LARGE, "roll " + score.roll + " > " + maxRoll);
+        } else if (!sampled && (minBrightness > 0 || maxBrightness > 0 || minSharpness > 0)) {
+            // 人脸框在检测图像上不足以采样，亮度与清晰度为 0，不能据此判为过暗或模糊
+            Rect rect = faceInfo.getRect();
+            reject(score, FACE_TOO_SMALL, "face region " + rect.width() + "x" + rect.height() + " too small to sample");
+        } else if (minBrightness > 0 && score.brightness < minBrightness) {
+            reject(score, TOO_DARK, "brightness " + score.brightness + " < " + minBrightness);
+        } else if (maxBrightness > 0 && score.brightness > maxBrightness) {
+            reject(score, TOO_BRIGHT, "brightness " + score.brightness + " > " + maxBrightness);
+        } else if (minSharpness > 0 && score.sharpness < minSharpness) {
+            reject(score, BLURRY, "sharpness " + score.sharpness + " < " + minSharpness);
+        }
+        return score;
+    }
+
+    /**
+     * 未通过时的异常，错误码为 LOW_QUALITY，消息以原因开头，如 "BLURRY: sharpness 12.5 < 20.0"。
+     */
+    static FaceException toException(Score score) {
+        return new FaceException("LOW_QUALITY", score.reason + ": " + score.detail);
+    }
+
+    private static void reject(Score score, String reason, String detail) {
+        score.reason = reason;
+        score.detail = detail;
+    }
+
+    // 在人脸框内按网格采样亮度，计算平均亮度与拉普拉斯响应方差；框内没有可采样的点时返回 false
+    private static boolean measure(byte[] data, int width, int height, boolean nv21, Rect rect, Score score) {
+        int left = Math.max(0, rect.left);
+        int top = Math.max(0, rect.top);
+        int right = Math.min(width, rect.right);
+        int bottom = Math.min(height, rect.bottom);
+        int step = Math.max(1, Math.max(right - left, bottom - top) / SAMPLE_GRID);
+        long lumaSum = 0;
+        double sum = 0;
+        double squareSum = 0;
+        int count = 0;
+        for (int y = top + step; y < bottom - step; y += step) {
+            for (int x = left + step; x < right - step; x += step) {
+                int center = luma(data, width, nv21, x, y);
+                int laplacian = 4 * center - luma(data, width, nv21, x - step, y) - luma(data, width, nv21, x + step, y)
+                        - luma(data, width, nv21, x, y - step) - luma(data, width, nv21, x, y + step);
+                lumaSum += center;
+                sum += laplacian;
+                squareSum += (double) laplacian * laplacian;
+                count++;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        double mean = sum / count;
+        score.brightness = (float) lumaSum / count;
+        score.sharpness = (float) (squareSum / count - mean * mean);
+        return true;
+    }
+
+    private static int luma(byte[] data, int width, boolean nv21, int x, int y) {
+        if (nv21) {
+            return data[y * width + x] & 0xFF;
+        }
+        int offset = (y * width + x) * 3;
+        int b = data[offset] & 0xFF;
+        int g = data[offset + 1] & 0xFF;
+        int r = data[offset + 2] & 0xFF;
+        return (29 * b + 150 * g + 77 * r) >> 8;
+    }
+
+    private static float number(ReadableMap map, String key, float fallback) {
+        return map.hasKey(key) && !map.isNull(key) ? (float) map.getDouble(key) : fallback;
+    }
+}
@@ -0,0 +1,1020 @@
+package com.arcsoftface.reactnative;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceSimilar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 1:N 人脸特征库。
+ * 特征在注册时解码一次，按固定长度依次存放在连续的 byte[] 中，
+ * 检索时在 Java 侧逐条比对并保留 Top-K，只需一次桥接调用即可返回结果。
+ * 特征库划分为若干分片，每个分片有独立的读写锁：注册与删除只短暂锁住一个分片，不阻塞其他分片上的检索；
+ * 有 SearchEngines 时各分片以 fork-join 在多个引擎上并行打分，再合并各分片的 Top-K。
+ * 库较大时可构建 IvfIndex 近似索引，检索只对索引粗排出的候选调用 compareFaceFeature。
+ * 内存受限时可切换为紧凑编码：内存中只保留 int8 量化向量，以近似余弦筛选候选，
+ * 精确重排时通过 FeatureReader（持久化特征库）读取全精度特征。
+ * 索引与紧凑编码的候选筛选依赖 FeatureVectors 对特征的解析，首次近似检索前以调用方的引擎确认解析与引擎分数相符，
+ * 不相符时这两条路径都不再使用，检索退回由引擎逐条打分。
+ * 增量同步等成组的修改通过 applyAtomically 提交，检索不会看到只生效了一部分的修改。
+ */
+class FeatureGallery {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_SHARDS = 8;
+    // 最大与最小分片的记录数相差超过 max(REBALANCE_SLACK, 平均分片大小 / REBALANCE_RATIO) 时，
+    // 删除后从最大分片移动一条记录到最小分片；容差随库增大，大库删除时不必频繁移动
+    private static final int REBALANCE_SLACK = 16;
+    private static final int REBALANCE_RATIO = 32;
+    // 检索期间发生分片间移动时重试的次数
+    private static final int MAX_SEARCH_RETRIES = 3;
+    // 确认特征解析时抽取的特征数
+    private static final int LAYOUT_SAMPLES = 64;
+    static final int DEFAULT_COMPACT_RERANK = 64;
+
+    private final int featureSize;
+    private final int dimension;
+    private final Shard[] shards;
+    private final ConcurrentHashMap<String, Shard> shardById = new ConcurrentHashMap<>();
+    // 注册、删除、清空及索引的构建、恢复与保存互相串行，检索不获取该锁
+    private final Object writeLock = new Object();
+    // 检索持有读锁，applyAtomically 持有写锁：一组修改进行期间开始的检索等待其完成，检索不会看到修改了一半的库
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    // 写线程量化时复用，只在持有 writeLock 时使用
+    private final float[] scratch;
+
+    private volatile int count;
+    // 每次修改库内容时递增，供缓存检索结果的调用方判断结果是否过期
+    private volatile long version;
+    // 分片间移动记录的次数。检索跨越一次移动时记录可能在两个分片中都未被扫描到，此时重新检索
+    private volatile long moveCount;
+    // 近似索引，为 null 时总是逐条精确比对；库大小低于 indexMinSize 时也不使用索引
+    private volatile IvfIndex index;
+    private volatile int indexMinSize;
+    private volatile SearchEngines searchEngines;
+    private ForkJoinPool searchPool;
+    // 紧凑编码：内存中只保留 int8 向量，精确重排时由 reader 读取全精度特征
+    private volatile boolean compactMode;
+    private volatile FeatureReader reader;
+    private volatile int compactRerank = DEFAULT_COMPACT_RERANK;
+    // FeatureVectors.checkLayout 的结果，库内特征足够时在首次近似检索前确认，之后不再变化
+    private volatile int layout = FeatureVectors.LAYOUT_UNKNOWN;
+    private final Object layoutLock = new Object();
+
+    // applyAtomically 中执行的一组修改
+    interface Batch {
+        void apply() throws IOException, FaceException;
+    }
+
+    /**
+     * 按 id 读取全精度特征，id 不存在时返回 false。
+     */
+    interface FeatureReader {
+        boolean read(String id, byte[] out);
+    }
+
+    static class Match {
+        final String id;
+        final float score;
+
+        Match(String id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    private static final Comparator<Match> BY_SCORE_DESCENDING = new Comparator<Match>() {
+        @Override
+        public int compare(Match a, Match b) {
+            return Float.compare(b.score, a.score);
+        }
+    };
+
+    /**
+     * 一个分片：连续存放的特征（全精度或 int8 编码）、id 与可选的索引分簇信息。
+     * 修改在分片写锁内进行，读取在读锁内进行。
+     */
+    private final class Shard {
+        final int number;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final HashMap<String, Integer> slotById = new HashMap<>();
+        byte[] features = new byte[INITIAL_CAPACITY * featureSize];
+        // features 的 float 视图，供近似索引读取向量，扩容时重建
+        FloatBuffer vectors = FeatureVectors.wrap(features);
+        // 紧凑编码时 features 为 null，每个槽位占 dimension 字节的 codes 与一个还原系数
+        boolean compact;
+        byte[] codes;
+        float[] factors;
+        // 切换编码时暂存的新存储
+        private byte[] pendingFeatures;
+        private byte[] pendingCodes;
+        private float[] pendingFactors;
+        String[] ids = new String[INITIAL_CAPACITY];
+        int count;
+        IvfIndex.Lists lists;
+
+        final FeatureVectors.Source source = new FeatureVectors.Source() {
+            @Override
+            public float read(int slot, float[] out) {
+                if (!compact) {
+                    return FeatureVectors.read(vectors, FeatureVectors.offset(featureSize, slot), out);
+                }
+                float factor = factors[slot];
+                int offset = slot * dimension;
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = codes[offset + i] * factor;
+                }
+                return 1;
+            }
+
+            @Override
+            public float norm(int slot) {
+                return compact ? 1 : FeatureVectors.norm(vectors, FeatureVectors.offset(featureSize, slot), dimension);
+            }
+
+            @Override
+            public float dot(int slot, float[] probe) {
+                return compact ? factors[slot] * FeatureVectors.dot(codes, slot * dimension, probe)
+                        : FeatureVectors.dot(vectors, FeatureVectors.offset(featureSize, slot), probe);
+            }
+        };
+
+        Shard(int number) {
+            this.number = number;
+        }
+
+        /**
+         * 写入全精度特征，id 已存在时覆盖；scratch 为写线程复用的量化缓冲区。
+         */
+        void put(String id, byte[] featureData, float[] scratch) {
+            int slot = allocate(id);
+            if (compact) {
+                factors[slot] = FeatureVectors.quantize(featureData, 0, codes, slot * dimension, scratch);
+            } else {
+                System.arraycopy(featureData, 0, features, slot * featureSize, featureSize);
+            }
+            if (lists != null) {
+                lists.assign(slot, source);
+            }
+        }
+
+        /**
+         * 从另一个分片复制一条记录（分片间移动），list 为其所属簇，-1 表示重新计算。
+         */
+        void putFrom(Shard src, int srcSlot, String id, int list) {
+            int slot = allocate(id);
+            if (compact) {
+                System.arraycopy(src.codes, srcSlot * dimension, codes, slot * dimension, dimension);
+                factors[slot] = src.factors[srcSlot];
+            } else {
+                System.arraycopy(src.features, srcSlot * featureSize, features, slot * featureSize, featureSize);
+            }
+            if (lists != null) {
+                if (list >= 0) {
+                    lists.assign(slot, source, list);
+                } else {
+                    lists.assign(slot, source);
+                }
+            }
+        }
+
+        void remove(String id) {
+            Integer slot = slotById.remove(id);
+            if (slot == null) {
+                return;
+            }
+            // 用最后一条记录填补空位，保持存储连续
+            int last = --count;
+            if (lists != null) {
+                lists.remove(slot, last);
+            }
+            if (slot != last) {
+                if (compact) {
+                    System.arraycopy(codes, last * dimension, codes, slot * dimension, dimension);
+                    factors[slot] = factors[last];
+                } else {
+                    System.arraycopy(features, last * featureSize, features, slot * featureSize, featureSize);
+                }
+                ids[slot] = ids[last];
+                slotById.put(ids[slot], slot);
+            }
+            ids[last] = null;
+        }
+
+        // 读取 slot 的全精度特征；紧凑编码时从 reader 读取，读取失败返回 false
+        boolean readFeature(int slot, byte[] out) {
+            if (!compact) {
+                System.arraycopy(features, slot * featureSize, out, 0, featureSize);
+                return true;
+            }
+            FeatureReader featureReader = reader;
+            return featureReader != null && featureReader.read(ids[slot], out);
+        }
+
+        long memoryBytes() {
+            return compact ? codes.length + factors.length * 4L : features.length;
+        }
+
+        /**
+         * 按目标编码生成新的存储，暂存到 pending 字段，不影响正在进行的检索；
+         * 转为全精度时从 featureReader 读取，任一特征读取失败返回 false。调用方持有 writeLock。
+         */
+        boolean prepare(boolean toCompact, FeatureReader featureReader, float[] scratch) {
+            int capacity = ids.length;
+            if (toCompact) {
+                pendingCodes = new byte[capacity * dimension];
+                pendingFactors = new float[capacity];
+                for (int slot = 0; slot < count; slot++) {
+                    pendingFactors[slot] = FeatureVectors.quantize(features, slot * featureSize, pendingCodes, slot * dimension, scratch);
+                }
+                return true;
+            }
+            pendingFeatures = new byte[capacity * featureSize];
+            byte[] buffer = new byte[featureSize];
+            for (int slot = 0; slot < count; slot++) {
+                if (!featureReader.read(ids[slot], buffer)) {
+                    pendingFeatures = null;
+                    return false;
+                }
+                System.arraycopy(buffer, 0, pendingFeatures, slot * featureSize, featureSize);
+            }
+            return true;
+        }
+
+        // 以 prepare 生成的存储替换当前存储，调用方持有分片写锁
+        void commit(boolean toCompact) {
+            if (toCompact) {
+                codes = pendingCodes;
+                factors = pendingFactors;
+                features = null;
+                vectors = null;
+            } else {
+                features = pendingFeatures;
+                vectors = FeatureVectors.wrap(features);
+                codes = null;
+                factors = null;
+            }
+            pendingFeatures = null;
+            pendingCodes = null;
+            pendingFactors = null;
+            compact = toCompact;
+            if (lists != null) {
+                lists.refreshNorms(source);
+            }
+        }
+
+        private int allocate(String id) {
+            Integer slot = slotById.get(id);
+            if (slot == null) {
+                ensureCapacity(count + 1);
+                slot = count++;
+                ids[slot] = id;
+                slotById.put(id, slot);
+            }
+            return slot;
+        }
+
+        void clear() {
+            slotById.clear();
+            Arrays.fill(ids, 0, count, null);
+            count = 0;
+            if (lists != null) {
+                // 保留簇心，之后注册的特征继续按原簇心分配
+                lists.clear();
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= ids.length) {
+                return;
+            }
+            int capacity = Math.max(required, ids.length * 2);
+            if (compact) {
+                codes = Arrays.copyOf(codes, capacity * dimension);
+                factors = Arrays.copyOf(factors, capacity);
+            } else {
+                features = Arrays.copyOf(features, capacity * featureSize);
+                vectors = FeatureVectors.wrap(features);
+            }
+            ids = Arrays.copyOf(ids, capacity);
+        }
+    }
+
+    FeatureGallery() {
+        this(FaceFeature.FEATURE_SIZE, Math.min(MAX_SHARDS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    FeatureGallery(int featureSize, int shardCount) {
+        this.featureSize = featureSize;
+        this.dimension = FeatureVectors.supports(featureSize) ? FeatureVectors.dimension(featureSize) : 0;
+        this.scratch = new float[dimension];
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    int getFeatureSize() {
+        return featureSize;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * 设置并行检索使用的额外引擎，为 null 时只在调用方的引擎上打分。
+     */
+    void setSearchEngines(SearchEngines engines) {
+        searchEngines = engines;
+    }
+
+    int[] getShardSizes() {
+        int[] sizes = new int[shards.length];
+        for (Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                sizes[shard.number] = shard.count;
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return sizes;
+    }
+
+    long getMoveCount() {
+        return moveCount;
+    }
+
+    boolean isCompact() {
+        return compactMode;
+    }
+
+    /**
+     * 特征解析是否已确认：FeatureVectors.LAYOUT_UNKNOWN、LAYOUT_MATCH 或 LAYOUT_MISMATCH。
+     */
+    int getLayout() {
+        return layout;
+    }
+
+    /**
+     * 以 faceEngine 确认 FeatureVectors 对库内特征的解析与引擎分数相符，返回确认后的结果；
+     * 已确认过时直接返回，库内特征不足两条时保持 LAYOUT_UNKNOWN。调用方独占 faceEngine。
+     */
+    int verifyLayout(FaceEngineApi faceEngine) {
+        int current = layout;
+        if (current != FeatureVectors.LAYOUT_UNKNOWN || dimension == 0 || count < 2) {
+            return current;
+        }
+        synchronized (layoutLock) {
+            if (layout == FeatureVectors.LAYOUT_UNKNOWN) {
+                List<byte[]> samples = sampleFeatures(LAYOUT_SAMPLES, new Random(), new ArrayList<String>());
+                try {
+                    layout = FeatureVectors.checkLayout(faceEngine, samples, new Random());
+                } catch (FaceException e) {
+                    throw new IllegalStateException(e.getMessage());
+                }
+            }
+            return layout;
+        }
+    }
+
+    /**
+     * 切换内存中的特征编码。compact 为 true 时只保留 int8 编码（约为全精度的 1/4），
+     * 精确打分时通过 featureReader 按 id 读取全精度特征；切回全精度时同样从 featureReader 读取，
+     * 任一特征读取失败时抛出 IllegalStateException，编码保持不变。
+     */
+    void setCompact(boolean compact, FeatureReader featureReader) {
+        if (compact && !FeatureVectors.supports(featureSize)) {
+            throw new IllegalStateException("Unsupported feature size for compact encoding: " + featureSize);
+        }
+        if (compact && layout == FeatureVectors.LAYOUT_MISMATCH) {
+            throw new IllegalStateException("Feature layout does not match engine scores");
+        }
+        synchronized (writeLock) {
+            reader = featureReader;
+            if (compact == compactMode) {
+                return;
+            }
+            if (featureReader == null) {
+                throw new IllegalStateException("Feature reader required to switch encoding");
+            }
+            // 全部分片都准备好之后再逐个替换，中途失败不会留下编码混杂的库
+            for (Shard shard : shards) {
+                if (!shard.prepare(compact, featureReader, scratch)) {
+                    for (Shard prepared : shards) {
+                        prepared.pendingFeatures = null;
+                    }
+                    throw new IllegalStateException("Full precision feature missing from store");
+                }
+            }
+            for (Shard shard : shards) {
+                shard.lock.writeLock().lock();
+                try {
+                    shard.commit(compact);
+                } finally {
+                    shard.lock.writeLock().unlock();
+                }
+            }
+            compactMode = compact;
+            version++;
+        }
+    }
+
+    /**
+     * 紧凑编码且没有可用索引时，每次检索按 int8 近似分数取前 rerank 个候选交给引擎打分。
+     */
+    void setCompactRerank(int rerank) {
+        compactRerank = Math.max(1, rerank);
+    }
+
+    int getCompactRerank() {
+        return compactRerank;
+    }
+
+    /**
+     * 特征存储当前占用的内存字节数（按已分配容量计，不含 id 与索引）。
+     */
+    long getMemoryBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                bytes += shard.memoryBytes();
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 读取 id 的全精度特征，紧凑编码时从 FeatureReader 读取，id 不存在时返回 false。
+     */
+    boolean readFeature(String id, byte[] out) {
+        Shard shard = shardById.get(id);
+        if (shard == null) {
+            return false;
+        }
+        shard.lock.readLock().lock();
+        try {
+            Integer slot = shard.slotById.get(id);
+            return slot != null && shard.readFeature(slot, out);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 注册特征，id 已存在时覆盖原有特征，新 id 写入当前最小的分片。
+     */
+    void register(String id, byte[] featureData) {
+        checkFeature(featureData);
+        synchronized (writeLock) {
+            Shard shard = shardById.get(id);
+            boolean added = shard == null;
+            if (added) {
+                shard = smallestShard();
+            }
+            shard.lock.writeLock().lock();
+            try {
+                shard.put(id, featureData, scratch);
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+            if (added) {
+                shardById.put(id, shard);
+                count++;
+            }
+            version++;
+        }
+    }
+
+    boolean remove(String id) {
+        synchronized (writeLock) {
+            Shard shard = shardById.remove(id);
+            if (shard == null) {
+                return false;
+            }
+            shard.lock.writeLock().lock();
+            try {
+                shard.remove(id);
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+            count--;
+            version++;
+            rebalance();
+            return true;
+        }
+    }
+
+    void clear() {
+        synchronized (writeLock) {
+            for (Shard shard : shards) {
+                shard.lock.writeLock().lock();
+                try {
+                    shard.clear();
+                } finally {
+                    shard.lock.writeLock().unlock();
+                }
+            }
+            shardById.clear();
+            count = 0;
+            version++;
+        }
+    }
+
+    /**
+     * 在快照写锁内执行 batch 中的注册与删除，检索只会看到整组修改之前或之后的库。
+     * 等待进行中的检索结束后才开始执行，期间新的检索阻塞，batch 应只包含内存操作与少量读取。
+     */
+    void applyAtomically(Batch batch) throws IOException, FaceException {
+        snapshotLock.writeLock().lock();
+        try {
+            batch.apply();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 返回分数不低于 threshold 的前 k 个结果（按分数降序），分数均为引擎 compareFaceFeature 的精确分数。
+     * 特征解析已确认时，有可用的近似索引则只对索引粗排出的候选打分，紧凑编码则只对 int8 近似分数最高的候选打分；
+     * 否则对库内全部特征打分。
+     */
+    List<Match> searchTopK(FaceEngineApi faceEngine, byte[] probe, int k, float threshold) {
+        return searchTopK(faceEngine, probe, k, threshold, true);
+    }
+
+    /**
+     * approximate 为 false 时总是对库内全部特征打分（紧凑编码时逐条从 FeatureReader 读取全精度特征），用于对比召回率。
+     */
+    List<Match> searchTopK(FaceEngineApi faceEngine, byte[] probe, int k, float threshold, boolean approximate) {
+        checkFeature(probe);
+        long start = System.nanoTime();
+        snapshotLock.readLock().lock();
+        try {
+            return searchSnapshot(faceEngine, probe, k, threshold, approximate);
+        } finally {
+            snapshotLock.readLock().unlock();
+            FaceMetrics.record(FaceMetrics.Stage.SEARCH, start);
+        }
+    }
+
+    /**
+     * 同 searchTopK，但 applyAtomically 正在替换快照时不等待，直接返回 null，供不能阻塞的同步调用使用。
+     */
+    List<Match> trySearchTopK(FaceEngineApi faceEngine, byte[] probe, int k, float threshold) {
+        checkFeature(probe);
+        long start = System.nanoTime();
+        if (!snapshotLock.readLock().tryLock()) {
+            return null;
+        }
+        try {
+            return searchSnapshot(faceEngine, probe, k, threshold, true);
+        } finally {
+            snapshotLock.readLock().unlock();
+            FaceMetrics.record(FaceMetrics.Stage.SEARCH, start);
+        }
+    }
+
+    // 调用方需持有快照读锁；检索期间有特征在分片间移动时重试
+    private List<Match> searchSnapshot(FaceEngineApi faceEngine, byte[] probe, int k, float threshold, boolean approximate) {
+        for (int attempt = 0; ; attempt++) {
+            long moves = moveCount;
+            List<Match> matches = searchShards(faceEngine, probe, k, threshold, approximate);
+            if (moveCount == moves || attempt == MAX_SEARCH_RETRIES) {
+                return matches;
+            }
+        }
+    }
+
+    /**
+     * 随机选取库内 n 条全精度特征并返回其副本，对应的 id 依次写入 outIds，作为近似检索与精确检索对比的探针。
+     */
+    List<byte[]> sampleFeatures(int n, Random random, List<String> outIds) {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Shard shard = shards[random.nextInt(shards.length)];
+            shard.lock.readLock().lock();
+            try {
+                if (shard.count == 0) {
+                    continue;
+                }
+                int slot = random.nextInt(shard.count);
+                byte[] sample = new byte[featureSize];
+                if (shard.readFeature(slot, sample)) {
+                    samples.add(sample);
+                    outIds.add(shard.ids[slot]);
+                }
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return samples;
+    }
+
+    IvfIndex getIndex() {
+        return index;
+    }
+
+    void setIndexMinSize(int minSize) {
+        indexMinSize = Math.max(0, minSize);
+    }
+
+    int getIndexMinSize() {
+        return indexMinSize;
+    }
+
+    /**
+     * 以库内特征训练 listCount 个簇（不大于 0 时取库大小的平方根）的近似索引，替换原有索引并返回。
+     * 构建期间注册与删除等待，检索照常进行；各分片的分簇信息在完成后逐个替换。
+     */
+    IvfIndex buildIndex(int listCount, int iterations) {
+        if (!FeatureVectors.supports(featureSize)) {
+            throw new IllegalStateException("Unsupported feature size for index: " + featureSize);
+        }
+        if (layout == FeatureVectors.LAYOUT_MISMATCH) {
+            throw new IllegalStateException("Feature layout does not match engine scores");
+        }
+        synchronized (writeLock) {
+            if (count < 2) {
+                throw new IllegalStateException("Gallery too small to build an index: " + count);
+            }
+            int lists = listCount > 0 ? listCount : (int) Math.round(Math.sqrt(count));
+            int samples = IvfIndex.trainingSampleCount(count, lists);
+            Random random = new Random();
+
+            // 部分洗牌抽取互不相同的全局位置，样本顺序本身也是随机的
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            int dimension = FeatureVectors.dimension(featureSize);
+            float[] data = new float[samples * dimension];
+            float[] row = new float[dimension];
+            for (int i = 0; i < samples; i++) {
+                int j = i + random.nextInt(count - i);
+                int position = order[j];
+                order[j] = order[i];
+                order[i] = position;
+                // 写操作已被串行化，持有 writeLock 时分片内容不会变化
+                Shard shard = shards[0];
+                for (int s = 0; position >= shard.count; s++) {
+                    position -= shard.count;
+                    shard = shards[s + 1];
+                }
+                shard.source.read(position, row);
+                System.arraycopy(row, 0, data, i * dimension, dimension);
+            }
+
+            IvfIndex built = IvfIndex.train(data, samples, featureSize, lists, iterations, random);
+            IvfIndex previous = index;
+            if (previous != null) {
+                built.setProbes(previous.getProbes());
+                built.setRerank(previous.getRerank());
+            }
+            for (Shard shard : shards) {
+                IvfIndex.Lists shardLists = built.newLists();
+                shardLists.assignAll(shard.source, shard.count);
+                install(shard, shardLists);
+            }
+            index = built;
+            return built;
+        }
+    }
+
+    void dropIndex() {
+        synchronized (writeLock) {
+            index = null;
+            for (Shard shard : shards) {
+                install(shard, null);
+            }
+        }
+    }
+
+    /**
+     * 将索引写入 file（先写临时文件并 fsync 再替换），没有索引时返回 false。
+     */
+    boolean saveIndex(File file) throws IOException {
+        synchronized (writeLock) {
+            IvfIndex current = index;
+            if (current == null) {
+                return false;
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            FileOutputStream fileOut = new FileOutputStream(tmp);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            try {
+                current.write(out, count);
+                for (Shard shard : shards) {
+                    shard.lists.write(out, shard.ids);
+                }
+                out.flush();
+                fileOut.getFD().sync();
+            } finally {
+                out.close();
+            }
+            FileSync.replace(tmp, file);
+            return true;
+        }
+    }
+
+    /**
+     * 从 file 恢复索引。文件中没有的 id（保存后新注册的特征）重新计算所属的簇，文件中已删除的 id 被忽略。
+     */
+    boolean loadIndex(File file) throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+        HashMap<String, Integer> assignments = new HashMap<>();
+        IvfIndex loaded;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            loaded = IvfIndex.read(in, featureSize, assignments);
+        } finally {
+            in.close();
+        }
+        synchronized (writeLock) {
+            for (Shard shard : shards) {
+                IvfIndex.Lists shardLists = loaded.newLists();
+                for (int slot = 0; slot < shard.count; slot++) {
+                    Integer list = assignments.get(shard.ids[slot]);
+                    if (list != null) {
+                        shardLists.assign(slot, shard.source, list);
+                    } else {
+                        shardLists.assign(slot, shard.source);
+                    }
+                }
+                install(shard, shardLists);
+            }
+            index = loaded;
+            return true;
+        }
+    }
+
+    private List<Match> searchShards(FaceEngineApi faceEngine, byte[] probe, int k, float threshold, boolean approximate) {
+        int limit = Math.min(k, count);
+        // 解析未确认或与引擎分数不符时，索引与紧凑编码都不用于筛选候选
+        approximate = approximate && (index != null || compactMode)
+                && verifyLayout(faceEngine) == FeatureVectors.LAYOUT_MATCH;
+        IvfIndex current = approximate && count >= indexMinSize ? index : null;
+        float[] probeVector = null;
+        int[] chosen = null;
+        if (current != null || (approximate && compactMode)) {
+            probeVector = new float[dimension];
+            FeatureVectors.read(probe, probeVector);
+        }
+        if (current != null) {
+            chosen = current.nearestLists(probeVector);
+        }
+
+        SearchEngines engines = searchEngines;
+        FaceEngineApi[] extra = engines != null ? engines.tryAcquire(count) : null;
+        List<ForkJoinTask<List<Match>>> forked = new ArrayList<>();
+        try {
+            int groups = Math.min(shards.length, 1 + (extra != null ? extra.length : 0));
+            if (groups > 1) {
+                ForkJoinPool pool = getSearchPool();
+                for (int group = 1; group < groups; group++) {
+                    forked.add(pool.submit(new ShardSearch(group, groups, extra[group - 1], probe, limit, threshold,
+                            current, chosen, probeVector)));
+                }
+            }
+            // 第 0 组在调用方线程上使用调用方的引擎
+            List<Match> matches = new ShardSearch(0, groups, faceEngine, probe, limit, threshold,
+                    current, chosen, probeVector).invoke();
+            for (ForkJoinTask<List<Match>> task : forked) {
+                matches.addAll(task.join());
+            }
+            return merge(matches, limit);
+        } finally {
+            if (extra != null) {
+                // 出错时也要等其余分组结束，才能把引擎交给下一个检索
+                for (ForkJoinTask<List<Match>> task : forked) {
+                    task.quietlyJoin();
+                }
+                engines.release();
+            }
+        }
+    }
+
+    /**
+     * 在一个引擎上依次为第 group, group + stride, ... 个分片打分，返回各分片的 Top-K。
+     */
+    private final class ShardSearch extends RecursiveTask<List<Match>> {
+        private final int group;
+        private final int stride;
+        private final FaceEngineApi faceEngine;
+        private final byte[] probe;
+        private final int limit;
+        private final float threshold;
+        private final IvfIndex current;
+        private final int[] chosen;
+        private final float[] probeVector;
+
+        ShardSearch(int group, int stride, FaceEngineApi faceEngine, byte[] probe, int limit, float threshold,
+                    IvfIndex current, int[] chosen, float[] probeVector) {
+            this.group = group;
+            this.stride = stride;
+            this.faceEngine = faceEngine;
+            this.probe = probe;
+            this.limit = limit;
+            this.threshold = threshold;
+            this.current = current;
+            this.chosen = chosen;
+            this.probeVector = probeVector;
+        }
+
+        @Override
+        protected List<Match> compute() {
+            FaceFeature probeFeature = new FaceFeature(probe);
+            FaceFeature candidateFeature = new FaceFeature(new byte[featureSize]);
+            FaceSimilar faceSimilar = new FaceSimilar();
+            List<Match> matches = new ArrayList<>();
+            for (int s = group; s < shards.length; s += stride) {
+                Shard shard = shards[s];
+                shard.lock.readLock().lock();
+                try {
+                    TopKHeap heap = new TopKHeap(Math.min(limit, shard.count));
+                    IvfIndex.Lists lists = shard.lists;
+                    if (current != null && lists != null) {
+                        // 索引刚被替换时分片的分簇可能属于另一组簇心，按其自身的簇心选簇
+                        int[] probeLists = lists.index() == current ? chosen : lists.index().nearestLists(probeVector);
+                        // 分片是随机划分的，每个分片取 rerank 的均分（至少 k 个）交给引擎重排
+                        int perShard = Math.max(limit, (current.getRerank() + shards.length - 1) / shards.length);
+                        TopKHeap candidates = new TopKHeap(Math.min(shard.count, perShard));
+                        lists.scan(probeLists, shard.source, probeVector, candidates);
+                        rerank(shard, candidates, probeFeature, candidateFeature, faceSimilar, heap);
+                    } else if (probeVector != null && shard.compact) {
+                        // 无索引的紧凑库：按 int8 近似余弦扫描全部特征，只把前 compactRerank 个交给引擎
+                        int perShard = Math.max(limit, (compactRerank + shards.length - 1) / shards.length);
+                        TopKHeap candidates = new TopKHeap(Math.min(shard.count, perShard));
+                        for (int slot = 0; slot < shard.count; slot++) {
+                            candidates.offer(slot, shard.source.dot(slot, probeVector));
+                        }
+                        rerank(shard, candidates, probeFeature, candidateFeature, faceSimilar, heap);
+                    } else {
+                        for (int slot = 0; slot < shard.count; slot++) {
+                            offerExact(shard, slot, probeFeature, candidateFeature, faceSimilar, heap);
+                        }
+                    }
+                    int[] slots = new int[heap.size()];
+                    float[] scores = new float[heap.size()];
+                    int n = heap.drainDescending(slots, scores);
+                    for (int i = 0; i < n; i++) {
+                        matches.add(new Match(shard.ids[slots[i]], scores[i]));
+                    }
+                } finally {
+                    shard.lock.readLock().unlock();
+                }
+            }
+            return matches;
+        }
+
+        private void rerank(Shard shard, TopKHeap candidates, FaceFeature probeFeature, FaceFeature candidateFeature,
+                            FaceSimilar faceSimilar, TopKHeap heap) {
+            int[] slots = new int[candidates.size()];
+            int n = candidates.drainDescending(slots, new float[slots.length]);
+            for (int i = 0; i < n; i++) {
+                offerExact(shard, slots[i], probeFeature, candidateFeature, faceSimilar, heap);
+            }
+        }
+
+        private void offerExact(Shard shard, int slot, FaceFeature probeFeature, FaceFeature candidateFeature,
+                                FaceSimilar faceSimilar, TopKHeap heap) {
+            // 紧凑编码时全精度特征来自持久化存储，已被并发删除的记录直接跳过
+            if (!shard.readFeature(slot, candidateFeature.getFeatureData())) {
+                return;
+            }
+            int code = faceEngine.compareFaceFeature(probeFeature, candidateFeature, faceSimilar);
+            if (code != ErrorInfo.MOK) {
+                throw new IllegalStateException("Face comparison failed: " + code);
+            }
+            float score = faceSimilar.getScore();
+            if (score >= threshold) {
+                heap.offer(slot, score);
+            }
+        }
+    }
+
+    // 合并各分片的 Top-K；重试前的检索跨越了分片间移动时同一 id 可能出现两次，只保留一次
+    private static List<Match> merge(List<Match> matches, int limit) {
+        Collections.sort(matches, BY_SCORE_DESCENDING);
+        List<Match> merged = new ArrayList<>(Math.min(limit, matches.size()));
+        Set<String> seen = new HashSet<>();
+        for (Match match : matches) {
+            if (merged.size() == limit) {
+                break;
+            }
+            if (seen.add(match.id)) {
+                merged.add(match);
+            }
+        }
+        return merged;
+    }
+
+    // 按分组数的上限创建一次，不随引擎数变化重建，进行中的检索不会遇到已关闭的线程池
+    private synchronized ForkJoinPool getSearchPool() {
+        if (searchPool == null) {
+            searchPool = new ForkJoinPool(Math.max(1, shards.length - 1));
+        }
+        return searchPool;
+    }
+
+    /**
+     * 关闭并行检索的线程池，之后的并行检索会重新创建；模块销毁或临时特征库用完时调用。
+     */
+    synchronized void closeSearchPool() {
+        if (searchPool != null) {
+            searchPool.shutdown();
+            searchPool = null;
+        }
+    }
+
+    // 调用方持有 writeLock
+    private Shard smallestShard() {
+        Shard smallest = shards[0];
+        for (Shard shard : shards) {
+            if (shard.count < smallest.count) {
+                smallest = shard;
+            }
+        }
+        return smallest;
+    }
+
+    // 调用方持有 writeLock
+    private void rebalance() {
+        Shard smallest = smallestShard();
+        Shard largest = shards[0];
+        for (Shard shard : shards) {
+            if (shard.count > largest.count) {
+                largest = shard;
+            }
+        }
+        if (largest.count - smallest.count <= Math.max(REBALANCE_SLACK, count / shards.length / REBALANCE_RATIO)) {
+            return;
+        }
+        // 按分片序号加锁，两把写锁同时持有期间检索看不到移动的中间状态
+        Shard first = largest.number < smallest.number ? largest : smallest;
+        Shard second = first == largest ? smallest : largest;
+        first.lock.writeLock().lock();
+        second.lock.writeLock().lock();
+        try {
+            int slot = largest.count - 1;
+            String id = largest.ids[slot];
+            int list = largest.lists != null ? largest.lists.listOf(slot) : -1;
+            smallest.putFrom(largest, slot, id, list);
+            largest.remove(id);
+            shardById.put(id, smallest);
+            moveCount++;
+        } finally {
+            second.lock.writeLock().unlock();
+            first.lock.writeLock().unlock();
+        }
+    }
+
+    private static void install(Shard shard, IvfIndex.Lists lists) {
+        shard.lock.writeLock().lock();
+        try {
+            shard.lists = lists;
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    private void checkFeature(byte[] featureData) {
+        if (featureData == null || featureData.length != featureSize) {
+            throw new IllegalArgumentException("Invalid feature length: "
+                    + (featureData == null ? "null" : featureData.length) + ", expected " + featureSize);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.arcsoftface.reactnative;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 原生侧特征注册表：特征数据保留在 Java 侧，JS 只持有整数句柄。
+ * 提取、比对、检索都直接使用句柄，特征数据不再以 Base64 字符串跨桥传递；
+ * 句柄需由 JS 显式 releaseFeature，长时间未释放的句柄可通过 findLeaks 查出。
+ */
+class FeatureHandleRegistry {
+    static class Handle {
+        final int id;
+        final byte[] data;
+        final long createdAt;
+        // 句柄来源（如 extract / import / batch），用于泄漏排查
+        final String origin;
+
+        Handle(int id, byte[] data, String origin) {
+            this.id = id;
+            this.data = data;
+            this.origin = origin;
+            this.createdAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, Handle> handles = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final int featureSize;
+
+    FeatureHandleRegistry(int featureSize) {
+        this.featureSize = featureSize;
+    }
+
+    int put(byte[] featureData, String origin) {
+        if (featureData == null || featureData.length != featureSize) {
+            throw new IllegalArgumentException("Invalid feature length: "
+                    + (featureData == null ? "null" : featureData.length) + ", expected " + featureSize);
+        }
+        int id = nextId.incrementAndGet();
+        handles.put(id, new Handle(id, featureData, origin));
+        return id;
+    }
+
+    /**
+     * 取得句柄对应的特征数据，调用方不得修改返回的数组。
+     */
+    byte[] get(int id) throws FaceException {
+        Handle handle = handles.get(id);
+        if (handle == null) {
+            throw new FaceException("INVALID_HANDLE", "Feature handle not found or already released: " + id);
+        }
+        return handle.data;
+    }
+
+    boolean release(int id) {
+        return handles.remove(id) != null;
+    }
+
+    int releaseAll() {
+        int count = handles.size();
+        handles.clear();
+        return count;
+    }
+
+    int size() {
+        return handles.size();
+    }
+
+    long getBytes() {
+        return (long) handles.size() * featureSize;
+    }
+
+    /**
+     * 返回存活时间超过 maxAgeMillis 的句柄，按创建时间从早到晚排列。
+     */
+    List<Handle> findLeaks(long maxAgeMillis) {
+        long now = SystemClock.elapsedRealtime();
+        List<Handle> leaks = new ArrayList<>();
+        for (Map.Entry<Integer, Handle> entry : handles.entrySet()) {
+            if (now - entry.getValue().createdAt >= maxAgeMillis) {
+                leaks.add(entry.getValue());
+            }
+        }
+        Collections.sort(leaks, new Comparator<Handle>() {
+            @Override
+            public int compare(Handle a, Handle b) {
+                return Long.compare(a.createdAt, b.createdAt);
+            }
+        });
+        return leaks;
+    }
+}
@@ -0,0 +1,524 @@
+package com.arcsoftface.reactnative;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 MappedByteBuffer 的持久化特征库文件，用于应用重启后快速恢复 FeatureGallery。
+ *
+ * 文件布局（小端序）：
+ * <pre>
+ * | header (64B) | tombstone bitmap | id table (capacity * 64B) | feature records (capacity * featureSize) |
+ * </pre>
+ * header: magic, version, featureSize, idSlotSize, capacity, recordCount。
+ * 写入记录时先写入 id 与特征并 force，再更新 recordCount 并 force，
+ * 崩溃时未提交的记录会被忽略；删除只置位 tombstone，由 compact() 回收空间。
+ * 整个文件映射为一个 MappedByteBuffer，长度不超过 2GB，容量上限见 maxCapacity()。
+ * 重写文件时先写临时文件并 fsync，再重命名替换并 fsync 所在目录。
+ * read 不获取对象锁，经由当前映射的线程私有 duplicate 视图读取，紧凑编码的特征库并行检索时互不阻塞；
+ * 重新映射时整体替换读取快照，读取方在替换前后分别看到旧文件或新文件中一致的记录号与数据。
+ */
+class FeatureStore implements FeatureGallery.FeatureReader {
+    interface RecordVisitor {
+        void visit(String id, byte[] featureData);
+    }
+
+    private static final int MAGIC = 0x53464641; // "AFFS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int ID_SLOT_SIZE = 64;
+    private static final int MAX_ID_BYTES = ID_SLOT_SIZE - 2;
+    private static final int INITIAL_CAPACITY = 1024;
+    // 单个 MappedByteBuffer 最多映射 Integer.MAX_VALUE 字节，文件长度不超过该值，偏移量均在 long 中计算后再转为 int
+    private static final long MAX_FILE_LENGTH = Integer.MAX_VALUE;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_FEATURE_SIZE = 8;
+    private static final int OFFSET_ID_SLOT_SIZE = 12;
+    private static final int OFFSET_CAPACITY = 16;
+    private static final int OFFSET_RECORD_COUNT = 20;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final int featureSize;
+    private final int maxCapacity;
+    // 写入方在对象锁内修改；read 经由 readView 并发读取
+    private ConcurrentHashMap<String, Integer> recordById = new ConcurrentHashMap<>();
+    private volatile ReadView readView;
+    // 暂存期间写入修改 recordById 的副本，readView 保持暂存前的内容，直到 publish
+    private boolean staging;
+
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int recordCount;
+    private int liveCount;
+
+    // read 使用的映射快照：同一映射的记录号与数据，每个线程有自己的 position
+    private static final class ReadView {
+        final int capacity;
+        final ConcurrentHashMap<String, Integer> recordById;
+        final ThreadLocal<ByteBuffer> views;
+
+        ReadView(final MappedByteBuffer buffer, int capacity, ConcurrentHashMap<String, Integer> recordById) {
+            this.capacity = capacity;
+            this.recordById = recordById;
+            this.views = new ThreadLocal<ByteBuffer>() {
+                @Override
+                protected ByteBuffer initialValue() {
+                    return buffer.duplicate();
+                }
+            };
+        }
+    }
+
+    FeatureStore(File file, int featureSize) {
+        this.file = file;
+        this.featureSize = featureSize;
+        this.maxCapacity = maxCapacity(featureSize);
+    }
+
+    /**
+     * 单个映射能容纳的最大记录数，特征长度为 2056 字节时约 101 万条。
+     */
+    static int maxCapacity(int featureSize) {
+        long perRecord = ID_SLOT_SIZE + featureSize;
+        int capacity = (int) Math.min(Integer.MAX_VALUE, (MAX_FILE_LENGTH - HEADER_SIZE) * 8 / (perRecord * 8 + 1));
+        while (fileLength(capacity, featureSize) > MAX_FILE_LENGTH) {
+            capacity--;
+        }
+        return capacity;
+    }
+
+    synchronized void open() throws IOException {
+        if (buffer != null) {
+            return;
+        }
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory: " + dir);
+        }
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            writeEmptyFile(file, INITIAL_CAPACITY);
+        }
+        map();
+    }
+
+    synchronized void close() {
+        unmap();
+        readView = null;
+        staging = false;
+    }
+
+    /**
+     * 开始暂存：之后的写入照常落盘，但 read 仍读取暂存前的内容，直到 publish 一次性切换。
+     * 供需要与内存特征库一起切换的批量写入使用；暂存期间崩溃时，已落盘的写入在重新打开后生效。
+     */
+    synchronized void stage() {
+        checkOpen();
+        if (!staging) {
+            // 写入都是追加新记录并置 tombstone，不覆盖旧记录的数据，旧表指向的内容保持有效
+            recordById = new ConcurrentHashMap<>(recordById);
+            staging = true;
+        }
+    }
+
+    /**
+     * 结束暂存，read 切换到暂存期间写入后的内容；不在暂存中时什么也不做。
+     */
+    synchronized void publish() {
+        if (staging) {
+            staging = false;
+            readView = new ReadView(buffer, capacity, recordById);
+        }
+    }
+
+    // 重新映射前释放当前映射；readView 保持不变，替换文件期间 read 继续读取旧映射
+    private void unmap() {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException ignored) {
+            }
+        }
+        raf = null;
+        buffer = null;
+    }
+
+    synchronized int size() {
+        return liveCount;
+    }
+
+    synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 依次回调所有未删除的记录，featureData 缓冲区在回调之间复用。
+     */
+    synchronized void forEach(RecordVisitor visitor) {
+        checkOpen();
+        byte[] featureData = new byte[featureSize];
+        for (int record = 0; record < recordCount; record++) {
+            if (isDeleted(record)) {
+                continue;
+            }
+            buffer.position((int) featureOffset(record));
+            buffer.get(featureData, 0, featureSize);
+            visitor.visit(readId(record), featureData);
+        }
+    }
+
+    /**
+     * 读取 id 对应的特征到 out，id 不存在时返回 false。特征库使用紧凑编码时由此读取全精度特征用于精确重排，
+     * 可在多个线程中并发调用。
+     */
+    @Override
+    public boolean read(String id, byte[] out) {
+        ReadView view = readView;
+        if (view == null) {
+            throw new IllegalStateException("Feature store is not open");
+        }
+        Integer record = view.recordById.get(id);
+        if (record == null) {
+            return false;
+        }
+        ByteBuffer data = view.views.get();
+        data.position((int) featureOffset(view.capacity, record));
+        data.get(out, 0, featureSize);
+        return true;
+    }
+
+    /**
+     * 追加一条记录，id 已存在时旧记录被标记为删除。记录数达到 maxCapacity 时以 GALLERY_FULL 失败。
+     */
+    synchronized void put(String id, byte[] featureData) throws IOException, FaceException {
+        checkOpen();
+        byte[] idBytes = checkRecord(id, featureData);
+        ensureCapacity(1);
+
+        int record = recordCount;
+        buffer.position((int) idOffset(record));
+        buffer.putShort((short) idBytes.length);
+        buffer.put(idBytes);
+        buffer.position((int) featureOffset(record));
+        buffer.put(featureData, 0, featureSize);
+        setDeleted(record, false);
+        buffer.force();
+
+        // 提交：只有 recordCount 落盘后记录才可见
+        recordCount = record + 1;
+        buffer.putInt(OFFSET_RECORD_COUNT, recordCount);
+        buffer.force();
+
+        Integer previous = recordById.put(id, record);
+        if (previous != null) {
+            setDeleted(previous, true);
+            buffer.force();
+        } else {
+            liveCount++;
+        }
+    }
+
+    /**
+     * 按顺序批量写入与删除，features 中为 null 的项表示删除对应的 id。先写入全部新记录并 force，
+     * 再提交 recordCount，最后置位被覆盖与删除的记录，整批只 force 三次。
+     * 在最后一步之前崩溃时，被覆盖的记录由 open 时的去重修复，删除则未生效，调用方应重新执行整批操作。
+     */
+    synchronized void apply(List<String> ids, List<byte[]> features) throws IOException, FaceException {
+        checkOpen();
+        byte[][] idBytes = new byte[ids.size()][];
+        int puts = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            if (features.get(i) != null) {
+                idBytes[i] = checkRecord(ids.get(i), features.get(i));
+                puts++;
+            }
+        }
+        ensureCapacity(puts);
+
+        int record = recordCount;
+        for (int i = 0; i < ids.size(); i++) {
+            if (idBytes[i] == null) {
+                continue;
+            }
+            buffer.position((int) idOffset(record));
+            buffer.putShort((short) idBytes[i].length);
+            buffer.put(idBytes[i]);
+            buffer.position((int) featureOffset(record));
+            buffer.put(features.get(i), 0, featureSize);
+            setDeleted(record, false);
+            record++;
+        }
+        buffer.force();
+        int first = recordCount;
+        recordCount = record;
+        buffer.putInt(OFFSET_RECORD_COUNT, recordCount);
+        buffer.force();
+
+        record = first;
+        for (int i = 0; i < ids.size(); i++) {
+            Integer previous;
+            if (idBytes[i] != null) {
+                previous = recordById.put(ids.get(i), record++);
+                if (previous == null) {
+                    liveCount++;
+                }
+            } else {
+                previous = recordById.remove(ids.get(i));
+                if (previous != null) {
+                    liveCount--;
+                }
+            }
+            if (previous != null) {
+                setDeleted(previous, true);
+            }
+        }
+        buffer.force();
+    }
+
+    synchronized boolean contains(String id) {
+        return recordById.containsKey(id);
+    }
+
+    // 未删除记录的 id
+    synchronized List<String> ids() {
+        return new ArrayList<>(recordById.keySet());
+    }
+
+    synchronized boolean remove(String id) {
+        checkOpen();
+        Integer record = recordById.remove(id);
+        if (record == null) {
+            return false;
+        }
+        setDeleted(record, true);
+        buffer.force();
+        liveCount--;
+        return true;
+    }
+
+    synchronized void clear() throws IOException {
+        checkOpen();
+        unmap();
+        writeEmptyFile(file, INITIAL_CAPACITY);
+        map();
+    }
+
+    /**
+     * 只保留未删除的记录重写文件：先写入临时文件并 fsync，再原子重命名替换原文件。
+     */
+    synchronized void compact() throws IOException {
+        checkOpen();
+        compact(capacity);
+    }
+
+    // 剩余空间不足 count 条时借助压缩重写文件，存活记录超过新容量一半时翻倍扩容，不超过 maxCapacity
+    private void ensureCapacity(int count) throws IOException, FaceException {
+        if (recordCount + count <= capacity) {
+            return;
+        }
+        if ((long) liveCount + count > maxCapacity) {
+            throw new FaceException("GALLERY_FULL", "Feature store is full: " + liveCount + " records, max " + maxCapacity);
+        }
+        long newCapacity = capacity;
+        while (liveCount + count > newCapacity / 2 && newCapacity < maxCapacity) {
+            newCapacity *= 2;
+        }
+        compact((int) Math.min(newCapacity, maxCapacity));
+    }
+
+    private void compact(int newCapacity) throws IOException {
+        newCapacity = Math.min(maxCapacity, Math.max(newCapacity, Math.max(INITIAL_CAPACITY, liveCount)));
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(fileLength(newCapacity));
+            FileChannel channel = out.getChannel();
+            MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileLength(newCapacity));
+            target.order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader(target, newCapacity, 0);
+
+            byte[] idSlot = new byte[ID_SLOT_SIZE];
+            byte[] featureData = new byte[featureSize];
+            int written = 0;
+            for (int record = 0; record < recordCount; record++) {
+                if (isDeleted(record)) {
+                    continue;
+                }
+                buffer.position((int) idOffset(record));
+                buffer.get(idSlot);
+                buffer.position((int) featureOffset(record));
+                buffer.get(featureData);
+                target.position((int) idOffset(newCapacity, written));
+                target.put(idSlot);
+                target.position((int) featureOffset(newCapacity, written));
+                target.put(featureData);
+                written++;
+            }
+            target.putInt(OFFSET_RECORD_COUNT, written);
+            target.force();
+            channel.force(true);
+        } finally {
+            out.close();
+        }
+
+        unmap();
+        FileSync.replace(tmp, file);
+        map();
+    }
+
+    private void map() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < HEADER_SIZE || raf.length() > MAX_FILE_LENGTH) {
+            close();
+            throw new IOException("Incompatible feature store size " + file.length() + ": " + file);
+        }
+        FileChannel channel = raf.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC
+                || buffer.getInt(OFFSET_VERSION) != VERSION
+                || buffer.getInt(OFFSET_FEATURE_SIZE) != featureSize
+                || buffer.getInt(OFFSET_ID_SLOT_SIZE) != ID_SLOT_SIZE) {
+            close();
+            throw new IOException("Incompatible feature store: " + file);
+        }
+        capacity = buffer.getInt(OFFSET_CAPACITY);
+        if (capacity <= 0 || capacity > maxCapacity) {
+            close();
+            throw new IOException("Incompatible feature store capacity " + capacity + ": " + file);
+        }
+        recordCount = Math.min(buffer.getInt(OFFSET_RECORD_COUNT), capacity);
+        if (raf.length() < fileLength(capacity)) {
+            close();
+            throw new IOException("Truncated feature store: " + file);
+        }
+
+        // 新建而不是清空：并发的 read 仍在使用旧映射对应的表
+        recordById = new ConcurrentHashMap<>();
+        liveCount = 0;
+        for (int record = 0; record < recordCount; record++) {
+            if (isDeleted(record)) {
+                continue;
+            }
+            Integer previous = recordById.put(readId(record), record);
+            if (previous != null) {
+                // 覆盖写入后在 tombstone 落盘前崩溃，以较新的记录为准
+                setDeleted(previous, true);
+            } else {
+                liveCount++;
+            }
+        }
+        if (!staging) {
+            readView = new ReadView(buffer, capacity, recordById);
+        }
+    }
+
+    private void writeEmptyFile(File target, int newCapacity) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            out.setLength(fileLength(newCapacity));
+            MappedByteBuffer header = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader(header, newCapacity, 0);
+            header.force();
+            out.getChannel().force(true);
+        } finally {
+            out.close();
+        }
+        FileSync.replace(tmp, target);
+    }
+
+    private void writeHeader(MappedByteBuffer target, int newCapacity, int newRecordCount) {
+        target.putInt(OFFSET_MAGIC, MAGIC);
+        target.putInt(OFFSET_VERSION, VERSION);
+        target.putInt(OFFSET_FEATURE_SIZE, featureSize);
+        target.putInt(OFFSET_ID_SLOT_SIZE, ID_SLOT_SIZE);
+        target.putInt(OFFSET_CAPACITY, newCapacity);
+        target.putInt(OFFSET_RECORD_COUNT, newRecordCount);
+    }
+
+    private String readId(int record) {
+        int offset = (int) idOffset(record);
+        int length = buffer.getShort(offset) & 0xFFFF;
+        byte[] idBytes = new byte[Math.min(length, MAX_ID_BYTES)];
+        buffer.position(offset + 2);
+        buffer.get(idBytes);
+        return new String(idBytes, UTF_8);
+    }
+
+    private boolean isDeleted(int record) {
+        int offset = HEADER_SIZE + (record >>> 3);
+        return (buffer.get(offset) & (1 << (record & 7))) != 0;
+    }
+
+    private void setDeleted(int record, boolean deleted) {
+        int offset = HEADER_SIZE + (record >>> 3);
+        int bits = buffer.get(offset);
+        bits = deleted ? bits | (1 << (record & 7)) : bits & ~(1 << (record & 7));
+        buffer.put(offset, (byte) bits);
+    }
+
+    // 校验记录并返回 id 的 UTF-8 编码，不合法时抛出 IllegalArgumentException
+    byte[] checkRecord(String id, byte[] featureData) {
+        if (featureData == null || featureData.length != featureSize) {
+            throw new IllegalArgumentException("Invalid feature length: "
+                    + (featureData == null ? "null" : featureData.length) + ", expected " + featureSize);
+        }
+        byte[] idBytes = id.getBytes(UTF_8);
+        if (idBytes.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Id exceeds " + MAX_ID_BYTES + " bytes: " + id);
+        }
+        return idBytes;
+    }
+
+    private void checkOpen() {
+        if (buffer == null) {
+            throw new IllegalStateException("Feature store is not open");
+        }
+    }
+
+    private long idOffset(int record) {
+        return idOffset(capacity, record);
+    }
+
+    private long featureOffset(int record) {
+        return featureOffset(capacity, record);
+    }
+
+    private static int bitmapSize(int capacity) {
+        // 按 8 字节对齐，保证后续区域对齐
+        return ((capacity + 63) >>> 6) << 3;
+    }
+
+    private static long idOffset(int capacity, int record) {
+        return HEADER_SIZE + bitmapSize(capacity) + (long) record * ID_SLOT_SIZE;
+    }
+
+    private long featureOffset(int capacity, int record) {
+        return idOffset(capacity, capacity) + (long) record * featureSize;
+    }
+
+    private long fileLength(int capacity) {
+        return fileLength(capacity, featureSize);
+    }
+
+    private static long fileLength(int capacity, int featureSize) {
+        return idOffset(capacity, capacity) + (long) capacity * featureSize;
+    }
+}
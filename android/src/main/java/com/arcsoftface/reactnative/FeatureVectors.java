@@ -0,0 +1,208 @@
+package com.arcsoftface.reactnative;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceSimilar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 将特征数据按向量解析，供 Java 侧的近似打分使用。
+ * 特征按 HEADER_BYTES 字节头 + float32 小端向量解析，这是对虹软特征格式的假设，SDK 并未公开。
+ * 近似索引与 int8 编码的候选筛选、聚类的预筛选完全依赖这一解析：解析不对时返回的分数虽然仍来自引擎，
+ * 但 Top-K 与分组都可能是错的，而不只是召回下降。因此这些路径在使用前以 checkLayout 用引擎分数确认解析，
+ * 不一致时退回由引擎逐条打分。
+ */
+final class FeatureVectors {
+    static final int HEADER_BYTES = 8;
+    // checkLayout 的结果
+    static final int LAYOUT_UNKNOWN = 0;
+    static final int LAYOUT_MATCH = 1;
+    static final int LAYOUT_MISMATCH = 2;
+    // Java 侧余弦与引擎分数的最大允许偏差，远大于 float32 的舍入误差，远小于解析错误时的偏差
+    static final float LAYOUT_TOLERANCE = 0.02f;
+    // checkLayout 最多检查的探针数，每个探针组成近邻与随机两对
+    private static final int LAYOUT_PROBES = 16;
+
+    /**
+     * 按槽位读取向量，屏蔽全精度与 int8 紧凑两种存储方式。
+     */
+    interface Source {
+        // 将 slot 的向量归一化写入 out，返回原始长度
+        float read(int slot, float[] out);
+
+        float norm(int slot);
+
+        // slot 的原始向量与已归一化的 probe 的点积
+        float dot(int slot, float[] probe);
+    }
+
+    private FeatureVectors() {
+    }
+
+    static boolean supports(int featureSize) {
+        return featureSize > HEADER_BYTES && featureSize % 4 == 0;
+    }
+
+    static int dimension(int featureSize) {
+        return (featureSize - HEADER_BYTES) / 4;
+    }
+
+    /**
+     * 以引擎分数检查 samples 能否按此处的布局解析：随机取至多 LAYOUT_PROBES 条特征作为探针，
+     * 各与 samples 中 Java 余弦最高的一条、以及随机的一条组成特征对（近邻对覆盖识别阈值附近的高分区间，随机对覆盖低分区间），
+     * 比较 Java 余弦（负值按 0 计）与 compareFaceFeature 的分数。
+     * 全部特征对的偏差都不超过 LAYOUT_TOLERANCE 时返回 LAYOUT_MATCH，否则返回 LAYOUT_MISMATCH；
+     * 没有内容不同的特征对可比时返回 LAYOUT_UNKNOWN。
+     */
+    static int checkLayout(FaceEngineApi faceEngine, List<byte[]> samples, Random random) throws FaceException {
+        int n = samples.size();
+        if (n < 2 || !supports(samples.get(0).length)) {
+            return LAYOUT_UNKNOWN;
+        }
+        int dimension = dimension(samples.get(0).length);
+        float[][] vectors = new float[n][dimension];
+        for (int i = 0; i < n; i++) {
+            read(samples.get(i), vectors[i]);
+        }
+        FaceFeature feature1 = new FaceFeature();
+        FaceFeature feature2 = new FaceFeature();
+        FaceSimilar faceSimilar = new FaceSimilar();
+        int pairs = 0;
+        for (int p = 0; p < Math.min(n, LAYOUT_PROBES); p++) {
+            int i = random.nextInt(n);
+            int nearest = -1;
+            float best = Float.NEGATIVE_INFINITY;
+            for (int j = 0; j < n; j++) {
+                float cosine = dot(vectors[i], 0, vectors[j], 0, dimension);
+                if (j != i && cosine > best && !Arrays.equals(samples.get(i), samples.get(j))) {
+                    nearest = j;
+                    best = cosine;
+                }
+            }
+            int other = random.nextInt(n);
+            feature1.setFeatureData(samples.get(i));
+            for (int j : new int[]{nearest, other}) {
+                if (j < 0 || Arrays.equals(samples.get(i), samples.get(j))) {
+                    continue;
+                }
+                feature2.setFeatureData(samples.get(j));
+                int code = faceEngine.compareFaceFeature(feature1, feature2, faceSimilar);
+                if (code != ErrorInfo.MOK) {
+                    throw new FaceException("COMPARE_ERROR", "Face comparison failed: " + code);
+                }
+                float cosine = Math.max(0, dot(vectors[i], 0, vectors[j], 0, dimension));
+                // 解析出 NaN 或无穷大时比较结果为 false，同样视为不一致
+                if (!(Math.abs(cosine - faceSimilar.getScore()) <= LAYOUT_TOLERANCE)) {
+                    return LAYOUT_MISMATCH;
+                }
+                pairs++;
+            }
+        }
+        return pairs > 0 ? LAYOUT_MATCH : LAYOUT_UNKNOWN;
+    }
+
+    /**
+     * 以 float 视图包装连续存放的特征数组，第 slot 条向量从 offset(slot) 开始。
+     */
+    static FloatBuffer wrap(byte[] features) {
+        return ByteBuffer.wrap(features).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    static int offset(int featureSize, int slot) {
+        return slot * (featureSize / 4) + HEADER_BYTES / 4;
+    }
+
+    // 解析单条特征并归一化，返回原始长度
+    static float read(byte[] featureData, float[] out) {
+        FloatBuffer buffer = wrap(featureData);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = buffer.get(HEADER_BYTES / 4 + i);
+        }
+        return normalize(out);
+    }
+
+    static float read(FloatBuffer vectors, int offset, float[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = vectors.get(offset + i);
+        }
+        return normalize(out);
+    }
+
+    static float dot(FloatBuffer vectors, int offset, float[] probe) {
+        float sum = 0;
+        for (int i = 0; i < probe.length; i++) {
+            sum += vectors.get(offset + i) * probe[i];
+        }
+        return sum;
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * 将 src 中 srcOffset 处的特征归一化后按 int8 对称量化写入 codes，返回还原系数 factor：
+     * factor * codes[i] 为单位向量的分量，与已归一化 probe 的余弦近似为 factor * Σ codes[i] * probe[i]。
+     */
+    static float quantize(byte[] src, int srcOffset, byte[] codes, int codeOffset, float[] scratch) {
+        read(wrap(src), (srcOffset + HEADER_BYTES) / 4, scratch);
+        float max = 0;
+        for (float v : scratch) {
+            max = Math.max(max, Math.abs(v));
+        }
+        if (max == 0) {
+            Arrays.fill(codes, codeOffset, codeOffset + scratch.length, (byte) 0);
+            return 0;
+        }
+        float scale = max / 127;
+        long sum = 0;
+        for (int i = 0; i < scratch.length; i++) {
+            int code = Math.round(scratch[i] / scale);
+            codes[codeOffset + i] = (byte) code;
+            sum += code * code;
+        }
+        // 量化后的向量长度略偏离 1，一并折算进系数
+        return (float) (1 / Math.sqrt(sum));
+    }
+
+    static float dot(byte[] codes, int offset, float[] probe) {
+        float sum = 0;
+        for (int i = 0; i < probe.length; i++) {
+            sum += codes[offset + i] * probe[i];
+        }
+        return sum;
+    }
+
+    static float norm(FloatBuffer vectors, int offset, int dimension) {
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            float v = vectors.get(offset + i);
+            sum += v * v;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    private static float normalize(float[] vector) {
+        float sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        float norm = (float) Math.sqrt(sum);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= norm;
+            }
+        }
+        return norm;
+    }
+}
@@ -0,0 +1,48 @@
+package com.arcsoftface.reactnative;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * 临时文件替换目标文件的落盘：rename 只修改目录项，目录本身 fsync 后替换才能在掉电后保留，
+ * 否则掉电重启后可能仍看到旧文件。调用方应先 fsync 临时文件的内容。
+ * 部分文件系统不支持对目录 fsync，此时只记录警告：替换已经完成，只是掉电持久性退化为 rename 本身的保证。
+ */
+final class FileSync {
+    private static final String TAG = "FileSync";
+
+    private FileSync() {
+    }
+
+    /**
+     * 以 tmp 原子替换 target，并 fsync 所在目录；重命名失败时抛出 IOException。
+     */
+    static void replace(File tmp, File target) throws IOException {
+        if (!tmp.renameTo(target)) {
+            throw new IOException("Failed to replace " + target);
+        }
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    static void syncDirectory(File dir) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            FileDescriptor fd = Os.open(dir.getPath(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
+            }
+        } catch (ErrnoException e) {
+            Log.w(TAG, "Failed to sync directory: " + dir, e);
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package com.arcsoftface.reactnative;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.media.Image;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+import com.arcsoft.face.enums.ExtractType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 相机实时帧处理管线：独立的 VIDEO 模式引擎 + 单个工作线程，直接处理 NV21 帧。
+ * 采用"最新帧优先"的背压策略：上一帧仍在处理时新帧替换尚未处理的旧帧，旧帧计为丢弃，
+ * 因此处理延迟不会随相机帧率累积。VIDEO 模式下引擎跨帧跟踪，同一人脸保持相同的 faceId。
+ * 帧数据在提交时复制到复用的缓冲区，调用方提交后即可继续使用自己的缓冲区。
+ * 启用识别时按 faceId 缓存特征与匹配结果（见 TrackCache），已识别的人脸不再逐帧提取特征；
+ * 需要提取时先经过质量门限（见 FaceQuality），设置了最佳帧窗口时只在窗口内质量最高的一帧上提取。
+ */
+class FramePipeline {
+    private static final String TAG = "FramePipeline";
+    // getLatestFaces 中每个人脸占用的 int 个数：faceId, left, top, right, bottom, orient
+    static final int FACE_STRIDE = 6;
+
+    interface Listener {
+        /**
+         * 在工作线程中回调，analysis 与 tracks 仅在回调期间有效；未启用识别时 tracks 为 null。
+         */
+        void onFrame(Frame frame, FaceAnalysis analysis, List<TrackCache.Track> tracks, long processMillis);
+
+        void onError(Frame frame, int code);
+    }
+
+    static class Frame {
+        byte[] data;
+        int width;
+        int height;
+        long timestamp;
+        long sequence;
+    }
+
+    private final int processMask;
+    private final Listener listener;
+    private final FaceEngineApi faceEngine;
+    private final List<FaceInfo> faceInfoList = new ArrayList<>();
+    private final FeatureGallery gallery;
+    private final TrackCache trackCache;
+    private final float matchThreshold;
+    private final FaceQuality quality;
+    private final long bestFrameWindow;
+    private final List<TrackCache.Track> tracks = new ArrayList<>();
+    private final FaceFeature faceFeature = new FaceFeature();
+    // 空闲帧缓冲：最多同时存在处理中、待处理、正在写入三帧
+    private final ArrayDeque<Frame> freeFrames = new ArrayDeque<>();
+    private final Object lock = new Object();
+    private Frame pending;
+    private Thread worker;
+    private boolean running;
+    // 工作线程是否仍可能使用引擎；stop 等待超时后改由工作线程退出时释放引擎
+    private boolean workerActive;
+    private boolean releaseOnExit;
+
+    private long sequence;
+    private long submittedFrames;
+    private long processedFrames;
+    private long droppedFrames;
+    private long totalProcessMillis;
+    private long featureExtractions;
+    private long qualityRejections;
+    private long fpsWindowStart;
+    private int fpsWindowFrames;
+    private double fps;
+    // 最近一帧的检测结果，按 FACE_STRIDE 展平，供同步方法直接读取
+    private int[] latestFaces = new int[0];
+    private int latestFaceCount;
+    private long latestSequence;
+
+    FramePipeline(FaceEngineApi.Factory engineFactory, int processMask, Listener listener) {
+        this(engineFactory, processMask, null, null, 0, null, 0, listener);
+    }
+
+    /**
+     * gallery 与 trackCache 不为 null 时启用识别：为每个跟踪提取特征并在 gallery 中检索最相似的一项。
+     * quality 为 null 时不检查质量；bestFrameWindow 大于 0 时跟踪需要提取后先观察该时长（毫秒），
+     * 在期间质量最高的一帧上提取，代价是每个进行中的窗口保留一帧副本。
+     */
+    FramePipeline(FaceEngineApi.Factory engineFactory, int processMask, FeatureGallery gallery, TrackCache trackCache,
+                  float matchThreshold, FaceQuality quality, long bestFrameWindow, Listener listener) {
+        this.faceEngine = engineFactory.create();
+        this.processMask = processMask;
+        this.gallery = gallery;
+        this.trackCache = trackCache;
+        this.matchThreshold = matchThreshold;
+        this.quality = quality;
+        this.bestFrameWindow = bestFrameWindow;
+        this.listener = listener;
+    }
+
+    /**
+     * 以 VIDEO 模式初始化引擎并启动工作线程，返回引擎初始化错误码。
+     */
+    int start(Context context, DetectFaceOrientPriority orientPriority, int maxFaceNum) {
+        int mask = FaceEngine.ASF_FACE_DETECT | processMask;
+        if (trackCache != null) {
+            mask |= FaceEngine.ASF_FACE_RECOGNITION;
+        }
+        int code = faceEngine.init(context, DetectMode.ASF_DETECT_MODE_VIDEO, orientPriority, maxFaceNum, mask);
+        if (code != ErrorInfo.MOK) {
+            Log.e(TAG, "Video engine init failed: " + code);
+            return code;
+        }
+        synchronized (lock) {
+            running = true;
+            workerActive = true;
+            releaseOnExit = false;
+            fpsWindowStart = SystemClock.elapsedRealtime();
+        }
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loop();
+                } finally {
+                    onWorkerExit();
+                }
+            }
+        }, "ArcsoftFaceFrame");
+        worker.start();
+        return ErrorInfo.MOK;
+    }
+
+    /**
+     * 停止工作线程，等待当前帧处理完成后释放引擎。
+     * 最多等待 2 秒；超时时工作线程仍在引擎调用中，不能在此释放，改由工作线程退出时释放，此时返回 MOK。
+     */
+    int stop() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if (worker != null) {
+            try {
+                worker.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+        synchronized (lock) {
+            pending = null;
+            freeFrames.clear();
+            if (workerActive) {
+                releaseOnExit = true;
+                Log.w(TAG, "Frame worker still busy, engine will be released when it exits");
+                return ErrorInfo.MOK;
+            }
+        }
+        return release();
+    }
+
+    private void onWorkerExit() {
+        boolean release;
+        synchronized (lock) {
+            workerActive = false;
+            release = releaseOnExit;
+        }
+        if (release) {
+            int code = release();
+            if (code != ErrorInfo.MOK) {
+                Log.e(TAG, "Video engine unInit failed: " + code);
+            }
+        }
+    }
+
+    private int release() {
+        if (trackCache != null) {
+            trackCache.clear();
+        }
+        return faceEngine.unInit();
+    }
+
+    /**
+     * 提交一帧 NV21 数据，宽度须为 4 的倍数、高度须为 2 的倍数。管线已停止时返回 false。
+     */
+    boolean submitNv21(byte[] nv21, int width, int height) {
+        checkSize(width, height);
+        if (nv21 == null || nv21.length < width * height * 3 / 2) {
+            throw new IllegalArgumentException("NV21 buffer too small for " + width + "x" + height);
+        }
+        Frame frame = obtainFrame(width, height);
+        if (frame == null) {
+            return false;
+        }
+        System.arraycopy(nv21, 0, frame.data, 0, width * height * 3 / 2);
+        enqueue(frame);
+        return true;
+    }
+
+    /**
+     * 提交一帧 YUV_420_888 图像（Camera2 / ImageReader），转换为 NV21 后入队。
+     * 图像由调用方负责 close()。
+     */
+    boolean submitImage(Image image) {
+        if (image.getFormat() != ImageFormat.YUV_420_888) {
+            throw new IllegalArgumentException("Unsupported image format: " + image.getFormat());
+        }
+        // 引擎要求宽度为 4 的倍数、高度为 2 的倍数，多余的边缘像素直接裁掉
+        int width = image.getWidth() & ~3;
+        int height = image.getHeight() & ~1;
+        checkSize(width, height);
+        Frame frame = obtainFrame(width, height);
+        if (frame == null) {
+            return false;
+        }
+        yuv420ToNv21(image, width, height, frame.data);
+        frame.timestamp = image.getTimestamp();
+        enqueue(frame);
+        return true;
+    }
+
+    boolean isRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    long getSubmittedFrames() {
+        synchronized (lock) {
+            return submittedFrames;
+        }
+    }
+
+    long getProcessedFrames() {
+        synchronized (lock) {
+            return processedFrames;
+        }
+    }
+
+    long getDroppedFrames() {
+        synchronized (lock) {
+            return droppedFrames;
+        }
+    }
+
+    double getAverageProcessMillis() {
+        synchronized (lock) {
+            return processedFrames > 0 ? (double) totalProcessMillis / processedFrames : 0;
+        }
+    }
+
+    long getFeatureExtractions() {
+        synchronized (lock) {
+            return featureExtractions;
+        }
+    }
+
+    long getQualityRejections() {
+        synchronized (lock) {
+            return qualityRejections;
+        }
+    }
+
+    /**
+     * 最近一帧的帧序号与检测结果，二者取自同一帧。
+     */
+    static final class LatestFaces {
+        final long sequence;
+        // 长度为 人脸数 * FACE_STRIDE 的扁平数组
+        final int[] faces;
+
+        LatestFaces(long sequence, int[] faces) {
+            this.sequence = sequence;
+            this.faces = faces;
+        }
+    }
+
+    /**
+     * 在一次加锁内复制最近一帧的帧序号与检测结果，分别读取时两次读取之间可能已处理完下一帧。
+     */
+    LatestFaces getLatestFaces() {
+        synchronized (lock) {
+            int[] faces = new int[latestFaceCount * FACE_STRIDE];
+            System.arraycopy(latestFaces, 0, faces, 0, faces.length);
+            return new LatestFaces(latestSequence, faces);
+        }
+    }
+
+    double getFps() {
+        synchronized (lock) {
+            return fps;
+        }
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0 || width % 4 != 0 || height % 2 != 0) {
+            throw new IllegalArgumentException("Invalid NV21 frame size: " + width + "x" + height);
+        }
+    }
+
+    // 取一个空闲帧缓冲，尺寸变化时重新分配
+    private Frame obtainFrame(int width, int height) {
+        synchronized (lock) {
+            if (!running) {
+                return null;
+            }
+            Frame frame = freeFrames.pollFirst();
+            if (frame == null) {
+                frame = new Frame();
+            }
+            int size = width * height * 3 / 2;
+            if (frame.data == null || frame.data.length != size) {
+                frame.data = new byte[size];
+            }
+            frame.width = width;
+            frame.height = height;
+            frame.timestamp = SystemClock.elapsedRealtimeNanos();
+            return frame;
+        }
+    }
+
+    private void enqueue(Frame frame) {
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            frame.sequence = ++sequence;
+            submittedFrames++;
+            if (pending != null) {
+                // 最新帧优先：尚未开始处理的旧帧直接丢弃
+                droppedFrames++;
+                freeFrames.addFirst(pending);
+            }
+            pending = frame;
+            lock.notifyAll();
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            Frame frame;
+            synchronized (lock) {
+                while (running && pending == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                frame = pending;
+                pending = null;
+            }
+
+            long start = SystemClock.elapsedRealtime();
+            try {
+                process(frame, start);
+            } catch (Exception e) {
+                Log.e(TAG, "Frame process error", e);
+            } finally {
+                synchronized (lock) {
+                    freeFrames.addFirst(frame);
+                }
+            }
+        }
+    }
+
+    private void process(Frame frame, long start) {
+        long frameStart = System.nanoTime();
+        faceInfoList.clear();
+        int code = faceEngine.detectFaces(frame.data, frame.width, frame.height, FaceEngine.CP_PAF_NV21, faceInfoList);
+        FaceMetrics.record(FaceMetrics.Stage.DETECT, frameStart);
+        if (code != ErrorInfo.MOK) {
+            listener.onError(frame, code);
+            return;
+        }
+
+        FaceAnalysis analysis = FaceAnalysis.obtain(faceInfoList);
+        if (!faceInfoList.isEmpty() && processMask != FaceEngine.ASF_NONE) {
+            long processStart = System.nanoTime();
+            code = faceEngine.process(frame.data, frame.width, frame.height, FaceEngine.CP_PAF_NV21, faceInfoList, processMask);
+            if (code == ErrorInfo.MOK) {
+                analysis.fetchAttributes(faceEngine, processMask);
+            } else {
+                // 逐帧日志量大，默认级别下不输出
+                FaceLog.d(TAG, "Frame process failed: " + code);
+            }
+            FaceMetrics.record(FaceMetrics.Stage.PROCESS, processStart);
+        }
+
+        int extractions = trackCache != null ? recognize(frame) : 0;
+        int rejections = 0;
+        if (trackCache != null) {
+            for (TrackCache.Track track : tracks) {
+                if (track.rejectReason != null) {
+                    rejections++;
+                }
+            }
+        }
+        FaceMetrics.record(FaceMetrics.Stage.FRAME, frameStart);
+
+        long now = SystemClock.elapsedRealtime();
+        long processMillis = now - start;
+        synchronized (lock) {
+            storeLatestFaces(frame.sequence);
+            processedFrames++;
+            featureExtractions += extractions;
+            qualityRejections += rejections;
+            totalProcessMillis += processMillis;
+            fpsWindowFrames++;
+            if (now - fpsWindowStart >= 1000) {
+                fps = fpsWindowFrames * 1000.0 / (now - fpsWindowStart);
+                fpsWindowStart = now;
+                fpsWindowFrames = 0;
+            }
+        }
+        listener.onFrame(frame, analysis, trackCache != null ? tracks : null, processMillis);
+    }
+
+    // 调用方需持有 lock
+    private void storeLatestFaces(long frameSequence) {
+        int size = faceInfoList.size() * FACE_STRIDE;
+        if (latestFaces.length < size) {
+            latestFaces = new int[size];
+        }
+        int offset = 0;
+        for (FaceInfo faceInfo : faceInfoList) {
+            latestFaces[offset++] = faceInfo.getFaceId();
+            latestFaces[offset++] = faceInfo.getRect().left;
+            latestFaces[offset++] = faceInfo.getRect().top;
+            latestFaces[offset++] = faceInfo.getRect().right;
+            latestFaces[offset++] = faceInfo.getRect().bottom;
+            latestFaces[offset++] = faceInfo.getOrient();
+        }
+        latestFaceCount = faceInfoList.size();
+        latestSequence = frameSequence;
+    }
+
+    // 按跟踪缓存决定是否提取特征，特征或特征库变化时重新检索，返回本帧提取特征的次数
+    private int recognize(Frame frame) {
+        trackCache.update(faceInfoList, tracks);
+        long now = SystemClock.elapsedRealtime();
+        int extractions = 0;
+        for (int i = 0; i < faceInfoList.size(); i++) {
+            FaceInfo faceInfo = faceInfoList.get(i);
+            TrackCache.Track track = tracks.get(i);
+            // 窗口进行中时即使质量回落到不再需要提取，也要在窗口结束时完成提取
+            if (trackCache.needsExtraction(track, faceInfo, now) || track.candidateSince >= 0) {
+                // 未设置门限和窗口时不评估，保持原有开销
+                FaceQuality.Score score = quality == null && bestFrameWindow <= 0 ? null
+                        : (quality != null ? quality : FaceQuality.NONE).evaluate(frame.data, frame.width, frame.height,
+                        FaceEngine.CP_PAF_NV21, faceInfo, Math.min(faceInfo.getRect().width(), faceInfo.getRect().height()));
+                track.rejectReason = score != null ? score.reason : null;
+                if (score == null) {
+                    if (extract(track, frame.data, frame.width, frame.height, faceInfo, now)) {
+                        extractions++;
+                    }
+                } else if (bestFrameWindow <= 0) {
+                    if (score.passed() && extract(track, frame.data, frame.width, frame.height, faceInfo, now)) {
+                        extractions++;
+                    }
+                } else {
+                    if (score.passed()) {
+                        trackCache.offerCandidate(track, frame.data, frame.width, frame.height, faceInfo, score.score, now);
+                    }
+                    if (track.candidateSince >= 0 && now - track.candidateSince >= bestFrameWindow) {
+                        if (extract(track, track.candidateFrame, track.candidateWidth, track.candidateHeight, track.candidateFace, now)) {
+                            extractions++;
+                        }
+                        trackCache.clearCandidate(track);
+                    }
+                }
+            }
+            long version = gallery.getVersion();
+            if (track.hasFeature && track.galleryVersion != version) {
+                List<FeatureGallery.Match> matches = gallery.searchTopK(faceEngine, track.feature, 1, matchThreshold);
+                track.matchId = matches.isEmpty() ? null : matches.get(0).id;
+                track.matchScore = matches.isEmpty() ? 0 : matches.get(0).score;
+                track.galleryVersion = version;
+            }
+        }
+        return extractions;
+    }
+
+    private boolean extract(TrackCache.Track track, byte[] data, int width, int height, FaceInfo faceInfo, long now) {
+        long extractStart = System.nanoTime();
+        int code = faceEngine.extractFaceFeature(data, width, height, FaceEngine.CP_PAF_NV21,
+                faceInfo, ExtractType.RECOGNIZE, 0, faceFeature);
+        FaceMetrics.record(FaceMetrics.Stage.EXTRACT, extractStart);
+        if (code != ErrorInfo.MOK) {
+            FaceLog.d(TAG, "Track " + track.faceId + " extract failed: " + code);
+            return false;
+        }
+        System.arraycopy(faceFeature.getFeatureData(), 0, track.feature, 0, track.feature.length);
+        trackCache.markExtracted(track, faceInfo, now);
+        return true;
+    }
+
+    // YUV_420_888 转 NV21（Y 平面后接交错的 VU），按行/像素跨度逐行复制，兼容各厂商的平面布局
+    private static void yuv420ToNv21(Image image, int width, int height, byte[] out) {
+        Image.Plane[] planes = image.getPlanes();
+        ByteBuffer yBuffer = planes[0].getBuffer();
+        int yRowStride = planes[0].getRowStride();
+        int offset = 0;
+        for (int row = 0; row < height; row++) {
+            yBuffer.position(row * yRowStride);
+            yBuffer.get(out, offset, width);
+            offset += width;
+        }
+
+        ByteBuffer uBuffer = planes[1].getBuffer();
+        ByteBuffer vBuffer = planes[2].getBuffer();
+        int uvRowStride = planes[1].getRowStride();
+        int uvPixelStride = planes[1].getPixelStride();
+        for (int row = 0; row < height / 2; row++) {
+            int rowStart = row * uvRowStride;
+            for (int col = 0; col < width / 2; col++) {
+                int index = rowStart + col * uvPixelStride;
+                out[offset++] = vBuffer.get(index);
+                out[offset++] = uBuffer.get(index);
+            }
+        }
+    }
+}
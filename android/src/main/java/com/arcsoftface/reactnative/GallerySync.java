@@ -0,0 +1,490 @@
+package com.arcsoftface.reactnative;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 特征库的增量同步：持久化特征库、变更日志与内存特征库的所有写操作都经由此类串行执行，
+ * 并以 delta 文件在设备之间或与服务端交换某个序列号之后的新增、覆盖与删除。
+ *
+ * delta 文件布局（大端序）：
+ * <pre>
+ * | header: magic, version, featureSize, flags, sourceId, fromSequence, toSequence, count |
+ * | entry: op, id, feature（仅 upsert） | ... | CRC32 |
+ * </pre>
+ * 每个变更过的 id 只导出一条记录，内容取导出时特征库中的实际状态：存在则为 upsert，不存在则为 delete。
+ * 起始序列号早于日志的 minSequence 或来源不一致时导出全量（flags 含 FLAG_FULL），导入方删除 delta 中没有的 id。
+ *
+ * 导入分三遍流式读取：先校验头部与 CRC，再按批写入变更日志与持久化特征库（每批 fsync 一次），
+ * 最后在 FeatureGallery.applyAtomically 中切换持久化特征库的暂存内容，并把变更过的 id 载入内存特征库。
+ * 第一遍每 APPLY_CHUNK 条记录记下一次 CRC 的中间值，第二遍重新计算并在写入每批之前比对，
+ * 文件在两遍之间被替换或截断时，未经校验的内容不会写入。
+ * 写入期间检索继续使用导入前的内存特征库与持久化特征库（紧凑编码的重排从后者读取），
+ * 只在最后的切换与载入期间短暂等待，之后看到导入后的完整状态。
+ * 内存中只保留一批记录与变更过的 id 列表，特征数据不随 delta 或特征库大小增长。
+ *
+ * 每个来源最近一次导入的 toSequence 记录在 importFile 中：非全量 delta 的 fromSequence 晚于该来源已导入的序列号时，
+ * 中间的变更会被漏掉，以 DELTA_GAP 拒绝，由调用方改用已导入的序列号重新导出或请求全量。
+ */
+final class GallerySync {
+    static final int OP_UPSERT = 1;
+    static final int OP_DELETE = 2;
+    static final int FLAG_FULL = 1;
+
+    private static final int MAGIC = 0x44474641; // "AFGD"
+    private static final int VERSION = 1;
+    // 导入时每批写入的记录数，决定每批驻留内存的特征数与 fsync 次数
+    private static final int APPLY_CHUNK = 256;
+    private static final int IMPORT_MAGIC = 0x49474641; // "AFGI"
+    private static final int IMPORT_VERSION = 1;
+
+    private final FeatureStore store;
+    private final ChangeJournal journal;
+    private final FeatureGallery gallery;
+    private final int featureSize;
+    private final File importFile;
+    // 变更日志、持久化特征库与内存特征库的写操作互相串行，保证三者按相同的顺序修改
+    private final Object writeLock = new Object();
+    // 每个来源已导入的 toSequence，首次使用时从 importFile 读取
+    private HashMap<String, Long> importedBySource;
+
+    static final class Summary {
+        String sourceId;
+        long fromSequence;
+        long toSequence;
+        boolean full;
+        int upserts;
+        int deletes;
+        // 导入时与本地内容相同而跳过的记录数
+        int skipped;
+        long bytes;
+        // 导入后本地日志的最新序列号
+        long sequence;
+
+        WritableMap toMap() {
+            WritableMap map = Arguments.createMap();
+            map.putString("sourceId", sourceId);
+            map.putDouble("fromSequence", fromSequence);
+            map.putDouble("toSequence", toSequence);
+            map.putBoolean("full", full);
+            map.putInt("upserts", upserts);
+            map.putInt("deletes", deletes);
+            map.putInt("skipped", skipped);
+            map.putDouble("bytes", bytes);
+            map.putDouble("sequence", sequence);
+            return map;
+        }
+    }
+
+    GallerySync(FeatureStore store, ChangeJournal journal, FeatureGallery gallery, File importFile) {
+        this.store = store;
+        this.journal = journal;
+        this.gallery = gallery;
+        this.featureSize = gallery.getFeatureSize();
+        this.importFile = importFile;
+    }
+
+    ChangeJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * 每个来源最近一次导入的 toSequence。
+     */
+    Map<String, Long> getImportedSequences() throws IOException {
+        synchronized (writeLock) {
+            return new HashMap<>(imported());
+        }
+    }
+
+    void register(String id, byte[] featureData) throws IOException, FaceException {
+        store.checkRecord(id, featureData);
+        synchronized (writeLock) {
+            journal.record(id, false);
+            store.put(id, featureData);
+            gallery.register(id, featureData);
+        }
+    }
+
+    boolean remove(String id) throws IOException {
+        synchronized (writeLock) {
+            if (store.contains(id)) {
+                journal.record(id, true);
+            }
+            boolean removed = store.remove(id);
+            return gallery.remove(id) || removed;
+        }
+    }
+
+    void clear() throws IOException {
+        synchronized (writeLock) {
+            // 先前移日志的 minSequence：清空中途崩溃时，同步方总会拿到全量
+            journal.reset();
+            store.clear();
+            gallery.clear();
+            // 本地内容已不含此前导入的变更，之后从任何来源都需要重新从头同步
+            imported().clear();
+            saveImported();
+        }
+    }
+
+    /**
+     * 重写持久化特征库文件以回收已删除与被覆盖的记录，返回回收的记录数。
+     * 与其他写操作串行，期间 read 继续读取旧映射。
+     */
+    int compact() throws IOException {
+        synchronized (writeLock) {
+            int before = store.getRecordCount();
+            store.compact();
+            return before - store.getRecordCount();
+        }
+    }
+
+    /**
+     * 导出 since 之后的变更到 target（先写临时文件再重命名）。sourceId 不为 null 且与本地日志不一致时导出全量。
+     */
+    Summary exportDelta(File target, long since, String sourceId) throws IOException {
+        Summary summary = new Summary();
+        List<String> ids = new ArrayList<>();
+        synchronized (writeLock) {
+            // 在写锁内取快照：日志中已记录的变更都已写入特征库，之后读到的内容只会更新
+            summary.sourceId = journal.getSourceId();
+            summary.toSequence = journal.getSequence();
+            List<ChangeJournal.Change> changes = sourceId == null || sourceId.equals(summary.sourceId)
+                    ? journal.changesSince(since) : null;
+            if (changes != null) {
+                summary.fromSequence = since;
+                for (ChangeJournal.Change change : changes) {
+                    ids.add(change.id);
+                }
+            } else {
+                summary.full = true;
+                ids.addAll(store.ids());
+            }
+        }
+
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory: " + dir);
+        }
+        File tmp = new File(target.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        try {
+            BufferedOutputStream buffered = new BufferedOutputStream(fileOut);
+            DataOutputStream data = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(featureSize);
+            data.writeInt(summary.full ? FLAG_FULL : 0);
+            data.writeUTF(summary.sourceId);
+            data.writeLong(summary.fromSequence);
+            data.writeLong(summary.toSequence);
+            data.writeInt(ids.size());
+            byte[] featureData = new byte[featureSize];
+            for (String id : ids) {
+                if (store.read(id, featureData)) {
+                    data.writeByte(OP_UPSERT);
+                    data.writeUTF(id);
+                    data.write(featureData);
+                    summary.upserts++;
+                } else {
+                    data.writeByte(OP_DELETE);
+                    data.writeUTF(id);
+                    summary.deletes++;
+                }
+            }
+            data.flush();
+            // CRC 覆盖 CRC 之前的全部字节，本身不计入
+            new DataOutputStream(buffered).writeInt((int) crc.getValue());
+            buffered.flush();
+            fileOut.getChannel().force(true);
+        } finally {
+            fileOut.close();
+        }
+        try {
+            FileSync.replace(tmp, target);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        summary.bytes = target.length();
+        summary.sequence = summary.toSequence;
+        return summary;
+    }
+
+    /**
+     * 校验并导入 delta 文件。校验失败或与已导入的序列号之间有缺口时不做任何修改；
+     * 写入过程中出错时已写入的批次保留并生效，重新导入同一文件即可补齐。
+     */
+    Summary importDelta(File source) throws IOException, FaceException {
+        Set<String> fullIds = new HashSet<>();
+        List<Integer> checkpoints = new ArrayList<>();
+        Summary summary = verify(source, fullIds, checkpoints);
+        summary.upserts = 0;
+        summary.deletes = 0;
+        synchronized (writeLock) {
+            Long imported = imported().get(summary.sourceId);
+            long last = imported != null ? imported : 0;
+            if (!summary.full && summary.fromSequence > last) {
+                throw new FaceException("DELTA_GAP", "Delta from " + summary.sourceId + " starts at sequence "
+                        + summary.fromSequence + " but only " + last + " has been imported");
+            }
+            final List<String> changed = new ArrayList<>();
+            // 紧凑编码的检索从持久化特征库读取全精度特征重排：写入期间 read 仍读取导入前的内容，
+            // 与内存特征库在 applyAtomically 中一起切换，快照锁只在切换与载入期间持有
+            store.stage();
+            try {
+                write(source, summary, fullIds, checkpoints, changed);
+            } finally {
+                // 出错时已写入的批次同样切换并载入，持久化特征库与内存特征库保持一致
+                gallery.applyAtomically(new FeatureGallery.Batch() {
+                    @Override
+                    public void apply() {
+                        store.publish();
+                        load(changed);
+                    }
+                });
+            }
+            imported().put(summary.sourceId, summary.full ? summary.toSequence : Math.max(last, summary.toSequence));
+            saveImported();
+            summary.sequence = journal.getSequence();
+        }
+        summary.bytes = source.length();
+        return summary;
+    }
+
+    // 第一遍：校验头部、记录结构与 CRC，全量 delta 时收集其中的 id；
+    // checkpoints 依次为每 APPLY_CHUNK 条记录之后的 CRC 中间值，最后一个是整个文件的 CRC
+    private Summary verify(File source, Set<String> fullIds, List<Integer> checkpoints) throws IOException, FaceException {
+        CRC32 crc = new CRC32();
+        BufferedInputStream buffered = new BufferedInputStream(new FileInputStream(source));
+        try {
+            DataInputStream data = new DataInputStream(new CheckedInputStream(buffered, crc));
+            Summary summary = readHeader(data);
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                int op = data.readByte();
+                String id = data.readUTF();
+                if (op == OP_UPSERT) {
+                    skipFully(data, featureSize);
+                    summary.upserts++;
+                } else if (op == OP_DELETE) {
+                    summary.deletes++;
+                } else {
+                    throw new FaceException("INVALID_DELTA", "Unknown operation " + op + " at entry " + i);
+                }
+                if (summary.full) {
+                    fullIds.add(id);
+                }
+                if ((i + 1) % APPLY_CHUNK == 0) {
+                    checkpoints.add((int) crc.getValue());
+                }
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(buffered).readInt() != expected || buffered.read() != -1) {
+                throw new FaceException("INVALID_DELTA", "Checksum mismatch: " + source);
+            }
+            checkpoints.add(expected);
+            return summary;
+        } catch (EOFException e) {
+            throw new FaceException("INVALID_DELTA", "Truncated delta: " + source);
+        } finally {
+            buffered.close();
+        }
+    }
+
+    // 第二遍：按批写入变更日志与持久化特征库，与本地内容相同的记录跳过；变更过的 id 追加到 changed。
+    // 每批写入前比对 CRC 中间值，确认读到的内容与第一遍校验的相同
+    private void write(File source, Summary summary, Set<String> fullIds, List<Integer> checkpoints,
+                       List<String> changed) throws IOException, FaceException {
+        List<String> ids = new ArrayList<>(APPLY_CHUNK);
+        List<byte[]> features = new ArrayList<>(APPLY_CHUNK);
+        byte[] current = new byte[featureSize];
+        CRC32 crc = new CRC32();
+        BufferedInputStream buffered = new BufferedInputStream(new FileInputStream(source));
+        try {
+            DataInputStream data = new DataInputStream(new CheckedInputStream(buffered, crc));
+            readHeader(data);
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                int op = data.readByte();
+                String id = data.readUTF();
+                if (op == OP_UPSERT) {
+                    byte[] featureData = new byte[featureSize];
+                    data.readFully(featureData);
+                    if (store.read(id, current) && Arrays.equals(current, featureData)) {
+                        summary.skipped++;
+                    } else {
+                        ids.add(id);
+                        features.add(featureData);
+                        summary.upserts++;
+                    }
+                } else if (store.contains(id)) {
+                    ids.add(id);
+                    features.add(null);
+                    summary.deletes++;
+                } else {
+                    summary.skipped++;
+                }
+                // 批次边界与第一遍的 CRC 中间值对齐，每批最多 APPLY_CHUNK 条
+                if ((i + 1) % APPLY_CHUNK == 0) {
+                    checkCrc(source, crc, checkpoints, (i + 1) / APPLY_CHUNK - 1);
+                    flush(ids, features, changed);
+                }
+            }
+            checkCrc(source, crc, checkpoints, checkpoints.size() - 1);
+            if (new DataInputStream(buffered).readInt() != checkpoints.get(checkpoints.size() - 1)) {
+                throw new FaceException("INVALID_DELTA", "Delta changed during import: " + source);
+            }
+        } catch (EOFException e) {
+            throw new FaceException("INVALID_DELTA", "Delta changed during import: " + source);
+        } finally {
+            buffered.close();
+        }
+        if (summary.full) {
+            // 全量 delta 中没有的本地 id 视为已删除
+            for (String id : store.ids()) {
+                if (fullIds.contains(id)) {
+                    continue;
+                }
+                ids.add(id);
+                features.add(null);
+                summary.deletes++;
+                if (ids.size() == APPLY_CHUNK) {
+                    flush(ids, features, changed);
+                }
+            }
+        }
+        flush(ids, features, changed);
+    }
+
+    private static void checkCrc(File source, CRC32 crc, List<Integer> checkpoints, int index) throws FaceException {
+        // 记录数被改大时会读到超出第一遍的批次
+        if (index >= checkpoints.size() || (int) crc.getValue() != checkpoints.get(index)) {
+            throw new FaceException("INVALID_DELTA", "Delta changed during import: " + source);
+        }
+    }
+
+    private void flush(List<String> ids, List<byte[]> features, List<String> changed) throws IOException, FaceException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        boolean[] deleted = new boolean[ids.size()];
+        for (int i = 0; i < deleted.length; i++) {
+            deleted[i] = features.get(i) == null;
+        }
+        journal.record(ids, deleted);
+        store.apply(ids, features);
+        changed.addAll(ids);
+        ids.clear();
+        features.clear();
+    }
+
+    // 第三遍：以持久化特征库为准更新内存特征库中变更过的 id
+    private void load(List<String> changed) {
+        byte[] featureData = new byte[featureSize];
+        for (String id : changed) {
+            if (store.read(id, featureData)) {
+                gallery.register(id, featureData);
+            } else {
+                gallery.remove(id);
+            }
+        }
+    }
+
+    private HashMap<String, Long> imported() throws IOException {
+        if (importedBySource == null) {
+            HashMap<String, Long> loaded = new HashMap<>();
+            if (importFile.exists()) {
+                DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(importFile)));
+                try {
+                    if (data.readInt() == IMPORT_MAGIC && data.readInt() == IMPORT_VERSION) {
+                        int count = data.readInt();
+                        for (int i = 0; i < count; i++) {
+                            loaded.put(data.readUTF(), data.readLong());
+                        }
+                    }
+                } catch (EOFException e) {
+                    // 不完整或无法识别的文件按从未导入处理：之后的非全量 delta 被拒绝，改为全量同步，不会漏掉变更
+                    loaded.clear();
+                } finally {
+                    data.close();
+                }
+            }
+            importedBySource = loaded;
+        }
+        return importedBySource;
+    }
+
+    // 写入临时文件并 fsync 后原子替换
+    private void saveImported() throws IOException {
+        File tmp = new File(importFile.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        try {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(fileOut));
+            data.writeInt(IMPORT_MAGIC);
+            data.writeInt(IMPORT_VERSION);
+            data.writeInt(importedBySource.size());
+            for (Map.Entry<String, Long> entry : importedBySource.entrySet()) {
+                data.writeUTF(entry.getKey());
+                data.writeLong(entry.getValue());
+            }
+            data.flush();
+            fileOut.getChannel().force(true);
+        } finally {
+            fileOut.close();
+        }
+        FileSync.replace(tmp, importFile);
+    }
+
+    private Summary readHeader(DataInputStream data) throws IOException, FaceException {
+        if (data.readInt() != MAGIC) {
+            throw new FaceException("INVALID_DELTA", "Not a gallery delta");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new FaceException("INVALID_DELTA", "Unsupported delta version: " + version);
+        }
+        int size = data.readInt();
+        if (size != featureSize) {
+            throw new FaceException("INVALID_DELTA", "Feature size " + size + " does not match " + featureSize);
+        }
+        Summary summary = new Summary();
+        summary.full = (data.readInt() & FLAG_FULL) != 0;
+        summary.sourceId = data.readUTF();
+        summary.fromSequence = data.readLong();
+        summary.toSequence = data.readLong();
+        return summary;
+    }
+
+    private static void skipFully(DataInputStream data, int length) throws IOException {
+        while (length > 0) {
+            int skipped = data.skipBytes(length);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            length -= skipped;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * BGR24 缓冲区与 Bitmap 的复用池。
+ * 缓冲区按字节长度分桶（ArcSoftImageUtil 要求长度与宽高严格匹配），
+ * Bitmap 通过 BitmapFactory.Options.inBitmap 复用；池内总字节数受 maxBytes 限制。
+ */
+class ImageBufferPool {
+    private static final int MAX_BITMAPS = 3;
+
+    private final HashMap<Integer, ArrayDeque<byte[]>> buffers = new HashMap<>();
+    private final ArrayList<Bitmap> bitmaps = new ArrayList<>();
+    private long maxBytes;
+    private long pooledBytes;
+
+    private long bufferAllocations;
+    private long bufferReuses;
+    private long bitmapAllocations;
+    private long bitmapReuses;
+
+    ImageBufferPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized byte[] acquireBuffer(int size) {
+        ArrayDeque<byte[]> bucket = buffers.get(size);
+        byte[] buffer = bucket != null ? bucket.pollFirst() : null;
+        if (buffer != null) {
+            pooledBytes -= size;
+            bufferReuses++;
+            return buffer;
+        }
+        bufferAllocations++;
+        return new byte[size];
+    }
+
+    synchronized void releaseBuffer(byte[] buffer) {
+        if (buffer == null || !makeRoom(buffer.length)) {
+            return;
+        }
+        ArrayDeque<byte[]> bucket = buffers.get(buffer.length);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buffers.put(buffer.length, bucket);
+        }
+        bucket.addFirst(buffer);
+        pooledBytes += buffer.length;
+    }
+
+    /**
+     * 取出一个可容纳 width x height ARGB_8888 图像的 Bitmap，供 inBitmap 复用；没有时返回 null。
+     */
+    synchronized Bitmap acquireBitmap(int width, int height) {
+        long required = (long) width * height * 4;
+        Bitmap best = null;
+        for (Bitmap bitmap : bitmaps) {
+            int size = bitmap.getAllocationByteCount();
+            if (size >= required && (best == null || size < best.getAllocationByteCount())) {
+                best = bitmap;
+            }
+        }
+        if (best != null) {
+            bitmaps.remove(best);
+            pooledBytes -= best.getAllocationByteCount();
+            bitmapReuses++;
+        } else {
+            bitmapAllocations++;
+        }
+        return best;
+    }
+
+    /**
+     * 取出一个 width x height 的 ARGB_8888 Bitmap 作为绘制目标：复用池中容量足够的 Bitmap，没有时新建。
+     */
+    Bitmap obtainBitmap(int width, int height) {
+        Bitmap bitmap = acquireBitmap(width, height);
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        return bitmap;
+    }
+
+    // acquireBitmap 取出的 Bitmap 不能用作 inBitmap，解码器另行新建，改记为一次分配
+    synchronized void onBitmapRejected() {
+        bitmapReuses--;
+        bitmapAllocations++;
+    }
+
+    synchronized void releaseBitmap(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888 || !makeRoom(size)) {
+            bitmap.recycle();
+            return;
+        }
+        // 数量已满时丢弃最早放入的，保留最近一次调用用到的尺寸，避免早先的小 Bitmap 长期占位
+        if (bitmaps.size() >= MAX_BITMAPS) {
+            Bitmap oldest = bitmaps.remove(0);
+            pooledBytes -= oldest.getAllocationByteCount();
+            oldest.recycle();
+        }
+        bitmaps.add(bitmap);
+        pooledBytes += size;
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        makeRoom(0);
+    }
+
+    synchronized void clear() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        buffers.clear();
+        pooledBytes = 0;
+    }
+
+    synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    synchronized long getBufferAllocations() {
+        return bufferAllocations;
+    }
+
+    synchronized long getBufferReuses() {
+        return bufferReuses;
+    }
+
+    synchronized long getBitmapAllocations() {
+        return bitmapAllocations;
+    }
+
+    synchronized long getBitmapReuses() {
+        return bitmapReuses;
+    }
+
+    synchronized void resetStats() {
+        bufferAllocations = 0;
+        bufferReuses = 0;
+        bitmapAllocations = 0;
+        bitmapReuses = 0;
+    }
+
+    // 为新放入的 size 字节腾出空间，先丢弃缓冲区再丢弃 Bitmap；size 本身超过上限时返回 false
+    private boolean makeRoom(long size) {
+        if (size > maxBytes) {
+            return false;
+        }
+        Iterator<ArrayDeque<byte[]>> bucketIterator = buffers.values().iterator();
+        while (pooledBytes + size > maxBytes && bucketIterator.hasNext()) {
+            ArrayDeque<byte[]> bucket = bucketIterator.next();
+            while (pooledBytes + size > maxBytes && !bucket.isEmpty()) {
+                pooledBytes -= bucket.pollLast().length;
+            }
+            if (bucket.isEmpty()) {
+                bucketIterator.remove();
+            }
+        }
+        while (pooledBytes + size > maxBytes && !bitmaps.isEmpty()) {
+            Bitmap bitmap = bitmaps.remove(0);
+            pooledBytes -= bitmap.getAllocationByteCount();
+            bitmap.recycle();
+        }
+        return pooledBytes + size <= maxBytes;
+    }
+}
@@ -0,0 +1,139 @@
+package com.arcsoftface.reactnative;
+
+import com.arcsoft.face.FaceInfo;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已解码 BGR24 图像及其人脸检测结果的 LRU 缓存，按字节数限制容量。
+ * 缓存键由文件路径、文件大小和修改时间组成，文件被覆盖后旧条目自动失效。
+ * 缓存对图像持有一个引用，get/put 返回的条目另外持有调用方的引用，调用方用完后需 release()。
+ */
+class ImageCache {
+    static class Entry {
+        final Bgr24Image image;
+        // 首次检测后写入，之后对同一图片的调用直接复用
+        volatile List<FaceInfo> faceInfoList;
+
+        Entry(Bgr24Image image) {
+            this.image = image;
+        }
+
+        int byteSize() {
+            return image.data.length;
+        }
+
+        void release() {
+            image.release();
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private long bytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static String keyFor(String imagePath) {
+        File file = new File(imagePath);
+        if (!file.isFile()) {
+            return null;
+        }
+        return imagePath + '|' + file.length() + '|' + file.lastModified();
+    }
+
+    synchronized Entry get(String key) {
+        Entry entry = key != null ? entries.get(key) : null;
+        if (entry != null) {
+            entry.image.retain();
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * 放入缓存并返回对应条目，image 中调用方的引用转移给返回的条目；
+     * 超过容量上限的图片不缓存，但仍返回可用的条目。
+     */
+    synchronized Entry put(String key, Bgr24Image image) {
+        Entry entry = new Entry(image);
+        if (key == null || entry.byteSize() > maxBytes) {
+            return entry;
+        }
+        image.retain();
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.byteSize();
+            previous.release();
+        }
+        bytes += entry.byteSize();
+        trimToSize(maxBytes);
+        return entry;
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    synchronized void trimToSize(long targetBytes) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > targetBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            bytes -= entry.byteSize();
+            entry.release();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    synchronized void clear() {
+        evictionCount += entries.size();
+        for (Entry entry : entries.values()) {
+            entry.release();
+        }
+        entries.clear();
+        bytes = 0;
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+}
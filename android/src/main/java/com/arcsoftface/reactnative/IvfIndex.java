@@ -0,0 +1,406 @@
+package com.arcsoftface.reactnative;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 倒排文件（IVF）近似索引：用球面 k-means 将特征向量划分到若干个簇，检索时只扫描簇心与探针最接近的 probes 个簇，
+ * 以余弦相似度粗排后保留前 rerank 个候选，由 FeatureGallery 用引擎 compareFaceFeature 精确重排。
+ * IvfIndex 保存簇心与检索参数，各分片的分簇信息保存在各自的 Lists 中，向量通过分片的 FeatureVectors.Source 读取；
+ * Lists 的修改方法由 FeatureGallery 在分片写锁内调用，scan 在分片读锁内调用。
+ */
+class IvfIndex {
+    private static final int MAGIC = 0x46564941; // "AIVF"
+    private static final int VERSION = 1;
+    static final int DEFAULT_PROBES = 8;
+    static final int DEFAULT_RERANK = 64;
+    static final int DEFAULT_ITERATIONS = 10;
+    // 训练样本数为簇数的倍数，并限制上限以控制训练内存（每个样本 dimension * 4 字节）
+    private static final int TRAIN_POINTS_PER_LIST = 32;
+    private static final int MAX_TRAIN_SAMPLES = 16384;
+    private static final int MIN_PARALLEL_ITEMS = 1024;
+
+    private final int featureSize;
+    private final int dimension;
+    private final int listCount;
+    private final float[] centroids;
+    private volatile int probes = DEFAULT_PROBES;
+    private volatile int rerank = DEFAULT_RERANK;
+
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    IvfIndex(int featureSize, float[] centroids) {
+        this.featureSize = featureSize;
+        this.dimension = FeatureVectors.dimension(featureSize);
+        this.listCount = centroids.length / dimension;
+        this.centroids = centroids;
+    }
+
+    /**
+     * 从 count 个向量中训练 listCount 个簇时使用的样本数。
+     */
+    static int trainingSampleCount(int count, int listCount) {
+        return Math.min(count, Math.min(Math.max(listCount, 1) * TRAIN_POINTS_PER_LIST, MAX_TRAIN_SAMPLES));
+    }
+
+    /**
+     * 以 data 中的 samples 个已归一化向量（顺序随机）训练 listCount 个簇心，返回尚未分簇的索引。
+     */
+    static IvfIndex train(final float[] data, final int samples, int featureSize, int listCount, int iterations, Random random) {
+        final int dimension = FeatureVectors.dimension(featureSize);
+        listCount = Math.max(1, Math.min(listCount, samples));
+
+        // 样本顺序是随机的，前 listCount 个直接作为初始簇心
+        final float[] centroids = Arrays.copyOf(data, listCount * dimension);
+        final int lists = listCount;
+        final int[] assignment = new int[samples];
+        int[] members = new int[listCount];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            parallel(samples, new RangeTask() {
+                @Override
+                public void run(int from, int to) {
+                    for (int i = from; i < to; i++) {
+                        assignment[i] = nearest(centroids, lists, dimension, data, i * dimension);
+                    }
+                }
+            });
+            Arrays.fill(centroids, 0);
+            Arrays.fill(members, 0);
+            for (int i = 0; i < samples; i++) {
+                int c = assignment[i];
+                members[c]++;
+                int base = c * dimension;
+                int offset = i * dimension;
+                for (int d = 0; d < dimension; d++) {
+                    centroids[base + d] += data[offset + d];
+                }
+            }
+            for (int c = 0; c < listCount; c++) {
+                if (members[c] == 0) {
+                    // 空簇用随机样本重新播种
+                    System.arraycopy(data, random.nextInt(samples) * dimension, centroids, c * dimension, dimension);
+                } else {
+                    normalize(centroids, c * dimension, dimension);
+                }
+            }
+        }
+        return new IvfIndex(featureSize, centroids);
+    }
+
+    int getListCount() {
+        return listCount;
+    }
+
+    int getProbes() {
+        return probes;
+    }
+
+    void setProbes(int probes) {
+        this.probes = Math.max(1, probes);
+    }
+
+    int getRerank() {
+        return rerank;
+    }
+
+    void setRerank(int rerank) {
+        this.rerank = Math.max(1, rerank);
+    }
+
+    Lists newLists() {
+        return new Lists();
+    }
+
+    /**
+     * 返回簇心与 probe（已归一化）最接近的 probes 个簇，所有分片共用同一结果。
+     */
+    int[] nearestLists(float[] probe) {
+        int probeCount = Math.min(probes, listCount);
+        TopKHeap heap = new TopKHeap(probeCount);
+        for (int c = 0; c < listCount; c++) {
+            heap.offer(c, FeatureVectors.dot(centroids, c * dimension, probe, 0, dimension));
+        }
+        int[] chosen = new int[heap.size()];
+        heap.drainDescending(chosen, new float[chosen.length]);
+        return chosen;
+    }
+
+    /**
+     * 写出簇心与检索参数，之后由各分片的 Lists.write 依次写出共 count 条 id 与簇的对应关系。
+     * 恢复时槽位顺序和所在分片可能不同，因此按 id 保存分簇。
+     */
+    void write(DataOutputStream out, int count) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(featureSize);
+        out.writeInt(listCount);
+        out.writeInt(probes);
+        out.writeInt(rerank);
+        for (float value : centroids) {
+            out.writeFloat(value);
+        }
+        out.writeInt(count);
+    }
+
+    /**
+     * 读取 write 写出的索引，文件中的 id 与簇的对应关系写入 assignments。
+     */
+    static IvfIndex read(DataInputStream in, int featureSize, Map<String, Integer> assignments) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an index file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported index version: " + version);
+        }
+        int fileFeatureSize = in.readInt();
+        if (fileFeatureSize != featureSize) {
+            throw new IOException("Feature size mismatch: " + fileFeatureSize + ", expected " + featureSize);
+        }
+        int listCount = in.readInt();
+        int probes = in.readInt();
+        int rerank = in.readInt();
+        float[] centroids = new float[listCount * FeatureVectors.dimension(featureSize)];
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = in.readFloat();
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String id = in.readUTF();
+            assignments.put(id, in.readInt());
+        }
+        IvfIndex index = new IvfIndex(featureSize, centroids);
+        index.setProbes(probes);
+        index.setRerank(rerank);
+        return index;
+    }
+
+    /**
+     * 一个分片内各槽位的分簇信息。按槽位记录所属簇、在簇内的位置与向量长度，删除与移动都是 O(1)。
+     */
+    final class Lists {
+        private final int[][] lists = new int[listCount][];
+        private final int[] listSizes = new int[listCount];
+        private int[] listOf = new int[0];
+        private int[] positions = new int[0];
+        private float[] norms = new float[0];
+        private int size;
+
+        private Lists() {
+            for (int i = 0; i < listCount; i++) {
+                lists[i] = new int[8];
+            }
+        }
+
+        IvfIndex index() {
+            return IvfIndex.this;
+        }
+
+        int listOf(int slot) {
+            return listOf[slot];
+        }
+
+        /**
+         * 丢弃现有分簇，将前 count 个槽位全部重新分配到最近的簇。
+         */
+        void assignAll(final FeatureVectors.Source vectors, int count) {
+            clear();
+            ensureSlots(count);
+            parallel(count, new RangeTask() {
+                @Override
+                public void run(int from, int to) {
+                    float[] row = new float[dimension];
+                    for (int slot = from; slot < to; slot++) {
+                        norms[slot] = vectors.read(slot, row);
+                        listOf[slot] = nearest(centroids, listCount, dimension, row, 0);
+                    }
+                }
+            });
+            for (int slot = 0; slot < count; slot++) {
+                attach(slot, listOf[slot]);
+            }
+            size = count;
+        }
+
+        /**
+         * 槽位新增（slot == size）或特征被覆盖时调用，重新计算其所属的簇。
+         */
+        void assign(int slot, FeatureVectors.Source vectors) {
+            float[] row = new float[dimension];
+            float norm = vectors.read(slot, row);
+            assign(slot, nearest(centroids, listCount, dimension, row, 0), norm);
+        }
+
+        /**
+         * 以已知的簇分配槽位（从文件恢复或在分片间移动时使用），list 越界时重新计算。
+         */
+        void assign(int slot, FeatureVectors.Source vectors, int list) {
+            if (list < 0 || list >= listCount) {
+                assign(slot, vectors);
+                return;
+            }
+            assign(slot, list, vectors.norm(slot));
+        }
+
+        /**
+         * 删除 slot；分片用最后一个槽位 last 填补空位，这里同步移动其分簇信息。
+         */
+        void remove(int slot, int last) {
+            detach(slot);
+            if (slot != last) {
+                int list = listOf[last];
+                int position = positions[last];
+                lists[list][position] = slot;
+                listOf[slot] = list;
+                positions[slot] = position;
+                norms[slot] = norms[last];
+            }
+            size = last;
+        }
+
+        void clear() {
+            Arrays.fill(listSizes, 0);
+            size = 0;
+        }
+
+        /**
+         * 分片切换存储方式后重新计算向量长度，分簇不变。
+         */
+        void refreshNorms(FeatureVectors.Source vectors) {
+            for (int slot = 0; slot < size; slot++) {
+                norms[slot] = vectors.norm(slot);
+            }
+        }
+
+        /**
+         * 扫描 chosen 中的簇，按与 probe（已归一化）的余弦相似度将候选写入 candidates，返回扫描的向量数。
+         */
+        int scan(int[] chosen, FeatureVectors.Source vectors, float[] probe, TopKHeap candidates) {
+            int scanned = 0;
+            for (int list : chosen) {
+                int[] members = lists[list];
+                int memberCount = listSizes[list];
+                for (int j = 0; j < memberCount; j++) {
+                    int slot = members[j];
+                    float norm = norms[slot];
+                    if (norm > 0) {
+                        candidates.offer(slot, vectors.dot(slot, probe) / norm);
+                    }
+                }
+                scanned += memberCount;
+            }
+            return scanned;
+        }
+
+        void write(DataOutputStream out, String[] ids) throws IOException {
+            for (int slot = 0; slot < size; slot++) {
+                out.writeUTF(ids[slot]);
+                out.writeInt(listOf[slot]);
+            }
+        }
+
+        private void assign(int slot, int list, float norm) {
+            if (slot < size) {
+                detach(slot);
+            } else {
+                ensureSlots(slot + 1);
+                size = slot + 1;
+            }
+            norms[slot] = norm;
+            attach(slot, list);
+        }
+
+        private void attach(int slot, int list) {
+            int n = listSizes[list];
+            if (n == lists[list].length) {
+                lists[list] = Arrays.copyOf(lists[list], n * 2);
+            }
+            lists[list][n] = slot;
+            listOf[slot] = list;
+            positions[slot] = n;
+            listSizes[list] = n + 1;
+        }
+
+        // 从所属簇中移除，用簇内最后一个成员填补其位置
+        private void detach(int slot) {
+            int list = listOf[slot];
+            int position = positions[slot];
+            int last = --listSizes[list];
+            int moved = lists[list][last];
+            lists[list][position] = moved;
+            positions[moved] = position;
+        }
+
+        private void ensureSlots(int required) {
+            if (required <= listOf.length) {
+                return;
+            }
+            int capacity = Math.max(required, listOf.length * 2);
+            listOf = Arrays.copyOf(listOf, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            norms = Arrays.copyOf(norms, capacity);
+        }
+    }
+
+    private static int nearest(float[] centroids, int listCount, int dimension, float[] vector, int offset) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < listCount; c++) {
+            float score = FeatureVectors.dot(centroids, c * dimension, vector, offset, dimension);
+            if (score > bestScore) {
+                best = c;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static void normalize(float[] values, int offset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += values[offset + i] * values[offset + i];
+        }
+        float norm = (float) Math.sqrt(sum);
+        if (norm > 0) {
+            for (int i = 0; i < length; i++) {
+                values[offset + i] /= norm;
+            }
+        }
+    }
+
+    // 将 [0, n) 按 CPU 核数切分并行执行，数量较少时在当前线程执行
+    private static void parallel(int n, final RangeTask task) {
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), n / MIN_PARALLEL_ITEMS);
+        if (threads <= 1) {
+            task.run(0, n);
+            return;
+        }
+        Thread[] workers = new Thread[threads];
+        int step = (n + threads - 1) / threads;
+        for (int i = 0; i < threads; i++) {
+            final int from = i * step;
+            final int to = Math.min(n, from + step);
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    task.run(from, to);
+                }
+            }, "ArcsoftFaceIndex-" + (i + 1));
+            workers[i].start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Index build interrupted");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.arcsoftface.reactnative;
+
+import android.util.Log;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.enums.ExtractType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 从同一张已解码的图像中提取多张人脸的特征，图像只解码、检测一次。
+ * 调用方的引擎逐个认领人脸提取，同时向引擎池派发辅助任务，由其他空闲引擎一起认领；
+ * 辅助任务开始时人脸已全部被认领则直接结束，调用方只等待已被认领的人脸，引擎池繁忙时退化为顺序提取。
+ */
+final class MultiFaceExtractor {
+    private static final String TAG = "MultiFaceExtractor";
+    static final int REQUIRED_MASK = FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION;
+
+    private final Bgr24Image image;
+    private final List<FaceInfo> faces;
+    private final ExtractType extractType;
+    private final int maxSize;
+    private final ImageBufferPool bufferPool;
+    private final byte[][] features;
+    private final int[] codes;
+    private final AtomicInteger next = new AtomicInteger();
+    private final CountDownLatch done;
+
+    /**
+     * @param faces 待提取的人脸，坐标为 image 上的坐标
+     */
+    MultiFaceExtractor(Bgr24Image image, List<FaceInfo> faces, ExtractType extractType, int maxSize, ImageBufferPool bufferPool) {
+        this.image = image;
+        this.faces = faces;
+        this.extractType = extractType;
+        this.maxSize = maxSize;
+        this.bufferPool = bufferPool;
+        this.features = new byte[faces.size()][];
+        this.codes = new int[faces.size()];
+        this.done = new CountDownLatch(faces.size());
+    }
+
+    /**
+     * 按人脸框面积从大到小排序，maxFaces 大于 0 时只保留前 maxFaces 个。
+     */
+    static List<FaceInfo> largest(List<FaceInfo> faceInfoList, int maxFaces) {
+        List<FaceInfo> sorted = new ArrayList<>(faceInfoList);
+        Collections.sort(sorted, new Comparator<FaceInfo>() {
+            @Override
+            public int compare(FaceInfo a, FaceInfo b) {
+                long areaA = (long) a.getRect().width() * a.getRect().height();
+                long areaB = (long) b.getRect().width() * b.getRect().height();
+                return areaA > areaB ? -1 : (areaA < areaB ? 1 : 0);
+            }
+        });
+        return maxFaces > 0 && sorted.size() > maxFaces ? sorted.subList(0, maxFaces) : sorted;
+    }
+
+    /**
+     * 在调用方引擎上提取，并最多派发 helpers 个辅助任务；返回前所有被认领的人脸均已完成，
+     * 未开始的辅助任务已撤下，调用方随后可以释放图像。
+     */
+    void run(FaceEngineApi faceEngine, FaceEnginePool enginePool, int priority, int helpers) {
+        int count = enginePool != null ? Math.min(helpers, faces.size() - 1) : 0;
+        for (int i = 0; i < count; i++) {
+            enginePool.execute(REQUIRED_MASK, priority, this, "EXTRACT_ERROR", new FaceEnginePool.Task() {
+                @Override
+                public void run(FaceEngineApi helper) {
+                    drain(helper);
+                }
+            }, new FaceEnginePool.ErrorHandler() {
+                @Override
+                public void onError(String code, String message) {
+                    // 辅助任务被撤下或无法提交时，剩余人脸由调用方的引擎完成
+                }
+            });
+        }
+        drain(faceEngine);
+        if (count > 0) {
+            enginePool.cancelAll(this);
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                // 辅助引擎仍在读取图像，必须等其完成
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int size() {
+        return faces.size();
+    }
+
+    FaceInfo getFace(int index) {
+        return faces.get(index);
+    }
+
+    // 第 index 个人脸的特征，提取失败时为 null
+    byte[] getFeature(int index) {
+        return features[index];
+    }
+
+    int getCode(int index) {
+        return codes[index];
+    }
+
+    private void drain(FaceEngineApi faceEngine) {
+        int index;
+        while ((index = next.getAndIncrement()) < faces.size()) {
+            int code = ErrorInfo.MERR_UNKNOWN;
+            long start = System.nanoTime();
+            try {
+                FaceFeature faceFeature = new FaceFeature();
+                code = FaceCropExtractor.extract(faceEngine, image, faces.get(index), extractType, faceFeature, maxSize, bufferPool);
+                if (code == ErrorInfo.MOK) {
+                    features[index] = faceFeature.getFeatureData();
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Extract face " + index + " error", e);
+            } finally {
+                FaceMetrics.record(FaceMetrics.Stage.EXTRACT, start);
+                codes[index] = code;
+                done.countDown();
+            }
+        }
+    }
+}
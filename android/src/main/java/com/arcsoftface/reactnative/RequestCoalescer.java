@@ -0,0 +1,177 @@
+package com.arcsoftface.reactnative;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 合并相同的进行中请求：同一操作、同一文件（路径 + 大小 + 修改时间）、同一参数的请求在前一个完成前再次到达时，
+ * 不再重复计算，而是等待同一个结果。
+ * 每个等待方可带一个分组名，cancel(group) 只取消该分组的等待方；某个请求的等待方全部取消且尚未开始执行时，
+ * 同时从引擎池中撤下对应的任务。
+ */
+class RequestCoalescer {
+    private static class Waiter {
+        final Promise promise;
+        final String group;
+
+        Waiter(Promise promise, String group) {
+            this.promise = promise;
+            this.group = group;
+        }
+    }
+
+    static final class Request {
+        // 为 null 时不参与合并，只用于按分组取消
+        final String key;
+        final List<Waiter> waiters = new ArrayList<>(1);
+        FaceEnginePool.Job job;
+        boolean done;
+
+        Request(String key) {
+            this.key = key;
+        }
+    }
+
+    private final HashMap<String, Request> inFlight = new HashMap<>();
+    // 尚未完成的全部请求（含不参与合并的），用于按分组取消
+    private final Set<Request> pending = new HashSet<>();
+    private long coalescedCount;
+    private long cancelledCount;
+
+    /**
+     * 登记一个请求。已有相同 key 的请求在进行中时加入其等待方并返回 null，调用方不需要再提交任务；
+     * 否则返回新的 Request，调用方提交任务后调用 attach，完成时调用 resolve / reject。
+     */
+    synchronized Request join(String key, String group, Promise promise) {
+        Request request = key != null ? inFlight.get(key) : null;
+        if (request != null) {
+            request.waiters.add(new Waiter(promise, group));
+            coalescedCount++;
+            return null;
+        }
+        request = new Request(key);
+        request.waiters.add(new Waiter(promise, group));
+        if (key != null) {
+            inFlight.put(key, request);
+        }
+        pending.add(request);
+        return request;
+    }
+
+    synchronized void attach(Request request, FaceEnginePool.Job job) {
+        if (!request.done) {
+            request.job = job;
+        }
+    }
+
+    /**
+     * 以 value 完成请求。WritableMap / WritableArray 只能交给一个 promise，其余等待方各得到一份副本。
+     */
+    void resolve(Request request, Object value) {
+        List<Waiter> waiters = finish(request);
+        if (waiters.isEmpty()) {
+            return;
+        }
+        List<Object> copies = null;
+        if (waiters.size() > 1 && (value instanceof ReadableArray || value instanceof ReadableMap)) {
+            // 副本需在第一个 resolve 消费原对象之前生成
+            copies = new ArrayList<>(waiters.size() - 1);
+            for (int i = 1; i < waiters.size(); i++) {
+                copies.add(value instanceof ReadableArray
+                        ? Arguments.makeNativeArray(((ReadableArray) value).toArrayList())
+                        : Arguments.makeNativeMap(((ReadableMap) value).toHashMap()));
+            }
+        }
+        waiters.get(0).promise.resolve(value);
+        for (int i = 1; i < waiters.size(); i++) {
+            waiters.get(i).promise.resolve(copies != null ? copies.get(i - 1) : value);
+        }
+    }
+
+    void reject(Request request, String code, String message) {
+        for (Waiter waiter : finish(request)) {
+            waiter.promise.reject(code, message);
+        }
+    }
+
+    /**
+     * 以 CANCELLED 拒绝 group 中的所有等待方，返回取消的等待方数量。
+     */
+    int cancel(String group, FaceEnginePool pool) {
+        List<Waiter> cancelled = new ArrayList<>();
+        List<FaceEnginePool.Job> orphanJobs = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Request> requests = pending.iterator();
+            while (requests.hasNext()) {
+                Request request = requests.next();
+                Iterator<Waiter> iterator = request.waiters.iterator();
+                while (iterator.hasNext()) {
+                    Waiter waiter = iterator.next();
+                    if (group.equals(waiter.group)) {
+                        iterator.remove();
+                        cancelled.add(waiter);
+                    }
+                }
+                if (!request.waiters.isEmpty()) {
+                    continue;
+                }
+                // 等待方已全部取消：在锁内结束请求，之后到达的相同请求不会再合并到这个即将撤下的任务上
+                if (request.job != null) {
+                    orphanJobs.add(request.job);
+                }
+                request.done = true;
+                request.job = null;
+                requests.remove();
+                if (request.key != null && inFlight.get(request.key) == request) {
+                    inFlight.remove(request.key);
+                }
+            }
+            cancelledCount += cancelled.size();
+        }
+        for (Waiter waiter : cancelled) {
+            waiter.promise.reject("CANCELLED", "Request cancelled");
+        }
+        // 已开始执行的任务无法中断，其结果在完成时丢弃
+        for (FaceEnginePool.Job job : orphanJobs) {
+            if (pool != null) {
+                pool.cancel(job);
+            }
+        }
+        return cancelled.size();
+    }
+
+    synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    synchronized long getCancelledCount() {
+        return cancelledCount;
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    // 从登记中移除请求，返回此时仍在等待的等待方
+    private synchronized List<Waiter> finish(Request request) {
+        if (request.done) {
+            return new ArrayList<>();
+        }
+        request.done = true;
+        request.job = null;
+        pending.remove(request);
+        if (request.key != null && inFlight.get(request.key) == request) {
+            inFlight.remove(request.key);
+        }
+        return new ArrayList<>(request.waiters);
+    }
+}
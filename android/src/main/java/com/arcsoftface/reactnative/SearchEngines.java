@@ -0,0 +1,98 @@
+package com.arcsoftface.reactnative;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 1:N 检索专用的比对引擎（仅 ASF_FACE_RECOGNITION），与调用方持有的引擎一起并行为各分片打分。
+ * 引擎在特征库达到 minGallerySize 后首次检索时才创建，小库不额外占用内存；
+ * 同一时刻只有一个检索使用这组引擎，其余并发检索各自在调用方的引擎上顺序打分，不互相等待。
+ */
+class SearchEngines {
+    private static final String TAG = "SearchEngines";
+
+    private final Context context;
+    private final int count;
+    private final int minGallerySize;
+    private final FaceEngineApi.Factory engineFactory;
+    private final ReentrantLock inUse = new ReentrantLock();
+    private FaceEngineApi[] engines;
+    // 创建失败后不再重试
+    private boolean failed;
+    private boolean closed;
+
+    SearchEngines(Context context, int count, int minGallerySize, FaceEngineApi.Factory engineFactory) {
+        this.context = context.getApplicationContext();
+        this.count = Math.max(0, count);
+        this.minGallerySize = minGallerySize;
+        this.engineFactory = engineFactory;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * 尝试独占全部检索引擎，成功时返回引擎数组，调用方用完后必须调用 release。
+     * 引擎被其他检索占用、已关闭、创建失败或库小于 minGallerySize 时返回 null。
+     */
+    FaceEngineApi[] tryAcquire(int gallerySize) {
+        if (count == 0 || gallerySize < minGallerySize || !inUse.tryLock()) {
+            return null;
+        }
+        if (closed || failed || (engines == null && !create())) {
+            inUse.unlock();
+            return null;
+        }
+        return engines;
+    }
+
+    void release() {
+        inUse.unlock();
+    }
+
+    /**
+     * 等待正在进行的检索结束后释放引擎。
+     */
+    void shutdown() {
+        inUse.lock();
+        try {
+            closed = true;
+            if (engines != null) {
+                for (FaceEngineApi engine : engines) {
+                    engine.unInit();
+                }
+                engines = null;
+            }
+        } finally {
+            inUse.unlock();
+        }
+    }
+
+    private boolean create() {
+        FaceEngineApi[] created = new FaceEngineApi[count];
+        for (int i = 0; i < count; i++) {
+            created[i] = engineFactory.create();
+            int code = created[i].init(context, DetectMode.ASF_DETECT_MODE_IMAGE, DetectFaceOrientPriority.ASF_OP_0_ONLY,
+                    1, FaceEngine.ASF_FACE_RECOGNITION);
+            if (code != ErrorInfo.MOK) {
+                Log.e(TAG, "Search engine " + i + " init failed: " + code);
+                for (int j = 0; j < i; j++) {
+                    created[j].unInit();
+                }
+                failed = true;
+                return false;
+            }
+        }
+        Log.d(TAG, count + " search engines created");
+        engines = created;
+        return true;
+    }
+}
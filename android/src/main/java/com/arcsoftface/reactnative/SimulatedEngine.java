@@ -0,0 +1,295 @@
+package com.arcsoftface.reactnative;
+
+import android.content.Context;
+import android.graphics.Rect;
+
+import com.arcsoft.face.AgeInfo;
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.Face3DAngle;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.FaceSimilar;
+import com.arcsoft.face.GenderInfo;
+import com.arcsoft.face.LivenessInfo;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+import com.arcsoft.face.enums.DetectModel;
+import com.arcsoft.face.enums.ExtractType;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 不依赖 native 库与激活的模拟引擎，用于在 x86 设备或 CI 上压测引擎池、调度、缓存与特征库。
+ * 每次调用按配置的延迟阻塞后返回由输入确定的合成结果：同一图像总是得到相同的人脸框、属性与特征，
+ * 比对分数为两条特征向量的余弦相似度（截断到 0 ~ 1）。延迟以休眠模拟，不占用 CPU。
+ * SDK 的结果类没有公开的 setter，分数、年龄等字段通过反射写入。
+ */
+class SimulatedEngine implements FaceEngineApi {
+    private static final Field SCORE = field(FaceSimilar.class, "score");
+    private static final Field AGE = field(AgeInfo.class, "age");
+    private static final Field GENDER = field(GenderInfo.class, "gender");
+    private static final Field LIVENESS = field(LivenessInfo.class, "liveness");
+    private static final Field YAW = field(Face3DAngle.class, "yaw");
+    private static final Field ROLL = field(Face3DAngle.class, "roll");
+    private static final Field PITCH = field(Face3DAngle.class, "pitch");
+    // 计算图像哈希时最多采样的字节数
+    private static final int HASH_SAMPLES = 4096;
+
+    private final long detectMicros;
+    private final long processMicros;
+    private final long extractMicros;
+    private final long compareMicros;
+    private final int facesPerImage;
+    private boolean initialized;
+    private int maxFaceNum;
+    private int mask;
+    // 最近一次 process 的人脸种子与掩码，供 getAge 等读取
+    private final List<Long> processedSeeds = new ArrayList<>();
+    private int processedMask;
+
+    SimulatedEngine(long detectMicros, long processMicros, long extractMicros, long compareMicros, int facesPerImage) {
+        this.detectMicros = Math.max(0, detectMicros);
+        this.processMicros = Math.max(0, processMicros);
+        this.extractMicros = Math.max(0, extractMicros);
+        this.compareMicros = Math.max(0, compareMicros);
+        this.facesPerImage = Math.max(0, facesPerImage);
+    }
+
+    static Factory factory(final long detectMicros, final long processMicros, final long extractMicros,
+                           final long compareMicros, final int facesPerImage) {
+        return new Factory() {
+            @Override
+            public FaceEngineApi create() {
+                return new SimulatedEngine(detectMicros, processMicros, extractMicros, compareMicros, facesPerImage);
+            }
+        };
+    }
+
+    @Override
+    public int init(Context context, DetectMode detectMode, DetectFaceOrientPriority orientPriority, int maxFaceNum, int mask) {
+        if (maxFaceNum <= 0) {
+            return ErrorInfo.MERR_INVALID_PARAM;
+        }
+        this.maxFaceNum = maxFaceNum;
+        this.mask = mask;
+        initialized = true;
+        return ErrorInfo.MOK;
+    }
+
+    @Override
+    public int unInit() {
+        initialized = false;
+        processedSeeds.clear();
+        return ErrorInfo.MOK;
+    }
+
+    @Override
+    public int detectFaces(byte[] data, int width, int height, int format, List<FaceInfo> faceInfoList) {
+        return detectFaces(data, width, height, format, DetectModel.RGB, faceInfoList);
+    }
+
+    @Override
+    public int detectFaces(byte[] data, int width, int height, int format, DetectModel detectModel, List<FaceInfo> faceInfoList) {
+        int code = check(FaceEngine.ASF_FACE_DETECT, data, width, height, faceInfoList);
+        if (code != ErrorInfo.MOK) {
+            return code;
+        }
+        pause(detectMicros);
+        faceInfoList.clear();
+        long hash = hash(data, width, height);
+        int count = Math.min(facesPerImage, maxFaceNum);
+        // 人脸在图像中部横向均匀排列，位置随图像内容小幅偏移
+        int size = Math.min(width / (count + 1), height / 2);
+        if (size < 2) {
+            return ErrorInfo.MOK;
+        }
+        for (int i = 0; i < count; i++) {
+            long seed = mix(hash + i);
+            int jitter = (int) ((seed >>> 8) % Math.max(1, size / 8));
+            int left = (i + 1) * width / (count + 1) - size / 2 + jitter;
+            int top = height / 2 - size / 2 + jitter;
+            FaceInfo faceInfo = new FaceInfo();
+            faceInfo.setRect(new Rect(left, top, left + size, top + size));
+            faceInfo.setOrient(FaceEngine.ASF_OC_0);
+            faceInfo.setFaceId(i);
+            Face3DAngle angle = new Face3DAngle();
+            set(YAW, angle, (float) (seed % 21 - 10));
+            set(ROLL, angle, (float) ((seed >>> 16) % 11 - 5));
+            set(PITCH, angle, (float) ((seed >>> 24) % 11 - 5));
+            faceInfo.setFace3DAngle(angle);
+            faceInfoList.add(faceInfo);
+        }
+        return ErrorInfo.MOK;
+    }
+
+    @Override
+    public int process(byte[] data, int width, int height, int format, List<FaceInfo> faceInfoList, int mask) {
+        int code = check(mask, data, width, height, faceInfoList);
+        if (code != ErrorInfo.MOK) {
+            return code;
+        }
+        pause(processMicros);
+        processedSeeds.clear();
+        long hash = hash(data, width, height);
+        for (FaceInfo faceInfo : faceInfoList) {
+            processedSeeds.add(mix(hash ^ hash(faceInfo.getRect())));
+        }
+        processedMask = mask;
+        return ErrorInfo.MOK;
+    }
+
+    @Override
+    public int getAge(List<AgeInfo> ageInfoList) {
+        if ((processedMask & FaceEngine.ASF_AGE) == 0) {
+            return ErrorInfo.MERR_BAD_STATE;
+        }
+        ageInfoList.clear();
+        for (long seed : processedSeeds) {
+            AgeInfo ageInfo = new AgeInfo();
+            set(AGE, ageInfo, (int) (18 + seed % 50));
+            ageInfoList.add(ageInfo);
+        }
+        return ErrorInfo.MOK;
+    }
+
+    @Override
+    public int getGender(List<GenderInfo> genderInfoList) {
+        if ((processedMask & FaceEngine.ASF_GENDER) == 0) {
+            return ErrorInfo.MERR_BAD_STATE;
+        }
+        genderInfoList.clear();
+        for (long seed : processedSeeds) {
+            GenderInfo genderInfo = new GenderInfo();
+            set(GENDER, genderInfo, (seed >>> 8) % 2 == 0 ? GenderInfo.MALE : GenderInfo.FEMALE);
+            genderInfoList.add(genderInfo);
+        }
+        return ErrorInfo.MOK;
+    }
+
+    @Override
+    public int getLiveness(List<LivenessInfo> livenessInfoList) {
+        if ((processedMask & FaceEngine.ASF_LIVENESS) == 0) {
+            return ErrorInfo.MERR_BAD_STATE;
+        }
+        livenessInfoList.clear();
+        for (int i = 0; i < processedSeeds.size(); i++) {
+            LivenessInfo livenessInfo = new LivenessInfo();
+            set(LIVENESS, livenessInfo, LivenessInfo.ALIVE);
+            livenessInfoList.add(livenessInfo);
+        }
+        return ErrorInfo.MOK;
+    }
+
+    /**
+     * 特征为 FeatureVectors.HEADER_BYTES 字节的零头 + 以图像哈希与人脸框为种子的高斯随机向量。
+     */
+    @Override
+    public int extractFaceFeature(byte[] data, int width, int height, int format, FaceInfo faceInfo, ExtractType extractType,
+                                  int mask, FaceFeature feature) {
+        if (faceInfo == null || feature == null) {
+            return ErrorInfo.MERR_INVALID_PARAM;
+        }
+        int code = check(FaceEngine.ASF_FACE_RECOGNITION, data, width, height, faceInfo);
+        if (code != ErrorInfo.MOK) {
+            return code;
+        }
+        pause(extractMicros);
+        byte[] featureData = feature.getFeatureData();
+        if (featureData == null || featureData.length != FaceFeature.FEATURE_SIZE) {
+            featureData = new byte[FaceFeature.FEATURE_SIZE];
+            feature.setFeatureData(featureData);
+        }
+        Random random = new Random(mix(hash(data, width, height) ^ hash(faceInfo.getRect())));
+        ByteBuffer buffer = ByteBuffer.wrap(featureData).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(0, 0);
+        for (int offset = FeatureVectors.HEADER_BYTES; offset + 4 <= featureData.length; offset += 4) {
+            buffer.putFloat(offset, (float) random.nextGaussian());
+        }
+        return ErrorInfo.MOK;
+    }
+
+    @Override
+    public int compareFaceFeature(FaceFeature feature1, FaceFeature feature2, FaceSimilar faceSimilar) {
+        if (!initialized || (mask & FaceEngine.ASF_FACE_RECOGNITION) == 0) {
+            return ErrorInfo.MERR_BAD_STATE;
+        }
+        if (feature1 == null || feature2 == null || faceSimilar == null
+                || feature1.getFeatureData().length != feature2.getFeatureData().length
+                || !FeatureVectors.supports(feature1.getFeatureData().length)) {
+            return ErrorInfo.MERR_INVALID_PARAM;
+        }
+        pause(compareMicros);
+        int dimension = FeatureVectors.dimension(feature1.getFeatureData().length);
+        float[] vector1 = new float[dimension];
+        float[] vector2 = new float[dimension];
+        FeatureVectors.read(feature1.getFeatureData(), vector1);
+        FeatureVectors.read(feature2.getFeatureData(), vector2);
+        set(SCORE, faceSimilar, Math.min(1, Math.max(0, FeatureVectors.dot(vector1, 0, vector2, 0, dimension))));
+        return ErrorInfo.MOK;
+    }
+
+    private int check(int requiredMask, byte[] data, int width, int height, Object output) {
+        if (!initialized || (mask & requiredMask) != requiredMask) {
+            return ErrorInfo.MERR_BAD_STATE;
+        }
+        if (data == null || width <= 0 || height <= 0 || output == null) {
+            return ErrorInfo.MERR_INVALID_PARAM;
+        }
+        return ErrorInfo.MOK;
+    }
+
+    // 对图像等距采样的 FNV-1a 哈希，大图也只读取 HASH_SAMPLES 个字节
+    private static long hash(byte[] data, int width, int height) {
+        long hash = 0xcbf29ce484222325L ^ ((long) width << 32 | height);
+        int step = Math.max(1, data.length / HASH_SAMPLES);
+        for (int i = 0; i < data.length; i += step) {
+            hash ^= data[i];
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long hash(Rect rect) {
+        return ((long) rect.left << 48) ^ ((long) rect.top << 32) ^ ((long) rect.right << 16) ^ rect.bottom;
+    }
+
+    // splitmix64 终结函数，返回非负值
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return (value ^ (value >>> 31)) >>> 1;
+    }
+
+    private static void pause(long micros) {
+        long deadline = System.nanoTime() + micros * 1000;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static Field field(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported SDK version: " + type.getName() + "." + name, e);
+        }
+    }
+
+    private static void set(Field field, Object target, Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.arcsoftface.reactnative;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * 启动阶段耗时统计：激活、引擎初始化、预热，以及从 init() 调用到首次识别成功的时间。
+ * 未发生的阶段记为 -1。
+ */
+class StartupMetrics {
+    private long initStartedAt;
+    private String activationSource;
+    private long activationMillis = -1;
+    private long engineInitMillis = -1;
+    private long warmupMillis = -1;
+    private long readyMillis = -1;
+    private long firstRecognitionMillis = -1;
+
+    synchronized void reset() {
+        initStartedAt = SystemClock.elapsedRealtime();
+        activationSource = null;
+        activationMillis = -1;
+        engineInitMillis = -1;
+        warmupMillis = -1;
+        readyMillis = -1;
+        firstRecognitionMillis = -1;
+    }
+
+    synchronized void onActivated(String source, long millis) {
+        activationSource = source;
+        activationMillis = millis;
+    }
+
+    synchronized void onEngineInit(long millis) {
+        engineInitMillis = millis;
+    }
+
+    synchronized void onReady(long warmupMillis) {
+        this.warmupMillis = warmupMillis;
+        readyMillis = SystemClock.elapsedRealtime() - initStartedAt;
+    }
+
+    /**
+     * 记录首次识别（比对或 1:N 检索）成功，返回从 init() 开始的耗时；已记录过时返回 -1。
+     */
+    synchronized long onRecognition() {
+        if (firstRecognitionMillis >= 0 || initStartedAt == 0) {
+            return -1;
+        }
+        firstRecognitionMillis = SystemClock.elapsedRealtime() - initStartedAt;
+        return firstRecognitionMillis;
+    }
+
+    synchronized boolean isReady() {
+        return readyMillis >= 0;
+    }
+
+    synchronized WritableMap toMap() {
+        WritableMap map = Arguments.createMap();
+        map.putBoolean("ready", readyMillis >= 0);
+        if (activationSource != null) {
+            map.putString("activationSource", activationSource);
+        } else {
+            map.putNull("activationSource");
+        }
+        map.putDouble("activationTime", activationMillis);
+        map.putDouble("engineInitTime", engineInitMillis);
+        map.putDouble("warmupTime", warmupMillis);
+        map.putDouble("readyTime", readyMillis);
+        map.putDouble("timeToFirstRecognition", firstRecognitionMillis);
+        return map;
+    }
+}
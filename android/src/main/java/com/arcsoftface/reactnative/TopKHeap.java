@@ -0,0 +1,104 @@
+package com.arcsoftface.reactnative;
+
+/**
+ * 固定容量的最小堆，用于 1:N 检索时保留得分最高的 K 个候选。
+ * 使用并行的基本类型数组，检索过程中不产生装箱对象。
+ */
+class TopKHeap {
+    private final int capacity;
+    private final float[] scores;
+    private final int[] slots;
+    private int size;
+
+    TopKHeap(int capacity) {
+        this.capacity = capacity;
+        this.scores = new float[capacity];
+        this.slots = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    // 堆满时返回当前第 K 名的分数，低于该分数的候选可直接跳过
+    float minScore() {
+        return size < capacity ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    void offer(int slot, float score) {
+        if (capacity == 0) {
+            return;
+        }
+        if (size < capacity) {
+            scores[size] = score;
+            slots[size] = slot;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            scores[0] = score;
+            slots[0] = slot;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * 按分数从高到低依次弹出，写入 outSlots / outScores，返回写入的数量。
+     * 调用后堆被清空。
+     */
+    int drainDescending(int[] outSlots, float[] outScores) {
+        int n = size;
+        for (int i = n - 1; i >= 0; i--) {
+            outSlots[i] = slots[0];
+            outScores[i] = scores[0];
+            size--;
+            if (size > 0) {
+                scores[0] = scores[size];
+                slots[0] = slots[size];
+                siftDown(0);
+            }
+        }
+        return n;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[i] >= scores[parent]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && scores[right] < scores[left]) {
+                smallest = right;
+            }
+            if (scores[i] <= scores[smallest]) {
+                break;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        float s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+        int t = slots[a];
+        slots[a] = slots[b];
+        slots[b] = t;
+    }
+}
@@ -0,0 +1,165 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Rect;
+
+import com.arcsoft.face.Face3DAngle;
+import com.arcsoft.face.FaceInfo;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 视频跟踪期间按 faceId 缓存的特征与特征库匹配结果。
+ * 同一人脸在画面中持续数百帧，只有新出现的人脸、质量或角度明显改善、或缓存超过 TTL 时才重新提取特征，
+ * 其余帧直接复用缓存，单帧开销接近仅做检测。缓存只由帧管线的工作线程访问，无需加锁。
+ */
+class TrackCache {
+    static class Track {
+        final int faceId;
+        final byte[] feature;
+        boolean hasFeature;
+        float quality;
+        float angleOffset;
+        long extractedAt;
+        // 匹配结果对应的特征库版本，库内容变化后需用缓存的特征重新检索
+        long galleryVersion = -1;
+        String matchId;
+        float matchScore;
+        // 本帧是否重新提取了特征
+        boolean extracted;
+        // 本帧未通过质量门限的原因，通过或未评估时为 null
+        String rejectReason;
+        long lastFrame;
+        // 最佳帧窗口：窗口内质量最高的一帧的副本，窗口结束时在该帧上提取；candidateSince 小于 0 表示没有进行中的窗口
+        byte[] candidateFrame;
+        int candidateWidth;
+        int candidateHeight;
+        FaceInfo candidateFace;
+        float candidateScore;
+        long candidateSince = -1;
+
+        Track(int faceId, int featureSize) {
+            this.faceId = faceId;
+            this.feature = new byte[featureSize];
+        }
+    }
+
+    private final int featureSize;
+    private final long ttlMillis;
+    private final float qualityGain;
+    private final float angleGain;
+    private final HashMap<Integer, Track> tracks = new HashMap<>();
+    private long frameId;
+
+    /**
+     * @param ttlMillis   特征缓存有效期
+     * @param qualityGain 质量分相对提升超过该比例时重新提取（如 0.2 表示提升 20%）
+     * @param angleGain   偏转角（|yaw| + |pitch|）减小超过该度数时重新提取
+     */
+    TrackCache(int featureSize, long ttlMillis, float qualityGain, float angleGain) {
+        this.featureSize = featureSize;
+        this.ttlMillis = ttlMillis;
+        this.qualityGain = qualityGain;
+        this.angleGain = angleGain;
+    }
+
+    /**
+     * 取得本帧中各人脸对应的跟踪缓存，不存在时新建；返回的列表与 faceInfoList 按下标对应。
+     * 本帧未出现的跟踪在此时移除（VIDEO 模式下 faceId 不会复用）。
+     */
+    void update(List<FaceInfo> faceInfoList, List<Track> out) {
+        frameId++;
+        out.clear();
+        for (FaceInfo faceInfo : faceInfoList) {
+            Track track = tracks.get(faceInfo.getFaceId());
+            if (track == null) {
+                track = new Track(faceInfo.getFaceId(), featureSize);
+                tracks.put(track.faceId, track);
+            }
+            track.extracted = false;
+            track.rejectReason = null;
+            track.lastFrame = frameId;
+            out.add(track);
+        }
+        Iterator<Track> iterator = tracks.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().lastFrame != frameId) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 判断是否需要为该跟踪重新提取特征。
+     */
+    boolean needsExtraction(Track track, FaceInfo faceInfo, long now) {
+        if (!track.hasFeature || now - track.extractedAt >= ttlMillis) {
+            return true;
+        }
+        if (quality(faceInfo) > track.quality * (1 + qualityGain)) {
+            return true;
+        }
+        return track.angleOffset - angleOffset(faceInfo) > angleGain;
+    }
+
+    /**
+     * 将当前帧作为候选：窗口内第一帧或质量高于已有候选时复制帧数据与人脸信息。
+     */
+    void offerCandidate(Track track, byte[] data, int width, int height, FaceInfo faceInfo, float score, long now) {
+        if (track.candidateSince < 0) {
+            track.candidateSince = now;
+        } else if (score <= track.candidateScore) {
+            return;
+        }
+        if (track.candidateFrame == null || track.candidateFrame.length != data.length) {
+            track.candidateFrame = new byte[data.length];
+        }
+        System.arraycopy(data, 0, track.candidateFrame, 0, data.length);
+        track.candidateWidth = width;
+        track.candidateHeight = height;
+        track.candidateFace = new FaceInfo(faceInfo);
+        track.candidateScore = score;
+    }
+
+    // 窗口结束后清除候选，保留帧缓冲供下一个窗口复用
+    void clearCandidate(Track track) {
+        track.candidateSince = -1;
+        track.candidateFace = null;
+        track.candidateScore = 0;
+    }
+
+    // 提取成功后记录本次特征对应的质量和角度
+    void markExtracted(Track track, FaceInfo faceInfo, long now) {
+        track.hasFeature = true;
+        track.extracted = true;
+        track.extractedAt = now;
+        track.quality = quality(faceInfo);
+        track.angleOffset = angleOffset(faceInfo);
+        track.galleryVersion = -1;
+    }
+
+    void clear() {
+        tracks.clear();
+    }
+
+    int size() {
+        return tracks.size();
+    }
+
+    // 质量分：人脸框边长按偏转角折算后的等效正脸尺寸（像素）
+    static float quality(FaceInfo faceInfo) {
+        Rect rect = faceInfo.getRect();
+        float size = Math.min(rect.width(), rect.height());
+        Face3DAngle angle = faceInfo.getFace3DAngle();
+        if (angle == null) {
+            return size;
+        }
+        return size * (float) (Math.cos(Math.toRadians(angle.getYaw())) * Math.cos(Math.toRadians(angle.getPitch())));
+    }
+
+    private static float angleOffset(FaceInfo faceInfo) {
+        Face3DAngle angle = faceInfo.getFace3DAngle();
+        return angle != null ? Math.abs(angle.getYaw()) + Math.abs(angle.getPitch()) : 0;
+    }
+}
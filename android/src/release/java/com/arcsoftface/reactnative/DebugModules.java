@@ -0,0 +1,19 @@
+package com.arcsoftface.reactnative;
+
+import com.facebook.react.bridge.NativeModule;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 发布构建不注册基准测试模块，见 src/debug 中的同名类。
+ */
+final class DebugModules {
+    private DebugModules() {
+    }
+
+    static List<NativeModule> create(ReactApplicationContext reactContext, ArcsoftFaceModule face) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,218 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Bitmap;
+
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 批量任务在模拟引擎上的分块、进度与取消：每张图片恰好报告一次，汇总与进度事件的计数与分块内容一致。
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(shadows = {ShadowArcSoftImageUtil.class, ShadowRegionDecoder.class, ShadowArguments.class},
+        instrumentedPackages = {"com.arcsoft.imageutil", "com.facebook.react.bridge"})
+public class BatchJobTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ImageBufferPool bufferPool = new ImageBufferPool(16L * 1024 * 1024);
+    private FaceEnginePool enginePool;
+
+    @After
+    public void tearDown() {
+        if (enginePool != null) {
+            enginePool.shutdown();
+        }
+        bufferPool.clear();
+    }
+
+    @Test
+    public void resultsAreChunkedAndCounted() throws Exception {
+        startPool(0);
+        String image = writeJpeg();
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            // 每 5 张中有一张不存在，以 IMAGE_LOAD_ERROR 失败
+            paths.add(i % 5 == 4 ? new File(folder.getRoot(), "missing" + i + ".jpg").getPath() : image);
+        }
+        Recorder recorder = new Recorder();
+        BatchJob job = new BatchJob("job", null, paths, false, null, 7, 2, 0, FaceEnginePool.PRIORITY_BACKGROUND,
+                enginePool, bufferPool, null, null, recorder, recorder.promise);
+        job.start();
+        ReadableMap summary = recorder.await();
+
+        assertTrue(job.isFinished());
+        assertEquals(30, summary.getInt("total"));
+        assertEquals(24, summary.getInt("succeeded"));
+        assertEquals(6, summary.getInt("failed"));
+        assertFalse(summary.getBoolean("cancelled"));
+        // 满 chunkSize 即发送，最后一块在完成时发送
+        assertEquals(5, recorder.chunkSizes.size());
+        for (int c = 0; c < 4; c++) {
+            assertEquals(7, (int) recorder.chunkSizes.get(c));
+        }
+        assertEquals(2, (int) recorder.chunkSizes.get(4));
+
+        int[] seen = recorder.indexCounts(30);
+        for (int i = 0; i < 30; i++) {
+            assertEquals("index " + i, 1, seen[i]);
+            ReadableMap result = recorder.results.get(i);
+            if (i % 5 == 4) {
+                assertEquals("IMAGE_LOAD_ERROR", result.getString("error"));
+            } else {
+                assertFalse(result.hasKey("error"));
+                assertEquals(1, result.getArray("faces").size());
+                assertEquals(image, result.getString("path"));
+            }
+        }
+        ReadableMap progress = recorder.lastProgress;
+        assertEquals(30, progress.getInt("completed"));
+        assertEquals(6, progress.getInt("failed"));
+        assertEquals(30, progress.getInt("total"));
+    }
+
+    @Test
+    public void cancelFailsRemainingImagesOnce() throws Exception {
+        // 单个引擎、每次检测 20ms，取消时大部分图片仍未处理
+        startPool(20000);
+        String image = writeJpeg();
+        List<String> paths = Collections.nCopies(40, image);
+        Recorder recorder = new Recorder();
+        BatchJob job = new BatchJob("job", "screen", paths, false, null, 2, 1, 0, FaceEnginePool.PRIORITY_BACKGROUND,
+                enginePool, bufferPool, null, null, recorder, recorder.promise);
+        job.start();
+        assertTrue(recorder.firstChunk.await(10, TimeUnit.SECONDS));
+        assertTrue(job.cancel());
+        assertFalse(job.cancel());
+        ReadableMap summary = recorder.await();
+
+        assertTrue(summary.getBoolean("cancelled"));
+        assertEquals(40, summary.getInt("total"));
+        int succeeded = summary.getInt("succeeded");
+        int failed = summary.getInt("failed");
+        assertEquals(40, succeeded + failed);
+        assertTrue(succeeded >= 2);
+        assertTrue(failed > 20);
+        assertFalse(job.cancel());
+
+        int[] seen = recorder.indexCounts(40);
+        int cancelled = 0;
+        for (int i = 0; i < 40; i++) {
+            assertEquals("index " + i, 1, seen[i]);
+            ReadableMap result = recorder.results.get(i);
+            if (result.hasKey("error")) {
+                assertEquals("CANCELLED", result.getString("error"));
+                cancelled++;
+            }
+        }
+        assertEquals(failed, cancelled);
+        assertEquals(40, recorder.lastProgress.getInt("completed"));
+    }
+
+    private void startPool(long detectMicros) {
+        enginePool = new FaceEnginePool(false, SimulatedEngine.factory(detectMicros, 0, 0, 0, 1));
+        List<FaceEnginePool.EngineConfig> configs = Collections.singletonList(new FaceEnginePool.EngineConfig(
+                DetectMode.ASF_DETECT_MODE_IMAGE, DetectFaceOrientPriority.ASF_OP_ALL_OUT, 1, FaceEngine.ASF_FACE_DETECT));
+        assertEquals(0, enginePool.init(null, configs));
+    }
+
+    private String writeJpeg() throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(64, 48, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(0xFF808080);
+        File file = folder.newFile("face.jpg");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        } finally {
+            out.close();
+        }
+        bitmap.recycle();
+        return file.getPath();
+    }
+
+    // 记录分块、进度事件与最终结果
+    private static final class Recorder implements BatchJob.Emitter, InvocationHandler {
+        final Promise promise = (Promise) Proxy.newProxyInstance(Promise.class.getClassLoader(),
+                new Class<?>[]{Promise.class}, this);
+        final List<Integer> chunkSizes = new ArrayList<>();
+        // 按下标记录的结果
+        final List<ReadableMap> results = new ArrayList<>(Collections.<ReadableMap>nCopies(64, null));
+        final List<Integer> indices = new ArrayList<>();
+        final CountDownLatch firstChunk = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile ReadableMap lastProgress;
+        volatile ReadableMap summary;
+
+        @Override
+        public synchronized void emit(String eventName, WritableMap params) {
+            if (BatchJob.EVENT_PROGRESS.equals(eventName)) {
+                lastProgress = params;
+                return;
+            }
+            ReadableArray chunk = params.getArray("results");
+            chunkSizes.add(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                ReadableMap result = chunk.getMap(i);
+                indices.add(result.getInt("index"));
+                results.set(result.getInt("index"), result);
+            }
+            firstChunk.countDown();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("resolve".equals(method.getName())) {
+                summary = (ReadableMap) args[0];
+                done.countDown();
+            } else if ("reject".equals(method.getName())) {
+                done.countDown();
+            }
+            return null;
+        }
+
+        ReadableMap await() throws InterruptedException {
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertTrue("promise rejected", summary != null);
+            return summary;
+        }
+
+        synchronized int[] indexCounts(int total) {
+            int[] counts = new int[total];
+            for (int index : indices) {
+                counts[index]++;
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.arcsoftface.reactnative;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class CompactGalleryTest {
+    private static final int GALLERY_SIZE = 3000;
+    private static final int IDENTITIES = 300;
+    private static final float NOISE = 0.5f;
+    private static final int QUERIES = 40;
+    private static final int K = 10;
+    // 512 维 int8 对称量化的单条余弦误差约 1e-3，留出一个数量级的余量
+    private static final float MAX_DEVIATION = 0.01f;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SimulatedEngine engine = TestFeatures.engine();
+
+    @Test
+    public void int8CosineStaysCloseToFloat32() {
+        Random random = new Random(1);
+        byte[][] features = TestFeatures.clustered(500, 50, NOISE, random);
+        byte[] codes = new byte[TestFeatures.DIMENSION];
+        float[] scratch = new float[TestFeatures.DIMENSION];
+        float worst = 0;
+        for (byte[] feature : features) {
+            float factor = FeatureVectors.quantize(feature, 0, codes, 0, scratch);
+            for (int q = 0; q < 10; q++) {
+                byte[] probe = q % 2 == 0 ? TestFeatures.near(feature, NOISE, random) : TestFeatures.random(random);
+                float approximate = factor * FeatureVectors.dot(codes, 0, TestFeatures.vector(probe));
+                worst = Math.max(worst, Math.abs(approximate - TestFeatures.cosine(feature, probe)));
+            }
+        }
+        assertTrue("max |int8 - float32| = " + worst, worst <= MAX_DEVIATION);
+    }
+
+    @Test
+    public void compactSearchAgreesWithFullPrecisionTopK() throws Exception {
+        Random random = new Random(2);
+        byte[][] features = TestFeatures.clustered(GALLERY_SIZE, IDENTITIES, NOISE, random);
+        FeatureStore store = store(features);
+        FeatureGallery full = gallery(features);
+        FeatureGallery compact = gallery(features);
+        compact.setCompact(true, store);
+        assertTrue(compact.getMemoryBytes() * 3 < full.getMemoryBytes());
+
+        int found = 0;
+        int expected = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            byte[] probe = TestFeatures.near(features[random.nextInt(features.length)], NOISE, random);
+            List<FeatureGallery.Match> exact = full.searchTopK(engine, probe, K, 0, false);
+            List<FeatureGallery.Match> approximate = compact.searchTopK(engine, probe, K, 0, true);
+            // 重排用的是全精度特征，同一个 id 的分数应与全精度库一致
+            assertEquals(exact.get(0).id, approximate.get(0).id);
+            assertEquals(exact.get(0).score, approximate.get(0).score, 1e-5f);
+            Set<String> exactIds = ids(exact);
+            expected += exactIds.size();
+            exactIds.retainAll(ids(approximate));
+            found += exactIds.size();
+        }
+        float agreement = (float) found / expected;
+        assertTrue("top-" + K + " agreement = " + agreement, agreement >= 0.95f);
+        store.close();
+    }
+
+    @Test
+    public void mismatchedLayoutRanksEveryFeatureWithEngine() throws Exception {
+        Random random = new Random(4);
+        byte[][] features = TestFeatures.clustered(500, 50, NOISE, random);
+        FeatureStore store = store(features);
+        FeatureGallery compact = gallery(features);
+        compact.setCompact(true, store);
+
+        FaceEngineApi mismatched = TestFeatures.mismatchedEngine();
+        for (int q = 0; q < 10; q++) {
+            byte[] probe = TestFeatures.near(features[random.nextInt(features.length)], NOISE, random);
+            List<FeatureGallery.Match> exact = compact.searchTopK(mismatched, probe, K, 0, false);
+            List<FeatureGallery.Match> approximate = compact.searchTopK(mismatched, probe, K, 0, true);
+            assertEquals(exact.size(), approximate.size());
+            for (int i = 0; i < exact.size(); i++) {
+                assertEquals(exact.get(i).score, approximate.get(i).score, 0);
+            }
+        }
+        assertEquals(FeatureVectors.LAYOUT_MISMATCH, compact.getLayout());
+
+        // 解析已确认不符后不再允许切换到紧凑编码
+        FeatureGallery full = gallery(features);
+        assertEquals(FeatureVectors.LAYOUT_MISMATCH, full.verifyLayout(mismatched));
+        try {
+            full.setCompact(true, store);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+        assertFalse(full.isCompact());
+        store.close();
+    }
+
+    @Test
+    public void concurrentReadsSurviveCompaction() throws Exception {
+        Random random = new Random(3);
+        final byte[][] features = TestFeatures.clustered(500, 50, NOISE, random);
+        final FeatureStore store = store(features);
+        // 制造 tombstone，让 compact 真正重写文件并重新映射
+        for (int i = 0; i < features.length; i += 2) {
+            store.put("id" + i, features[i]);
+        }
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            results.add(readers.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    Random pick = new Random(seed);
+                    byte[] out = new byte[TestFeatures.FEATURE_SIZE];
+                    int reads = 0;
+                    while (!stop.get()) {
+                        int i = pick.nextInt(features.length);
+                        assertTrue(store.read("id" + i, out));
+                        assertArrayEquals(features[i], out);
+                        reads++;
+                    }
+                    return reads;
+                }
+            }));
+        }
+        try {
+            for (int round = 0; round < 5; round++) {
+                store.compact();
+                store.put("id0", features[0]);
+            }
+        } finally {
+            stop.set(true);
+            readers.shutdown();
+        }
+        for (Future<Integer> result : results) {
+            assertTrue(result.get() > 0);
+        }
+        store.close();
+    }
+
+    private FeatureStore store(byte[][] features) throws Exception {
+        FeatureStore store = new FeatureStore(new File(folder.getRoot(), "features.bin"), TestFeatures.FEATURE_SIZE);
+        store.open();
+        for (int i = 0; i < features.length; i++) {
+            store.put("id" + i, features[i]);
+        }
+        return store;
+    }
+
+    private static FeatureGallery gallery(byte[][] features) {
+        FeatureGallery gallery = new FeatureGallery(TestFeatures.FEATURE_SIZE, 4);
+        for (int i = 0; i < features.length; i++) {
+            gallery.register("id" + i, features[i]);
+        }
+        return gallery;
+    }
+
+    private static Set<String> ids(List<FeatureGallery.Match> matches) {
+        Set<String> ids = new HashSet<>();
+        for (FeatureGallery.Match match : matches) {
+            ids.add(match.id);
+        }
+        return ids;
+    }
+}
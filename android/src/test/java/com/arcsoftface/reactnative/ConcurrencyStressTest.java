@@ -0,0 +1,408 @@
+package com.arcsoftface.reactnative;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceSimilar;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+import com.facebook.react.bridge.Promise;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 以 SimulatedEngine 在多个线程中同时调用引擎池、请求合并、图片缓存与特征库，检查在竞争下不丢任务、
+ * 不重复回调、引擎不被同时占用、引用计数与特征库内容保持一致。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ConcurrencyStressTest {
+    private static final int THREADS = 8;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(THREADS);
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void enginePoolRunsEveryJobOnceOnAnExclusiveEngine() throws Exception {
+        final FaceEnginePool pool = pool(3, 20);
+        final byte[] feature = TestFeatures.random(new Random(1));
+        final Set<FaceEngineApi> inUse = Collections.newSetFromMap(new ConcurrentHashMap<FaceEngineApi, Boolean>());
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final int jobsPerThread = 100;
+        final CountDownLatch queued = new CountDownLatch(THREADS * jobsPerThread);
+
+        final FaceEnginePool.Task task = new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) {
+                if (!inUse.add(faceEngine)) {
+                    failures.incrementAndGet();
+                }
+                try {
+                    if (compare(faceEngine, feature) != ErrorInfo.MOK) {
+                        failures.incrementAndGet();
+                    }
+                    completed.incrementAndGet();
+                } finally {
+                    inUse.remove(faceEngine);
+                }
+            }
+        };
+        final FaceEnginePool.ErrorHandler handler = new FaceEnginePool.ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                failures.incrementAndGet();
+            }
+        };
+        final FaceEnginePool.Task countDown = new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) throws Exception {
+                try {
+                    task.run(faceEngine);
+                } finally {
+                    queued.countDown();
+                }
+            }
+        };
+
+        final AtomicInteger synchronous = new AtomicInteger();
+        runConcurrently(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Random random = new Random(Thread.currentThread().getId());
+                for (int i = 0; i < jobsPerThread; i++) {
+                    pool.execute(FaceEngine.ASF_FACE_RECOGNITION, random.nextInt(3), null, "COMPARE_ERROR", countDown, handler);
+                    // 同步路径与工作线程争用同一组引擎
+                    if (pool.tryRun(FaceEngine.ASF_FACE_RECOGNITION, task)) {
+                        synchronous.incrementAndGet();
+                    }
+                }
+                return null;
+            }
+        });
+        assertTrue(queued.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(ErrorInfo.MOK, pool.shutdown());
+        assertEquals(0, failures.get());
+        assertEquals(THREADS * jobsPerThread + synchronous.get(), completed.get());
+        assertEquals(0, pool.getQueuedCount());
+    }
+
+    @Test
+    public void enginePoolShutdownWaitsForRunningJobs() throws Exception {
+        final FaceEnginePool pool = pool(2, 500);
+        final byte[] feature = TestFeatures.random(new Random(2));
+        final AtomicInteger badState = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final FaceEnginePool.Task task = new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) {
+                // 引擎在任务运行期间被反初始化时比对返回 MERR_BAD_STATE
+                if (compare(faceEngine, feature) != ErrorInfo.MOK) {
+                    badState.incrementAndGet();
+                }
+                completed.incrementAndGet();
+            }
+        };
+        final FaceEnginePool.ErrorHandler handler = new FaceEnginePool.ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                // 只应因关闭而被拒绝，其余错误计入 badState
+                if (!"ENGINE_NOT_INIT".equals(code)) {
+                    badState.incrementAndGet();
+                }
+                rejected.incrementAndGet();
+            }
+        };
+        final CyclicBarrier start = new CyclicBarrier(THREADS);
+        final AtomicInteger submitted = new AtomicInteger();
+        List<Future<Void>> results = submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                start.await();
+                for (int i = 0; i < 50; i++) {
+                    submitted.incrementAndGet();
+                    pool.execute(FaceEngine.ASF_FACE_RECOGNITION, FaceEnginePool.PRIORITY_NORMAL, null, "COMPARE_ERROR", task, handler);
+                    submitted.incrementAndGet();
+                    if (!pool.tryRun(FaceEngine.ASF_FACE_RECOGNITION, task)) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }
+        });
+        Thread.sleep(20);
+        assertEquals(ErrorInfo.MOK, pool.shutdown());
+        for (Future<Void> result : results) {
+            result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        assertEquals(0, badState.get());
+        assertEquals(submitted.get(), completed.get() + rejected.get());
+        // 关闭后的调用立即失败，不再占用引擎
+        assertFalse(pool.tryRun(FaceEngine.ASF_FACE_RECOGNITION, task));
+        assertEquals(ErrorInfo.MOK, pool.shutdown());
+    }
+
+    @Test
+    public void coalescerSettlesEveryWaiterExactlyOnce() throws Exception {
+        final FaceEnginePool pool = pool(2, 50);
+        final RequestCoalescer coalescer = new RequestCoalescer();
+        final List<RecordingPromise> promises = Collections.synchronizedList(new ArrayList<RecordingPromise>());
+        final int requestsPerThread = 200;
+
+        runConcurrently(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Random random = new Random(Thread.currentThread().getId());
+                for (int i = 0; i < requestsPerThread; i++) {
+                    final String key = "image-" + random.nextInt(8);
+                    String group = random.nextBoolean() ? "screenA" : "screenB";
+                    RecordingPromise promise = new RecordingPromise();
+                    promises.add(promise);
+                    final RequestCoalescer.Request request = coalescer.join(key, group, promise.proxy);
+                    if (request != null) {
+                        FaceEnginePool.Job job = pool.execute(FaceEngine.ASF_FACE_RECOGNITION, FaceEnginePool.PRIORITY_NORMAL,
+                                null, "COMPARE_ERROR", new FaceEnginePool.Task() {
+                                    @Override
+                                    public void run(FaceEngineApi faceEngine) {
+                                        coalescer.resolve(request, key);
+                                    }
+                                }, new FaceEnginePool.ErrorHandler() {
+                                    @Override
+                                    public void onError(String code, String message) {
+                                        coalescer.reject(request, code, message);
+                                    }
+                                });
+                        coalescer.attach(request, job);
+                    }
+                    if (random.nextInt(20) == 0) {
+                        coalescer.cancel(random.nextBoolean() ? "screenA" : "screenB", pool);
+                    }
+                }
+                return null;
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (coalescer.getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, coalescer.getPendingCount());
+        pool.shutdown();
+
+        int cancelled = 0;
+        for (RecordingPromise promise : promises) {
+            assertEquals(1, promise.settled.get());
+            if ("CANCELLED".equals(promise.code)) {
+                cancelled++;
+            } else {
+                assertNotNull(promise.value);
+            }
+        }
+        assertEquals(THREADS * requestsPerThread, promises.size());
+        assertEquals(coalescer.getCancelledCount(), cancelled);
+    }
+
+    @Test
+    public void imageCacheReturnsEveryBufferOnce() throws Exception {
+        final ImageBufferPool bufferPool = new ImageBufferPool(Long.MAX_VALUE);
+        // 容量只够几张图，put 会不断淘汰其他线程仍在使用的条目
+        final ImageCache cache = new ImageCache(4 * 16 * 16 * 3);
+        final AtomicInteger created = new AtomicInteger();
+
+        runConcurrently(new Callable<Void>() {
+            @Override
+            public Void call() {
+                Random random = new Random(Thread.currentThread().getId());
+                for (int i = 0; i < 2000; i++) {
+                    String key = "image-" + random.nextInt(12);
+                    ImageCache.Entry entry = cache.get(key);
+                    if (entry == null) {
+                        created.incrementAndGet();
+                        entry = cache.put(key, new Bgr24Image(new byte[16 * 16 * 3], 16, 16, bufferPool));
+                    }
+                    // 条目在调用方释放前一直可用，即使已被其他线程淘汰
+                    assertEquals(16 * 16 * 3, entry.image.data.length);
+                    entry.release();
+                    int op = random.nextInt(100);
+                    if (op == 0) {
+                        cache.clear();
+                    } else if (op < 5) {
+                        cache.trimToSize(cache.getMaxBytes() / 2);
+                    }
+                }
+                return null;
+            }
+        });
+        cache.clear();
+        assertEquals(0, cache.getBytes());
+        // 每个缓冲区在最后一个引用释放时恰好归还一次：泄漏时偏少，重复释放时偏多
+        assertEquals((long) created.get() * 16 * 16 * 3, bufferPool.getPooledBytes());
+    }
+
+    @Test
+    public void galleryStaysConsistentUnderConcurrentWritesAndSearches() throws Exception {
+        Random random = new Random(5);
+        final int stable = 400;
+        final int churn = 400;
+        final byte[][] features = TestFeatures.clustered(stable + churn, stable + churn, 0.1f, random);
+        final FeatureGallery gallery = new FeatureGallery(TestFeatures.FEATURE_SIZE, 4);
+        // 两个额外的检索引擎，分片并行打分
+        SearchEngines engines = new SearchEngines(RuntimeEnvironment.getApplication(), 2, 0,
+                SimulatedEngine.factory(0, 0, 0, 0, 1));
+        gallery.setSearchEngines(engines);
+        for (int i = 0; i < stable; i++) {
+            gallery.register("stable" + i, features[i]);
+        }
+
+        final int writers = 2;
+        final int searchers = THREADS - writers;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger misses = new AtomicInteger();
+        try {
+            runConcurrently(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    int role = next.getAndIncrement();
+                    Random random = new Random(role);
+                    if (role < writers) {
+                        // 写线程各自负责一半会被反复注册与删除的 id
+                        for (int round = 0; round < 2000; round++) {
+                            int i = stable + role + 2 * random.nextInt(churn / 2);
+                            if (random.nextBoolean()) {
+                                gallery.register("churn" + i, features[i]);
+                            } else {
+                                gallery.remove("churn" + i);
+                            }
+                        }
+                        return null;
+                    }
+                    SimulatedEngine engine = TestFeatures.engine();
+                    for (int q = 0; q < 150; q++) {
+                        int i = random.nextInt(stable);
+                        List<FeatureGallery.Match> matches = q % 3 == 0
+                                ? gallery.trySearchTopK(engine, features[i], 5, 0)
+                                : gallery.searchTopK(engine, features[i], 5, 0);
+                        if (matches == null) {
+                            misses.incrementAndGet();
+                            continue;
+                        }
+                        // 从未删除的特征总能以近似 1 的分数排在第一位
+                        assertEquals("stable" + i, matches.get(0).id);
+                        assertEquals(1f, matches.get(0).score, 1e-4f);
+                        Set<String> ids = new HashSet<>();
+                        for (int m = 0; m < matches.size(); m++) {
+                            assertTrue(ids.add(matches.get(m).id));
+                            if (m > 0) {
+                                assertTrue(matches.get(m - 1).score >= matches.get(m).score);
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+        } finally {
+            engines.shutdown();
+            gallery.closeSearchPool();
+        }
+
+        int live = 0;
+        for (int i = stable; i < stable + churn; i++) {
+            byte[] out = new byte[TestFeatures.FEATURE_SIZE];
+            if (gallery.readFeature("churn" + i, out)) {
+                live++;
+            }
+        }
+        assertEquals(stable + live, gallery.size());
+        int shardTotal = 0;
+        for (int size : gallery.getShardSizes()) {
+            shardTotal += size;
+        }
+        assertEquals(gallery.size(), shardTotal);
+        assertTrue(misses.get() < searchers * 150);
+    }
+
+    private void runConcurrently(Callable<Void> body) throws Exception {
+        for (Future<Void> result : submit(body)) {
+            result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private List<Future<Void>> submit(Callable<Void> body) {
+        List<Future<Void>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(callers.submit(body));
+        }
+        return results;
+    }
+
+    private static FaceEnginePool pool(int engines, long compareMicros) {
+        FaceEnginePool pool = new FaceEnginePool(false, SimulatedEngine.factory(0, 0, 0, compareMicros, 1));
+        List<FaceEnginePool.EngineConfig> configs = new ArrayList<>();
+        for (int i = 0; i < engines; i++) {
+            configs.add(new FaceEnginePool.EngineConfig(DetectMode.ASF_DETECT_MODE_IMAGE,
+                    DetectFaceOrientPriority.ASF_OP_ALL_OUT, 1, FaceEngine.ASF_FACE_RECOGNITION));
+        }
+        assertEquals(ErrorInfo.MOK, pool.init(RuntimeEnvironment.getApplication(), configs));
+        return pool;
+    }
+
+    private static int compare(FaceEngineApi faceEngine, byte[] feature) {
+        return faceEngine.compareFaceFeature(new FaceFeature(feature), new FaceFeature(feature), new FaceSimilar());
+    }
+
+    // 记录 resolve / reject 调用次数的 Promise，不依赖具体 React Native 版本中 Promise 的方法集合
+    private static class RecordingPromise implements InvocationHandler {
+        final AtomicInteger settled = new AtomicInteger();
+        final Promise proxy = (Promise) Proxy.newProxyInstance(Promise.class.getClassLoader(),
+                new Class<?>[]{Promise.class}, this);
+        volatile Object value;
+        volatile String code;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.getName().equals("equals") ? proxy == args[0]
+                        : method.getName().equals("hashCode") ? System.identityHashCode(proxy) : toString();
+            }
+            if (method.getName().equals("resolve")) {
+                value = args[0];
+            } else if (args != null && args.length > 0 && args[0] instanceof String) {
+                code = (String) args[0];
+            }
+            settled.incrementAndGet();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.arcsoftface.reactnative;
+
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceSimilar;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 引擎池的 JMH 基准：4 个调用线程经排队调度（execute）或同步抢占（tryRun）执行一次特征比对。
+ * 引擎为 SimulatedEngine，compareMicros 模拟单次比对的耗时，结果反映调度与交接的开销随引擎数的变化。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class EnginePoolBenchmark {
+    @Param({"1", "2", "4"})
+    public int engines;
+
+    @Param({"0", "50"})
+    public long compareMicros;
+
+    private FaceEnginePool pool;
+    private FaceFeature feature1;
+    private FaceFeature feature2;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new FaceEnginePool(false, SimulatedEngine.factory(0, 0, 0, compareMicros, 1));
+        List<FaceEnginePool.EngineConfig> configs = new ArrayList<>();
+        for (int i = 0; i < engines; i++) {
+            configs.add(new FaceEnginePool.EngineConfig(DetectMode.ASF_DETECT_MODE_IMAGE,
+                    DetectFaceOrientPriority.ASF_OP_ALL_OUT, 1, FaceEngine.ASF_FACE_RECOGNITION));
+        }
+        if (pool.init(null, configs) != 0) {
+            throw new IllegalStateException("Engine pool init failed");
+        }
+        Random random = new Random(1);
+        feature1 = new FaceFeature(TestFeatures.random(random));
+        feature2 = new FaceFeature(TestFeatures.random(random));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public float execute() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final FaceSimilar similar = new FaceSimilar();
+        pool.execute(FaceEngine.ASF_FACE_RECOGNITION, "COMPARE_ERROR", new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) {
+                faceEngine.compareFaceFeature(feature1, feature2, similar);
+                done.countDown();
+            }
+        }, new FaceEnginePool.ErrorHandler() {
+            @Override
+            public void onError(String code, String message) {
+                done.countDown();
+            }
+        });
+        if (!done.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Engine pool job timed out");
+        }
+        return similar.getScore();
+    }
+
+    // 没有空闲引擎时立即返回，总吞吐量包含这部分快速失败的调用，hits / misses 分别计数
+    @Benchmark
+    public float tryRun(TryRunCounters counters) throws Exception {
+        final FaceSimilar similar = new FaceSimilar();
+        boolean ran = pool.tryRun(FaceEngine.ASF_FACE_RECOGNITION, new FaceEnginePool.Task() {
+            @Override
+            public void run(FaceEngineApi faceEngine) {
+                faceEngine.compareFaceFeature(feature1, feature2, similar);
+            }
+        });
+        if (ran) {
+            counters.hits++;
+        } else {
+            counters.misses++;
+        }
+        return similar.getScore();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class TryRunCounters {
+        public long hits;
+        public long misses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.arcsoftface.reactnative;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class FaceClustererTest {
+    private static final float NOISE = 0.3f;
+    private static final float THRESHOLD = 0.8f;
+
+    private final SimulatedEngine engine = TestFeatures.engine();
+
+    @Test
+    public void similarityChainsIntoOneGroup() throws Exception {
+        // 0 与 3 相差 30 度、3 与 2 相差 30 度（余弦 0.87），0 与 2 相差 60 度（余弦 0.5），1 与其余正交
+        List<byte[]> features = Arrays.asList(planar(0), axis(2), planar(60), planar(30));
+        FaceClusterer.Result result = FaceClusterer.cluster(engine, features, THRESHOLD, 0.1f);
+        assertEquals(2, result.clusters.size());
+        assertArrayEquals(new int[]{0, 2, 3}, result.clusters.get(0));
+        assertArrayEquals(new int[]{1}, result.clusters.get(1));
+        // 与两端都相连的 3 是代表
+        assertEquals(3, result.representatives[0]);
+        assertEquals(1, result.representatives[1]);
+    }
+
+    @Test
+    public void representativeTieGoesToLowestIndexAndGroupsSortBySize() throws Exception {
+        List<byte[]> features = Arrays.asList(axis(5), planar(0), axis(6), planar(10), axis(5));
+        FaceClusterer.Result result = FaceClusterer.cluster(engine, features, THRESHOLD, 0.1f);
+        assertEquals(3, result.clusters.size());
+        // 同样大小的组按首个下标排列
+        assertArrayEquals(new int[]{0, 4}, result.clusters.get(0));
+        assertArrayEquals(new int[]{1, 3}, result.clusters.get(1));
+        assertArrayEquals(new int[]{2}, result.clusters.get(2));
+        assertArrayEquals(new int[]{0, 1, 2}, result.representatives);
+    }
+
+    @Test
+    public void clustersFollowIdentities() throws Exception {
+        Random random = new Random(2);
+        List<byte[]> features = Arrays.asList(TestFeatures.clustered(48, 8, NOISE, random));
+        FaceClusterer.Result result = FaceClusterer.cluster(engine, features, THRESHOLD, 0.1f);
+        assertEquals(8, result.clusters.size());
+        for (int c = 0; c < result.clusters.size(); c++) {
+            int[] members = result.clusters.get(c);
+            assertEquals(6, members.length);
+            for (int member : members) {
+                assertEquals(members[0] % 8, member % 8);
+            }
+            assertEquals(members[0] % 8, result.representatives[c] % 8);
+        }
+        assertTrue(FaceClusterer.cluster(engine, new ArrayList<byte[]>(), THRESHOLD, 0.1f).clusters.isEmpty());
+    }
+
+    @Test
+    public void mismatchedLayoutComparesEveryPair() throws Exception {
+        Random random = new Random(1);
+        List<byte[]> features = Arrays.asList(TestFeatures.clustered(60, 12, NOISE, random));
+        FaceEngineApi mismatched = TestFeatures.mismatchedEngine();
+
+        // 预筛选被关闭，margin 为 0 时也比对全部特征对，分组与不预筛选时相同
+        FaceClusterer.Result result = FaceClusterer.cluster(mismatched, features, THRESHOLD, 0);
+        assertEquals(60 * 59 / 2, result.comparisons);
+        FaceClusterer.Result unfiltered = FaceClusterer.cluster(mismatched, features, THRESHOLD, 2);
+        assertEquals(unfiltered.clusters.size(), result.clusters.size());
+        for (int c = 0; c < result.clusters.size(); c++) {
+            assertArrayEquals(unfiltered.clusters.get(c), result.clusters.get(c));
+        }
+
+        // 解析相符时预筛选生效
+        FaceClusterer.Result filtered = FaceClusterer.cluster(engine, features, THRESHOLD, 0.1f);
+        assertTrue(filtered.comparisons < 60 * 59 / 2);
+        assertEquals(12, filtered.clusters.size());
+    }
+
+    // 前两维平面内与第 0 维夹角为 degrees 的单位向量
+    private static byte[] planar(double degrees) {
+        float[] vector = new float[TestFeatures.DIMENSION];
+        vector[0] = (float) Math.cos(Math.toRadians(degrees));
+        vector[1] = (float) Math.sin(Math.toRadians(degrees));
+        return TestFeatures.encode(vector);
+    }
+
+    private static byte[] axis(int dimension) {
+        float[] vector = new float[TestFeatures.DIMENSION];
+        vector[dimension] = 1;
+        return TestFeatures.encode(vector);
+    }
+}
@@ -0,0 +1,79 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Rect;
+
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class FaceQualityTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final Rect FACE = new Rect(100, 60, 220, 180);
+
+    @Test
+    public void nv21AndBgr24MeasureTheSameLuma() {
+        FaceInfo faceInfo = TestFrames.face(0, FACE, 0, 0, 0);
+        FaceQuality.Score nv21 = FaceQuality.DEFAULT.evaluate(TestFrames.nv21(WIDTH, HEIGHT, 120, 10), WIDTH, HEIGHT,
+                FaceEngine.CP_PAF_NV21, faceInfo, 120);
+        FaceQuality.Score bgr24 = FaceQuality.DEFAULT.evaluate(TestFrames.bgr24(WIDTH, HEIGHT, 120, 10), WIDTH, HEIGHT,
+                FaceEngine.CP_PAF_BGR24, faceInfo, 120);
+        assertNull(nv21.reason);
+        assertEquals(120, nv21.brightness, 0.5f);
+        // 单像素棋盘格的拉普拉斯响应为 ±8 * contrast
+        assertEquals(6400, nv21.sharpness, 1f);
+        assertEquals(nv21.brightness, bgr24.brightness, 1e-3f);
+        assertEquals(nv21.sharpness, bgr24.sharpness, 1e-3f);
+        assertEquals(nv21.score, bgr24.score, 1e-3f);
+    }
+
+    @Test
+    public void thresholdsRejectInOrder() {
+        FaceInfo frontal = TestFrames.face(0, FACE, 0, 0, 0);
+        assertEquals(FaceQuality.FACE_TOO_SMALL, evaluate(frontal, 120, 10, 50).reason);
+        assertEquals(FaceQuality.POSE_TOO_LARGE, evaluate(TestFrames.face(0, FACE, 40, 0, 0), 120, 10, 120).reason);
+        assertEquals(FaceQuality.POSE_TOO_LARGE, evaluate(TestFrames.face(0, FACE, 0, -35, 0), 120, 10, 120).reason);
+        assertEquals(FaceQuality.TOO_DARK, evaluate(frontal, 20, 10, 120).reason);
+        assertEquals(FaceQuality.TOO_BRIGHT, evaluate(frontal, 240, 10, 120).reason);
+        assertEquals(FaceQuality.BLURRY, evaluate(frontal, 120, 0, 120).reason);
+        assertTrue(evaluate(frontal, 120, 10, 120).passed());
+    }
+
+    @Test
+    public void unsampledFaceIsTooSmallNotDarkOrBlurry() {
+        // 人脸框短边为 120（原图），但检测图像上的框只有 2 像素或落在图像外，采样不到任何点
+        FaceInfo tiny = TestFrames.face(0, new Rect(10, 10, 12, 12), 0, 0, 0);
+        FaceQuality.Score score = evaluate(tiny, 120, 10, 120);
+        assertEquals(FaceQuality.FACE_TOO_SMALL, score.reason);
+        assertEquals(0, score.brightness, 0);
+        FaceInfo outside = TestFrames.face(0, new Rect(WIDTH + 10, 0, WIDTH + 130, 120), 0, 0, 0);
+        assertEquals(FaceQuality.FACE_TOO_SMALL, evaluate(outside, 120, 10, 120).reason);
+        // 不检查亮度与清晰度时不拒绝
+        assertTrue(FaceQuality.NONE.evaluate(TestFrames.nv21(WIDTH, HEIGHT, 120, 10), WIDTH, HEIGHT,
+                FaceEngine.CP_PAF_NV21, tiny, 120).passed());
+    }
+
+    @Test
+    public void sharperAndMoreFrontalFacesScoreHigher() {
+        FaceInfo frontal = TestFrames.face(0, FACE, 0, 0, 0);
+        float soft = evaluate(frontal, 120, 1, 120).score;
+        float sharp = evaluate(frontal, 120, 3, 120).score;
+        float turned = evaluate(TestFrames.face(0, FACE, 25, 0, 0), 120, 3, 120).score;
+        assertTrue(sharp > soft);
+        assertTrue(sharp > turned);
+        assertTrue(evaluate(frontal, 120, 3, 200).score > sharp);
+    }
+
+    private static FaceQuality.Score evaluate(FaceInfo faceInfo, int mean, int contrast, int faceSize) {
+        return FaceQuality.DEFAULT.evaluate(TestFrames.nv21(WIDTH, HEIGHT, mean, contrast), WIDTH, HEIGHT,
+                FaceEngine.CP_PAF_NV21, faceInfo, faceSize);
+    }
+}
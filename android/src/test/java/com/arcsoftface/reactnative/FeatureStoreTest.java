@@ -0,0 +1,307 @@
+package com.arcsoftface.reactnative;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class FeatureStoreTest {
+    private static final int FEATURE_SIZE = TestFeatures.FEATURE_SIZE;
+    // 与 FeatureStore 的文件布局一致：64 字节头部、按 8 字节对齐的 tombstone 位图、每条 64 字节的 id 表
+    private static final int HEADER_SIZE = 64;
+    private static final int ID_SLOT_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private FeatureStore store;
+
+    @After
+    public void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    public void headerAndIdTableMatchDocumentedLayout() throws Exception {
+        Random random = new Random(1);
+        open();
+        byte[] first = TestFeatures.random(random);
+        byte[] second = TestFeatures.random(random);
+        store.put("张三", first);
+        store.put("b", second);
+        store.close();
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x53464641, bytes.getInt(0));
+        assertEquals(1, bytes.getInt(4));
+        assertEquals(FEATURE_SIZE, bytes.getInt(8));
+        assertEquals(ID_SLOT_SIZE, bytes.getInt(12));
+        assertEquals(INITIAL_CAPACITY, bytes.getInt(16));
+        assertEquals(2, bytes.getInt(20));
+        assertEquals(featureOffset(INITIAL_CAPACITY), bytes.capacity());
+        assertEquals(0, bytes.get(HEADER_SIZE));
+
+        byte[] id = "张三".getBytes(Charset.forName("UTF-8"));
+        assertEquals(id.length, bytes.getShort(idOffset(0)));
+        assertArrayEquals(id, slice(bytes, idOffset(0) + 2, id.length));
+        assertEquals(1, bytes.getShort(idOffset(1)));
+        assertArrayEquals(first, slice(bytes, featureOffset(0), FEATURE_SIZE));
+        assertArrayEquals(second, slice(bytes, featureOffset(1), FEATURE_SIZE));
+    }
+
+    @Test
+    public void overwriteAndRemoveLeaveTombstones() throws Exception {
+        Random random = new Random(2);
+        open();
+        byte[] before = TestFeatures.random(random);
+        byte[] after = TestFeatures.random(random);
+        store.put("a", before);
+        store.put("b", before);
+        store.put("a", after);
+        assertTrue(store.remove("b"));
+        assertFalse(store.remove("b"));
+        assertEquals(1, store.size());
+        assertEquals(3, store.getRecordCount());
+        store.close();
+
+        // 记录 0（被覆盖的 a）与记录 1（删除的 b）置位，记录 2 未置位
+        RandomAccessFile raw = new RandomAccessFile(file, "r");
+        try {
+            raw.seek(HEADER_SIZE);
+            assertEquals(0x03, raw.read());
+        } finally {
+            raw.close();
+        }
+
+        open();
+        assertEquals(1, store.size());
+        byte[] out = new byte[FEATURE_SIZE];
+        assertTrue(store.read("a", out));
+        assertArrayEquals(after, out);
+        assertFalse(store.read("b", out));
+    }
+
+    @Test
+    public void uncommittedRecordIsIgnoredAfterCrash() throws Exception {
+        Random random = new Random(3);
+        open();
+        store.put("a", TestFeatures.random(random));
+        store.close();
+
+        // 模拟写入记录 1 的 id 与特征后、提交 recordCount 前崩溃
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.seek(idOffset(1));
+            raw.write(new byte[]{1, 0, 'x'});
+            raw.seek(featureOffset(1));
+            raw.write(TestFeatures.random(random));
+        } finally {
+            raw.close();
+        }
+
+        open();
+        assertEquals(1, store.size());
+        assertEquals(1, store.getRecordCount());
+        assertFalse(store.contains("x"));
+        // 下一次写入覆盖未提交的槽位
+        byte[] next = TestFeatures.random(random);
+        store.put("y", next);
+        byte[] out = new byte[FEATURE_SIZE];
+        assertTrue(store.read("y", out));
+        assertArrayEquals(next, out);
+        assertFalse(store.contains("x"));
+    }
+
+    @Test
+    public void overwriteWithoutTombstoneKeepsNewerRecord() throws Exception {
+        Random random = new Random(4);
+        open();
+        byte[] before = TestFeatures.random(random);
+        byte[] after = TestFeatures.random(random);
+        store.put("a", before);
+        store.put("a", after);
+        store.close();
+
+        // 模拟提交新记录后、旧记录的 tombstone 落盘前崩溃
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.seek(HEADER_SIZE);
+            raw.write(0);
+        } finally {
+            raw.close();
+        }
+
+        open();
+        assertEquals(1, store.size());
+        byte[] out = new byte[FEATURE_SIZE];
+        assertTrue(store.read("a", out));
+        assertArrayEquals(after, out);
+        store.close();
+        // 去重时补上 tombstone
+        raw = new RandomAccessFile(file, "r");
+        try {
+            raw.seek(HEADER_SIZE);
+            assertEquals(0x01, raw.read());
+        } finally {
+            raw.close();
+        }
+    }
+
+    @Test
+    public void compactReclaimsDeletedRecordsAndKeepsContent() throws Exception {
+        Random random = new Random(5);
+        open();
+        Map<String, byte[]> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            byte[] featureData = TestFeatures.random(random);
+            store.put("id" + i, featureData);
+            expected.put("id" + i, featureData);
+        }
+        for (int i = 0; i < 50; i++) {
+            byte[] featureData = TestFeatures.random(random);
+            store.put("id" + i, featureData);
+            expected.put("id" + i, featureData);
+        }
+        for (int i = 80; i < 100; i++) {
+            store.remove("id" + i);
+            expected.remove("id" + i);
+        }
+        assertEquals(150, store.getRecordCount());
+        long length = file.length();
+
+        store.compact();
+        assertEquals(80, store.getRecordCount());
+        assertEquals(80, store.size());
+        assertEquals(length, file.length());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertContent(expected);
+
+        store.close();
+        open();
+        assertEquals(80, store.getRecordCount());
+        assertContent(expected);
+    }
+
+    @Test
+    public void growsPastInitialCapacity() throws Exception {
+        Random random = new Random(6);
+        open();
+        Map<String, byte[]> expected = new HashMap<>();
+        for (int i = 0; i < INITIAL_CAPACITY * 2 + 10; i++) {
+            byte[] featureData = TestFeatures.random(random);
+            store.put("id" + i, featureData);
+            expected.put("id" + i, featureData);
+        }
+        assertContent(expected);
+        store.close();
+        open();
+        assertEquals(expected.size(), store.size());
+        assertContent(expected);
+    }
+
+    @Test
+    public void rejectsInvalidRecords() throws Exception {
+        open();
+        char[] longId = new char[63];
+        Arrays.fill(longId, 'x');
+        try {
+            store.put(new String(longId), new byte[FEATURE_SIZE]);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            store.put("a", new byte[FEATURE_SIZE - 1]);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void stagedWritesStayInvisibleUntilPublished() throws Exception {
+        Random random = new Random(7);
+        open();
+        byte[] before = TestFeatures.random(random);
+        byte[] after = TestFeatures.random(random);
+        store.put("x", before);
+        store.put("y", before);
+
+        store.stage();
+        store.put("x", after);
+        store.remove("y");
+        store.put("z", after);
+        // 扩容会重新映射，暂存仍然有效
+        for (int i = 0; i < 2000; i++) {
+            store.put("n" + i, after);
+        }
+        byte[] out = new byte[FEATURE_SIZE];
+        assertTrue(store.read("x", out));
+        assertArrayEquals(before, out);
+        assertTrue(store.read("y", out));
+        assertFalse(store.read("z", out));
+        assertFalse(store.contains("y"));
+
+        store.publish();
+        assertTrue(store.read("x", out));
+        assertArrayEquals(after, out);
+        assertFalse(store.read("y", out));
+        assertTrue(store.read("z", out));
+    }
+
+    private void open() throws Exception {
+        if (file == null) {
+            file = new File(folder.getRoot(), "features.afs");
+        }
+        store = new FeatureStore(file, FEATURE_SIZE);
+        store.open();
+    }
+
+    private void assertContent(Map<String, byte[]> expected) {
+        byte[] out = new byte[FEATURE_SIZE];
+        assertEquals(expected.size(), store.size());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            assertTrue(entry.getKey(), store.read(entry.getKey(), out));
+            assertArrayEquals(entry.getValue(), out);
+        }
+    }
+
+    private static byte[] slice(ByteBuffer bytes, int offset, int length) {
+        byte[] out = new byte[length];
+        for (int i = 0; i < length; i++) {
+            out[i] = bytes.get(offset + i);
+        }
+        return out;
+    }
+
+    private static int idOffset(int record) {
+        return HEADER_SIZE + INITIAL_CAPACITY / 8 + record * ID_SLOT_SIZE;
+    }
+
+    private static int featureOffset(int record) {
+        return idOffset(INITIAL_CAPACITY) + record * FEATURE_SIZE;
+    }
+}
@@ -0,0 +1,163 @@
+package com.arcsoftface.reactnative;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+import com.arcsoft.face.enums.ExtractType;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 帧管线的识别路径：在模拟引擎上提交合成 NV21 帧，检查质量门限与最佳帧窗口决定在哪一帧上提取特征。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FramePipelineTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final long WINDOW = 100;
+
+    private final FeatureGallery gallery = new FeatureGallery(TestFeatures.FEATURE_SIZE, 1);
+    private final BlockingQueue<Snapshot> results = new ArrayBlockingQueue<>(16);
+    private FramePipeline pipeline;
+
+    // 回调期间的跟踪状态副本
+    private static final class Snapshot {
+        boolean extracted;
+        boolean hasFeature;
+        String rejectReason;
+        String matchId;
+        float matchScore;
+        long candidateSince;
+    }
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+        gallery.closeSearchPool();
+    }
+
+    @Test
+    public void bestFrameWindowExtractsOnSharpestFrame() throws Exception {
+        byte[] soft = TestFrames.nv21(WIDTH, HEIGHT, 120, 1);
+        byte[] sharpest = TestFrames.nv21(WIDTH, HEIGHT, 120, 3);
+        byte[] medium = TestFrames.nv21(WIDTH, HEIGHT, 120, 2);
+        byte[] last = TestFrames.nv21(WIDTH, HEIGHT, 121, 1);
+        // 特征库中只有从最清晰的一帧提取的特征，匹配到它说明提取发生在该帧上
+        gallery.register("sharpest", extract(sharpest));
+        gallery.register("soft", extract(soft));
+        start(null, WINDOW);
+
+        Snapshot first = submit(soft);
+        assertFalse(first.extracted);
+        assertTrue(first.candidateSince >= 0);
+        ShadowSystemClock.advanceBy(Duration.ofMillis(30));
+        assertFalse(submit(sharpest).extracted);
+        ShadowSystemClock.advanceBy(Duration.ofMillis(30));
+        Snapshot third = submit(medium);
+        assertFalse(third.extracted);
+        assertFalse(third.hasFeature);
+        assertEquals(first.candidateSince, third.candidateSince);
+
+        ShadowSystemClock.advanceBy(Duration.ofMillis(WINDOW));
+        Snapshot closed = submit(last);
+        assertTrue(closed.extracted);
+        assertEquals(-1, closed.candidateSince);
+        assertEquals("sharpest", closed.matchId);
+        assertEquals(1f, closed.matchScore, 1e-4f);
+
+        // 提取后缓存有效期内不再开窗口
+        ShadowSystemClock.advanceBy(Duration.ofMillis(30));
+        Snapshot cached = submit(soft);
+        assertFalse(cached.extracted);
+        assertEquals(-1, cached.candidateSince);
+        assertEquals("sharpest", cached.matchId);
+    }
+
+    @Test
+    public void rejectedFramesAreNotExtracted() throws Exception {
+        gallery.register("sharp", extract(TestFrames.nv21(WIDTH, HEIGHT, 120, 10)));
+        start(new FaceQuality(0, 0, 0, 0, 20, 40, 220), 0);
+
+        Snapshot flat = submit(TestFrames.nv21(WIDTH, HEIGHT, 120, 0));
+        assertEquals(FaceQuality.BLURRY, flat.rejectReason);
+        assertFalse(flat.extracted);
+        assertNull(flat.matchId);
+        Snapshot dark = submit(TestFrames.nv21(WIDTH, HEIGHT, 20, 10));
+        assertEquals(FaceQuality.TOO_DARK, dark.rejectReason);
+        assertFalse(dark.hasFeature);
+
+        Snapshot sharp = submit(TestFrames.nv21(WIDTH, HEIGHT, 120, 10));
+        assertNull(sharp.rejectReason);
+        assertTrue(sharp.extracted);
+        assertEquals("sharp", sharp.matchId);
+    }
+
+    private void start(FaceQuality quality, long window) {
+        TrackCache trackCache = new TrackCache(TestFeatures.FEATURE_SIZE, 3000, 0.2f, 10);
+        pipeline = new FramePipeline(SimulatedEngine.factory(0, 0, 0, 0, 1), FaceEngine.ASF_NONE, gallery, trackCache,
+                0.5f, quality, window, new FramePipeline.Listener() {
+            @Override
+            public void onFrame(FramePipeline.Frame frame, FaceAnalysis analysis, List<TrackCache.Track> tracks, long processMillis) {
+                assertEquals(1, tracks.size());
+                TrackCache.Track track = tracks.get(0);
+                Snapshot snapshot = new Snapshot();
+                snapshot.extracted = track.extracted;
+                snapshot.hasFeature = track.hasFeature;
+                snapshot.rejectReason = track.rejectReason;
+                snapshot.matchId = track.matchId;
+                snapshot.matchScore = track.matchScore;
+                snapshot.candidateSince = track.candidateSince;
+                results.add(snapshot);
+            }
+
+            @Override
+            public void onError(FramePipeline.Frame frame, int code) {
+            }
+        });
+        assertEquals(ErrorInfo.MOK, pipeline.start(null, DetectFaceOrientPriority.ASF_OP_0_ONLY, 1));
+    }
+
+    // 等待上一帧处理完再提交下一帧，避免"最新帧优先"丢帧
+    private Snapshot submit(byte[] nv21) throws InterruptedException {
+        assertTrue(pipeline.submitNv21(nv21, WIDTH, HEIGHT));
+        Snapshot snapshot = results.poll(10, TimeUnit.SECONDS);
+        assertNotNull(snapshot);
+        return snapshot;
+    }
+
+    // 与帧管线相同的检测与提取，得到该帧上人脸的特征
+    private static byte[] extract(byte[] nv21) {
+        SimulatedEngine engine = new SimulatedEngine(0, 0, 0, 0, 1);
+        engine.init(null, DetectMode.ASF_DETECT_MODE_VIDEO, DetectFaceOrientPriority.ASF_OP_0_ONLY, 1,
+                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION);
+        List<FaceInfo> faces = new ArrayList<>();
+        assertEquals(ErrorInfo.MOK, engine.detectFaces(nv21, WIDTH, HEIGHT, FaceEngine.CP_PAF_NV21, faces));
+        FaceFeature feature = new FaceFeature();
+        assertEquals(ErrorInfo.MOK, engine.extractFaceFeature(nv21, WIDTH, HEIGHT, FaceEngine.CP_PAF_NV21, faces.get(0),
+                ExtractType.RECOGNIZE, 0, feature));
+        engine.unInit();
+        return feature.getFeatureData();
+    }
+}
@@ -0,0 +1,88 @@
+package com.arcsoftface.reactnative;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1:N Top-K 检索的 JMH 基准：全精度精确检索、IVF 近似检索与 int8 紧凑编码，库规模 1k / 10k / 100k。
+ * 引擎为不计比对耗时的 SimulatedEngine，结果只反映检索本身（打分、合并、重排）的开销；
+ * 运行方式见 build.gradle 中的 jmh 任务。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class GallerySearchBenchmark {
+    private static final int K = 10;
+    private static final float NOISE = 0.5f;
+    private static final int PROBES = 256;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"exact", "ivf", "int8"})
+    public String mode;
+
+    private SimulatedEngine engine;
+    private FeatureGallery gallery;
+    private byte[][] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(size);
+        // 每人 10 张照片，与 IvfIndexTest 相同的分布
+        final byte[][] features = TestFeatures.clustered(size, size / 10, NOISE, random);
+        engine = TestFeatures.engine();
+        gallery = new FeatureGallery();
+        if ("int8".equals(mode)) {
+            gallery.setCompact(true, new FeatureGallery.FeatureReader() {
+                @Override
+                public boolean read(String id, byte[] out) {
+                    System.arraycopy(features[Integer.parseInt(id)], 0, out, 0, out.length);
+                    return true;
+                }
+            });
+        }
+        for (int i = 0; i < size; i++) {
+            gallery.register(Integer.toString(i), features[i]);
+        }
+        if ("ivf".equals(mode)) {
+            gallery.setIndexMinSize(0);
+            gallery.buildIndex(0, IvfIndex.DEFAULT_ITERATIONS);
+        }
+        probes = new byte[PROBES][];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = TestFeatures.near(features[random.nextInt(size)], NOISE, random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        gallery.clear();
+        gallery.closeSearchPool();
+    }
+
+    @Benchmark
+    public List<FeatureGallery.Match> searchTopK() {
+        byte[] probe = probes[next++ & (PROBES - 1)];
+        return gallery.searchTopK(engine, probe, K, Float.NEGATIVE_INFINITY, !"exact".equals(mode));
+    }
+}
@@ -0,0 +1,263 @@
+package com.arcsoftface.reactnative;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class GallerySyncTest {
+    private static final float NOISE = 0.3f;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SimulatedEngine engine = TestFeatures.engine();
+    private final List<Device> devices = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (Device device : devices) {
+            device.close();
+        }
+    }
+
+    @Test
+    public void incrementalImportWithGapIsRejected() throws Exception {
+        Random random = new Random(1);
+        Device source = open("source");
+        Device target = open("target");
+        for (int i = 0; i < 10; i++) {
+            source.sync.register("a" + i, TestFeatures.random(random));
+        }
+        File delta = new File(folder.getRoot(), "delta.bin");
+        GallerySync.Summary first = source.sync.exportDelta(delta, 0, null);
+        assertFalse(first.full);
+        target.sync.importDelta(delta);
+        assertEquals(10, target.gallery.size());
+
+        for (int i = 0; i < 10; i++) {
+            source.sync.register("b" + i, TestFeatures.random(random));
+        }
+        // 跳过 first.toSequence 之后的前几条变更
+        source.sync.exportDelta(delta, first.toSequence + 3, source.journal.getSourceId());
+        try {
+            target.sync.importDelta(delta);
+            fail("Expected DELTA_GAP");
+        } catch (FaceException e) {
+            assertEquals("DELTA_GAP", e.code);
+        }
+        assertEquals(10, target.gallery.size());
+        assertEquals(Long.valueOf(first.toSequence), target.sync.getImportedSequences().get(first.sourceId));
+
+        GallerySync.Summary second = source.sync.exportDelta(delta, first.toSequence, source.journal.getSourceId());
+        target.sync.importDelta(delta);
+        assertEquals(20, target.gallery.size());
+
+        // 已导入的序列号在重新打开后保留
+        target.close();
+        Device reopened = open("target");
+        assertEquals(Long.valueOf(second.toSequence), reopened.sync.getImportedSequences().get(second.sourceId));
+        reopened.sync.clear();
+        assertTrue(reopened.sync.getImportedSequences().isEmpty());
+    }
+
+    @Test
+    public void deltaChangedBetweenPassesIsNotApplied() throws Exception {
+        Random random = new Random(2);
+        Device source = open("source");
+        Device target = open("target");
+        for (int i = 0; i < 600; i++) {
+            source.sync.register("id" + i, TestFeatures.random(random));
+        }
+        File delta = new File(folder.getRoot(), "delta.bin");
+        GallerySync.Summary exported = source.sync.exportDelta(delta, 0, null);
+        // 改动第二批中的一个字节（约第 300 条记录）：第一批的 CRC 中间值仍然一致，第二批起不一致
+        byte[] bytes = Files.readAllBytes(delta.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        final File tampered = new File(folder.getRoot(), "tampered.bin");
+        Files.write(tampered.toPath(), bytes);
+
+        // 第一遍打开原文件并校验通过，第二遍打开时已被替换
+        File switching = new File(delta.getPath()) {
+            private int opens;
+
+            @Override
+            public String getPath() {
+                return opens++ == 0 ? super.getPath() : tampered.getPath();
+            }
+        };
+        try {
+            target.sync.importDelta(switching);
+            fail("Expected INVALID_DELTA");
+        } catch (FaceException e) {
+            assertEquals("INVALID_DELTA", e.code);
+        }
+        // 只有与校验内容一致的第一批写入
+        assertEquals(256, target.gallery.size());
+        assertEquals(256, target.store.size());
+        assertTrue(target.sync.getImportedSequences().isEmpty());
+
+        target.sync.importDelta(delta);
+        assertEquals(600, target.gallery.size());
+        assertEquals(Long.valueOf(exported.toSequence), target.sync.getImportedSequences().get(exported.sourceId));
+        byte[] out = new byte[TestFeatures.FEATURE_SIZE];
+        byte[] expected = new byte[TestFeatures.FEATURE_SIZE];
+        for (String id : source.store.ids()) {
+            assertTrue(source.store.read(id, expected));
+            assertTrue(target.store.read(id, out));
+            assertArrayEquals(expected, out);
+        }
+    }
+
+    @Test
+    public void expiredTombstonesArePrunedAndForceFullExport() throws Exception {
+        File file = new File(folder.getRoot(), "features.seq");
+        ChangeJournal journal = new ChangeJournal(file, 100);
+        journal.open(0);
+        // 每个 id 注册后删除一次，只剩删除记录
+        for (int i = 0; i < 3000; i++) {
+            journal.record("id" + i, false);
+            journal.record("id" + i, true);
+        }
+        long minSequence = journal.getMinSequence();
+        assertTrue(minSequence > 0);
+        assertNull(journal.changesSince(0));
+        assertNull(journal.changesSince(minSequence - 1));
+        List<ChangeJournal.Change> recent = journal.changesSince(minSequence);
+        assertNotNull(recent);
+        assertTrue(journal.size() < 3000);
+        // 保留范围内的删除都还在
+        long sequence = journal.getSequence();
+        int retained = 0;
+        for (ChangeJournal.Change change : recent) {
+            assertTrue(change.deleted);
+            if (change.sequence > sequence - 100) {
+                retained++;
+            }
+        }
+        assertEquals(50, retained);
+        journal.close();
+
+        ChangeJournal reopened = new ChangeJournal(file, 100);
+        reopened.open(0);
+        assertEquals(minSequence, reopened.getMinSequence());
+        assertEquals(sequence, reopened.getSequence());
+        assertEquals(journal.size(), reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public void compactImportDoesNotBlockSearches() throws Exception {
+        Random random = new Random(4);
+        final int size = 2000;
+        final byte[][] original = TestFeatures.clustered(size, size, NOISE, random);
+        final byte[][] updated = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            updated[i] = TestFeatures.near(original[i], NOISE, random);
+        }
+        Device source = open("source");
+        final Device target = open("target");
+        for (int i = 0; i < size; i++) {
+            target.sync.register("id" + i, original[i]);
+            source.sync.register("id" + i, updated[i]);
+        }
+        target.gallery.setCompact(true, target.store);
+        final File delta = new File(folder.getRoot(), "delta.bin");
+        source.sync.exportDelta(delta, 0, null);
+
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread importer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    target.sync.importDelta(delta);
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            }
+        });
+        AtomicInteger searchedDuringImport = new AtomicInteger();
+        importer.start();
+        while (importer.isAlive()) {
+            int i = random.nextInt(size);
+            List<FeatureGallery.Match> matches = target.gallery.trySearchTopK(engine, original[i], 1, 0);
+            if (matches == null || !importer.isAlive()) {
+                continue;
+            }
+            searchedDuringImport.incrementAndGet();
+            // 重排读到的全精度特征与内存中的编码属于同一版本：分数要么是导入前的 1，要么是导入后的值
+            FeatureGallery.Match match = matches.get(0);
+            assertEquals("id" + i, match.id);
+            float expected = match.score > 0.9999f ? 1f : TestFeatures.cosine(original[i], updated[i]);
+            assertEquals(expected, match.score, 1e-4f);
+        }
+        importer.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        assertTrue(searchedDuringImport.get() > 0);
+
+        byte[] out = new byte[TestFeatures.FEATURE_SIZE];
+        for (int i = 0; i < size; i += 97) {
+            assertTrue(target.gallery.readFeature("id" + i, out));
+            assertTrue(Arrays.equals(updated[i], out));
+            List<FeatureGallery.Match> matches = target.gallery.searchTopK(engine, updated[i], 1, 0);
+            assertEquals("id" + i, matches.get(0).id);
+            assertEquals(1f, matches.get(0).score, 1e-4f);
+        }
+    }
+
+    private Device open(String name) throws IOException {
+        Device device = new Device(new File(folder.getRoot(), name));
+        devices.add(device);
+        return device;
+    }
+
+    private static final class Device {
+        final FeatureStore store;
+        final ChangeJournal journal;
+        final FeatureGallery gallery;
+        final GallerySync sync;
+
+        Device(File dir) throws IOException {
+            store = new FeatureStore(new File(dir, "features.afs"), TestFeatures.FEATURE_SIZE);
+            store.open();
+            gallery = new FeatureGallery(TestFeatures.FEATURE_SIZE, 4);
+            final byte[] featureData = new byte[TestFeatures.FEATURE_SIZE];
+            for (String id : store.ids()) {
+                store.read(id, featureData);
+                gallery.register(id, featureData);
+            }
+            journal = new ChangeJournal(new File(dir, "features.seq"));
+            journal.open(store.size());
+            sync = new GallerySync(store, journal, gallery, new File(dir, "features.imp"));
+        }
+
+        void close() {
+            journal.close();
+            store.close();
+            gallery.closeSearchPool();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.ExifInterface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 重复解码同一类图片时，BGR24 缓冲区与 Bitmap 在预热后应全部来自 ImageBufferPool，不再新建。
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(shadows = {ShadowArcSoftImageUtil.class, ShadowRegionDecoder.class}, instrumentedPackages = "com.arcsoft.imageutil")
+public class ImageBufferPoolTest {
+    private static final int ROUNDS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImageBufferPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ImageBufferPool(64L * 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        pool.clear();
+    }
+
+    @Test
+    public void uprightAlignedImageReusesPool() throws Exception {
+        String path = writeJpeg(640, 480, ExifInterface.ORIENTATION_NORMAL);
+        assertNoAllocationsAfterWarmup(path, 0);
+    }
+
+    @Test
+    public void unalignedImageReusesPool() throws Exception {
+        String path = writeJpeg(643, 481, ExifInterface.ORIENTATION_NORMAL);
+        assertNoAllocationsAfterWarmup(path, 0);
+    }
+
+    @Test
+    public void rotatedImageReusesPool() throws Exception {
+        String path = writeJpeg(643, 481, ExifInterface.ORIENTATION_ROTATE_90);
+        Bgr24Image image = Bgr24Image.decode(path, 0, pool);
+        // 摆正后宽高互换，再裁剪为 4 的倍数
+        assertEquals(480, image.width);
+        assertEquals(640, image.height);
+        image.release();
+        assertNoAllocationsAfterWarmup(path, 0);
+    }
+
+    @Test
+    public void downscaledImageReusesPool() throws Exception {
+        String path = writeJpeg(1286, 962, ExifInterface.ORIENTATION_ROTATE_270);
+        assertNoAllocationsAfterWarmup(path, 500);
+    }
+
+    @Test
+    public void croppedRegionReusesPool() throws Exception {
+        String path = writeJpeg(1286, 962, ExifInterface.ORIENTATION_ROTATE_180);
+        Bgr24Image full = Bgr24Image.decode(path, 500, pool);
+        Bgr24Image.Source source = full.source;
+        full.release();
+        Rect region = new Rect(101, 203, 503, 605);
+
+        release(Bgr24Image.decodeCrop(source, region, 0, pool));
+        pool.resetStats();
+        for (int i = 0; i < ROUNDS; i++) {
+            Bgr24Image crop = Bgr24Image.decodeCrop(source, region, 0, pool);
+            assertEquals(region.left, crop.offsetX);
+            assertEquals(region.top, crop.offsetY);
+            crop.release();
+        }
+        assertNoAllocations();
+    }
+
+    @Test
+    public void retainedImageReturnsBufferOnLastRelease() throws Exception {
+        String path = writeJpeg(640, 480, ExifInterface.ORIENTATION_NORMAL);
+        release(Bgr24Image.decode(path, 0, pool));
+        pool.resetStats();
+
+        Bgr24Image image = Bgr24Image.decode(path, 0, pool);
+        image.retain();
+        image.release();
+        // 仍有一个引用，缓冲区未归还，下一次解码只能新建
+        Bgr24Image other = Bgr24Image.decode(path, 0, pool);
+        assertEquals(1, pool.getBufferAllocations());
+        image.release();
+        other.release();
+
+        pool.resetStats();
+        release(Bgr24Image.decode(path, 0, pool));
+        release(Bgr24Image.decode(path, 0, pool));
+        assertEquals(0, pool.getBufferAllocations());
+    }
+
+    private void assertNoAllocationsAfterWarmup(String path, int maxSize) throws FaceException {
+        release(Bgr24Image.decode(path, maxSize, pool));
+        pool.resetStats();
+        for (int i = 0; i < ROUNDS; i++) {
+            release(Bgr24Image.decode(path, maxSize, pool));
+        }
+        assertNoAllocations();
+    }
+
+    private void assertNoAllocations() {
+        assertEquals("byte[] allocations", 0, pool.getBufferAllocations());
+        assertEquals("bitmap allocations", 0, pool.getBitmapAllocations());
+        assertTrue(pool.getBufferReuses() >= ROUNDS);
+        assertTrue(pool.getBitmapReuses() >= ROUNDS);
+    }
+
+    private static void release(Bgr24Image image) {
+        image.release();
+    }
+
+    private String writeJpeg(int width, int height, int orientation) throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        for (int y = 0; y < height; y += 8) {
+            for (int x = 0; x < width; x += 8) {
+                bitmap.setPixel(x, y, 0xFF000000 | (x << 12) | (y << 2));
+            }
+        }
+        File file = folder.newFile(width + "x" + height + "-" + orientation + ".jpg");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        } finally {
+            out.close();
+        }
+        bitmap.recycle();
+        if (orientation != ExifInterface.ORIENTATION_NORMAL) {
+            ExifInterface exif = new ExifInterface(file.getPath());
+            exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(orientation));
+            exif.saveAttributes();
+        }
+        return file.getPath();
+    }
+}
@@ -0,0 +1,302 @@
+package com.arcsoftface.reactnative;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class IvfIndexTest {
+    private static final int GALLERY_SIZE = 5000;
+    // 每个人 10 张照片，与 K 相同：精确 Top-K 都是同一个人的照片，而不是分数接近 0 的无关特征
+    private static final int IDENTITIES = 500;
+    private static final float NOISE = 0.5f;
+    private static final int QUERIES = 40;
+    private static final int K = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SimulatedEngine engine = TestFeatures.engine();
+
+    @Test
+    public void approximateSearchRecallsExactTopK() {
+        Random random = new Random(1);
+        byte[][] features = TestFeatures.clustered(GALLERY_SIZE, IDENTITIES, NOISE, random);
+        FeatureGallery gallery = gallery(features, identity(features.length));
+        gallery.buildIndex(0, IvfIndex.DEFAULT_ITERATIONS);
+
+        int found = 0;
+        int expected = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            byte[] probe = TestFeatures.near(features[random.nextInt(features.length)], NOISE, random);
+            Set<String> exact = ids(gallery.searchTopK(engine, probe, K, 0, false));
+            Set<String> approximate = ids(gallery.searchTopK(engine, probe, K, 0, true));
+            expected += exact.size();
+            exact.retainAll(approximate);
+            found += exact.size();
+        }
+        float recall = (float) found / expected;
+        assertTrue("recall@" + K + " = " + recall, recall >= 0.9f);
+    }
+
+    @Test
+    public void mismatchedLayoutFallsBackToExactSearch() {
+        Random random = new Random(5);
+        byte[][] features = TestFeatures.clustered(2000, 200, NOISE, random);
+        FeatureGallery gallery = gallery(features, identity(features.length));
+        gallery.buildIndex(0, IvfIndex.DEFAULT_ITERATIONS);
+        assertEquals(FeatureVectors.LAYOUT_UNKNOWN, gallery.getLayout());
+
+        FaceEngineApi mismatched = TestFeatures.mismatchedEngine();
+        for (int q = 0; q < 10; q++) {
+            byte[] probe = TestFeatures.near(features[random.nextInt(features.length)], NOISE, random);
+            List<FeatureGallery.Match> exact = gallery.searchTopK(mismatched, probe, K, 0, false);
+            List<FeatureGallery.Match> approximate = gallery.searchTopK(mismatched, probe, K, 0, true);
+            assertEquals(exact.size(), approximate.size());
+            for (int i = 0; i < exact.size(); i++) {
+                assertEquals(exact.get(i).score, approximate.get(i).score, 0);
+            }
+        }
+        assertEquals(FeatureVectors.LAYOUT_MISMATCH, gallery.getLayout());
+        try {
+            gallery.buildIndex(0, IvfIndex.DEFAULT_ITERATIONS);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+
+        FeatureGallery matching = gallery(features, identity(features.length));
+        assertEquals(FeatureVectors.LAYOUT_MATCH, matching.verifyLayout(engine));
+    }
+
+    @Test
+    public void savedIndexRestoresSameAssignments() throws Exception {
+        Random random = new Random(2);
+        byte[][] features = TestFeatures.clustered(2000, 400, NOISE, random);
+        FeatureGallery gallery = gallery(features, identity(features.length));
+        IvfIndex built = gallery.buildIndex(0, IvfIndex.DEFAULT_ITERATIONS);
+        built.setProbes(3);
+        built.setRerank(20);
+        File file = folder.newFile("index.ivf");
+        assertTrue(gallery.saveIndex(file));
+
+        // 以不同的注册顺序恢复，槽位与分片都不同，分簇按 id 对应
+        List<Integer> order = identity(features.length);
+        Collections.shuffle(order, random);
+        FeatureGallery restored = gallery(features, order);
+        assertTrue(restored.loadIndex(file));
+        IvfIndex loaded = restored.getIndex();
+        assertEquals(built.getListCount(), loaded.getListCount());
+        assertEquals(3, loaded.getProbes());
+        assertEquals(20, loaded.getRerank());
+
+        for (int q = 0; q < QUERIES; q++) {
+            byte[] probe = TestFeatures.near(features[random.nextInt(features.length)], NOISE, random);
+            assertEquals(ids(gallery.searchTopK(engine, probe, K, 0, true)),
+                    ids(restored.searchTopK(engine, probe, K, 0, true)));
+        }
+    }
+
+    @Test
+    public void writeAndReadRoundTrip() throws Exception {
+        Random random = new Random(3);
+        float[] centroids = centroids(16, random);
+        IvfIndex index = new IvfIndex(TestFeatures.FEATURE_SIZE, centroids);
+        index.setProbes(5);
+        index.setRerank(99);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        index.write(out, 3);
+        String[] ids = {"a", "b", "c"};
+        byte[][] features = {TestFeatures.random(random), TestFeatures.random(random), TestFeatures.random(random)};
+        IvfIndex.Lists lists = index.newLists();
+        ListSource source = new ListSource(Arrays.asList(features));
+        for (int slot = 0; slot < 3; slot++) {
+            lists.assign(slot, source);
+        }
+        lists.write(out, ids);
+        out.close();
+
+        HashMap<String, Integer> assignments = new HashMap<>();
+        IvfIndex read = IvfIndex.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                TestFeatures.FEATURE_SIZE, assignments);
+        assertEquals(16, read.getListCount());
+        assertEquals(5, read.getProbes());
+        assertEquals(99, read.getRerank());
+        for (int slot = 0; slot < 3; slot++) {
+            assertEquals(Integer.valueOf(lists.listOf(slot)), assignments.get(ids[slot]));
+        }
+        // 簇心一致：同一向量得到相同的最近簇
+        float[] probe = TestFeatures.vector(features[0]);
+        assertEquals(index.nearestLists(probe)[0], read.nearestLists(probe)[0]);
+    }
+
+    @Test
+    public void assignAndRemoveKeepListsConsistent() {
+        Random random = new Random(4);
+        float[] centroids = centroids(12, random);
+        IvfIndex index = new IvfIndex(TestFeatures.FEATURE_SIZE, centroids);
+        IvfIndex.Lists lists = index.newLists();
+        List<byte[]> slots = new ArrayList<>();
+        ListSource source = new ListSource(slots);
+
+        for (int step = 0; step < 3000; step++) {
+            int op = random.nextInt(10);
+            if (slots.isEmpty() || op < 5) {
+                // 追加
+                slots.add(scaled(TestFeatures.random(random), 0.5f + random.nextFloat()));
+                lists.assign(slots.size() - 1, source);
+            } else if (op < 7) {
+                // 覆盖
+                int slot = random.nextInt(slots.size());
+                slots.set(slot, scaled(TestFeatures.random(random), 0.5f + random.nextFloat()));
+                lists.assign(slot, source);
+            } else if (op < 8) {
+                // 以指定的簇分配，越界时重新计算
+                int slot = random.nextInt(slots.size());
+                lists.assign(slot, source, random.nextBoolean() ? -1 : nearest(centroids, slots.get(slot)));
+            } else {
+                // 删除，最后一个槽位填补空位
+                int slot = random.nextInt(slots.size());
+                int last = slots.size() - 1;
+                lists.remove(slot, last);
+                slots.set(slot, slots.get(last));
+                slots.remove(last);
+            }
+            if (step % 100 == 0 || step == 2999) {
+                verify(index, lists, centroids, slots);
+            }
+        }
+    }
+
+    // 每个槽位恰好在其最近的簇中出现一次，扫描得到的分数等于余弦相似度（向量长度随槽位移动）
+    private static void verify(IvfIndex index, IvfIndex.Lists lists, float[] centroids, List<byte[]> slots) {
+        int[] all = new int[index.getListCount()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        float[] probe = TestFeatures.vector(TestFeatures.random(new Random(slots.size())));
+        TopKHeap heap = new TopKHeap(Math.max(1, slots.size() * 2));
+        int scanned = lists.scan(all, new ListSource(slots), probe, heap);
+        assertEquals(slots.size(), scanned);
+
+        int[] outSlots = new int[heap.size()];
+        float[] outScores = new float[heap.size()];
+        int n = heap.drainDescending(outSlots, outScores);
+        assertEquals(slots.size(), n);
+        boolean[] seen = new boolean[slots.size()];
+        for (int i = 0; i < n; i++) {
+            int slot = outSlots[i];
+            assertFalse("slot " + slot + " listed twice", seen[slot]);
+            seen[slot] = true;
+            float[] vector = TestFeatures.vector(slots.get(slot));
+            assertEquals(FeatureVectors.dot(vector, 0, probe, 0, probe.length), outScores[i], 1e-4f);
+            assertEquals(nearest(centroids, slots.get(slot)), lists.listOf(slot));
+        }
+    }
+
+    private static int nearest(float[] centroids, byte[] feature) {
+        float[] vector = TestFeatures.vector(feature);
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int list = 0; list < centroids.length / vector.length; list++) {
+            float score = FeatureVectors.dot(centroids, list * vector.length, vector, 0, vector.length);
+            if (score > bestScore) {
+                bestScore = score;
+                best = list;
+            }
+        }
+        return best;
+    }
+
+    private static float[] centroids(int count, Random random) {
+        float[] centroids = new float[count * TestFeatures.DIMENSION];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(TestFeatures.vector(TestFeatures.random(random)), 0, centroids, i * TestFeatures.DIMENSION,
+                    TestFeatures.DIMENSION);
+        }
+        return centroids;
+    }
+
+    // 向量长度不为 1 的特征，检验分簇信息中保存的长度
+    private static byte[] scaled(byte[] feature, float scale) {
+        byte[] copy = feature.clone();
+        FloatBuffer buffer = FeatureVectors.wrap(copy);
+        for (int i = 0; i < TestFeatures.DIMENSION; i++) {
+            int index = FeatureVectors.HEADER_BYTES / 4 + i;
+            buffer.put(index, buffer.get(index) * scale);
+        }
+        return copy;
+    }
+
+    private FeatureGallery gallery(byte[][] features, List<Integer> order) {
+        FeatureGallery gallery = new FeatureGallery(TestFeatures.FEATURE_SIZE, 4);
+        for (int i : order) {
+            gallery.register("id" + i, features[i]);
+        }
+        return gallery;
+    }
+
+    private static List<Integer> identity(int n) {
+        List<Integer> order = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            order.add(i);
+        }
+        return order;
+    }
+
+    private static Set<String> ids(List<FeatureGallery.Match> matches) {
+        Set<String> ids = new HashSet<>();
+        for (FeatureGallery.Match match : matches) {
+            ids.add(match.id);
+        }
+        return ids;
+    }
+
+    private static class ListSource implements FeatureVectors.Source {
+        private final List<byte[]> features;
+
+        ListSource(List<byte[]> features) {
+            this.features = features;
+        }
+
+        @Override
+        public float read(int slot, float[] out) {
+            return FeatureVectors.read(features.get(slot), out);
+        }
+
+        @Override
+        public float norm(int slot) {
+            return read(slot, new float[TestFeatures.DIMENSION]);
+        }
+
+        @Override
+        public float dot(int slot, float[] probe) {
+            float[] vector = new float[TestFeatures.DIMENSION];
+            float norm = read(slot, vector);
+            return norm * FeatureVectors.dot(vector, 0, probe, 0, probe.length);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.arcsoftface.reactnative;
+
+import com.facebook.react.bridge.Promise;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class RequestCoalescerTest {
+
+    @Test
+    public void requestWithAllWaitersCancelledIsNotJoinedAgain() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        List<String> third = new ArrayList<>();
+
+        RequestCoalescer.Request orphan = coalescer.join("detect:a.jpg", "screen", promise(first));
+        assertNotNull(orphan);
+        coalescer.attach(orphan, job());
+        assertEquals(1, coalescer.cancel("screen", null));
+        assertEquals("reject:CANCELLED", first.get(0));
+        assertEquals(0, coalescer.getPendingCount());
+
+        // 撤下任务之前到达的相同请求重新登记，而不是合并到被取消的请求上
+        RequestCoalescer.Request fresh = coalescer.join("detect:a.jpg", "other", promise(second));
+        assertNotNull(fresh);
+        assertNotSame(orphan, fresh);
+        assertNull(coalescer.join("detect:a.jpg", null, promise(third)));
+        assertEquals(1, coalescer.getCoalescedCount());
+
+        // 被取消请求的任务若已在执行，其结果被丢弃
+        coalescer.resolve(orphan, "stale");
+        assertTrue(second.isEmpty());
+        coalescer.resolve(fresh, "result");
+        assertEquals("resolve:result", second.get(0));
+        assertEquals("resolve:result", third.get(0));
+        assertEquals(1, first.size());
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void partialCancelKeepsRequestShared() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        List<String> kept = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        RequestCoalescer.Request request = coalescer.join("k", "a", promise(kept));
+        assertNull(coalescer.join("k", "b", promise(dropped)));
+
+        assertEquals(1, coalescer.cancel("b", null));
+        assertEquals(1, coalescer.getPendingCount());
+        List<String> late = new ArrayList<>();
+        assertNull(coalescer.join("k", "c", promise(late)));
+
+        coalescer.reject(request, "FAILED", "failed");
+        assertEquals("reject:FAILED", kept.get(0));
+        assertEquals("reject:FAILED", late.get(0));
+        assertEquals(1, dropped.size());
+    }
+
+    private static FaceEnginePool.Job job() {
+        return new FaceEnginePool.Job(0, 0, null, "FAILED", null, null);
+    }
+
+    // 按调用顺序记录 resolve / reject 的 Promise
+    private static Promise promise(final List<String> calls) {
+        return (Promise) Proxy.newProxyInstance(Promise.class.getClassLoader(), new Class<?>[]{Promise.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("resolve".equals(method.getName())) {
+                            calls.add("resolve:" + args[0]);
+                        } else if ("reject".equals(method.getName())) {
+                            calls.add("reject:" + args[0]);
+                        }
+                        return null;
+                    }
+                });
+    }
+}
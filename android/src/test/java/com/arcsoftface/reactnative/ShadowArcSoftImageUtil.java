@@ -0,0 +1,48 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Bitmap;
+
+import com.arcsoft.imageutil.ArcSoftImageFormat;
+import com.arcsoft.imageutil.ArcSoftImageUtil;
+import com.arcsoft.imageutil.ArcSoftImageUtilError;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * ArcSoftImageUtil 的 JVM 实现：SDK 的转换在 native 库中，测试中逐像素转换为 BGR24，不分配额外内存。
+ * 使用时需在 @Config 中将 com.arcsoft.imageutil 加入 instrumentedPackages。
+ */
+@Implements(ArcSoftImageUtil.class)
+public class ShadowArcSoftImageUtil {
+
+    @Implementation
+    protected static void __staticInitializer__() {
+        // 跳过加载 native 库
+    }
+
+    @Implementation
+    protected static int bitmapToImageData(Bitmap bitmap, byte[] data, ArcSoftImageFormat format) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (format != ArcSoftImageFormat.BGR24) {
+            return ArcSoftImageUtilError.CODE_IMAGE_FORMAT_UNSUPPORTED;
+        }
+        if ((width & 3) != 0) {
+            return ArcSoftImageUtilError.CODE_WIDTH_HEIGHT_UNSUPPORTED;
+        }
+        if (data == null || data.length != width * height * 3) {
+            return ArcSoftImageUtilError.CODE_SIZE_MISMATCH;
+        }
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = bitmap.getPixel(x, y);
+                data[i++] = (byte) pixel;
+                data[i++] = (byte) (pixel >> 8);
+                data[i++] = (byte) (pixel >> 16);
+            }
+        }
+        return ArcSoftImageUtilError.CODE_SUCCESS;
+    }
+}
@@ -0,0 +1,29 @@
+package com.arcsoftface.reactnative;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * Arguments 的 JVM 实现：原实现创建依赖 native 库的 WritableNativeMap / WritableNativeArray，
+ * 测试中改为纯 Java 的 JavaOnlyMap / JavaOnlyArray，以便读取发送给 JS 的事件内容。
+ * 使用时需在 @Config 中将 com.facebook.react.bridge 加入 instrumentedPackages。
+ */
+@Implements(Arguments.class)
+public class ShadowArguments {
+
+    @Implementation
+    protected static WritableMap createMap() {
+        return new JavaOnlyMap();
+    }
+
+    @Implementation
+    protected static WritableArray createArray() {
+        return new JavaOnlyArray();
+    }
+}
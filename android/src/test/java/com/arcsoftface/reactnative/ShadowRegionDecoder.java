@@ -0,0 +1,65 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+
+/**
+ * 按平台语义处理 inBitmap 的 BitmapRegionDecoder：Robolectric 自带的实现忽略 inBitmap、总是新建 Bitmap，
+ * 这里解码整图后把区域绘制到 inBitmap 中，inBitmap 容量不足时与平台一样抛出 IllegalArgumentException。
+ */
+@Implements(BitmapRegionDecoder.class)
+public class ShadowRegionDecoder {
+    private static final Paint COPY_PAINT = new Paint();
+
+    static {
+        COPY_PAINT.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
+    private String path;
+
+    @Implementation
+    protected static BitmapRegionDecoder newInstance(String pathName, boolean isShareable) {
+        BitmapRegionDecoder decoder = Shadow.newInstanceOf(BitmapRegionDecoder.class);
+        ShadowRegionDecoder shadow = Shadow.extract(decoder);
+        shadow.path = pathName;
+        return decoder;
+    }
+
+    @Implementation
+    protected Bitmap decodeRegion(Rect rect, BitmapFactory.Options options) {
+        Bitmap full = BitmapFactory.decodeFile(path);
+        if (full == null) {
+            return null;
+        }
+        int sampleSize = options != null ? Math.max(1, options.inSampleSize) : 1;
+        int width = (rect.width() + sampleSize - 1) / sampleSize;
+        int height = (rect.height() + sampleSize - 1) / sampleSize;
+        Bitmap out;
+        if (options != null && options.inBitmap != null) {
+            out = options.inBitmap;
+            if (out.getAllocationByteCount() < width * height * 4) {
+                throw new IllegalArgumentException("Problem decoding into existing bitmap");
+            }
+            out.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            out = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        new Canvas(out).drawBitmap(full, rect, new Rect(0, 0, width, height), COPY_PAINT);
+        full.recycle();
+        return out;
+    }
+
+    @Implementation
+    protected void recycle() {
+    }
+}
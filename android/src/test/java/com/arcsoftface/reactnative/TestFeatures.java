@@ -0,0 +1,133 @@
+package com.arcsoftface.reactnative;
+
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * 测试用的合成特征：FeatureVectors.HEADER_BYTES 字节的零头 + 已归一化的 float32 小端向量。
+ * 特征围绕若干个随机中心分布，模拟同一个人的多张照片彼此接近、不同的人之间几乎正交。
+ */
+final class TestFeatures {
+    static final int FEATURE_SIZE = FaceFeature.FEATURE_SIZE;
+    static final int DIMENSION = FeatureVectors.dimension(FEATURE_SIZE);
+
+    private TestFeatures() {
+    }
+
+    /**
+     * count 条特征，依次属于 identities 个中心；noise 为每一维扰动的标准差相对中心的比例。
+     */
+    static byte[][] clustered(int count, int identities, float noise, Random random) {
+        float[][] centers = new float[identities][];
+        for (int i = 0; i < identities; i++) {
+            centers[i] = gaussian(random);
+        }
+        byte[][] features = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            features[i] = encode(perturb(centers[i % identities], noise, random));
+        }
+        return features;
+    }
+
+    // 与 feature 接近的探针，模拟同一个人的另一张照片
+    static byte[] near(byte[] feature, float noise, Random random) {
+        return encode(perturb(vector(feature), noise, random));
+    }
+
+    static byte[] random(Random random) {
+        return encode(gaussian(random));
+    }
+
+    static byte[] encode(float[] vector) {
+        normalize(vector);
+        ByteBuffer buffer = ByteBuffer.allocate(FEATURE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(FeatureVectors.HEADER_BYTES);
+        for (float value : vector) {
+            buffer.putFloat(value);
+        }
+        return buffer.array();
+    }
+
+    static float[] vector(byte[] feature) {
+        float[] vector = new float[DIMENSION];
+        FeatureVectors.read(feature, vector);
+        return vector;
+    }
+
+    static float cosine(byte[] a, byte[] b) {
+        return FeatureVectors.dot(vector(a), 0, vector(b), 0, DIMENSION);
+    }
+
+    static SimulatedEngine engine() {
+        SimulatedEngine engine = new SimulatedEngine(0, 0, 0, 0, 1);
+        engine.init(null, null, null, 1, FaceEngine.ASF_FACE_RECOGNITION);
+        return engine;
+    }
+
+    /**
+     * 特征布局与 FeatureVectors 的假设不同的引擎：把 HEADER_BYTES 之后的前 DIMENSION 个字节当作 int8 向量计算余弦，
+     * 模拟虹软特征实际上不是 float32 小端向量的情况。同一条特征与自身的分数仍为 1，但与 Java 侧余弦不相符。
+     */
+    static FaceEngineApi mismatchedEngine() {
+        final SimulatedEngine engine = engine();
+        return (FaceEngineApi) Proxy.newProxyInstance(FaceEngineApi.class.getClassLoader(),
+                new Class<?>[]{FaceEngineApi.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("compareFaceFeature")) {
+                            args = new Object[]{asBytes((FaceFeature) args[0]), asBytes((FaceFeature) args[1]), args[2]};
+                        }
+                        try {
+                            return method.invoke(engine, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    private static FaceFeature asBytes(FaceFeature feature) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = feature.getFeatureData()[FeatureVectors.HEADER_BYTES + i];
+        }
+        return new FaceFeature(encode(vector));
+    }
+
+    private static float[] gaussian(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        normalize(vector);
+        return vector;
+    }
+
+    private static float[] perturb(float[] center, float noise, Random random) {
+        float scale = noise / (float) Math.sqrt(DIMENSION);
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = center[i] + scale * (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static void normalize(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        float inverse = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= inverse;
+        }
+    }
+}
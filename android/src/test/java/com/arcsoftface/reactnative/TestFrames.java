@@ -0,0 +1,70 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Rect;
+
+import com.arcsoft.face.Face3DAngle;
+import com.arcsoft.face.FaceInfo;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+/**
+ * 测试用的合成帧与人脸：亮度为 mean ± contrast 的单像素棋盘格，contrast 越大拉普拉斯响应方差越大（越"清晰"）。
+ * BGR24 帧的每个像素三通道取相同值，按 FaceQuality 的亮度公式换算后与 NV21 的 Y 平面一致。
+ */
+final class TestFrames {
+    private TestFrames() {
+    }
+
+    static byte[] nv21(int width, int height, int mean, int contrast) {
+        byte[] data = new byte[width * height * 3 / 2];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[y * width + x] = (byte) luma(x, y, mean, contrast);
+            }
+        }
+        Arrays.fill(data, width * height, data.length, (byte) 128);
+        return data;
+    }
+
+    static byte[] bgr24(int width, int height, int mean, int contrast) {
+        byte[] data = new byte[width * height * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int offset = (y * width + x) * 3;
+                byte value = (byte) luma(x, y, mean, contrast);
+                data[offset] = value;
+                data[offset + 1] = value;
+                data[offset + 2] = value;
+            }
+        }
+        return data;
+    }
+
+    static FaceInfo face(int faceId, Rect rect, float yaw, float pitch, float roll) {
+        FaceInfo faceInfo = new FaceInfo();
+        faceInfo.setFaceId(faceId);
+        faceInfo.setRect(rect);
+        Face3DAngle angle = new Face3DAngle();
+        set(angle, "yaw", yaw);
+        set(angle, "pitch", pitch);
+        set(angle, "roll", roll);
+        faceInfo.setFace3DAngle(angle);
+        return faceInfo;
+    }
+
+    private static int luma(int x, int y, int mean, int contrast) {
+        return Math.max(0, Math.min(255, ((x + y) & 1) == 0 ? mean + contrast : mean - contrast));
+    }
+
+    // SDK 的 Face3DAngle 没有 setter
+    private static void set(Face3DAngle angle, String name, float value) {
+        try {
+            Field field = Face3DAngle.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.setFloat(angle, value);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.arcsoftface.reactnative;
+
+import android.graphics.Rect;
+
+import com.arcsoft.face.FaceInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class TrackCacheTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    private final TrackCache cache = new TrackCache(TestFeatures.FEATURE_SIZE, 3000, 0.2f, 10);
+
+    @Test
+    public void newTrackNeedsExtraction() {
+        FaceInfo faceInfo = TestFrames.face(1, new Rect(0, 0, 100, 100), 0, 0, 0);
+        TrackCache.Track track = track(faceInfo);
+        assertTrue(cache.needsExtraction(track, faceInfo, 0));
+        cache.markExtracted(track, faceInfo, 0);
+        assertFalse(cache.needsExtraction(track, faceInfo, 10));
+    }
+
+    @Test
+    public void cachedFeatureExpiresAfterTtl() {
+        FaceInfo faceInfo = TestFrames.face(1, new Rect(0, 0, 100, 100), 0, 0, 0);
+        TrackCache.Track track = track(faceInfo);
+        cache.markExtracted(track, faceInfo, 1000);
+        assertFalse(cache.needsExtraction(track, faceInfo, 1000 + 2999));
+        assertTrue(cache.needsExtraction(track, faceInfo, 1000 + 3000));
+        cache.markExtracted(track, faceInfo, 4000);
+        assertFalse(cache.needsExtraction(track, faceInfo, 4001));
+    }
+
+    @Test
+    public void qualityGainTriggersReextraction() {
+        FaceInfo small = TestFrames.face(1, new Rect(0, 0, 100, 100), 0, 0, 0);
+        TrackCache.Track track = track(small);
+        cache.markExtracted(track, small, 0);
+        // qualityGain 为 0.2：边长需超过 120 才重新提取
+        assertFalse(cache.needsExtraction(track, TestFrames.face(1, new Rect(0, 0, 120, 120), 0, 0, 0), 10));
+        assertTrue(cache.needsExtraction(track, TestFrames.face(1, new Rect(0, 0, 121, 121), 0, 0, 0), 10));
+        // 质量分按偏转角折算：更大的框但偏转 60 度不算改善
+        assertFalse(cache.needsExtraction(track, TestFrames.face(1, new Rect(0, 0, 200, 200), 60, 0, 0), 10));
+        assertEquals(100, TrackCache.quality(TestFrames.face(1, new Rect(0, 0, 200, 200), 60, 0, 0)), 1e-3f);
+    }
+
+    @Test
+    public void angleGainTriggersReextraction() {
+        FaceInfo turned = TestFrames.face(1, new Rect(0, 0, 100, 100), 20, -5, 0);
+        TrackCache.Track track = track(turned);
+        cache.markExtracted(track, turned, 0);
+        // angleGain 为 10 度：|yaw| + |pitch| 从 25 降到 15 以下才重新提取，roll 不计入
+        assertFalse(cache.needsExtraction(track, TestFrames.face(1, new Rect(0, 0, 100, 100), 10, 5, 30), 10));
+        assertTrue(cache.needsExtraction(track, TestFrames.face(1, new Rect(0, 0, 100, 100), 10, 4, 0), 10));
+        // 偏转变大不触发
+        assertFalse(cache.needsExtraction(track, TestFrames.face(1, new Rect(0, 0, 100, 100), 30, 10, 0), 10));
+    }
+
+    @Test
+    public void tracksMissingFromFrameAreDropped() {
+        FaceInfo first = TestFrames.face(1, new Rect(0, 0, 100, 100), 0, 0, 0);
+        FaceInfo second = TestFrames.face(2, new Rect(100, 0, 200, 100), 0, 0, 0);
+        List<TrackCache.Track> tracks = new ArrayList<>();
+        cache.update(Arrays.asList(first, second), tracks);
+        TrackCache.Track kept = tracks.get(1);
+        cache.markExtracted(kept, second, 0);
+        cache.update(Collections.singletonList(second), tracks);
+        assertEquals(1, cache.size());
+        assertSame(kept, tracks.get(0));
+        assertTrue(kept.hasFeature);
+        assertFalse(kept.extracted);
+        // 重新出现的 faceId 从头开始
+        cache.update(Arrays.asList(first, second), tracks);
+        assertFalse(tracks.get(0).hasFeature);
+    }
+
+    @Test
+    public void candidateWindowKeepsBestFrame() {
+        FaceInfo first = TestFrames.face(7, new Rect(100, 60, 220, 180), 0, 0, 0);
+        TrackCache.Track track = track(first);
+        byte[] frame = TestFrames.nv21(WIDTH, HEIGHT, 120, 1);
+        byte[] firstCopy = frame.clone();
+
+        cache.offerCandidate(track, frame, WIDTH, HEIGHT, first, 10, 1000);
+        assertEquals(1000, track.candidateSince);
+        assertNotSame(first, track.candidateFace);
+        // 候选是副本，调用方随后复用自己的缓冲区不影响候选
+        byte[] buffer = track.candidateFrame;
+        System.arraycopy(TestFrames.nv21(WIDTH, HEIGHT, 120, 2), 0, frame, 0, frame.length);
+        assertArrayEquals(firstCopy, track.candidateFrame);
+
+        // 质量不高于当前候选时不替换
+        cache.offerCandidate(track, frame, WIDTH, HEIGHT, TestFrames.face(7, new Rect(0, 0, 10, 10), 0, 0, 0), 10, 1020);
+        assertArrayEquals(firstCopy, track.candidateFrame);
+        assertEquals(first.getRect(), track.candidateFace.getRect());
+
+        FaceInfo better = TestFrames.face(7, new Rect(90, 50, 230, 190), 0, 0, 0);
+        cache.offerCandidate(track, frame, WIDTH, HEIGHT, better, 25, 1040);
+        assertArrayEquals(frame, track.candidateFrame);
+        assertEquals(better.getRect(), track.candidateFace.getRect());
+        assertEquals(25, track.candidateScore, 0);
+        // 窗口起点不随替换移动，缓冲区原地复用
+        assertEquals(1000, track.candidateSince);
+        assertSame(buffer, track.candidateFrame);
+
+        cache.clearCandidate(track);
+        assertEquals(-1, track.candidateSince);
+        assertNull(track.candidateFace);
+        cache.offerCandidate(track, frame, WIDTH, HEIGHT, first, 1, 2000);
+        assertEquals(2000, track.candidateSince);
+        assertSame(buffer, track.candidateFrame);
+    }
+
+    private TrackCache.Track track(FaceInfo faceInfo) {
+        List<TrackCache.Track> tracks = new ArrayList<>();
+        cache.update(Collections.singletonList(faceInfo), tracks);
+        return tracks.get(0);
+    }
+}
@@ -1,16 +1,57 @@
-import { NativeModules } from 'react-native';
+import { DeviceEventEmitter, NativeModules } from 'react-native';
 
-const { ArcsoftFaceModule } = NativeModules;
+const { ArcsoftFaceModule, ArcsoftFaceBenchmark } = NativeModules;
+
+// 基准测试与近似检索评估方法只在 Android 调试构建中注册
+function benchmarkModule() {
+  if (!ArcsoftFaceBenchmark) {
+    throw new Error('Benchmark methods are only available in debug builds');
+  }
+  return ArcsoftFaceBenchmark;
+}
 
 class ArcsoftFace {
+  /** getLatestFaces 返回的 faces 中每个人脸占用的元素个数 */
+  FACE_STRIDE = 6;
+
+  /** 同步比较与检索的失败返回值：引擎全忙（可改用对应的异步方法）、句柄无效、引擎比对或检索出错、参数无效 */
+  SYNC_BUSY = -1;
+  SYNC_INVALID_HANDLE = -2;
+  SYNC_COMPARE_ERROR = -3;
+  SYNC_INVALID_PARAMETER = -4;
+
   /**
    * 初始化 ArcSoft 人脸识别引擎
    * @param {string} appId - 应用 ID
    * @param {string} sdkKey - SDK 密钥
    * @param {string} activeKey - 激活密钥 (可选，默认为空字符串用于在线激活)
-   * @returns {Promise<boolean>} 初始化是否成功
+   * @param {Object} options - 引擎池配置 (可选)
+   * @param {number} options.poolSize - 引擎数量，各引擎在独立线程中并行处理请求 (默认 1)
+   * @param {string} options.detectMode - 检测模式 ('image' | 'video'，默认 'image')
+   * @param {number} options.maxFaceNum - 最大检测人脸数 (1 ~ 50，默认 2)；合影等多人场景配合 extractAllFeatures 调大
+   * @param {number} options.mask - 引擎功能组合 (FaceEngine.ASF_* 按位或)
+   * @param {Array<Object>} options.engines - 逐个指定引擎配置，字段同上，指定后忽略 poolSize
+   * @param {number} options.imageCacheBytes - 图片缓存容量上限(字节，默认 64MB，0 表示关闭缓存)
+   * @param {number} options.bufferPoolBytes - BGR24 缓冲区与 Bitmap 复用池容量上限(字节，默认 96MB)
+   * @param {boolean} options.warmup - 初始化完成后是否在后台预热引擎 (默认 true)，完成时触发 addReadyListener
+   * @param {string} options.warmupImage - 预热用的人脸图片路径 (可选)，提供时同时预热特征提取
+   * @param {number} options.maxDetectSize - 检测用图像的长边上限 (像素，默认 1280，0 表示不缩小)；
+   *   更大的图片缩小后检测，特征在原图人脸区域上提取，返回的人脸框均为原图 (按 EXIF 方向摆正后) 坐标
+   * @param {boolean} options.reserveInteractiveEngine - 有多个引擎时为交互请求保留一个引擎，后台批量任务不占用 (默认 true)
+   * @param {number} options.searchThreads - 1:N 检索的并行线程数 (默认 CPU 核数，最多 4)；特征库达到 4096 条后首次检索时
+   *   额外创建 searchThreads - 1 个仅含识别功能的比对引擎，1 表示不并行
+   * @param {string} options.galleryEncoding - 内存特征库编码 ('float' | 'int8'，默认 'float')；'int8' 时内存中只保留 int8 编码，
+   *   约为全精度的 1/4，引擎打分所需的全精度特征从持久化特征库读取
+   * @param {Object} options.qualityGate - 特征提取前的质量门限 (可选，字段见 setQualityGate)，未通过的人脸不提取特征
+   * @param {string} options.engine - 引擎实现 ('arcsoft' | 'simulated'，默认 'arcsoft')；'simulated' 不加载 native 库、不激活，
+   *   按 simulatedLatency 延迟返回由图像内容确定的合成结果，用于在模拟器或 CI 上压测，此时 appId 与 sdkKey 可为空
+   * @param {Object} options.simulatedLatency - 模拟引擎各调用的延迟 (毫秒)：detect (默认 15)、process (默认 10)、
+   *   extract (默认 30)、compare (默认 0.005)
+   * @param {number} options.simulatedFaces - 模拟引擎每张图片返回的人脸数 (默认 1，不超过 maxFaceNum)
+   * @param {string} options.logLevel - 原生日志级别 ('debug' | 'info' | 'warn' | 'error' | 'none'，默认 'warn')
+   * @returns {Promise<boolean>} 初始化是否成功 (激活与引擎加载在后台线程完成，不阻塞其他调用)
    */
-  async init(appId, sdkKey, activeKey = '') {
+  async init(appId, sdkKey, activeKey = '', options = {}) {
     try {
       console.log('🚀 ArcsoftFace: Starting initialization...');
       console.log('📋 Parameters:');
@@ -25,7 +66,7 @@ class ArcsoftFace {
           : 'not provided',
       );
 
-      const result = await ArcsoftFaceModule.init(appId, sdkKey, activeKey);
+      const result = await ArcsoftFaceModule.init(appId, sdkKey, activeKey, options);
       console.log('✅ ArcsoftFace: Initialization successful');
       return result;
     } catch (error) {
@@ -51,13 +92,18 @@ class ArcsoftFace {
   /**
    * 检测人脸
    * @param {string} imagePath - 图片路径
-   * @returns {Promise<Array>} 人脸信息数组
+   * @param {Object} requestOptions - 调度选项 (可选)
+   * @param {string} requestOptions.priority - 优先级 ('high' | 'normal' | 'background'，默认 'normal')
+   * @param {string} requestOptions.group - 取消分组，cancelRequests(group) 可撤下该分组中尚未完成的请求
+   * @returns {Promise<Array>} 人脸信息数组 (同一图片的并发请求合并为一次计算)
    */
-  async detectFaces(imagePath) {
+  async detectFaces(imagePath, requestOptions = null) {
     try {
-      return await ArcsoftFaceModule.detectFaces(imagePath);
+      return await ArcsoftFaceModule.detectFaces(imagePath, requestOptions);
     } catch (error) {
-      console.error('ArcSoft Face detect error:', error);
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face detect error:', error);
+      }
       return [];
     }
   }
@@ -66,17 +112,119 @@ class ArcsoftFace {
    * 提取人脸特征
    * @param {string} imagePath - 图片路径
    * @param {string} extractType - 提取类型 (注册：0 | 识别：1)
+   * @param {Object} requestOptions - 调度选项 (可选)，同 detectFaces
    * @returns {Promise<string|null>} 人脸特征数据(base64)
    */
-  async extractFeature(imagePath, extractType) {
+  async extractFeature(imagePath, extractType, requestOptions = null) {
     try {
-      return await ArcsoftFaceModule.extractFeature(imagePath, extractType);
+      return await ArcsoftFaceModule.extractFeature(imagePath, extractType, requestOptions);
     } catch (error) {
-      console.error('ArcSoft Face extract feature error:', error);
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face extract feature error:', error);
+      }
       return null;
     }
   }
 
+  /**
+   * 批量提取人脸特征，解码与引擎计算在原生线程中流水线并行
+   * @param {Array<string>} imagePaths - 图片路径列表
+   * @param {Object} options - 批量配置 (可选)
+   * @param {number} options.extractType - 提取类型 (注册：0 | 识别：1)
+   * @param {number} options.chunkSize - 每个结果块的条数 (默认 50)
+   * @param {number} options.decodeThreads - 解码线程数 (默认 CPU 核数减引擎数)
+   * @param {boolean} options.returnHandles - 以特征句柄 (handle) 代替 base64 返回特征 (默认 false)
+   * @param {string} options.priority - 优先级 ('high' | 'normal' | 'background'，默认 'background')
+   * @param {string} options.group - 取消分组，cancelRequests(group) 可停止该批量任务
+   * @param {Function} options.onChunk - 收到一块结果时回调，参数为 [{ index, path, feature } | { index, path, error, message }]
+   * @param {Function} options.onProgress - 进度回调，参数为 { completed, failed, total, elapsedTime }
+   * @returns {Promise<Object|null>} 汇总 { total, succeeded, failed, cancelled, elapsedTime }；未指定 onChunk 时附带按下标排序的 results
+   */
+  async extractFeaturesBatch(imagePaths, options = {}) {
+    try {
+      return await this._runBatch('extractFeaturesBatch', imagePaths, options);
+    } catch (error) {
+      console.error('ArcSoft Face batch extract error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 批量检测人脸，参数与 extractFeaturesBatch 相同，每条结果为 { index, path, faces }
+   * @param {Array<string>} imagePaths - 图片路径列表
+   * @param {Object} options - 批量配置 (可选)
+   * @returns {Promise<Object|null>} 汇总信息
+   */
+  async detectFacesBatch(imagePaths, options = {}) {
+    try {
+      return await this._runBatch('detectFacesBatch', imagePaths, options);
+    } catch (error) {
+      console.error('ArcSoft Face batch detect error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 取消分组中尚未完成的请求和批量任务 (如页面卸载时)，被取消的请求按失败处理
+   * @param {string} group - 取消分组
+   * @returns {Promise<number>} 取消的请求数
+   */
+  async cancelRequests(group) {
+    try {
+      return await ArcsoftFaceModule.cancelRequests(group);
+    } catch (error) {
+      console.error('ArcSoft Face cancel requests error:', error);
+      return 0;
+    }
+  }
+
+  /**
+   * 获取调度器状态
+   * @returns {Promise<Object|null>} { queued, pending, coalesced, cancelled, activeBatches }
+   */
+  async getSchedulerStats() {
+    try {
+      return await ArcsoftFaceModule.getSchedulerStats();
+    } catch (error) {
+      console.error('ArcSoft Face scheduler stats error:', error);
+      return null;
+    }
+  }
+
+  _isCancelled(error) {
+    return error && error.code === 'CANCELLED';
+  }
+
+  async _runBatch(method, imagePaths, options) {
+    const { onChunk, onProgress, ...nativeOptions } = options;
+    const jobId = nativeOptions.jobId || `batch-${Date.now()}-${Math.random().toString(36).slice(2)}`;
+    const results = onChunk ? null : new Array(imagePaths.length);
+    const chunkSubscription = DeviceEventEmitter.addListener('ArcsoftFaceBatchChunk', (event) => {
+      if (event.jobId !== jobId) {
+        return;
+      }
+      if (onChunk) {
+        onChunk(event.results);
+      } else {
+        event.results.forEach((result) => {
+          results[result.index] = result;
+        });
+      }
+    });
+    const progressSubscription = DeviceEventEmitter.addListener('ArcsoftFaceBatchProgress', (event) => {
+      if (event.jobId === jobId && onProgress) {
+        onProgress(event);
+      }
+    });
+    try {
+      const summary = await ArcsoftFaceModule[method](imagePaths, { ...nativeOptions, jobId });
+      return results ? { ...summary, results } : summary;
+    } finally {
+      chunkSubscription.remove();
+      progressSubscription.remove();
+    }
+  }
+
   /**
    * 比较两个人脸特征
    * @param {string} feature1 - 第一个人脸特征(base64)
@@ -92,16 +240,566 @@ class ArcsoftFace {
     }
   }
 
+  /**
+   * 提取人脸特征并保存在原生侧，返回特征句柄；特征数据不经过桥传递，用完后需调用 releaseFeature
+   * @param {string} imagePath - 图片路径
+   * @param {number} extractType - 提取类型 (注册：0 | 识别：1)
+   * @param {Object} requestOptions - 调度选项 (可选)，同 detectFaces
+   * @returns {Promise<number|null>} 特征句柄
+   */
+  async extractFeatureHandle(imagePath, extractType, requestOptions = null) {
+    try {
+      return await ArcsoftFaceModule.extractFeatureHandle(imagePath, extractType, requestOptions);
+    } catch (error) {
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face extract feature handle error:', error);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * 提取图片中所有人脸的特征：图片只解码、检测一次，引擎池有其他空闲引擎时各人脸并行提取
+   * @param {string} imagePath - 图片路径
+   * @param {Object} options - 可选参数，priority / group 同 detectFaces
+   * @param {number} options.extractType - 提取类型 (注册：0 | 识别：1，默认 1)
+   * @param {number} options.maxFaces - 最多提取的人脸数，按人脸面积从大到小选取 (默认 0，即全部；检测上限由 init 的 maxFaceNum 决定)
+   * @param {boolean} options.returnHandles - 以特征句柄代替 base64 返回 (默认 false)
+   * @param {boolean} options.parallel - 是否借用引擎池中的其他引擎并行提取 (默认 true)
+   * @returns {Promise<Array>} 按人脸面积降序排列的 { left, top, right, bottom, orient, feature | handle }，
+   *   单个人脸提取失败时带 error / message；设置了质量门限时带 quality，未通过的人脸带 rejected 原因且不提取
+   */
+  async extractAllFeatures(imagePath, options = {}) {
+    try {
+      return await ArcsoftFaceModule.extractAllFeatures(imagePath, options);
+    } catch (error) {
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face extract all features error:', error);
+      }
+      return [];
+    }
+  }
+
+  /**
+   * 设置特征提取前的质量门限，未通过的人脸跳过提取：extractFeature 以 LOW_QUALITY 失败 (message 以原因开头)，
+   * extractAllFeatures 中带 rejected 原因 ('FACE_TOO_SMALL' | 'POSE_TOO_LARGE' | 'TOO_DARK' | 'TOO_BRIGHT' | 'BLURRY')
+   * @param {Object|null} options - 门限，未指定的项取默认值，某项为 0 时不检查；null 表示关闭
+   * @param {number} options.minFaceSize - 原图上人脸框短边的最小像素数 (默认 64)
+   * @param {number} options.maxYaw - 最大偏航角 (度，默认 30)
+   * @param {number} options.maxPitch - 最大俯仰角 (度，默认 30)
+   * @param {number} options.maxRoll - 最大平面内旋转角 (度，默认 45)
+   * @param {number} options.minSharpness - 最小清晰度，即人脸区域拉普拉斯响应方差 (默认 20)
+   * @param {number} options.minBrightness - 人脸区域最小平均亮度 (0-255，默认 40)
+   * @param {number} options.maxBrightness - 人脸区域最大平均亮度 (0-255，默认 220)
+   * @returns {Promise<Object|null>} 生效的门限，关闭时为 null
+   */
+  async setQualityGate(options) {
+    try {
+      return await ArcsoftFaceModule.setQualityGate(options);
+    } catch (error) {
+      console.error('ArcSoft Face set quality gate error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 评估图片中每个人脸的质量而不提取特征，未设置门限时按默认门限判定，用于标定门限
+   * @param {string} imagePath - 图片路径
+   * @param {Object} requestOptions - 调度选项 (可选)，同 detectFaces
+   * @returns {Promise<Array>} { left, top, right, bottom, orient, faceSize, yaw, pitch, roll, sharpness, brightness, score, reason? }
+   */
+  async assessFaceQuality(imagePath, requestOptions = null) {
+    try {
+      return await ArcsoftFaceModule.assessFaceQuality(imagePath, requestOptions);
+    } catch (error) {
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face assess quality error:', error);
+      }
+      return [];
+    }
+  }
+
+  /**
+   * 将一批特征按相似度分组，用于注册前去除同一人的重复照片；相似关系可传递
+   * @param {Array<string|number>} features - 特征(base64)或特征句柄
+   * @param {Object} options - 可选参数，priority / group 同 detectFaces
+   * @param {number} options.threshold - 判定为同一人的引擎比对分数 (默认 0.8)
+   * @param {number} options.margin - 余弦相似度不低于 threshold - margin 的特征对才交给引擎比对 (默认 0.15)
+   * @returns {Promise<Object|null>} { clusters: [{ members, representative }], comparisons, elapsedTime }，
+   *   members 与 representative 为 features 中的下标，clusters 按成员数降序
+   */
+  async clusterFeatures(features, options = {}) {
+    try {
+      return await ArcsoftFaceModule.clusterFeatures(features, options);
+    } catch (error) {
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face cluster features error:', error);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * 比较两个特征句柄
+   * @param {number} handle1 - 第一个特征句柄
+   * @param {number} handle2 - 第二个特征句柄
+   * @returns {Promise<number>} 相似度分数 (0-1)
+   */
+  async compareFeatureHandles(handle1, handle2) {
+    try {
+      return await ArcsoftFaceModule.compareFeatureHandles(handle1, handle2);
+    } catch (error) {
+      console.error('ArcSoft Face compare handles error:', error);
+      return 0;
+    }
+  }
+
+  /**
+   * 以特征句柄在原生特征库中检索最相似的 k 个特征
+   * @param {number} handle - 待检索的特征句柄
+   * @param {number} k - 返回结果数 (默认 1)
+   * @param {number} threshold - 最低相似度 (默认 0)
+   * @returns {Promise<Array<{id: string, score: number}>>} 按相似度降序排列
+   */
+  async searchTopKHandle(handle, k = 1, threshold = 0) {
+    try {
+      return await ArcsoftFaceModule.searchTopKHandle(handle, k, threshold);
+    } catch (error) {
+      console.error('ArcSoft Face search handle error:', error);
+      return [];
+    }
+  }
+
+  /**
+   * 将特征句柄注册到原生特征库，注册后句柄仍需单独释放
+   * @param {string} id - 特征标识
+   * @param {number} handle - 特征句柄
+   * @returns {Promise<number>} 注册后特征库中的特征数
+   */
+  async registerFeatureHandle(id, handle) {
+    try {
+      return await ArcsoftFaceModule.registerFeatureHandle(id, handle);
+    } catch (error) {
+      console.error('ArcSoft Face register feature handle error:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * 导出特征句柄为 base64，用于持久化或上传
+   * @param {number} handle - 特征句柄
+   * @returns {Promise<string|null>} 人脸特征数据(base64)
+   */
+  async exportFeature(handle) {
+    try {
+      return await ArcsoftFaceModule.exportFeature(handle);
+    } catch (error) {
+      console.error('ArcSoft Face export feature error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 导入 base64 特征，返回特征句柄
+   * @param {string} feature - 人脸特征数据(base64)
+   * @returns {Promise<number|null>} 特征句柄
+   */
+  async importFeature(feature) {
+    try {
+      return await ArcsoftFaceModule.importFeature(feature);
+    } catch (error) {
+      console.error('ArcSoft Face import feature error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 释放特征句柄
+   * @param {number} handle - 特征句柄
+   * @returns {Promise<boolean>} 句柄是否存在
+   */
+  async releaseFeature(handle) {
+    try {
+      return await ArcsoftFaceModule.releaseFeature(handle);
+    } catch (error) {
+      console.error('ArcSoft Face release feature error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 同步比较两个特征句柄，不经过异步桥；引擎全忙时返回 SYNC_BUSY，此时可改用 compareFeatureHandles
+   * @param {number} handle1 - 第一个特征句柄
+   * @param {number} handle2 - 第二个特征句柄
+   * @returns {number} 相似度分数 (0-1)；失败时为 SYNC_BUSY (-1)、SYNC_INVALID_HANDLE (-2) 或 SYNC_COMPARE_ERROR (-3)
+   */
+  compareFeatureHandlesSync(handle1, handle2) {
+    try {
+      return ArcsoftFaceModule.compareFeatureHandlesSync(handle1, handle2);
+    } catch (error) {
+      console.error('ArcSoft Face sync compare error:', error);
+      return this.SYNC_BUSY;
+    }
+  }
+
+  /**
+   * 同步以特征句柄检索特征库；引擎全忙、导入增量正在替换特征库或特征库超过 4096 条时返回 SYNC_BUSY，
+   * 此时可改用 searchTopKHandle
+   * @param {number} handle - 待检索的特征句柄
+   * @param {number} k - 返回结果数 (默认 1)
+   * @param {number} threshold - 最低相似度 (默认 0)
+   * @returns {Array<{id: string, score: number}>|number} 匹配结果；失败时为 SYNC_BUSY (-1)、SYNC_INVALID_HANDLE (-2)、
+   *   SYNC_COMPARE_ERROR (-3) 或 SYNC_INVALID_PARAMETER (-4，k 小于 1)
+   */
+  searchTopKHandleSync(handle, k = 1, threshold = 0) {
+    try {
+      const result = ArcsoftFaceModule.searchTopKHandleSync(handle, k, threshold);
+      return result.matches !== undefined ? result.matches : result.code;
+    } catch (error) {
+      console.error('ArcSoft Face sync search error:', error);
+      return this.SYNC_BUSY;
+    }
+  }
+
+  /**
+   * 同步释放特征句柄
+   * @param {number} handle - 特征句柄
+   * @returns {boolean} 句柄是否存在
+   */
+  releaseFeatureSync(handle) {
+    try {
+      return ArcsoftFaceModule.releaseFeatureSync(handle);
+    } catch (error) {
+      console.error('ArcSoft Face sync release error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 释放所有特征句柄
+   * @returns {Promise<number>} 释放的句柄数
+   */
+  async releaseAllFeatures() {
+    try {
+      return await ArcsoftFaceModule.releaseAllFeatures();
+    } catch (error) {
+      console.error('ArcSoft Face release all features error:', error);
+      return 0;
+    }
+  }
+
+  /**
+   * 获取特征句柄统计，存活时间超过 leakAge 的句柄列为疑似泄漏
+   * @param {number} leakAge - 泄漏判定时间(ms，默认 60000)
+   * @returns {Promise<Object>} { count, bytes, leaks: [{ handle, origin, age }] }
+   */
+  async getFeatureHandleStats(leakAge = 60000) {
+    try {
+      return await ArcsoftFaceModule.getFeatureHandleStats(leakAge);
+    } catch (error) {
+      console.error('ArcSoft Face feature handle stats error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 注册人脸特征到原生特征库，id 已存在时覆盖；特征会持久化，init 时自动恢复
+   * @param {string} id - 特征标识(如员工编号)
+   * @param {string} feature - 人脸特征数据(base64)
+   * @returns {Promise<number>} 注册后的特征库大小
+   */
+  async registerFeature(id, feature) {
+    try {
+      return await ArcsoftFaceModule.registerFeature(id, feature);
+    } catch (error) {
+      console.error('ArcSoft Face register feature error:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * 从原生特征库移除人脸特征
+   * @param {string} id - 特征标识
+   * @returns {Promise<boolean>} 是否移除成功
+   */
+  async removeFeature(id) {
+    try {
+      return await ArcsoftFaceModule.removeFeature(id);
+    } catch (error) {
+      console.error('ArcSoft Face remove feature error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 清空原生特征库
+   * @returns {Promise<boolean>}
+   */
+  async clearGallery() {
+    try {
+      return await ArcsoftFaceModule.clearGallery();
+    } catch (error) {
+      console.error('ArcSoft Face clear gallery error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 获取原生特征库中的特征数量
+   * @returns {Promise<number>}
+   */
+  async getGallerySize() {
+    try {
+      return await ArcsoftFaceModule.getGallerySize();
+    } catch (error) {
+      console.error('ArcSoft Face gallery size error:', error);
+      return 0;
+    }
+  }
+
+  /**
+   * 获取特征库分片与并行检索状态
+   * @returns {Promise<Object|null>} { size, shards, moves, searchThreads, indexed, encoding, memoryBytes, fullPrecisionBytes, savedBytes }
+   */
+  async getGalleryStats() {
+    try {
+      return await ArcsoftFaceModule.getGalleryStats();
+    } catch (error) {
+      console.error('ArcSoft Face gallery stats error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 压缩持久化特征库文件，回收已删除记录占用的空间
+   * @returns {Promise<number>} 回收的记录数
+   */
+  async compactGallery() {
+    try {
+      return await ArcsoftFaceModule.compactGallery();
+    } catch (error) {
+      console.error('ArcSoft Face compact gallery error:', error);
+      return 0;
+    }
+  }
+
+  /**
+   * 导出某序列号之后的特征库变更（新增、覆盖、删除）到文件，用于增量同步
+   * @param {string} path - 输出文件路径
+   * @param {Object} options - 可选参数
+   * @param {number} options.sinceSequence - 上次从本设备导入时得到的 toSequence，默认 0
+   * @param {string} options.sourceId - 上次导入时得到的 sourceId，与本设备不一致时导出全量
+   * @returns {Promise<Object|null>} { sourceId, fromSequence, toSequence, full, upserts, deletes, bytes, elapsedTime }
+   */
+  async exportGalleryDelta(path, options = {}) {
+    try {
+      return await ArcsoftFaceModule.exportGalleryDelta(path, options);
+    } catch (error) {
+      console.error('ArcSoft Face export gallery delta error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 校验并导入 exportGalleryDelta 生成的文件，导入期间的检索看到导入前或导入后的完整特征库。
+   * 非全量 delta 的 fromSequence 晚于该来源已导入的序列号（getGallerySyncState().imported）时拒绝导入并返回 null
+   * @param {string} path - delta 文件路径
+   * @returns {Promise<Object|null>} { sourceId, fromSequence, toSequence, full, upserts, deletes, skipped, sequence, size, elapsedTime }
+   */
+  async importGalleryDelta(path) {
+    try {
+      return await ArcsoftFaceModule.importGalleryDelta(path);
+    } catch (error) {
+      console.error('ArcSoft Face import gallery delta error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 获取本设备特征库变更日志的同步状态
+   * @returns {Promise<Object|null>} { sourceId, sequence, minSequence, trackedIds, imported }，imported 为每个来源已导入的 toSequence
+   */
+  async getGallerySyncState() {
+    try {
+      return await ArcsoftFaceModule.getGallerySyncState();
+    } catch (error) {
+      console.error('ArcSoft Face gallery sync state error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 以当前特征库构建 IVF 近似索引并保存到磁盘，之后的 1:N 检索只对索引粗排出的候选精确打分
+   * @param {Object} options - 可选参数
+   * @param {number} options.lists - 簇数，默认为特征库大小的平方根
+   * @param {number} options.iterations - k-means 迭代次数，默认 10
+   * @param {number} options.probes - 每次检索扫描的簇数，默认 8
+   * @param {number} options.rerank - 精确重排的候选数，默认 64
+   * @param {number} options.minGallerySize - 特征库小于该值时不使用索引，默认 0
+   * @returns {Promise<Object|null>} { lists, size, probes, rerank, minGallerySize, buildTime }
+   */
+  async buildGalleryIndex(options = {}) {
+    try {
+      return await ArcsoftFaceModule.buildGalleryIndex(options);
+    } catch (error) {
+      console.error('ArcSoft Face build gallery index error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 调整近似索引的召回率/延迟参数（probes、rerank、minGallerySize），越大召回率越高、检索越慢
+   * @param {Object} options
+   * @returns {Promise<Object|null>} 调整后的索引信息
+   */
+  async setGalleryIndexParams(options) {
+    try {
+      return await ArcsoftFaceModule.setGalleryIndexParams(options);
+    } catch (error) {
+      console.error('ArcSoft Face set gallery index params error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 获取近似索引信息，未构建时为 null
+   * @returns {Promise<Object|null>}
+   */
+  async getGalleryIndexInfo() {
+    try {
+      return await ArcsoftFaceModule.getGalleryIndexInfo();
+    } catch (error) {
+      console.error('ArcSoft Face gallery index info error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 将近似索引写入磁盘（构建后和模块销毁时会自动保存）
+   * @returns {Promise<boolean>}
+   */
+  async saveGalleryIndex() {
+    try {
+      return await ArcsoftFaceModule.saveGalleryIndex();
+    } catch (error) {
+      console.error('ArcSoft Face save gallery index error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 删除近似索引及其文件，之后恢复逐条精确检索
+   * @returns {Promise<boolean>}
+   */
+  async dropGalleryIndex() {
+    try {
+      return await ArcsoftFaceModule.dropGalleryIndex();
+    } catch (error) {
+      console.error('ArcSoft Face drop gallery index error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 切换内存特征库编码，'int8' 以近似分数筛选候选、引擎精确重排，节省约 3/4 的特征内存
+   * @param {string} encoding - 'int8' | 'float'
+   * @param {Object} options - 可选参数
+   * @param {number} options.rerank - 无索引时每次检索交给引擎打分的候选数，默认 64
+   * @returns {Promise<Object|null>} { size, rerank, encoding, memoryBytes, fullPrecisionBytes, savedBytes }
+   */
+  async setGalleryEncoding(encoding, options = {}) {
+    try {
+      return await ArcsoftFaceModule.setGalleryEncoding(encoding, options);
+    } catch (error) {
+      console.error('ArcSoft Face set gallery encoding error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 以库内特征对评估 int8 近似分数与全精度余弦、引擎分数之间的偏差；仅调试构建可用，发布构建中返回 null
+   * @param {Object} options - 可选参数
+   * @param {number} options.samples - 探针数，默认 50
+   * @param {number} options.neighbors - 每个探针的近邻数与随机对数，默认 5
+   * @returns {Promise<Object|null>} { pairs, quantizationMeanError, quantizationMaxError, scoreMeanError, scoreMaxError, memoryBytes, ... }
+   */
+  async evaluateGalleryEncoding(options = {}) {
+    try {
+      return await benchmarkModule().evaluateGalleryEncoding(options);
+    } catch (error) {
+      console.error('ArcSoft Face evaluate gallery encoding error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 以库内随机特征为探针，对比近似检索与精确检索的召回率和延迟；仅调试构建可用，发布构建中返回 null
+   * @param {Object} options - 可选参数
+   * @param {number} options.samples - 探针数，默认 100
+   * @param {number} options.k - 对比的 Top-K，默认 10
+   * @returns {Promise<Object|null>} { recall, exactMeanMs, exactP95Ms, indexMeanMs, indexP95Ms, ... }
+   */
+  async benchmarkGalleryIndex(options = {}) {
+    try {
+      return await benchmarkModule().benchmarkGalleryIndex(options);
+    } catch (error) {
+      console.error('ArcSoft Face benchmark gallery index error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 在原生特征库中进行 1:N 检索
+   * @param {string} probeFeature - 待检索的人脸特征(base64)
+   * @param {number} k - 最多返回的结果数
+   * @param {number} threshold - 相似度阈值(0-1之间)，低于该值的结果被丢弃
+   * @returns {Promise<Array<{id: string, score: number}>>} 按相似度降序排列的结果
+   */
+  async searchTopK(probeFeature, k = 1, threshold = 0) {
+    try {
+      return await ArcsoftFaceModule.searchTopK(probeFeature, k, threshold);
+    } catch (error) {
+      console.error('ArcSoft Face search error:', error);
+      return [];
+    }
+  }
+
+  /**
+   * 人脸综合分析：一次解码和检测，返回图中所有人脸的年龄、性别、活体及 3D 角度
+   * @param {string} imagePath - 图片路径
+   * @param {Object} options - 需要分析的属性 (可选，默认全部开启)
+   * @param {boolean} options.age - 年龄
+   * @param {boolean} options.gender - 性别
+   * @param {boolean} options.liveness - 活体
+   * @param {boolean} options.angle - 3D 角度 (yaw/roll/pitch)
+   * @param {string} options.priority - 优先级，同 detectFaces
+   * @param {string} options.group - 取消分组，同 detectFaces
+   * @returns {Promise<Array>} 人脸信息数组
+   */
+  async analyzeFace(imagePath, options = {}) {
+    try {
+      return await ArcsoftFaceModule.analyzeFace(imagePath, options);
+    } catch (error) {
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face analyze error:', error);
+      }
+      return [];
+    }
+  }
+
   /**
    * 活体检测
    * @param {string} imagePath - 图片路径
+   * @param {Object} requestOptions - 调度选项 (可选)，同 detectFaces
    * @returns {Promise<boolean>} 是否为活体
    */
-  async livenessDetection(imagePath) {
+  async livenessDetection(imagePath, requestOptions = null) {
     try {
-      return await ArcsoftFaceModule.livenessDetection(imagePath);
+      return await ArcsoftFaceModule.livenessDetection(imagePath, requestOptions);
     } catch (error) {
-      console.error('ArcSoft Face liveness detection error:', error);
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face liveness detection error:', error);
+      }
       return false;
     }
   }
@@ -109,13 +807,16 @@ class ArcsoftFace {
   /**
    * 年龄检测
    * @param {string} imagePath - 图片路径
+   * @param {Object} requestOptions - 调度选项 (可选)，同 detectFaces
    * @returns {Promise<number>} 年龄
    */
-  async detectAge(imagePath) {
+  async detectAge(imagePath, requestOptions = null) {
     try {
-      return await ArcsoftFaceModule.detectAge(imagePath);
+      return await ArcsoftFaceModule.detectAge(imagePath, requestOptions);
     } catch (error) {
-      console.error('ArcSoft Face age detection error:', error);
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face age detection error:', error);
+      }
       return 0;
     }
   }
@@ -123,16 +824,256 @@ class ArcsoftFace {
   /**
    * 性别检测
    * @param {string} imagePath - 图片路径
+   * @param {Object} requestOptions - 调度选项 (可选)，同 detectFaces
    * @returns {Promise<string>} 性别 ('male' | 'female')
    */
-  async detectGender(imagePath) {
+  async detectGender(imagePath, requestOptions = null) {
     try {
-      return await ArcsoftFaceModule.detectGender(imagePath);
+      return await ArcsoftFaceModule.detectGender(imagePath, requestOptions);
     } catch (error) {
-      console.error('ArcSoft Face gender detection error:', error);
+      if (!this._isCancelled(error)) {
+        console.error('ArcSoft Face gender detection error:', error);
+      }
       return 'unknown';
     }
   }
+
+  /**
+   * 获取图片缓存统计：命中/未命中/淘汰次数、条目数及占用字节数
+   * @returns {Promise<Object>}
+   */
+  async getImageCacheStats() {
+    try {
+      return await ArcsoftFaceModule.getImageCacheStats();
+    } catch (error) {
+      console.error('ArcSoft Face image cache stats error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 清空图片缓存并重置统计
+   * @returns {Promise<boolean>}
+   */
+  async clearImageCache() {
+    try {
+      return await ArcsoftFaceModule.clearImageCache();
+    } catch (error) {
+      console.error('ArcSoft Face clear image cache error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 启动相机实时帧管线 (VIDEO 模式)，需先调用 init()
+   * 帧由原生相机代码通过 ArcsoftFaceModule.submitNv21Frame / submitImage 提交，
+   * 处理不过来时只保留最新一帧，结果通过 addFrameListener 接收
+   * @param {Object} options - 管线配置 (可选)
+   * @param {number} options.maxFaceNum - 最大跟踪人脸数 (1 ~ 50，默认 2)
+   * @param {number} options.orient - 人脸方向 0/90/180/270，不指定时全方向检测
+   * @param {boolean} options.age - 是否检测年龄 (默认 false)
+   * @param {boolean} options.gender - 是否检测性别 (默认 false)
+   * @param {boolean} options.liveness - 是否检测活体 (默认 false)
+   * @param {boolean} options.angle - 是否返回 3D 角度 (默认 false)
+   * @param {boolean} options.emitResults - 是否逐帧发送结果事件，只用 getLatestFaces 轮询时可关闭 (默认 true)
+   * @param {boolean} options.recognize - 是否在特征库中识别跟踪中的人脸，结果带 matchId/matchScore (默认 false)
+   * @param {number} options.threshold - 识别阈值 (默认 0.8)
+   * @param {number} options.trackTtl - 同一跟踪的特征缓存有效期(ms，默认 3000)
+   * @param {number} options.qualityGain - 人脸质量相对提升超过该比例时重新提取特征 (默认 0.2)
+   * @param {number} options.angleGain - 偏转角减小超过该度数时重新提取特征 (默认 10)
+   * @param {Object|null} options.qualityGate - 质量门限 (字段见 setQualityGate)，默认沿用模块的门限，null 表示不检查
+   * @param {number} options.bestFrameWindow - 最佳帧窗口 (ms，默认 0)：跟踪需要提取时先观察该时长，只在其中质量最高的一帧上提取
+   * @returns {Promise<boolean>} 是否启动成功
+   */
+  async startFrameStream(options = {}) {
+    try {
+      return await ArcsoftFaceModule.startFrameStream(options);
+    } catch (error) {
+      console.error('ArcSoft Face start frame stream error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 停止相机实时帧管线并释放 VIDEO 模式引擎
+   * @returns {Promise<boolean>}
+   */
+  async stopFrameStream() {
+    try {
+      return await ArcsoftFaceModule.stopFrameStream();
+    } catch (error) {
+      console.error('ArcSoft Face stop frame stream error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 获取帧管线统计：提交/处理/丢弃帧数、特征提取次数、质量门限拒绝次数、平均处理耗时(ms)及处理帧率
+   * @returns {Promise<Object>}
+   */
+  async getFrameStreamStats() {
+    try {
+      return await ArcsoftFaceModule.getFrameStreamStats();
+    } catch (error) {
+      console.error('ArcSoft Face frame stream stats error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 同步读取帧管线最近一帧的检测结果，适合在绘制循环中逐帧调用
+   * faces 为扁平的 Int32Array，每个人脸依次占 FACE_STRIDE 个元素：faceId, left, top, right, bottom, orient
+   * @returns {{sequence: number, faces: Int32Array}|null} 帧流未启动时为 null
+   */
+  getLatestFaces() {
+    try {
+      const result = ArcsoftFaceModule.getLatestFacesSync();
+      if (!result) {
+        return null;
+      }
+      return { sequence: result[0], faces: Int32Array.from(result.slice(1)) };
+    } catch (error) {
+      console.error('ArcSoft Face latest faces error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 获取启动耗时统计：激活来源 (memory | file | online)、激活/引擎初始化/预热耗时 (ms)，
+   * 以及从 init() 到首次比对或 1:N 检索成功的耗时 timeToFirstRecognition（只提取特征不计入）；未发生的阶段为 -1
+   * @returns {Promise<Object>}
+   */
+  async getStartupMetrics() {
+    try {
+      return await ArcsoftFaceModule.getStartupMetrics();
+    } catch (error) {
+      console.error('ArcSoft Face startup metrics error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 监听引擎就绪 (预热完成) 事件，回调参数同 getStartupMetrics
+   * @param {Function} callback
+   * @returns {Object} 订阅对象，调用 remove() 取消监听
+   */
+  addReadyListener(callback) {
+    return DeviceEventEmitter.addListener('ArcsoftFaceReady', callback);
+  }
+
+  /**
+   * 监听首次识别成功事件（首次比对或 1:N 检索成功，含视频管线识别），回调参数为 { timeToFirstRecognition }
+   * @param {Function} callback
+   * @returns {Object} 订阅对象，调用 remove() 取消监听
+   */
+  addFirstRecognitionListener(callback) {
+    return DeviceEventEmitter.addListener('ArcsoftFaceFirstRecognition', callback);
+  }
+
+  /**
+   * 在设备上运行热点路径基准测试 (Base64、BGR24 缓冲区、结果封装、缓存命中、特征库 Top-K 检索)；
+   * 仅调试构建可用，发布构建中返回 null
+   * @param {Object} options - 可选参数
+   * @param {number} options.warmup - 每个用例的预热次数，默认 20
+   * @param {number} options.samples - 每个用例的采样次数，默认 50
+   * @param {number} options.batch - 轻量用例每次采样连续执行的操作数，默认 100
+   * @param {number} options.k - 检索与结果封装的 Top-K，默认 10
+   * @param {number[]} options.gallerySizes - 合成特征库规模，默认 [1000, 10000, 100000]
+   * @param {string} options.galleryEncoding - 合成特征库编码 ('float' | 'int8')，默认与当前特征库一致
+   * @param {string} options.feature - 合成特征所用的样本特征(base64)，默认取库内任一特征
+   * @param {string} options.imagePath - 可选，对比该图片无缓存解码与缓存命中的耗时
+   * @returns {Promise<Object|null>} { cases: [{ name, ops, meanUs, p50Us, p95Us, maxUs }], elapsedTime, gallerySkipped? }
+   */
+  async runBenchmarks(options = {}) {
+    try {
+      return await benchmarkModule().runBenchmarks(options);
+    } catch (error) {
+      console.error('ArcSoft Face run benchmarks error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 获取分阶段耗时与计数指标 (自上次 resetMetrics 起)
+   * @returns {Promise<Object|null>} { window, stages, methods, counters }，
+   *   stages / methods 中每项为 { count, mean, p50, p90, p99, max } (毫秒)
+   */
+  async getMetrics() {
+    try {
+      return await ArcsoftFaceModule.getMetrics();
+    } catch (error) {
+      console.error('ArcSoft Face metrics error:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 清空所有耗时分布和计数器
+   * @returns {Promise<boolean>}
+   */
+  async resetMetrics() {
+    try {
+      return await ArcsoftFaceModule.resetMetrics();
+    } catch (error) {
+      console.error('ArcSoft Face reset metrics error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 按固定间隔推送指标快照，通过 addMetricsListener 接收
+   * @param {number} intervalMillis - 推送间隔 (毫秒)，0 表示停止
+   * @returns {Promise<boolean>}
+   */
+  async setMetricsInterval(intervalMillis) {
+    try {
+      return await ArcsoftFaceModule.setMetricsInterval(intervalMillis);
+    } catch (error) {
+      console.error('ArcSoft Face metrics interval error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 监听定时推送的指标快照，回调参数同 getMetrics
+   * @param {Function} callback
+   * @returns {Object} 订阅对象，调用 remove() 取消监听
+   */
+  addMetricsListener(callback) {
+    return DeviceEventEmitter.addListener('ArcsoftFaceMetrics', callback);
+  }
+
+  /**
+   * 设置原生热路径日志级别
+   * @param {string} level - 'debug' | 'info' | 'warn' | 'error' | 'none'
+   * @returns {Promise<boolean>}
+   */
+  async setLogLevel(level) {
+    try {
+      return await ArcsoftFaceModule.setLogLevel(level);
+    } catch (error) {
+      console.error('ArcSoft Face set log level error:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 监听每帧的处理结果，faces 中的 faceId 在同一人脸连续出现期间保持不变
+   * @param {Function} callback - 回调参数 { sequence, timestamp, width, height, processTime, faces }
+   * @returns {Object} 订阅对象，调用 remove() 取消监听
+   */
+  addFrameListener(callback) {
+    return DeviceEventEmitter.addListener('ArcsoftFaceFrameResult', callback);
+  }
+
+  /**
+   * 监听帧处理错误
+   * @param {Function} callback - 回调参数 { sequence, code }
+   * @returns {Object} 订阅对象，调用 remove() 取消监听
+   */
+  addFrameErrorListener(callback) {
+    return DeviceEventEmitter.addListener('ArcsoftFaceFrameError', callback);
+  }
 }
 
 export default new ArcsoftFace();